@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import com.morlunk.jumble.model.TalkState;
+import com.morlunk.jumble.model.User;
+import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.net.PacketBuffer;
+import com.morlunk.jumble.protocol.AudioHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a user's voice stream from packet to mixable frame: parsing the Opus payload into the
+ * jitter buffer, reading its frames back out, and copying the decoded PCM into a frame for the
+ * mixer. The native decoder is replaced with a stub, so only Jumble's own handling is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioOutputSpeechBenchmark {
+    /** The size of each 10ms Opus frame; about 48kbps. */
+    private static final int OPUS_FRAME_SIZE = 60;
+    /** An Opus TOC byte for a single 10ms CELT-only fullband frame, config 30. */
+    private static final byte OPUS_TOC = (byte) (30 << 3);
+
+    private AudioOutputSpeech mSpeech;
+    private byte[] mPacket;
+    private int mPacketLength;
+    private int mSequence;
+
+    @Setup
+    public void setUp() {
+        final byte[] opus = new byte[OPUS_FRAME_SIZE];
+        new Random(4).nextBytes(opus);
+        opus[0] = OPUS_TOC;
+        final PacketBuffer packet = PacketBuffer.allocate(OPUS_FRAME_SIZE + 2);
+        packet.writeLong(OPUS_FRAME_SIZE);
+        packet.append(opus, OPUS_FRAME_SIZE);
+        mPacket = packet.getBuffer().array();
+        mPacketLength = packet.size();
+
+        // The worker is never started, so every frame is decoded inline by fetchFrame().
+        final SpeechDecodeWorker worker = new SpeechDecodeWorker(null);
+        mSpeech = new AudioOutputSpeech(new User(1, "Benchmark"), JumbleUDPMessageType.UDPVoiceOpus,
+                new StubDecoder(), AudioHandler.FRAME_SIZE, new AudioOutputSpeech.TalkStateListener() {
+            @Override
+            public void onTalkStateUpdated(int session, TalkState state) {
+            }
+        }, worker);
+        mSequence = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSpeech.destroy();
+        mSpeech.release();
+    }
+
+    /**
+     * Receives one packet and mixes one frame, as a steadily talking user does every 10ms.
+     */
+    @Benchmark
+    public AudioOutputSpeech.Result receiveAndFetch() {
+        mSpeech.addFrameToBuffer(mPacket, 0, mPacketLength, (byte) 0, mSequence++,
+                System.nanoTime());
+        final AudioOutputSpeech.Result frame = mSpeech.fetchFrame();
+        if (frame == null || !frame.isAlive())
+            throw new IllegalStateException("Voice stream ended");
+        return frame;
+    }
+
+    /**
+     * Outputs silence of the requested length, like a decoder that does no work.
+     */
+    private static class StubDecoder implements IDecoder {
+        @Override
+        public int decodeFloat(ByteBuffer input, int inputSize, float[] output, int frameSize) {
+            return frameSize;
+        }
+
+        @Override
+        public int decodeShort(ByteBuffer input, int inputSize, short[] output, int frameSize) {
+            return frameSize;
+        }
+
+        @Override
+        public int decodeFloat(ByteBuffer input, int inputSize, FloatBuffer output, int outputOffset,
+                               int frameSize) {
+            return input == null ? frameSize : AudioHandler.FRAME_SIZE;
+        }
+
+        @Override
+        public int decodeShort(ByteBuffer input, int inputSize, ShortBuffer output, int outputOffset,
+                               int frameSize) {
+            return input == null ? frameSize : AudioHandler.FRAME_SIZE;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
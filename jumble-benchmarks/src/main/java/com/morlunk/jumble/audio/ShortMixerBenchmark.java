@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mixing one 10ms mono frame from a varying number of talking users.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortMixerBenchmark {
+    private static final int FRAME_SIZE = 480;
+
+    @Param({"1", "2", "4", "16", "64"})
+    public int mSourceCount;
+
+    private List<IAudioMixerSource<float[]>> mSources;
+    private short[] mOutput;
+    private BasicClippingShortMixer mBasicMixer;
+    private SoftLimitingShortMixer mLimitingMixer;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(2);
+        mSources = new ArrayList<>(mSourceCount);
+        for (int s = 0; s < mSourceCount; s++) {
+            final float[] samples = new float[FRAME_SIZE];
+            for (int i = 0; i < FRAME_SIZE; i++) {
+                // Loud enough that the mix regularly clips.
+                samples[i] = random.nextFloat() * 2 - 1;
+            }
+            mSources.add(new FrameSource(samples));
+        }
+        mOutput = new short[FRAME_SIZE];
+        mBasicMixer = new BasicClippingShortMixer();
+        mLimitingMixer = new SoftLimitingShortMixer();
+    }
+
+    @Benchmark
+    public short[] basicClipping() {
+        mBasicMixer.mix(mSources, mOutput, 0, FRAME_SIZE);
+        return mOutput;
+    }
+
+    @Benchmark
+    public short[] softLimiting() {
+        mLimitingMixer.mix(mSources, mOutput, 0, FRAME_SIZE);
+        return mOutput;
+    }
+
+    private static class FrameSource implements IAudioMixerSource<float[]> {
+        private final float[] mSamples;
+
+        public FrameSource(float[] samples) {
+            mSamples = samples;
+        }
+
+        @Override
+        public float[] getSamples() {
+            return mSamples;
+        }
+
+        @Override
+        public int getNumSamples() {
+            return mSamples.length;
+        }
+    }
+}
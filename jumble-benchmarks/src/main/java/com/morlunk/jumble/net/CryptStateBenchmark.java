@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures OCB-AES128 encryption of UDP datagrams.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptStateBenchmark {
+    /** The plaintext size; 120 bytes is a typical Opus voice packet. */
+    @Param({"16", "120", "1020"})
+    public int mPacketSize;
+
+    private CryptState mEncrypt;
+    private CryptState mDecrypt;
+    private byte[] mPlain;
+    private byte[] mDatagram;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Random random = new Random(1);
+        final byte[] key = new byte[CryptState.AES_BLOCK_SIZE];
+        final byte[] clientNonce = new byte[CryptState.AES_BLOCK_SIZE];
+        final byte[] serverNonce = new byte[CryptState.AES_BLOCK_SIZE];
+        random.nextBytes(key);
+        random.nextBytes(clientNonce);
+        random.nextBytes(serverNonce);
+        mEncrypt = new CryptState();
+        mEncrypt.setKeys(key, clientNonce, serverNonce);
+        mDecrypt = new CryptState();
+        mDecrypt.setKeys(key, serverNonce, clientNonce);
+
+        mPlain = new byte[mPacketSize];
+        random.nextBytes(mPlain);
+        mDatagram = new byte[mPacketSize + 4];
+    }
+
+    @Benchmark
+    public int encrypt() throws Exception {
+        return mEncrypt.encrypt(mPlain, 0, mPlain.length, mDatagram, 0);
+    }
+
+    /**
+     * Encrypts a datagram and decrypts it in place with the peer's state. Each datagram follows
+     * the last, so the decrypting side stays in sequence however many times this runs.
+     */
+    @Benchmark
+    public int encryptDecrypt() throws Exception {
+        mEncrypt.encrypt(mPlain, 0, mPlain.length, mDatagram, 0);
+        final int length = mDecrypt.decrypt(mDatagram, 0, mDatagram.length, mDatagram, 0);
+        if (length != mPacketSize)
+            throw new IllegalStateException("Decryption failed");
+        return length;
+    }
+}
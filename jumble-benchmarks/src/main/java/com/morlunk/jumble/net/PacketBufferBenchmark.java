@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the variable-length integers written into every voice packet's header.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketBufferBenchmark {
+    private static final int VALUE_COUNT = 256;
+
+    private long[] mValues;
+    private PacketBuffer mBuffer;
+
+    @Setup
+    public void setUp() {
+        mValues = new long[VALUE_COUNT];
+        final Random random = new Random(0);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            // Cover every encoded length, negative values included.
+            mValues[i] = random.nextLong() >> random.nextInt(64);
+        }
+        mBuffer = PacketBuffer.allocate(VALUE_COUNT * 10);
+        for (long value : mValues) {
+            mBuffer.writeLong(value);
+        }
+    }
+
+    /**
+     * Writes {@link #VALUE_COUNT} values of mixed lengths.
+     */
+    @Benchmark
+    public int writeLong() {
+        mBuffer.rewind();
+        for (long value : mValues) {
+            mBuffer.writeLong(value);
+        }
+        return mBuffer.size();
+    }
+
+    /**
+     * Reads back {@link #VALUE_COUNT} values of mixed lengths.
+     */
+    @Benchmark
+    public void readLong(Blackhole blackhole) {
+        mBuffer.rewind();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            blackhole.consume(mBuffer.readLong());
+        }
+    }
+
+    /**
+     * Reads back {@link #VALUE_COUNT} values with the static reader used when parsing voice
+     * packets in place.
+     */
+    @Benchmark
+    public void readLongInPlace(Blackhole blackhole) {
+        final byte[] data = mBuffer.getBuffer().array();
+        final int end = mBuffer.capacity();
+        int offset = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            blackhole.consume(PacketBuffer.readLong(data, offset, end));
+            offset += PacketBuffer.getLongLength(data, offset, end);
+        }
+    }
+}
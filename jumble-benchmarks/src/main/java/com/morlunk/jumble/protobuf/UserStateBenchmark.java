@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.protobuf;
+
+import com.google.protobuf.ByteString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a burst of UserState messages, as received when joining a busy server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserStateBenchmark {
+    private static final int USER_COUNT = 1000;
+
+    private byte[][] mMessages;
+
+    @Setup
+    public void setUp() {
+        mMessages = new byte[USER_COUNT][];
+        final byte[] hash = new byte[20];
+        final Random random = new Random(3);
+        for (int i = 0; i < USER_COUNT; i++) {
+            random.nextBytes(hash);
+            mMessages[i] = Mumble.UserState.newBuilder()
+                    .setSession(i + 1)
+                    .setName("User " + i)
+                    .setChannelId(i % 50)
+                    .setUserId(i)
+                    .setTextureHash(ByteString.copyFrom(hash))
+                    .setCommentHash(ByteString.copyFrom(hash))
+                    .setHash("0123456789abcdef0123456789abcdef01234567")
+                    .build()
+                    .toByteArray();
+        }
+    }
+
+    /**
+     * Parses {@link #USER_COUNT} messages.
+     */
+    @Benchmark
+    public void parseUserStates(Blackhole blackhole) throws Exception {
+        for (byte[] message : mMessages) {
+            blackhole.consume(Mumble.UserState.parser().parseFrom(message, 0, message.length));
+        }
+    }
+}
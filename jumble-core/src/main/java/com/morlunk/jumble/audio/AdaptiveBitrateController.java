@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+/**
+ * Adjusts the outgoing bitrate and packetization from periodic link statistics.
+ *
+ * On signs of congestion (packet loss, or the round trip time rising well above the lowest
+ * recently seen) the bitrate is cut multiplicatively, and once it is low, frames are packed
+ * into fewer, larger packets to save on per-packet overhead. While the link stays clean the
+ * controller undoes this in the reverse order: first the packetization, then the bitrate
+ * increases additively back up to the configured maximum.
+ *
+ * The configured bitrate and frames per packet should already fit the server's bandwidth limit;
+ * the controller never exceeds the former or goes below the latter.
+ */
+public class AdaptiveBitrateController {
+    public static final int MIN_BITRATE = 8000;
+    /** Frame counts per packet that Opus can encode as a single packet (10 to 60ms). */
+    public static final int[] FRAMES_PER_PACKET_STEPS = { 1, 2, 4, 6 };
+    /** The packet loss percentage treated as congestion. */
+    public static final int LOSS_THRESHOLD = 5;
+    /** The rise in round trip time over the baseline treated as queueing, in microseconds. */
+    public static final long QUEUEING_DELAY_THRESHOLD = 100000;
+    /** The bitrate below which packetization is increased instead of only cutting bitrate. */
+    public static final int PACKETIZATION_BITRATE = 24000;
+
+    /** The number of samples over which the baseline round trip time is tracked. */
+    private static final int RTT_HISTORY_SIZE = 12;
+    /** The number of consecutive clean samples required before recovering. */
+    private static final int RECOVERY_SAMPLES = 2;
+
+    private final int mMaxBitrate;
+    private final int mMinFramesPerPacket;
+    private final int mBitrateStep;
+    private int mBitrate;
+    private int mFramesPerPacket;
+
+    private final long[] mRttHistory = new long[RTT_HISTORY_SIZE];
+    private int mRttIndex;
+    private int mRttCount;
+    private int mCleanSamples;
+
+    /**
+     * @param maxBitrate The highest bitrate to use, in bps.
+     * @param framesPerPacket The lowest number of frames per packet to use.
+     */
+    public AdaptiveBitrateController(int maxBitrate, int framesPerPacket) {
+        mMaxBitrate = Math.max(MIN_BITRATE, maxBitrate);
+        mMinFramesPerPacket = framesPerPacket;
+        mBitrateStep = Math.max(2000, mMaxBitrate / 8);
+        mBitrate = mMaxBitrate;
+        mFramesPerPacket = framesPerPacket;
+    }
+
+    /**
+     * Feeds one sample of link statistics to the controller.
+     * @param lossPercentage The packet loss since the last sample, from 0 to 100.
+     * @param rtt The latest round trip time in microseconds, or 0 if unknown.
+     * @return true if the bitrate or frames per packet changed.
+     */
+    public boolean update(int lossPercentage, long rtt) {
+        boolean queueing = false;
+        if (rtt > 0) {
+            mRttHistory[mRttIndex] = rtt;
+            mRttIndex = (mRttIndex + 1) % RTT_HISTORY_SIZE;
+            if (mRttCount < RTT_HISTORY_SIZE)
+                mRttCount++;
+            long baseline = Long.MAX_VALUE;
+            for (int i = 0; i < mRttCount; i++) {
+                baseline = Math.min(baseline, mRttHistory[i]);
+            }
+            queueing = rtt - baseline > QUEUEING_DELAY_THRESHOLD;
+        }
+
+        final int bitrate = mBitrate;
+        final int framesPerPacket = mFramesPerPacket;
+        if (lossPercentage >= LOSS_THRESHOLD || queueing) {
+            mCleanSamples = 0;
+            mBitrate = Math.max(MIN_BITRATE, mBitrate * 3 / 4);
+            if (mBitrate < PACKETIZATION_BITRATE)
+                mFramesPerPacket = nextFramesPerPacket(mFramesPerPacket);
+        } else if (++mCleanSamples >= RECOVERY_SAMPLES) {
+            if (mFramesPerPacket > mMinFramesPerPacket && mBitrate >= PACKETIZATION_BITRATE) {
+                mFramesPerPacket = Math.max(mMinFramesPerPacket,
+                        previousFramesPerPacket(mFramesPerPacket));
+            } else {
+                mBitrate = Math.min(mMaxBitrate, mBitrate + mBitrateStep);
+            }
+        }
+        return bitrate != mBitrate || framesPerPacket != mFramesPerPacket;
+    }
+
+    private static int nextFramesPerPacket(int framesPerPacket) {
+        for (int step : FRAMES_PER_PACKET_STEPS) {
+            if (step > framesPerPacket)
+                return step;
+        }
+        return framesPerPacket;
+    }
+
+    private static int previousFramesPerPacket(int framesPerPacket) {
+        for (int i = FRAMES_PER_PACKET_STEPS.length - 1; i >= 0; i--) {
+            if (FRAMES_PER_PACKET_STEPS[i] < framesPerPacket)
+                return FRAMES_PER_PACKET_STEPS[i];
+        }
+        return framesPerPacket;
+    }
+
+    public int getBitrate() {
+        return mBitrate;
+    }
+
+    public int getFramesPerPacket() {
+        return mFramesPerPacket;
+    }
+}
@@ -17,50 +17,46 @@
 
 package com.morlunk.jumble.audio;
 
-import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.util.Log;
-
-import com.morlunk.jumble.BuildConfig;
 import com.morlunk.jumble.Constants;
 import com.morlunk.jumble.exception.AudioInitializationException;
 import com.morlunk.jumble.exception.NativeAudioException;
-import com.morlunk.jumble.model.TalkState;
 import com.morlunk.jumble.protocol.AudioHandler;
+import com.morlunk.jumble.util.JumbleLog;
 
 /**
+ * Reads frames from a platform {@link IAudioSource} on its own thread.
  * Created by andrew on 23/08/13.
  */
 public class AudioInput implements Runnable {
     public static final int[] SAMPLE_RATES = { 48000, 44100, 16000, 8000 };
 
-    // AudioRecord state
+    // Audio source state
     private AudioInputListener mListener;
-    private AudioRecord mAudioRecord;
+    private IAudioSource mSource;
     private final int mFrameSize;
 
     private Thread mRecordThread;
     private boolean mRecording;
 
-    public AudioInput(AudioInputListener listener, int audioSource, int targetSampleRate)
+    public AudioInput(AudioInputListener listener, IAudioDeviceFactory devices, int targetSampleRate)
             throws NativeAudioException, AudioInitializationException {
         mListener = listener;
 
-        // Attempt to construct an AudioRecord with the target sample rate first.
-        // If it fails, keep producing AudioRecord instances until we find one that initializes
-        // correctly. Maybe one day Android will let us probe for supported sample rates, as we
+        // Attempt to open a source with the target sample rate first.
+        // If it fails, keep opening sources until we find one that initializes correctly.
+        // Maybe one day Android will let us probe for supported sample rates, as we
         // aren't even guaranteed that 44100hz will work across all devices.
         for (int i = 0; i < SAMPLE_RATES.length + 1; i++) {
             int sampleRate = i == 0 ? targetSampleRate : SAMPLE_RATES[i - 1];
             try {
-                mAudioRecord = setupAudioRecord(sampleRate, audioSource);
+                mSource = devices.createSource(sampleRate);
                 break;
             } catch (AudioInitializationException e) {
                 // Continue iteration, probing for a supported sample rate.
             }
         }
 
-        if (mAudioRecord == null) {
+        if (mSource == null) {
             throw new AudioInitializationException("Unable to initialize AudioInput.");
         }
 
@@ -69,28 +65,6 @@ public class AudioInput implements Runnable {
         mFrameSize = (sampleRate * AudioHandler.FRAME_SIZE) / AudioHandler.SAMPLE_RATE;
     }
 
-    private static AudioRecord setupAudioRecord(int sampleRate, int audioSource) throws AudioInitializationException {
-        int minBufferSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO,
-                                                                AudioFormat.ENCODING_PCM_16BIT);
-        if (minBufferSize <= 0)
-            throw new AudioInitializationException("Invalid buffer size returned (unsupported sample rate).");
-
-        AudioRecord audioRecord;
-        try {
-            audioRecord = new AudioRecord(audioSource, sampleRate, AudioFormat.CHANNEL_IN_MONO,
-                                                 AudioFormat.ENCODING_PCM_16BIT, minBufferSize);
-        } catch (IllegalArgumentException e) {
-            throw new AudioInitializationException(e);
-        }
-
-        if(audioRecord.getState() == AudioRecord.STATE_UNINITIALIZED) {
-            audioRecord.release();
-            throw new AudioInitializationException("AudioRecord failed to initialize!");
-        }
-
-        return audioRecord;
-    }
-
     /**
      * Starts the recording thread.
      * Not thread-safe.
@@ -124,9 +98,9 @@ public class AudioInput implements Runnable {
      */
     public void shutdown() {
         stopRecording();
-        if(mAudioRecord != null) {
-            mAudioRecord.release();
-            mAudioRecord = null;
+        if(mSource != null) {
+            mSource.release();
+            mSource = null;
         }
     }
 
@@ -135,10 +109,10 @@ public class AudioInput implements Runnable {
     }
 
     /**
-     * @return the sample rate used by the AudioRecord instance.
+     * @return the sample rate used by the audio source.
      */
     public int getSampleRate() {
-        return mAudioRecord.getSampleRate();
+        return mSource.getSampleRate();
     }
 
     /**
@@ -150,29 +124,25 @@ public class AudioInput implements Runnable {
 
     @Override
     public void run() {
-        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_URGENT_AUDIO);
-
-        Log.i(Constants.TAG, "AudioInput: started");
-
-        mAudioRecord.startRecording();
+        JumbleLog.i(Constants.TAG, "AudioInput: started");
 
-        if(mAudioRecord.getState() != AudioRecord.STATE_INITIALIZED)
+        if(!mSource.start())
             return;
 
         final short[] mAudioBuffer = new short[mFrameSize];
         // We loop when the 'recording' instance var is true instead of checking audio record state because we want to always cleanly shutdown.
         while(mRecording) {
-            int shortsRead = mAudioRecord.read(mAudioBuffer, 0, mFrameSize);
+            int shortsRead = mSource.read(mAudioBuffer, 0, mFrameSize);
             if(shortsRead > 0) {
                 mListener.onAudioInputReceived(mAudioBuffer, mFrameSize);
             } else {
-                Log.e(Constants.TAG, "Error fetching audio! AudioRecord error " + shortsRead);
+                JumbleLog.e(Constants.TAG, "Error fetching audio! Audio source error " + shortsRead);
             }
         }
 
-        mAudioRecord.stop();
+        mSource.stop();
 
-        Log.i(Constants.TAG, "AudioInput: stopped");
+        JumbleLog.i(Constants.TAG, "AudioInput: stopped");
     }
 
     public interface AudioInputListener {
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.exception.AudioInitializationException;
+import com.morlunk.jumble.exception.NativeAudioException;
+import com.morlunk.jumble.model.TalkState;
+import com.morlunk.jumble.model.User;
+import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.net.PacketBuffer;
+import com.morlunk.jumble.protocol.AudioHandler;
+import com.morlunk.jumble.util.ConcurrentIntMap;
+import com.morlunk.jumble.util.JumbleLog;
+import com.morlunk.jumble.util.LatencyHistogram;
+
+import java.nio.BufferUnderflowException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mixes every user's voice into a platform {@link IAudioSink} on its own thread.
+ * Created by andrew on 16/07/13.
+ */
+public class AudioOutput implements Runnable, AudioOutputSpeech.TalkStateListener {
+    private ConcurrentIntMap<AudioOutputSpeech> mAudioOutputs = new ConcurrentIntMap<>();
+    /** The outputs in {@link #mAudioOutputs}, for iteration without allocation. Guarded by mPacketLock. */
+    private final List<AudioOutputSpeech> mSpeechOutputs = new ArrayList<>();
+    /** Frames to mix in the current callback. Only accessed by the audio thread. */
+    private final List<IAudioMixerSource<float[]>> mSources = new ArrayList<>();
+    /** The device being played to. Set while playing. */
+    private volatile IAudioSink mSink;
+    private int mBufferSize;
+    private Thread mThread;
+    /**
+     * Decodes ahead for every user's output while playing. Kept after stopping, so that a late
+     * packet's output is released by the stopped worker.
+     */
+    private volatile SpeechDecodeWorker mDecodeWorker;
+    private final Object mInactiveLock = new Object(); // Lock that the audio thread waits on when there's no audio to play. Wake when we get a frame.
+    private final Lock mPacketLock;
+    private boolean mRunning = false;
+    private final Executor mCallbackExecutor;
+    private AudioOutputListener mListener;
+    private final IAudioMixer<float[], short[]> mMixer;
+    /** The number of interleaved output channels; 2 if users can be panned. */
+    private final int mChannels;
+    /** The time from each voice packet's arrival until its audio is first mixed. */
+    private final LatencyHistogram mReceiveToMixLatency = new LatencyHistogram();
+
+    /**
+     * @param listener The listener for talk state changes and user lookups.
+     * @param stereo Whether to output in stereo, positioning users by their local pan.
+     * @param callbackExecutor The executor to notify the listener of talk state changes on.
+     */
+    public AudioOutput(AudioOutputListener listener, boolean stereo, Executor callbackExecutor) {
+        mListener = listener;
+        mChannels = stereo ? 2 : 1;
+        mCallbackExecutor = callbackExecutor;
+        mPacketLock = new ReentrantLock();
+        mMixer = new SoftLimitingShortMixer(mChannels);
+    }
+
+    /**
+     * Opens a sink and starts mixing to it.
+     * @param devices The factory to open the sink with.
+     * @return The mixing thread, or null if already playing.
+     */
+    public Thread startPlaying(IAudioDeviceFactory devices) throws AudioInitializationException {
+        if (mThread != null || mRunning)
+            return null;
+
+        mSink = devices.createSink(AudioHandler.SAMPLE_RATE, mChannels, AudioHandler.FRAME_SIZE * 12);
+        // The number of samples per channel mixed for each write.
+        mBufferSize = mSink.getBufferSize();
+        JumbleLog.v(Constants.TAG, "Using buffer size " + mBufferSize);
+
+        mDecodeWorker = new SpeechDecodeWorker(devices);
+        mDecodeWorker.start();
+        mThread = new Thread(this);
+        mThread.start();
+        return mThread;
+    }
+
+    public void stopPlaying() {
+        if(!mRunning)
+            return;
+
+        mRunning = false;
+        synchronized (mInactiveLock) {
+            mInactiveLock.notify(); // Wake inactive lock if active
+        }
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        mThread = null;
+
+        mPacketLock.lock();
+        for(AudioOutputSpeech speech : mSpeechOutputs) {
+            speech.destroy();
+        }
+        mSpeechOutputs.clear();
+        mAudioOutputs.clear();
+        mPacketLock.unlock();
+        mDecodeWorker.stop();
+
+        mSink.release();
+        mSink = null;
+    }
+
+    public boolean isPlaying() {
+        return mRunning;
+    }
+
+    /**
+     * Returns the time from each voice packet being queued until its audio is first mixed,
+     * covering the jitter buffer delay and decoding. Packets dropped as late are not counted.
+     */
+    public LatencyHistogram getReceiveToMixLatency() {
+        return mReceiveToMixLatency;
+    }
+
+    /**
+     * Mutes or unmutes playback, such as while the local user talks in half duplex mode.
+     * Has no effect unless playing.
+     * @param muted true to silence playback.
+     */
+    public void setMuted(boolean muted) {
+        final IAudioSink sink = mSink;
+        if (sink != null)
+            sink.setMuted(muted);
+    }
+
+    @Override
+    public void run() {
+        JumbleLog.v(Constants.TAG, "Started audio output thread.");
+        mRunning = true;
+        final IAudioSink sink = mSink;
+        sink.play();
+
+        final short[] mix = new short[mBufferSize * mChannels];
+
+        while(mRunning) {
+            if(fetchAudio(mix, 0, mBufferSize)) {
+                sink.write(mix, 0, mix.length);
+            } else {
+                JumbleLog.v(Constants.TAG, "Pausing audio output thread.");
+                synchronized (mInactiveLock) {
+                    sink.pause();
+
+                    try {
+                        mInactiveLock.wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+
+                    sink.play();
+                }
+                JumbleLog.v(Constants.TAG, "Resuming audio output thread.");
+            }
+        }
+
+        sink.stop();
+    }
+
+    /**
+     * Fetches audio data from registered audio output users and mixes them into the given buffer.
+     * Frames are normally decoded ahead by the decode worker; a user whose next frame isn't ready
+     * yet is decoded here, so that their stream isn't delayed by a skipped buffer.
+     * TODO: add priority speaker support.
+     * @param buffer The buffer to mix output data into.
+     * @param bufferOffset The offset of the
+     * @param bufferSize The number of samples per channel to mix.
+     * @return true if any users are still outputting audio.
+     */
+    private boolean fetchAudio(short[] buffer, int bufferOffset, int bufferSize) {
+        Arrays.fill(buffer, bufferOffset, bufferOffset + bufferSize * mChannels, (short) 0);
+        mSources.clear();
+        boolean active = false;
+        final long now = System.nanoTime();
+        mPacketLock.lock();
+        try {
+            for (int i = mSpeechOutputs.size() - 1; i >= 0; i--) {
+                AudioOutputSpeech speech = mSpeechOutputs.get(i);
+                AudioOutputSpeech.Result result = speech.fetchFrame();
+                if (result == null) {
+                    active = true;
+                } else if (result.isAlive()) {
+                    result.recordReceiveLatency(mReceiveToMixLatency, now);
+                    mSources.add(result);
+                    active = true;
+                } else {
+                    JumbleLog.v(Constants.TAG, "Deleted audio user " + speech.getUser().getName());
+                    mSpeechOutputs.remove(i);
+                    mAudioOutputs.remove(speech.getSession());
+                    speech.destroy();
+                }
+            }
+        } finally {
+            mPacketLock.unlock();
+        }
+
+        if (!mSources.isEmpty())
+            mMixer.mix(mSources, buffer, bufferOffset, bufferSize);
+        return active;
+    }
+
+    /**
+     * Queues a voice packet for playback. The packet is copied into the speaker's jitter buffer,
+     * so the given buffer may be reused as soon as this call returns.
+     * Thread-safe; voice received over UDP is queued directly from the receive thread.
+     * The header is parsed in place, so queueing a packet for an existing output doesn't allocate.
+     * @param data The voice packet, including its header.
+     * @param offset The offset of the packet in data.
+     * @param length The length of the packet in data.
+     * @param messageType The codec of the packet.
+     */
+    public void queueVoiceData(byte[] data, int offset, int length, JumbleUDPMessageType messageType) {
+        if(!mRunning)
+            return;
+
+        final long receiveTime = System.nanoTime();
+        byte msgFlags = (byte) (data[offset] & 0x1f);
+        final int end = offset + length;
+        int position = offset + 1;
+        int session, seq;
+        try {
+            session = (int) PacketBuffer.readLong(data, position, end);
+            position += PacketBuffer.getLongLength(data, position, end);
+            seq = (int) PacketBuffer.readLong(data, position, end);
+            position += PacketBuffer.getLongLength(data, position, end);
+        } catch (BufferUnderflowException e) {
+            JumbleLog.v(Constants.TAG, "Discarding truncated voice packet");
+            return;
+        }
+        User user = mListener.getUser(session);
+        if(user != null && !user.isLocalMuted()) {
+            // TODO check for whispers here
+
+            AudioOutputSpeech aop = mAudioOutputs.get(session);
+            if(aop == null || aop.getCodec() != messageType) {
+                // Synchronize so we don't destroy an output while the mixer is reading it.
+                mPacketLock.lock();
+                try {
+                    aop = mAudioOutputs.get(session);
+                    if(aop != null && aop.getCodec() != messageType) {
+                        mSpeechOutputs.remove(aop);
+                        mAudioOutputs.remove(session);
+                        aop.destroy();
+                        aop = null;
+                    }
+                    if(aop == null) {
+                        try {
+                            aop = new AudioOutputSpeech(user, messageType, mBufferSize, this,
+                                    mDecodeWorker);
+                        } catch (NativeAudioException e) {
+                            JumbleLog.v(Constants.TAG, "Failed to create audio user "+user.getName());
+                            e.printStackTrace();
+                            return;
+                        }
+                        JumbleLog.v(Constants.TAG, "Created audio user "+user.getName());
+                        aop.start();
+                        mAudioOutputs.put(session, aop);
+                        mSpeechOutputs.add(aop);
+                    }
+                } finally {
+                    mPacketLock.unlock();
+                }
+            }
+
+            aop.addFrameToBuffer(data, position, end - position, msgFlags, seq, receiveTime);
+
+            synchronized (mInactiveLock) {
+                mInactiveLock.notify();
+            }
+        }
+
+    }
+
+    @Override
+    public void onTalkStateUpdated(final int session, final TalkState state) {
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final User user = mListener.getUser(session);
+                if(user != null && user.getTalkState() != state) {
+                    user.setTalkState(state);
+                    mListener.onUserTalkStateUpdated(user);
+                }
+            }
+        });
+    }
+
+    public static interface AudioOutputListener {
+        /**
+         * Called when a user's talking state is changed.
+         * @param user The user whose talking state has been modified.
+         */
+        public void onUserTalkStateUpdated(User user);
+
+        /**
+         * Used to set audio-related user data.
+         * Called from the thread voice data is queued on, typically the UDP receive thread.
+         * @return The user for the associated session.
+         */
+        public User getUser(int session);
+    }
+}
@@ -0,0 +1,752 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import com.morlunk.jumble.audio.javacpp.CELT11;
+import com.morlunk.jumble.audio.javacpp.CELT7;
+import com.morlunk.jumble.audio.javacpp.Opus;
+import com.morlunk.jumble.audio.javacpp.Speex;
+import com.morlunk.jumble.exception.NativeAudioException;
+import com.morlunk.jumble.model.TalkState;
+import com.morlunk.jumble.model.User;
+import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.net.PacketBuffer;
+import com.morlunk.jumble.protocol.AudioHandler;
+import com.morlunk.jumble.util.LatencyHistogram;
+import com.morlunk.jumble.util.SPSCQueue;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Decodes a single user's voice stream. A {@link SpeechDecodeWorker} shared by all outputs stays
+ * ahead of playback by filling a small ring of PCM frames; the mixer takes finished frames with
+ * {@link #fetchFrame()}, and only decodes a frame itself if the worker has fallen behind.
+ * Created by andrew on 16/07/13.
+ */
+public class AudioOutputSpeech {
+    /**
+     * The number of frames cycling between the decode worker and the mixer. One is held by the
+     * mixer while the other is decoded ahead, so decoding adds at most one buffer of latency.
+     */
+    private static final int FRAME_RING_SIZE = 2;
+    /** The number of packets the jitter buffer can hold. */
+    private static final int JITTER_BUFFER_CAPACITY = 32;
+    /** The largest voice packet accepted, matching the size of our outgoing packet buffer. */
+    private static final int MAX_PACKET_SIZE = 1024;
+    /** The most frames read from a single packet; any further frames are dropped. */
+    private static final int MAX_PACKET_FRAMES = 32;
+    /** The most packets whose receive times are tracked per decoded frame; any more are ignored. */
+    private static final int MAX_FRAME_PACKETS = 16;
+    private static final int[] OPUS_SILK_FRAME_SAMPLES = { 480, 960, 1920, 2880 };
+
+    interface TalkStateListener {
+        /**
+         * Called from the decoding thread when the talk state of the speaking user changes.
+         */
+        public void onTalkStateUpdated(int session, TalkState state);
+    }
+
+    private IDecoder mDecoder;
+    private JitterBuffer mJitterBuffer;
+    private JitterBuffer.Packet mJitterPacket;
+    /** Holds the packet following a gap, so Opus can recover the gap from its FEC data. */
+    private JitterBuffer.Packet mFecPacket;
+    /** The number of samples of the gap before {@link #mFecPacket}, set by getFecData(). */
+    private int mFecSamples;
+    private final Object mJitterLock = new Object();
+
+    private User mUser;
+    private JumbleUDPMessageType mCodec;
+    private int mAudioBufferSize = AudioHandler.FRAME_SIZE;
+    private int mRequestedSamples; // Number of samples requested
+
+    // State-specific
+    /** Decoded PCM in native memory, so that the decoder can write into it directly. */
+    private FloatBuffer mBuffer;
+    private float[] mFadeOut;
+    private float[] mFadeIn;
+    /** The contents of the packet currently being decoded. Guarded by mDecodeLock. */
+    private final byte[] mPacketData = new byte[MAX_PACKET_SIZE];
+    /** The offsets and lengths of the frames in mPacketData yet to be decoded. */
+    private final int[] mFrameOffsets = new int[MAX_PACKET_FRAMES];
+    private final int[] mFrameLengths = new int[MAX_PACKET_FRAMES];
+    private int mFrameIndex, mFrameCount;
+    /** The receive times of packets first read since the last frame was produced. */
+    private final long[] mReceiveTimes = new long[MAX_FRAME_PACKETS];
+    private int mReceiveTimeCount;
+    /** Holds the frame passed to the decoder, which reads from the start of a direct buffer. */
+    private final ByteBuffer mFrameBuffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+    private int mMissCount = 0;
+    private boolean mHasTerminator = false;
+    private boolean mLastAlive = true;
+    private int mBufferFilled, mLastConsume = 0;
+    private int ucFlags;
+
+    private TalkStateListener mTalkStateListener;
+
+    private final SPSCQueue<Result> mReadyFrames;
+    private final SPSCQueue<Result> mFreeFrames;
+    /** The frame most recently returned to the mixer. Only accessed by the mixer thread. */
+    private Result mMixingFrame;
+    private final SpeechDecodeWorker mWorker;
+    /** Guards the decoder and stream state, which the worker and the mixer may both advance. */
+    private final Object mDecodeLock = new Object();
+    /** False once the final frame of the stream has been decoded. Guarded by mDecodeLock. */
+    private boolean mStreamAlive = true;
+    /** True once the native decoder has been destroyed. Guarded by mDecodeLock. */
+    private boolean mReleased;
+    private volatile boolean mDestroyed;
+    /** The talk state last reported to the listener. Guarded by mDecodeLock. */
+    private TalkState mLastTalkState;
+
+    public AudioOutputSpeech(User user, JumbleUDPMessageType codec, int requestedSamples,
+                             TalkStateListener listener, SpeechDecodeWorker worker) throws NativeAudioException {
+        this(user, codec, createDecoder(codec), requestedSamples, listener, worker);
+    }
+
+    /**
+     * Creates an output that decodes with the given decoder, such as a stub in benchmarks.
+     */
+    AudioOutputSpeech(User user, JumbleUDPMessageType codec, IDecoder decoder, int requestedSamples,
+                      TalkStateListener listener, SpeechDecodeWorker worker) {
+        // TODO: consider implementing resampling if some Android devices not support 48kHz?
+        mUser = user;
+        mCodec = codec;
+        mDecoder = decoder;
+        mRequestedSamples = requestedSamples;
+        mTalkStateListener = listener;
+        mWorker = worker;
+        if (codec == JumbleUDPMessageType.UDPVoiceOpus)
+            mAudioBufferSize *= 12;
+
+        mBuffer = allocateBuffer(mAudioBufferSize*2); // Make initial buffer size larger so we can save performance by not resizing at runtime.
+        mFadeIn = new float[AudioHandler.FRAME_SIZE];
+        mFadeOut = new float[AudioHandler.FRAME_SIZE];
+
+        // Sine function to represent fade in/out. Period is FRAME_SIZE.
+        float mul = (float)(Math.PI / (2.0 * (float) AudioHandler.FRAME_SIZE));
+        for (int i = 0; i < AudioHandler.FRAME_SIZE; i++)
+            mFadeIn[i] = mFadeOut[AudioHandler.FRAME_SIZE-i-1] = (float) Math.sin((float) i * mul);
+
+        mJitterBuffer = new JitterBuffer(AudioHandler.FRAME_SIZE, JITTER_BUFFER_CAPACITY, MAX_PACKET_SIZE);
+        mJitterBuffer.setMargin(10 * AudioHandler.FRAME_SIZE);
+        mJitterPacket = new JitterBuffer.Packet(MAX_PACKET_SIZE);
+        if (codec == JumbleUDPMessageType.UDPVoiceOpus)
+            mFecPacket = new JitterBuffer.Packet(MAX_PACKET_SIZE);
+
+        mReadyFrames = new SPSCQueue<Result>(FRAME_RING_SIZE);
+        mFreeFrames = new SPSCQueue<Result>(FRAME_RING_SIZE);
+        for (int i = 0; i < FRAME_RING_SIZE; i++) {
+            mFreeFrames.offer(new Result(this, new float[requestedSamples]));
+        }
+    }
+
+    private static IDecoder createDecoder(JumbleUDPMessageType codec) throws NativeAudioException {
+        switch (codec) {
+            case UDPVoiceOpus:
+                return new Opus.OpusDecoder(AudioHandler.SAMPLE_RATE, 1);
+            case UDPVoiceCELTBeta:
+                return new CELT11.CELT11Decoder(AudioHandler.SAMPLE_RATE, 1);
+            case UDPVoiceCELTAlpha:
+                return new CELT7.CELT7Decoder(AudioHandler.SAMPLE_RATE, AudioHandler.FRAME_SIZE, 1);
+            case UDPVoiceSpeex:
+                return new Speex.SpeexDecoder();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Starts decoding ahead on the worker.
+     */
+    public void start() {
+        mWorker.add(this);
+    }
+
+    /**
+     * Decodes the next frame if the mixer has returned one to fill. Called by the worker.
+     * @return true if a frame was decoded.
+     */
+    boolean decodeAhead() {
+        synchronized (mDecodeLock) {
+            // Once a terminal frame has been produced, wait for the mixer to destroy us.
+            if (mReleased || !mStreamAlive)
+                return false;
+            final Result frame = mFreeFrames.poll();
+            if (frame == null)
+                return false;
+            decodeFrame(frame);
+            return true;
+        }
+    }
+
+    /**
+     * Decodes into the given frame and queues it for the mixer. Must hold mDecodeLock.
+     */
+    private void decodeFrame(Result frame) {
+        try {
+            mStreamAlive = decode();
+        } catch (RuntimeException e) {
+            // End the stream rather than leave the mixer waiting on a broken decoder.
+            e.printStackTrace();
+            mStreamAlive = false;
+        }
+        frame.set(mStreamAlive, mBuffer, mRequestedSamples, mUser.getLocalGain(), mUser.getLocalPan());
+        frame.setReceiveTimes(mReceiveTimes, mReceiveTimeCount);
+        mReceiveTimeCount = 0;
+        mReadyFrames.offer(frame);
+    }
+
+    /**
+     * Takes the next decoded frame, returning the previously fetched frame to the worker.
+     * If the worker hasn't decoded the frame yet, it is decoded on the calling thread; skipping
+     * it would leave a gap and delay the rest of this user's talk spurt by a whole buffer.
+     * Must only be called from the mixer thread. The returned frame is valid until the next call.
+     * @return The next frame, or null if the output has been destroyed.
+     */
+    public Result fetchFrame() {
+        if (mMixingFrame != null) {
+            mFreeFrames.offer(mMixingFrame);
+            mMixingFrame = null;
+            mWorker.wake();
+        }
+        Result frame = mReadyFrames.poll();
+        if (frame == null) {
+            synchronized (mDecodeLock) {
+                // The worker may have finished the frame while we waited for the lock.
+                frame = mReadyFrames.poll();
+                if (frame == null && !mReleased && mStreamAlive) {
+                    final Result free = mFreeFrames.poll();
+                    if (free != null) {
+                        decodeFrame(free);
+                        frame = mReadyFrames.poll();
+                    }
+                }
+            }
+        }
+        mMixingFrame = frame;
+        return frame;
+    }
+
+    /**
+     * Copies a voice packet's payload into the jitter buffer. Does not allocate.
+     * @param data The array containing the payload, following the session and sequence number.
+     * @param offset The offset of the payload in data.
+     * @param length The length of the payload.
+     * @param flags The target flags from the packet's header.
+     * @param seq The sequence number of the packet's first frame.
+     * @param receiveTime The {@link System#nanoTime()} the packet was received at, to measure
+     *                    latency to the mixer; 0 if not measured.
+     */
+    public void addFrameToBuffer(byte[] data, int offset, int length, byte flags, int seq,
+                                 long receiveTime) {
+        if(length < 2)
+            return;
+
+        final int end = offset + length;
+        synchronized (mJitterLock) {
+            if (mDestroyed)
+                return;
+            int samples = 0;
+            if (mCodec == JumbleUDPMessageType.UDPVoiceOpus) {
+                int position;
+                long header;
+                try {
+                    header = PacketBuffer.readLong(data, offset, end);
+                    position = offset + PacketBuffer.getLongLength(data, offset, end);
+                } catch (BufferUnderflowException e) {
+                    return;
+                }
+                int size = (int) (header & ((1 << 13) - 1));
+
+                if (size <= 0 || size > end - position)
+                    return;
+                samples = getOpusPacketSamples(data, position, size);
+                if (samples <= 0)
+                    return;
+            } else {
+                int header;
+                int position = offset;
+                do {
+                    // Stop at the end of the buffer.
+                    if (position >= end)
+                        break;
+                    header = data[position] & 0xFF;
+                    samples += AudioHandler.FRAME_SIZE;
+                    position += 1 + (header & 0x7f);
+                } while ((header & 0x80) > 0);
+            }
+
+            mJitterBuffer.put(data, offset, length, AudioHandler.FRAME_SIZE * seq, samples, flags,
+                    receiveTime);
+        }
+    }
+
+    /**
+     * Decodes until {@link #mRequestedSamples} samples are available at the start of mBuffer.
+     * Must hold mDecodeLock.
+     * @return false if this is the final frame of the stream, and the output should be removed.
+     */
+    private boolean decode() {
+        if (mBufferFilled - mLastConsume > 0) {
+            // Shift over the remaining unconsumed data in the buffer.
+            mBuffer.position(mLastConsume);
+            mBuffer.limit(mBufferFilled);
+            mBuffer.compact();
+            mBuffer.clear();
+        }
+        mBufferFilled -= mLastConsume;
+
+        mLastConsume = mRequestedSamples;
+
+        if(mBufferFilled >= mRequestedSamples)
+            return mLastAlive;
+
+        boolean nextAlive = mLastAlive;
+
+        while(mBufferFilled < mRequestedSamples) {
+            int decodedSamples = AudioHandler.FRAME_SIZE;
+            resizeBuffer(mBufferFilled + mAudioBufferSize);
+
+            if(!mLastAlive)
+                fillSilence(mBufferFilled, decodedSamples);
+            else {
+                int ts;
+                float availPackets;
+                synchronized (mJitterLock) {
+                    ts = mJitterBuffer.getPointerTimestamp();
+                    availPackets = mJitterBuffer.getAvailableCount();
+                }
+
+                // This bit of code here will make sure that we have enough packets in the jitter
+                // buffer before we even begin decoding, based on the average # of packets available.
+                // It's useful in preventing a metallic 'twang' when the user starts talking,
+                // caused by buffer underrun. The official Mumble project uses the same technique.
+                if(ts == 0) {
+                    int want = (int) Math.ceil(mUser.getAverageAvailable());
+                    if (availPackets < want) {
+                        mMissCount++;
+                        if(mMissCount < 20) {
+                            fillSilence(mBufferFilled, decodedSamples);
+                            mBufferFilled += decodedSamples;
+                            continue;
+                        }
+                    }
+                }
+
+                int fecLength = 0;
+                // The samples to conceal if no packet is decoded; a whole gap when FEC is possible.
+                int concealSamples = AudioHandler.FRAME_SIZE;
+                if(mFrameIndex == mFrameCount) {
+                    int result;
+
+                    synchronized (mJitterLock) {
+                        result = mJitterBuffer.get(mJitterPacket);
+                    }
+
+                    if(result == JitterBuffer.JITTER_BUFFER_OK) {
+                        mMissCount = 0;
+                        ucFlags = mJitterPacket.getUserData();
+
+                        mHasTerminator = false;
+                        readFrames(mJitterPacket);
+                        if (mJitterPacket.getReceiveTime() != 0 && mReceiveTimeCount < MAX_FRAME_PACKETS)
+                            mReceiveTimes[mReceiveTimeCount++] = mJitterPacket.getReceiveTime();
+
+                        if(availPackets >= mUser.getAverageAvailable())
+                            mUser.setAverageAvailable(availPackets);
+                        else
+                            mUser.setAverageAvailable(mUser.getAverageAvailable() * 0.99f);
+
+                    } else if (result == JitterBuffer.JITTER_BUFFER_MISSING) {
+                        synchronized (mJitterLock) {
+                            mJitterBuffer.updateDelay();
+                        }
+                        fecLength = getFecData();
+                        if (mFecSamples > 0)
+                            concealSamples = mFecSamples;
+
+                        mMissCount++;
+                        if(mMissCount > 10)
+                            nextAlive = false;
+                    }
+                }
+
+                try {
+                    if(mFrameIndex < mFrameCount) {
+                        final int length = loadFrame(mPacketData, mFrameOffsets[mFrameIndex], mFrameLengths[mFrameIndex]);
+                        mFrameIndex++;
+
+                        decodedSamples = mDecoder.decodeFloat(mFrameBuffer, length, mBuffer, mBufferFilled, mAudioBufferSize);
+
+                        if(mFrameIndex == mFrameCount)
+                            synchronized (mJitterLock) {
+                                mJitterBuffer.updateDelay();
+                            }
+
+                        if(mFrameIndex == mFrameCount && mHasTerminator)
+                            nextAlive = false;
+                    } else if (fecLength > 0) {
+                        // Recover the whole gap at once; Opus conceals all but the last frame,
+                        // which it rebuilds from the FEC data, and is left ready for the packet.
+                        decodedSamples = ((Opus.OpusDecoder) mDecoder).decodeFloatFec(mFrameBuffer, fecLength, mBuffer, mBufferFilled, concealSamples);
+                    } else {
+                        decodedSamples = mDecoder.decodeFloat(null, 0, mBuffer, mBufferFilled, concealSamples);
+                    }
+                } catch (NativeAudioException e) {
+                    e.printStackTrace();
+                    decodedSamples = concealSamples;
+                    fillSilence(mBufferFilled, decodedSamples);
+                }
+
+                if (!nextAlive) {
+                    for (int i = 0; i < AudioHandler.FRAME_SIZE; i++) {
+                        mBuffer.put(mBufferFilled + i, mBuffer.get(mBufferFilled + i) * mFadeOut[i]);
+                    }
+                } else if (ts == 0) {
+                    for (int i = 0; i < AudioHandler.FRAME_SIZE; i++) {
+                        mBuffer.put(mBufferFilled + i, mBuffer.get(mBufferFilled + i) * mFadeIn[i]);
+                    }
+                }
+            }
+
+            mBufferFilled += decodedSamples;
+        }
+
+        if(!nextAlive) ucFlags = 0xFF;
+
+        TalkState talkState;
+        switch (ucFlags) {
+            case 0:
+                talkState = TalkState.TALKING;
+                break;
+            case 1:
+                talkState = TalkState.SHOUTING;
+                break;
+            case 0xFF:
+                talkState = TalkState.PASSIVE;
+                break;
+            default:
+                talkState = TalkState.WHISPERING;
+                break;
+        }
+
+        // Every frame carries the sender's state; only pass it on when it actually changes.
+        if (talkState != mLastTalkState) {
+            mLastTalkState = talkState;
+            mTalkStateListener.onTalkStateUpdated(mUser.getSession(), talkState);
+        }
+
+        boolean tmp = mLastAlive;
+        mLastAlive = nextAlive;
+
+        return tmp;
+    }
+
+    /**
+     * Copies a packet from the jitter buffer into mPacketData and records the offset and length of
+     * each frame it contains, setting {@link #mHasTerminator} if it ends the talk spurt.
+     * Frames that overrun the packet are dropped. Must hold mDecodeLock.
+     */
+    private void readFrames(JitterBuffer.Packet packet) {
+        final int end = readPacket(packet);
+        mFrameIndex = 0;
+        mFrameCount = 0;
+        if (mCodec == JumbleUDPMessageType.UDPVoiceOpus) {
+            final long header;
+            final int position;
+            try {
+                header = PacketBuffer.readLong(mPacketData, 0, end);
+                position = PacketBuffer.getLongLength(mPacketData, 0, end);
+            } catch (BufferUnderflowException e) {
+                return;
+            }
+            int size = (int) (header & ((1 << 13) - 1));
+            mHasTerminator = (header & (1 << 13)) > 0;
+            if (size > 0 && size <= end - position)
+                addFrame(position, size);
+        } else {
+            int header;
+            int position = 0;
+            do {
+                if (position >= end)
+                    break;
+                header = mPacketData[position++] & 0xFF;
+                int size = header & 0x7f;
+                if (size > end - position)
+                    break;
+                if (header > 0) {
+                    addFrame(position, size);
+                } else {
+                    mHasTerminator = true;
+                }
+                position += size;
+            } while ((header & 0x80) > 0);
+        }
+    }
+
+    private void addFrame(int offset, int length) {
+        if (mFrameCount < MAX_PACKET_FRAMES) {
+            mFrameOffsets[mFrameCount] = offset;
+            mFrameLengths[mFrameCount] = length;
+            mFrameCount++;
+        }
+    }
+
+    /**
+     * Copies a packet's contents into mPacketData.
+     * @return The length of the packet.
+     */
+    private int readPacket(JitterBuffer.Packet packet) {
+        final ByteBuffer data = packet.getData();
+        final int length = data.remaining();
+        data.get(mPacketData, 0, length);
+        return length;
+    }
+
+    /**
+     * Copies a frame to the start of mFrameBuffer for the decoder.
+     * @return The length of the frame.
+     */
+    private int loadFrame(byte[] data, int offset, int length) {
+        mFrameBuffer.clear();
+        mFrameBuffer.put(data, offset, length);
+        mFrameBuffer.flip();
+        return length;
+    }
+
+    /**
+     * If a packet following a missing frame has already arrived, loads its Opus data into
+     * mFrameBuffer so the gap up to it can be recovered from the FEC it carries instead of being
+     * concealed frame by frame. The jitter buffer skips to that packet, and {@link #mFecSamples}
+     * is set to the gap's length, which must then be concealed even if the packet is unusable.
+     * Only called once every frame of the current packet has been decoded, so mPacketData is free.
+     * @return The length of the Opus data following the gap, or 0 if unavailable.
+     */
+    private int getFecData() {
+        mFecSamples = 0;
+        if (mFecPacket == null)
+            return 0;
+        synchronized (mJitterLock) {
+            mFecSamples = mJitterBuffer.peekAfterGap(mFecPacket, mAudioBufferSize);
+            if (mFecSamples == 0)
+                return 0;
+        }
+        final int end = readPacket(mFecPacket);
+        final int size;
+        final int position;
+        try {
+            size = (int) (PacketBuffer.readLong(mPacketData, 0, end) & ((1 << 13) - 1));
+            position = PacketBuffer.getLongLength(mPacketData, 0, end);
+        } catch (BufferUnderflowException e) {
+            return 0;
+        }
+        if (size <= 0 || size > end - position)
+            return 0;
+        return loadFrame(mPacketData, position, size);
+    }
+
+    private void resizeBuffer(int newSize) {
+        if(newSize > mBuffer.capacity()) {
+            FloatBuffer newBuffer = allocateBuffer(newSize);
+            mBuffer.limit(mBufferFilled);
+            newBuffer.put(mBuffer);
+            newBuffer.clear();
+            mBuffer = newBuffer;
+        }
+    }
+
+    private static FloatBuffer allocateBuffer(int size) {
+        return ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private void fillSilence(int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            mBuffer.put(i, 0);
+        }
+    }
+
+    /**
+     * Sets the preferred number of samples to decode into each frame.
+     * @param samples The number of floating point samples to retrieve.
+     */
+    public void setRequestedSamples(int samples) {
+        mRequestedSamples = samples;
+    }
+
+    public JumbleUDPMessageType getCodec() {
+        return mCodec;
+    }
+
+    public User getUser() {
+        return mUser;
+    }
+
+    public int getSession() {
+        return mUser.getSession();
+    }
+
+    /**
+     * Stops decoding. The worker then cleans up all JNI refs linked to this instance.
+     * This MUST be called eventually, otherwise we get memory leaks!
+     * Does not block; frames already fetched remain valid.
+     */
+    public void destroy() {
+        mDestroyed = true;
+        mWorker.wake();
+    }
+
+    boolean isDestroyed() {
+        return mDestroyed;
+    }
+
+    /**
+     * Destroys the native decoder. Called by the worker once this output has been destroyed or
+     * the worker has stopped; idempotent.
+     */
+    void release() {
+        synchronized (mDecodeLock) {
+            if (mReleased)
+                return;
+            mReleased = true;
+            if(mDecoder != null) mDecoder.destroy();
+        }
+    }
+
+    /**
+     * Reads the number of samples at 48kHz in an Opus packet from its TOC byte, as described in
+     * RFC 6716 section 3.1.
+     * @param data The array containing the Opus packet.
+     * @param position The offset of the Opus packet in data.
+     * @param size The size of the Opus packet.
+     * @return The number of samples, or -1 if the packet is malformed.
+     */
+    private static int getOpusPacketSamples(byte[] data, int position, int size) {
+        final int toc = data[position] & 0xFF;
+        final int config = toc >> 3;
+        final int samplesPerFrame;
+        if (config < 12) {
+            // SILK-only: 10, 20, 40 or 60ms.
+            samplesPerFrame = OPUS_SILK_FRAME_SAMPLES[config & 3];
+        } else if (config < 16) {
+            // Hybrid: 10 or 20ms.
+            samplesPerFrame = (config & 1) == 0 ? 480 : 960;
+        } else {
+            // CELT-only: 2.5, 5, 10 or 20ms.
+            samplesPerFrame = 120 << (config & 3);
+        }
+        final int frames;
+        switch (toc & 3) {
+            case 0:
+                frames = 1;
+                break;
+            case 1:
+            case 2:
+                frames = 2;
+                break;
+            default:
+                if (size < 2)
+                    return -1;
+                frames = data[position + 1] & 0x3F;
+                break;
+        }
+        return frames * samplesPerFrame;
+    }
+
+    /**
+     * A decoded frame of PCM, recycled between the decode thread and the mixer.
+     * Carries the user's playback gain and pan as they were when the frame was decoded.
+     */
+    protected static class Result implements IPannedAudioMixerSource<float[]> {
+        private final AudioOutputSpeech mSpeechOutput;
+        private boolean mAlive;
+        private float[] mSamples;
+        private int mNumSamples;
+        private float mGain;
+        private float mPan;
+        /** The receive times of the packets whose audio starts in this frame. */
+        private final long[] mReceiveTimes = new long[MAX_FRAME_PACKETS];
+        private int mReceiveTimeCount;
+
+        private Result(AudioOutputSpeech speechOutput, float[] samples) {
+            mSpeechOutput = speechOutput;
+            mSamples = samples;
+        }
+
+        /**
+         * Copies samples from the start of the given buffer into this frame, growing it if necessary.
+         */
+        private void set(boolean alive, FloatBuffer samples, int numSamples, float gain, float pan) {
+            if (mSamples.length < numSamples)
+                mSamples = new float[numSamples];
+            samples.position(0);
+            samples.get(mSamples, 0, numSamples);
+            samples.position(0);
+            mAlive = alive;
+            mNumSamples = numSamples;
+            mGain = gain;
+            mPan = pan;
+        }
+
+        private void setReceiveTimes(long[] receiveTimes, int count) {
+            System.arraycopy(receiveTimes, 0, mReceiveTimes, 0, count);
+            mReceiveTimeCount = count;
+        }
+
+        /**
+         * Records the time from receipt to now for each packet whose audio starts in this frame.
+         * Called by the mixer as the frame is mixed.
+         * @param histogram The histogram to record to.
+         * @param now The current {@link System#nanoTime()}.
+         */
+        void recordReceiveLatency(LatencyHistogram histogram, long now) {
+            for (int i = 0; i < mReceiveTimeCount; i++) {
+                histogram.record(now - mReceiveTimes[i]);
+            }
+        }
+
+        public AudioOutputSpeech getSpeechOutput() {
+            return mSpeechOutput;
+        }
+
+        public boolean isAlive() {
+            return mAlive;
+        }
+
+        public float[] getSamples() {
+            return mSamples;
+        }
+
+        public int getNumSamples() {
+            return mNumSamples;
+        }
+
+        @Override
+        public float getGain() {
+            return mGain;
+        }
+
+        @Override
+        public float getPan() {
+            return mPan;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import com.morlunk.jumble.exception.AudioInitializationException;
+
+/**
+ * Opens the platform's audio devices for playback and recording.
+ */
+public interface IAudioDeviceFactory {
+    /**
+     * Opens a device to play 16-bit PCM.
+     * @param sampleRate The sample rate in Hz.
+     * @param channels The number of interleaved channels; 1 or 2.
+     * @param maxBufferSize The most samples per channel the caller wants to mix for each write.
+     *                      The sink may choose a smaller buffer if the device allows.
+     * @return A sink, ready to play.
+     * @throws AudioInitializationException if the device could not be opened.
+     */
+    IAudioSink createSink(int sampleRate, int channels, int maxBufferSize)
+            throws AudioInitializationException;
+
+    /**
+     * Opens a device to record mono 16-bit PCM.
+     * @param sampleRate The sample rate in Hz.
+     * @return A source, ready to start recording.
+     * @throws AudioInitializationException if the device does not support the sample rate, or
+     *                                      could not be opened.
+     */
+    IAudioSource createSource(int sampleRate) throws AudioInitializationException;
+
+    /**
+     * Raises the calling thread's priority for real-time audio work, as far as the platform
+     * allows. Used by threads feeding a sink, such as the speech decoder.
+     */
+    void setAudioThreadPriority();
+}
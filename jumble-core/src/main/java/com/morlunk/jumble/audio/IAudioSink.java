@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+/**
+ * A device playing interleaved 16-bit PCM, such as an Android AudioTrack.
+ * All methods but {@link #setMuted(boolean)} are called from the playback thread.
+ */
+public interface IAudioSink {
+    /**
+     * @return The number of samples per channel to mix for each write.
+     */
+    int getBufferSize();
+
+    /**
+     * Starts or resumes playback. Called on the playback thread before the first write, so the
+     * sink may raise the thread's priority.
+     */
+    void play();
+
+    /**
+     * Writes samples for playback, blocking until they have been buffered.
+     * @param data The interleaved samples.
+     * @param offset The offset of the first sample in data.
+     * @param length The number of samples, across all channels.
+     */
+    void write(short[] data, int offset, int length);
+
+    /**
+     * Discards buffered samples and pauses playback until {@link #play()} is called.
+     */
+    void pause();
+
+    /**
+     * Discards buffered samples and stops playback.
+     */
+    void stop();
+
+    /**
+     * Mutes or unmutes the sink's output. May be called from any thread, including after release.
+     * @param muted true to silence playback.
+     */
+    void setMuted(boolean muted);
+
+    /**
+     * Releases the device. The sink is not used after this call.
+     */
+    void release();
+}
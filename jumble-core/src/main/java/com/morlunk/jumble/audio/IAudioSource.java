@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+/**
+ * A device recording mono 16-bit PCM, such as an Android AudioRecord.
+ * Apart from {@link #release()}, methods are called from the recording thread.
+ */
+public interface IAudioSource {
+    /**
+     * @return The sample rate the source records at, in Hz.
+     */
+    int getSampleRate();
+
+    /**
+     * Starts recording. Called on the recording thread before the first read, so the source may
+     * raise the thread's priority.
+     * @return true if recording started.
+     */
+    boolean start();
+
+    /**
+     * Reads recorded samples, blocking until they are available.
+     * @param buffer The buffer to read into.
+     * @param offset The offset in buffer to read to.
+     * @param length The number of samples to read.
+     * @return The number of samples read, or a negative error code.
+     */
+    int read(short[] buffer, int offset, int length);
+
+    /**
+     * Stops recording.
+     */
+    void stop();
+
+    /**
+     * Releases the device. The source is not used after this call.
+     */
+    void release();
+}
@@ -20,6 +20,8 @@ package com.morlunk.jumble.audio;
 import com.morlunk.jumble.exception.NativeAudioException;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * Created by andrew on 07/03/14.
@@ -47,6 +49,33 @@ public interface IDecoder {
      */
     public int decodeShort(ByteBuffer input, int inputSize, short[] output, int frameSize) throws NativeAudioException;
 
+    /**
+     * Decodes the encoded data provided into float PCM data, writing directly into a native buffer.
+     * Avoids the copy or pinning of a heap array when crossing JNI.
+     * @param input A direct byte buffer of encoded data of size inputSize.
+     * @param inputSize The size of the encoded data.
+     * @param output A direct float buffer with room for frameSize samples after outputOffset.
+     *               Its position and limit are ignored.
+     * @param outputOffset The index in output to write the first sample to.
+     * @param frameSize The maximum frame size possible.
+     * @return The number of decoded samples.
+     * @throws NativeAudioException if decoding failed.
+     */
+    public int decodeFloat(ByteBuffer input, int inputSize, FloatBuffer output, int outputOffset, int frameSize) throws NativeAudioException;
+
+    /**
+     * Decodes the encoded data provided into short PCM data, writing directly into a native buffer.
+     * @param input A direct byte buffer of encoded data of size inputSize.
+     * @param inputSize The size of the encoded data.
+     * @param output A direct short buffer with room for frameSize samples after outputOffset.
+     *               Its position and limit are ignored.
+     * @param outputOffset The index in output to write the first sample to.
+     * @param frameSize The maximum frame size possible.
+     * @return The number of decoded samples.
+     * @throws NativeAudioException if decoding failed.
+     */
+    public int decodeShort(ByteBuffer input, int inputSize, ShortBuffer output, int outputOffset, int frameSize) throws NativeAudioException;
+
     /**
      * Deallocates native resources. The decoder must no longer be called after this.
      */
@@ -0,0 +1,16 @@
+package com.morlunk.jumble.audio;
+
+/**
+ * A mixer source with its own gain and stereo position.
+ */
+public interface IPannedAudioMixerSource<T> extends IAudioMixerSource<T> {
+    /**
+     * @return the linear gain to apply to the source, where 1 is unchanged.
+     */
+    float getGain();
+
+    /**
+     * @return the stereo position of the source, from -1 (left) to 1 (right).
+     */
+    float getPan();
+}
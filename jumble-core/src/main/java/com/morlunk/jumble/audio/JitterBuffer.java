@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An adaptive jitter buffer for a single voice stream, in the style of the Speex jitter buffer.
+ *
+ * Packets are keyed by timestamp (sequence number times the frame size) and copied into a fixed
+ * set of preallocated slots, so neither {@link #put} nor {@link #get} allocate. Playback is
+ * pulled by the decoder: each {@link #get} returns the packet covering the playback pointer and
+ * advances the pointer past it, or reports a missing frame and advances by one frame.
+ *
+ * The buffer records how early each packet arrives relative to the playback pointer. When
+ * {@link #updateDelay()} sees too many late arrivals it delays playback by inserting a frame of
+ * concealment; when every recent packet arrived more than the margin early it drops a frame to
+ * reduce latency.
+ *
+ * Instances are not thread safe; callers must synchronize between the network and decode threads.
+ */
+public class JitterBuffer {
+    public static final int JITTER_BUFFER_OK = 0;
+    public static final int JITTER_BUFFER_MISSING = 1;
+    public static final int JITTER_BUFFER_INSERTION = 3;
+
+    /** The number of recent arrivals used to estimate jitter. */
+    private static final int HISTORY_SIZE = 64;
+    /** The number of arrivals needed before the delay is adapted. */
+    private static final int MIN_HISTORY = 8;
+    /** The fraction of arrivals allowed to be late before the delay is increased. */
+    private static final float LATE_FRACTION = 0.05f;
+
+    private final int mFrameSize;
+    private final int mMaxPacketSize;
+
+    private final byte[][] mSlotData;
+    private final int[] mSlotLength;
+    private final int[] mSlotTimestamp;
+    private final int[] mSlotSpan;
+    private final int[] mSlotUserData;
+    private final long[] mSlotReceiveTime;
+    private final boolean[] mSlotUsed;
+    private int mCount;
+
+    private boolean mSynchronized;
+    private int mPointerTimestamp;
+    private int mMargin;
+    private int mInsertions;
+    private int mDrops;
+
+    /** How far ahead of the playback pointer each recent packet arrived, in samples. */
+    private final int[] mArrivals = new int[HISTORY_SIZE];
+    private final int[] mSortedArrivals = new int[HISTORY_SIZE];
+    private int mArrivalIndex;
+    private int mArrivalCount;
+
+    private int mLostCount;
+    private int mLateCount;
+
+    /**
+     * @param frameSize The number of samples in a frame; timestamps should be multiples of this.
+     * @param capacity The maximum number of packets held at once.
+     * @param maxPacketSize The largest packet in bytes that will be accepted.
+     */
+    public JitterBuffer(int frameSize, int capacity, int maxPacketSize) {
+        mFrameSize = frameSize;
+        mMaxPacketSize = maxPacketSize;
+        mSlotData = new byte[capacity][maxPacketSize];
+        mSlotLength = new int[capacity];
+        mSlotTimestamp = new int[capacity];
+        mSlotSpan = new int[capacity];
+        mSlotUserData = new int[capacity];
+        mSlotReceiveTime = new long[capacity];
+        mSlotUsed = new boolean[capacity];
+    }
+
+    /**
+     * Copies a packet into the buffer. The position of data is left unchanged.
+     * @param data The encoded packet, from its position to its limit.
+     * @param timestamp The timestamp of the first sample in the packet.
+     * @param span The number of samples in the packet.
+     * @param userData Opaque data returned with the packet.
+     * @return true if the packet was stored, false if it was late, duplicated or too large.
+     */
+    public boolean put(ByteBuffer data, int timestamp, int span, int userData) {
+        final int length = data.remaining();
+        final int slot = claimSlot(length, timestamp, span, userData, 0);
+        if (slot == -1)
+            return false;
+        final int position = data.position();
+        data.get(mSlotData[slot], 0, length);
+        data.position(position);
+        return true;
+    }
+
+    /**
+     * Copies a packet into the buffer.
+     * @param data The array containing the encoded packet.
+     * @param offset The offset of the packet in data.
+     * @param length The length of the packet.
+     * @param timestamp The timestamp of the first sample in the packet.
+     * @param span The number of samples in the packet.
+     * @param userData Opaque data returned with the packet.
+     * @return true if the packet was stored, false if it was late, duplicated or too large.
+     */
+    public boolean put(byte[] data, int offset, int length, int timestamp, int span, int userData) {
+        return put(data, offset, length, timestamp, span, userData, 0);
+    }
+
+    /**
+     * Copies a packet into the buffer, recording when it was received.
+     * @param data The array containing the encoded packet.
+     * @param offset The offset of the packet in data.
+     * @param length The length of the packet.
+     * @param timestamp The timestamp of the first sample in the packet.
+     * @param span The number of samples in the packet.
+     * @param userData Opaque data returned with the packet.
+     * @param receiveTime The {@link System#nanoTime()} the packet was received at, returned with
+     *                    the packet.
+     * @return true if the packet was stored, false if it was late, duplicated or too large.
+     */
+    public boolean put(byte[] data, int offset, int length, int timestamp, int span, int userData,
+                       long receiveTime) {
+        final int slot = claimSlot(length, timestamp, span, userData, receiveTime);
+        if (slot == -1)
+            return false;
+        System.arraycopy(data, offset, mSlotData[slot], 0, length);
+        return true;
+    }
+
+    /**
+     * Finds a slot for a packet and records everything about it but its data.
+     * @return The slot to copy the packet's data into, or -1 if the packet should be discarded.
+     */
+    private int claimSlot(int length, int timestamp, int span, int userData, long receiveTime) {
+        if (length > mMaxPacketSize || span <= 0)
+            return -1;
+
+        if (mSynchronized) {
+            final int ahead = timestamp - mPointerTimestamp;
+            recordArrival(ahead);
+            if (ahead + span <= 0) {
+                mLateCount++;
+                return -1;
+            }
+        }
+
+        int free = -1;
+        int oldest = -1;
+        for (int i = 0; i < mSlotUsed.length; i++) {
+            if (!mSlotUsed[i]) {
+                if (free == -1) free = i;
+            } else if (mSlotTimestamp[i] == timestamp) {
+                return -1;
+            } else if (oldest == -1 || mSlotTimestamp[i] - mSlotTimestamp[oldest] < 0) {
+                oldest = i;
+            }
+        }
+        int slot = free;
+        if (slot == -1) {
+            // Full; make room by evicting the oldest packet, unless this one is older still.
+            if (timestamp - mSlotTimestamp[oldest] < 0)
+                return -1;
+            slot = oldest;
+            mCount--;
+        }
+
+        mSlotLength[slot] = length;
+        mSlotTimestamp[slot] = timestamp;
+        mSlotSpan[slot] = span;
+        mSlotUserData[slot] = userData;
+        mSlotReceiveTime[slot] = receiveTime;
+        mSlotUsed[slot] = true;
+        mCount++;
+        return slot;
+    }
+
+    /**
+     * Retrieves the packet at the playback pointer, advancing the pointer past it.
+     * The first call after construction or {@link #reset()} starts playback at the oldest packet.
+     * @param packet A packet to copy the result into.
+     * @return {@link #JITTER_BUFFER_OK} if a packet was copied, {@link #JITTER_BUFFER_INSERTION}
+     *         if a frame should be concealed to increase the delay, or
+     *         {@link #JITTER_BUFFER_MISSING} if the packet for this frame has not arrived.
+     */
+    public int get(Packet packet) {
+        if (!mSynchronized) {
+            int oldest = -1;
+            for (int i = 0; i < mSlotUsed.length; i++) {
+                if (mSlotUsed[i] && (oldest == -1 || mSlotTimestamp[i] - mSlotTimestamp[oldest] < 0))
+                    oldest = i;
+            }
+            if (oldest == -1)
+                return JITTER_BUFFER_MISSING;
+            mPointerTimestamp = mSlotTimestamp[oldest];
+            mSynchronized = true;
+        }
+
+        if (mInsertions > 0) {
+            mInsertions--;
+            return JITTER_BUFFER_INSERTION;
+        }
+
+        int slot = findCurrent();
+        while (mDrops > 0) {
+            mDrops--;
+            if (slot != -1) {
+                mPointerTimestamp = mSlotTimestamp[slot] + mSlotSpan[slot];
+                release(slot);
+            } else {
+                mPointerTimestamp += mFrameSize;
+            }
+            slot = findCurrent();
+        }
+
+        if (slot == -1) {
+            mLostCount++;
+            mPointerTimestamp += mFrameSize;
+            return JITTER_BUFFER_MISSING;
+        }
+
+        copy(slot, packet);
+        mPointerTimestamp = mSlotTimestamp[slot] + mSlotSpan[slot];
+        release(slot);
+        return JITTER_BUFFER_OK;
+    }
+
+    /**
+     * After {@link #get} reports a missing frame, finds the first packet to have arrived after the
+     * gap, so that the whole gap can be recovered from its forward error correction data. A lost
+     * packet spanning several frames leaves a gap of several frames. The packet is copied without
+     * being removed, and the playback pointer is moved to it: the frames in between are counted
+     * as lost, and the next {@link #get} returns the packet.
+     * @param packet A packet to copy the result into.
+     * @param maxGap The most samples the caller can recover, from the start of the missing frame.
+     * @return The number of samples from the start of the missing frame to the packet, or 0 if
+     *         no packet has arrived within maxGap samples.
+     */
+    public int peekAfterGap(Packet packet, int maxGap) {
+        if (!mSynchronized)
+            return 0;
+        final int gapStart = mPointerTimestamp - mFrameSize;
+        int next = -1;
+        for (int i = 0; i < mSlotUsed.length; i++) {
+            if (!mSlotUsed[i])
+                continue;
+            final int offset = mSlotTimestamp[i] - gapStart;
+            if (offset > 0 && offset <= maxGap &&
+                    (next == -1 || mSlotTimestamp[i] - mSlotTimestamp[next] < 0))
+                next = i;
+        }
+        if (next == -1)
+            return 0;
+        copy(next, packet);
+        final int gap = mSlotTimestamp[next] - gapStart;
+        mLostCount += gap / mFrameSize - 1;
+        mPointerTimestamp = mSlotTimestamp[next];
+        return gap;
+    }
+
+    private void copy(int slot, Packet packet) {
+        final ByteBuffer out = packet.mData;
+        out.clear();
+        out.put(mSlotData[slot], 0, mSlotLength[slot]);
+        out.flip();
+        packet.mTimestamp = mSlotTimestamp[slot];
+        packet.mSpan = mSlotSpan[slot];
+        packet.mUserData = mSlotUserData[slot];
+        packet.mReceiveTime = mSlotReceiveTime[slot];
+    }
+
+    /**
+     * Finds the packet covering the playback pointer, discarding any that are entirely behind it.
+     * @return The slot of the packet, or -1 if there is none.
+     */
+    private int findCurrent() {
+        int found = -1;
+        for (int i = 0; i < mSlotUsed.length; i++) {
+            if (!mSlotUsed[i])
+                continue;
+            final int offset = mSlotTimestamp[i] - mPointerTimestamp;
+            if (offset + mSlotSpan[i] <= 0) {
+                release(i);
+            } else if (offset < mFrameSize && (found == -1 || mSlotTimestamp[i] - mSlotTimestamp[found] < 0)) {
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    private void release(int slot) {
+        mSlotUsed[slot] = false;
+        mCount--;
+    }
+
+    private void recordArrival(int ahead) {
+        mArrivals[mArrivalIndex] = ahead;
+        mArrivalIndex = (mArrivalIndex + 1) % HISTORY_SIZE;
+        if (mArrivalCount < HISTORY_SIZE)
+            mArrivalCount++;
+    }
+
+    /**
+     * Adapts the playback delay to the recently observed jitter. Should be called after a missing
+     * frame and after each packet has been fully decoded.
+     * @return The change in delay in samples; positive if a frame will be inserted, negative if
+     *         one will be dropped.
+     */
+    public int updateDelay() {
+        if (!mSynchronized || mArrivalCount < MIN_HISTORY || mInsertions > 0 || mDrops > 0)
+            return 0;
+
+        System.arraycopy(mArrivals, 0, mSortedArrivals, 0, mArrivalCount);
+        Arrays.sort(mSortedArrivals, 0, mArrivalCount);
+        final int earliest = mSortedArrivals[(int) (mArrivalCount * LATE_FRACTION)];
+
+        int shift = 0;
+        if (earliest < 0) {
+            mInsertions++;
+            shift = mFrameSize;
+        } else if (earliest > mMargin + mFrameSize) {
+            mDrops++;
+            shift = -mFrameSize;
+        }
+        if (shift != 0) {
+            // Arrivals were measured against the old pointer; rebase them on the new one.
+            for (int i = 0; i < mArrivalCount; i++) {
+                mArrivals[i] += shift;
+            }
+        }
+        return shift;
+    }
+
+    /**
+     * Returns the timestamp of the next sample to be played, or 0 if playback hasn't started.
+     */
+    public int getPointerTimestamp() {
+        return mSynchronized ? mPointerTimestamp : 0;
+    }
+
+    /**
+     * Returns the number of buffered packets that have not yet fallen behind the playback pointer.
+     */
+    public int getAvailableCount() {
+        if (!mSynchronized)
+            return mCount;
+        int available = 0;
+        for (int i = 0; i < mSlotUsed.length; i++) {
+            if (mSlotUsed[i] && mSlotTimestamp[i] + mSlotSpan[i] - mPointerTimestamp > 0)
+                available++;
+        }
+        return available;
+    }
+
+    /**
+     * Sets the amount of buffering, in samples, tolerated beyond what the observed jitter requires
+     * before frames are dropped to reduce latency.
+     */
+    public void setMargin(int margin) {
+        mMargin = margin;
+    }
+
+    public int getMargin() {
+        return mMargin;
+    }
+
+    /**
+     * Returns the number of frames found missing by {@link #get}.
+     */
+    public int getLostCount() {
+        return mLostCount;
+    }
+
+    /**
+     * Returns the number of packets rejected for arriving after their playback time.
+     */
+    public int getLateCount() {
+        return mLateCount;
+    }
+
+    /**
+     * Discards all packets and timing history; the next {@link #get} resynchronizes playback.
+     */
+    public void reset() {
+        Arrays.fill(mSlotUsed, false);
+        mCount = 0;
+        mSynchronized = false;
+        mPointerTimestamp = 0;
+        mInsertions = 0;
+        mDrops = 0;
+        mArrivalIndex = 0;
+        mArrivalCount = 0;
+        mLostCount = 0;
+        mLateCount = 0;
+    }
+
+    /**
+     * A reusable holder for packets retrieved from the buffer, backed by a direct byte buffer so
+     * it can be passed straight to native decoders.
+     */
+    public static class Packet {
+        private final ByteBuffer mData;
+        private int mTimestamp;
+        private int mSpan;
+        private int mUserData;
+        private long mReceiveTime;
+
+        public Packet(int maxPacketSize) {
+            mData = ByteBuffer.allocateDirect(maxPacketSize);
+        }
+
+        /**
+         * Returns the packet contents between position and limit. Overwritten by the next get.
+         */
+        public ByteBuffer getData() {
+            return mData;
+        }
+
+        public int getLength() {
+            return mData.limit();
+        }
+
+        public int getTimestamp() {
+            return mTimestamp;
+        }
+
+        public int getSpan() {
+            return mSpan;
+        }
+
+        public int getUserData() {
+            return mUserData;
+        }
+
+        /**
+         * Returns the {@link System#nanoTime()} the packet was received at, or 0 if not recorded.
+         */
+        public long getReceiveTime() {
+            return mReceiveTime;
+        }
+    }
+}
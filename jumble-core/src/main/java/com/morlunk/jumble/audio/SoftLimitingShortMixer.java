@@ -0,0 +1,198 @@
+package com.morlunk.jumble.audio;
+
+import java.util.Collection;
+
+/**
+ * A mixer that sums source floating point PCM and applies a look-ahead limiter before converting
+ * to shorts, avoiding the distortion of hard clipping when several users talk at once.
+ *
+ * Sources are accumulated one at a time into a scratch buffer, so the inner loop is a plain
+ * array addition. The limiter then delays the mix by {@link #LOOKAHEAD} - 1 samples and applies
+ * a gain that smoothly reaches the level needed to keep each peak under {@link #THRESHOLD} by the
+ * time it is output, releasing over {@link #RELEASE_SAMPLES}.
+ *
+ * In stereo mode the output is interleaved, so the buffer passed to {@link #mix} must hold
+ * bufferLength * 2 samples. Sources implementing {@link IPannedAudioMixerSource} are scaled by
+ * their gain and, in stereo, positioned using a balance law that leaves centred sources at unity
+ * in both channels. Both channels share one limiter gain so the stereo image doesn't shift.
+ *
+ * Limiter state carries over between calls, so a single instance must be used for one continuous
+ * stream from one thread.
+ */
+public class SoftLimitingShortMixer implements IAudioMixer<float[], short[]> {
+    /** The number of samples of look-ahead, about 1.3ms at 48kHz. Must be a power of two. */
+    public static final int LOOKAHEAD = 64;
+    /** The maximum absolute output level. */
+    public static final float THRESHOLD = 0.95f;
+    /** The approximate time constant for the gain to recover after a peak; 50ms at 48kHz. */
+    public static final int RELEASE_SAMPLES = 2400;
+
+    private static final float RELEASE_COEFFICIENT = 1f - (float) Math.exp(-1.0 / RELEASE_SAMPLES);
+    private static final int LOOKAHEAD_MASK = LOOKAHEAD - 1;
+    private static final int DELAY = LOOKAHEAD - 1;
+
+    private final int mChannels;
+    private float[] mMix = new float[0];
+
+    private final float[] mDelayLine;
+    private int mDelayIndex;
+
+    // Monotonic queue holding the minimum required gain over the last LOOKAHEAD samples.
+    private final float[] mMinGains = new float[LOOKAHEAD];
+    private final long[] mMinTimes = new long[LOOKAHEAD];
+    private int mMinHead;
+    private int mMinSize;
+    private long mTime;
+
+    private float mReleasedGain;
+
+    // Moving average over the released gain, smoothing the attack across the look-ahead.
+    private final float[] mAverageWindow = new float[LOOKAHEAD];
+    private int mAverageIndex;
+    private float mAverageSum;
+
+    public SoftLimitingShortMixer() {
+        this(1);
+    }
+
+    /**
+     * @param channels The number of output channels; 1 for mono, or 2 for interleaved stereo.
+     */
+    public SoftLimitingShortMixer(int channels) {
+        if (channels != 1 && channels != 2)
+            throw new IllegalArgumentException("Only mono and stereo output are supported");
+        mChannels = channels;
+        mDelayLine = new float[DELAY * channels];
+        reset();
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    /**
+     * Clears the limiter state, discarding any delayed samples.
+     */
+    public void reset() {
+        for (int i = 0; i < mDelayLine.length; i++) {
+            mDelayLine[i] = 0;
+        }
+        mDelayIndex = 0;
+        mMinHead = 0;
+        mMinSize = 0;
+        mTime = 0;
+        mReleasedGain = 1;
+        for (int i = 0; i < LOOKAHEAD; i++) {
+            mAverageWindow[i] = 1;
+        }
+        mAverageIndex = 0;
+        mAverageSum = LOOKAHEAD;
+    }
+
+    @Override
+    public void mix(Collection<IAudioMixerSource<float[]>> sources, short[] buffer, int bufferOffset,
+                    int bufferLength) {
+        final int mixLength = bufferLength * mChannels;
+        if (mMix.length < mixLength) {
+            mMix = new float[mixLength];
+        }
+        final float[] mix = mMix;
+        for (int i = 0; i < mixLength; i++) {
+            mix[i] = 0;
+        }
+        for (IAudioMixerSource<float[]> source : sources) {
+            final float[] samples = source.getSamples();
+            final int length = Math.min(bufferLength, source.getNumSamples());
+            float gain = 1f;
+            float pan = 0f;
+            if (source instanceof IPannedAudioMixerSource) {
+                gain = ((IPannedAudioMixerSource<float[]>) source).getGain();
+                pan = ((IPannedAudioMixerSource<float[]>) source).getPan();
+            }
+            if (mChannels == 2) {
+                final float leftGain = gain * Math.min(1f, 1f - pan);
+                final float rightGain = gain * Math.min(1f, 1f + pan);
+                for (int i = 0; i < length; i++) {
+                    final float sample = samples[i];
+                    mix[2 * i] += sample * leftGain;
+                    mix[2 * i + 1] += sample * rightGain;
+                }
+            } else if (gain != 1f) {
+                for (int i = 0; i < length; i++) {
+                    mix[i] += samples[i] * gain;
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    mix[i] += samples[i];
+                }
+            }
+        }
+        limit(mix, buffer, bufferOffset, bufferLength);
+    }
+
+    private void limit(float[] mix, short[] buffer, int bufferOffset, int bufferLength) {
+        final float invLookahead = 1f / LOOKAHEAD;
+        final int channels = mChannels;
+        for (int i = 0; i < bufferLength; i++) {
+            float level = 0;
+            for (int c = 0; c < channels; c++) {
+                level = Math.max(level, Math.abs(mix[i * channels + c]));
+            }
+            final float gain = level > THRESHOLD ? THRESHOLD / level : 1f;
+
+            // Expire the gain leaving the window before pushing, so that the queue never holds
+            // more than LOOKAHEAD entries.
+            if (mMinSize > 0 && mMinTimes[mMinHead] <= mTime - LOOKAHEAD) {
+                mMinHead = (mMinHead + 1) & LOOKAHEAD_MASK;
+                mMinSize--;
+            }
+
+            // Push the required gain, dropping any larger gains it supersedes.
+            while (mMinSize > 0 && mMinGains[(mMinHead + mMinSize - 1) & LOOKAHEAD_MASK] >= gain) {
+                mMinSize--;
+            }
+            int tail = (mMinHead + mMinSize) & LOOKAHEAD_MASK;
+            mMinGains[tail] = gain;
+            mMinTimes[tail] = mTime;
+            mMinSize++;
+            final float windowGain = mMinGains[mMinHead];
+            mTime++;
+
+            // Drop instantly, recover slowly.
+            if (windowGain < mReleasedGain) {
+                mReleasedGain = windowGain;
+            } else {
+                mReleasedGain += (windowGain - mReleasedGain) * RELEASE_COEFFICIENT;
+            }
+
+            mAverageSum += mReleasedGain - mAverageWindow[mAverageIndex];
+            mAverageWindow[mAverageIndex] = mReleasedGain;
+            if (++mAverageIndex == LOOKAHEAD) {
+                mAverageIndex = 0;
+                // Recompute the sum once per window to stop rounding errors accumulating.
+                float sum = 0;
+                for (int j = 0; j < LOOKAHEAD; j++) {
+                    sum += mAverageWindow[j];
+                }
+                mAverageSum = sum;
+            }
+
+            final float appliedGain = mAverageSum * invLookahead;
+            for (int c = 0; c < channels; c++) {
+                final int delayIndex = mDelayIndex * channels + c;
+                final float delayed = mDelayLine[delayIndex];
+                mDelayLine[delayIndex] = mix[i * channels + c];
+
+                float out = delayed * appliedGain;
+                if (out > 1)
+                    out = 1;
+                else if (out < -1)
+                    out = -1;
+                buffer[bufferOffset + i * channels + c] = (short) (out * Short.MAX_VALUE);
+            }
+            if (++mDelayIndex == DELAY) {
+                mDelayIndex = 0;
+            }
+        }
+    }
+}
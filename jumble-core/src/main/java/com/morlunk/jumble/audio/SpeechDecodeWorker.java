@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single decode thread shared by every {@link AudioOutputSpeech} of an {@link AudioOutput}.
+ * Each pass decodes one frame ahead for every output with a free frame, then parks until an
+ * output is added, has a frame returned by the mixer, or is destroyed. Destroyed outputs release
+ * their native decoders here, so that a decoder is never used by two threads at once.
+ */
+class SpeechDecodeWorker implements Runnable {
+    private static final AudioOutputSpeech[] NO_OUTPUTS = new AudioOutputSpeech[0];
+
+    /** The outputs to decode for, replaced on change so the decode loop never allocates. */
+    private volatile AudioOutputSpeech[] mOutputs = NO_OUTPUTS;
+    private final IAudioDeviceFactory mDevices;
+    private final Thread mThread;
+    private volatile boolean mRunning;
+
+    /**
+     * @param devices The devices being played to, used to prioritize the decode thread.
+     */
+    public SpeechDecodeWorker(IAudioDeviceFactory devices) {
+        mDevices = devices;
+        mThread = new Thread(this, "SpeechDecodeWorker");
+    }
+
+    public void start() {
+        mRunning = true;
+        mThread.start();
+    }
+
+    /**
+     * Stops the worker, releasing any outputs left once it exits. Does not block.
+     */
+    public void stop() {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Starts decoding ahead for the given output. If the worker has stopped, the output is
+     * released instead.
+     */
+    public synchronized void add(AudioOutputSpeech output) {
+        if (!mRunning) {
+            output.release();
+            return;
+        }
+        final AudioOutputSpeech[] outputs = new AudioOutputSpeech[mOutputs.length + 1];
+        System.arraycopy(mOutputs, 0, outputs, 0, mOutputs.length);
+        outputs[mOutputs.length] = output;
+        mOutputs = outputs;
+        wake();
+    }
+
+    private synchronized void remove(AudioOutputSpeech output) {
+        final AudioOutputSpeech[] old = mOutputs;
+        final AudioOutputSpeech[] outputs = new AudioOutputSpeech[old.length - 1];
+        for (int i = 0, j = 0; i < old.length; i++) {
+            if (old[i] != output)
+                outputs[j++] = old[i];
+        }
+        mOutputs = outputs;
+    }
+
+    /**
+     * Wakes the worker to check its outputs for work.
+     */
+    public void wake() {
+        LockSupport.unpark(mThread);
+    }
+
+    @Override
+    public void run() {
+        mDevices.setAudioThreadPriority();
+        while (mRunning) {
+            boolean decoded = false;
+            final AudioOutputSpeech[] outputs = mOutputs;
+            for (AudioOutputSpeech output : outputs) {
+                if (output.isDestroyed()) {
+                    output.release();
+                    remove(output);
+                } else if (output.decodeAhead()) {
+                    decoded = true;
+                }
+            }
+            // Keep going while any output made progress, as it may have more free frames.
+            if (!decoded)
+                LockSupport.park(this);
+        }
+        synchronized (this) {
+            for (AudioOutputSpeech output : mOutputs) {
+                output.release();
+            }
+            mOutputs = NO_OUTPUTS;
+        }
+    }
+}
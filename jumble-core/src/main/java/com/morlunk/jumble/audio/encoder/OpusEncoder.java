@@ -31,10 +31,15 @@ import java.util.Arrays;
 * Created by andrew on 08/12/14.
 */
 public class OpusEncoder implements IEncoder {
+    /** The most frames that can be put in one packet; Opus packets are limited to 60ms. */
+    public static final int MAX_FRAMES_PER_PACKET = 6;
+
     private final byte[] mBuffer;
     private final short[] mAudioBuffer;
-    private final int mFramesPerPacket;
     private final int mFrameSize;
+    private int mFramesPerPacket;
+    /** Frames per packet to switch to once the packet being buffered is sent. */
+    private int mPendingFramesPerPacket;
 
     // Stateful
     private int mBufferedFrames;
@@ -46,8 +51,9 @@ public class OpusEncoder implements IEncoder {
     public OpusEncoder(int sampleRate, int channels, int frameSize, int framesPerPacket,
                        int bitrate, int maxBufferSize) throws NativeAudioException {
         mBuffer = new byte[maxBufferSize];
-        mAudioBuffer = new short[framesPerPacket * frameSize];
+        mAudioBuffer = new short[Math.max(framesPerPacket, MAX_FRAMES_PER_PACKET) * frameSize];
         mFramesPerPacket = framesPerPacket;
+        mPendingFramesPerPacket = framesPerPacket;
         mFrameSize = frameSize;
         mBufferedFrames = 0;
         mEncodedLength = 0;
@@ -59,6 +65,17 @@ public class OpusEncoder implements IEncoder {
         if(error.get() < 0) throw new NativeAudioException("Opus encoder initialization failed with error: "+error.get());
         Opus.opus_encoder_ctl(mState, Opus.OPUS_SET_VBR_REQUEST, 0);
         Opus.opus_encoder_ctl(mState, Opus.OPUS_SET_BITRATE_REQUEST, bitrate);
+        Opus.opus_encoder_ctl(mState, Opus.OPUS_SET_INBAND_FEC_REQUEST, 1);
+    }
+
+    /**
+     * Tells the encoder how lossy the network is. Opus only includes in-band FEC data, letting
+     * receivers recover a lost packet from the next one, when this is non-zero.
+     * @param percentage The expected packet loss, from 0 to 100.
+     */
+    public void setPacketLossPercentage(int percentage) {
+        Opus.opus_encoder_ctl(mState, Opus.OPUS_SET_PACKET_LOSS_PERC_REQUEST,
+                Math.max(0, Math.min(100, percentage)));
     }
 
     @Override
@@ -73,6 +90,9 @@ public class OpusEncoder implements IEncoder {
         }
 
         mTerminated = false;
+        if (mBufferedFrames == 0) {
+            mFramesPerPacket = mPendingFramesPerPacket;
+        }
         System.arraycopy(input, 0, mAudioBuffer, mFrameSize * mBufferedFrames, mFrameSize);
         mBufferedFrames++;
 
@@ -85,7 +105,8 @@ public class OpusEncoder implements IEncoder {
     private int encode() throws NativeAudioException {
         if (mBufferedFrames < mFramesPerPacket) {
             // If encoding is done before enough frames are buffered, fill rest of packet.
-            Arrays.fill(mAudioBuffer, mFrameSize * mBufferedFrames, mAudioBuffer.length, (short)0);
+            Arrays.fill(mAudioBuffer, mFrameSize * mBufferedFrames,
+                    mFrameSize * mFramesPerPacket, (short)0);
             mBufferedFrames = mFramesPerPacket;
         }
         int result = Opus.opus_encode(mState, mAudioBuffer, mFrameSize * mBufferedFrames,
@@ -132,6 +153,26 @@ public class OpusEncoder implements IEncoder {
         }
     }
 
+    /**
+     * Changes the target bitrate. Takes effect from the next packet encoded.
+     * @param bitrate The bitrate in bps.
+     */
+    public void setBitrate(int bitrate) {
+        Opus.opus_encoder_ctl(mState, Opus.OPUS_SET_BITRATE_REQUEST, bitrate);
+    }
+
+    /**
+     * Changes the number of frames sent in each packet, once the packet being buffered is sent.
+     * @param framesPerPacket The number of frames per packet, at most
+     *                        {@link #MAX_FRAMES_PER_PACKET}.
+     */
+    public void setFramesPerPacket(int framesPerPacket) {
+        if (framesPerPacket < 1 || framesPerPacket * mFrameSize > mAudioBuffer.length) {
+            throw new IllegalArgumentException("Invalid frames per packet: " + framesPerPacket);
+        }
+        mPendingFramesPerPacket = framesPerPacket;
+    }
+
     public int getBitrate() {
         IntPointer ptr = new IntPointer(1);
         Opus.opus_encoder_ctl(mState, Opus.OPUS_GET_BITRATE_REQUEST, ptr);
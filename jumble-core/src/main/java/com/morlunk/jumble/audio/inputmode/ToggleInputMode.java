@@ -17,9 +17,8 @@
 
 package com.morlunk.jumble.audio.inputmode;
 
-import android.util.Log;
-
 import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.util.JumbleLog;
 
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -64,14 +63,14 @@ public class ToggleInputMode implements IInputMode {
     public void waitForInput() {
         mToggleLock.lock();
         if (!mInputOn) {
-            Log.v(Constants.TAG, "PTT: Suspending audio input.");
+            JumbleLog.v(Constants.TAG, "PTT: Suspending audio input.");
             long startTime = System.currentTimeMillis();
             try {
                 mToggleCondition.await();
             } catch (InterruptedException e) {
-                Log.w(Constants.TAG, "Blocking for PTT interrupted, likely due to input thread shutdown.");
+                JumbleLog.w(Constants.TAG, "Blocking for PTT interrupted, likely due to input thread shutdown.");
             }
-            Log.v(Constants.TAG, "PTT: Suspended audio input for " + (System.currentTimeMillis() - startTime) + "ms.");
+            JumbleLog.v(Constants.TAG, "PTT: Suspended audio input for " + (System.currentTimeMillis() - startTime) + "ms.");
         }
         mToggleLock.unlock();
     }
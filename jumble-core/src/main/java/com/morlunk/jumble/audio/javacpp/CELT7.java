@@ -17,9 +17,11 @@
 
 package com.morlunk.jumble.audio.javacpp;
 
+import com.googlecode.javacpp.FloatPointer;
 import com.googlecode.javacpp.IntPointer;
 import com.googlecode.javacpp.Loader;
 import com.googlecode.javacpp.Pointer;
+import com.googlecode.javacpp.ShortPointer;
 import com.googlecode.javacpp.annotation.Cast;
 import com.googlecode.javacpp.annotation.Platform;
 import com.morlunk.jumble.audio.IDecoder;
@@ -27,6 +29,8 @@ import com.morlunk.jumble.exception.NativeAudioException;
 import com.morlunk.jumble.protocol.AudioHandler;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * Created by andrew on 20/10/13.
@@ -48,6 +52,8 @@ public class CELT7 {
     public static native Pointer celt_decoder_create(@Cast("CELTMode*") Pointer mode, int channels, IntPointer error);
     public static native int celt_decode(@Cast("CELTDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, short[] pcm);
     public static native int celt_decode_float(@Cast("CELTDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, float[] pcm);
+    public static native int celt_decode(@Cast("CELTDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, ShortPointer pcm);
+    public static native int celt_decode_float(@Cast("CELTDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, FloatPointer pcm);
     public static native int celt_decoder_ctl(@Cast("CELTDecoder*") Pointer st, int request, Pointer val);
     public static native void celt_decoder_destroy(@Cast("CELTDecoder*") Pointer st);
 
@@ -72,6 +78,7 @@ public class CELT7 {
 
         private Pointer mMode;
         private Pointer mState;
+        private final DirectOutput mDirectOutput = new DirectOutput();
 
         public CELT7Decoder(int sampleRate, int frameSize, int channels) throws NativeAudioException {
             IntPointer error = new IntPointer(1);
@@ -96,6 +103,20 @@ public class CELT7 {
             return frameSize;
         }
 
+        @Override
+        public int decodeFloat(ByteBuffer input, int inputSize, FloatBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            int result = celt_decode_float(mState, input, inputSize, mDirectOutput.wrap(output, outputOffset));
+            if(result < 0) throw new NativeAudioException("CELT 0.7.0 decoding failed with error: "+result);
+            return frameSize;
+        }
+
+        @Override
+        public int decodeShort(ByteBuffer input, int inputSize, ShortBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            int result = celt_decode(mState, input, inputSize, mDirectOutput.wrap(output, outputOffset));
+            if(result < 0) throw new NativeAudioException("CELT 0.7.0 decoding failed with error: "+result);
+            return frameSize;
+        }
+
         @Override
         public void destroy() {
             celt_decoder_destroy(mState);
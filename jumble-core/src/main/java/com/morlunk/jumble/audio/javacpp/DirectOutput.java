@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio.javacpp;
+
+import com.googlecode.javacpp.FloatPointer;
+import com.googlecode.javacpp.ShortPointer;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Caches native pointers to the direct output buffers a decoder writes into, so that decoding
+ * into the same buffer repeatedly doesn't allocate a new pointer each call.
+ */
+class DirectOutput {
+    private FloatBuffer mFloatBuffer;
+    private FloatPointer mFloatPointer;
+    private ShortBuffer mShortBuffer;
+    private ShortPointer mShortPointer;
+
+    /**
+     * @return A pointer to the sample at offset in the direct buffer.
+     */
+    FloatPointer wrap(FloatBuffer buffer, int offset) {
+        if (!buffer.isDirect())
+            throw new IllegalArgumentException("Output buffer must be direct");
+        if (buffer != mFloatBuffer) {
+            mFloatBuffer = buffer;
+            mFloatPointer = new FloatPointer(buffer);
+        }
+        mFloatPointer.position(offset);
+        return mFloatPointer;
+    }
+
+    /**
+     * @return A pointer to the sample at offset in the direct buffer.
+     */
+    ShortPointer wrap(ShortBuffer buffer, int offset) {
+        if (!buffer.isDirect())
+            throw new IllegalArgumentException("Output buffer must be direct");
+        if (buffer != mShortBuffer) {
+            mShortBuffer = buffer;
+            mShortPointer = new ShortPointer(buffer);
+        }
+        mShortPointer.position(offset);
+        return mShortPointer;
+    }
+}
@@ -17,15 +17,19 @@
 
 package com.morlunk.jumble.audio.javacpp;
 
+import com.googlecode.javacpp.FloatPointer;
 import com.googlecode.javacpp.IntPointer;
 import com.googlecode.javacpp.Loader;
 import com.googlecode.javacpp.Pointer;
+import com.googlecode.javacpp.ShortPointer;
 import com.googlecode.javacpp.annotation.Cast;
 import com.googlecode.javacpp.annotation.Platform;
 import com.morlunk.jumble.audio.IDecoder;
 import com.morlunk.jumble.exception.NativeAudioException;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * Created by andrew on 18/10/13.
@@ -38,12 +42,16 @@ public class Opus {
     public static final int OPUS_SET_BITRATE_REQUEST = 4002;
     public static final int OPUS_GET_BITRATE_REQUEST = 4003;
     public static final int OPUS_SET_VBR_REQUEST = 4006;
+    public static final int OPUS_SET_INBAND_FEC_REQUEST = 4012;
+    public static final int OPUS_SET_PACKET_LOSS_PERC_REQUEST = 4014;
 
     public static native int opus_decoder_get_size(int channels);
     public static native Pointer opus_decoder_create(int fs, int channels, IntPointer error);
     public static native int opus_decoder_init(@Cast("OpusDecoder*") Pointer st, int fs, int channels);
     public static native int opus_decode(@Cast("OpusDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, short[] out, int frameSize, int decodeFec);
     public static native int opus_decode_float(@Cast("OpusDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, float[] out, int frameSize, int decodeFec);
+    public static native int opus_decode(@Cast("OpusDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, ShortPointer out, int frameSize, int decodeFec);
+    public static native int opus_decode_float(@Cast("OpusDecoder*") Pointer st, @Cast("const unsigned char*") ByteBuffer data, int len, FloatPointer out, int frameSize, int decodeFec);
     //public static native int opus_decoder_ctl(@Cast("OpusDecoder*") Pointer st,  int request);
     public static native void opus_decoder_destroy(@Cast("OpusDecoder*") Pointer st);
     //public static native int opus_packet_parse(@Cast("const unsigned char*") BytePointer data, int len, ...
@@ -70,6 +78,7 @@ public class Opus {
     public static class OpusDecoder implements IDecoder {
 
         private Pointer mState;
+        private final DirectOutput mDirectOutput = new DirectOutput();
 
         public OpusDecoder(int sampleRate, int channels) throws NativeAudioException {
             IntPointer error = new IntPointer(1);
@@ -92,6 +101,37 @@ public class Opus {
             return result;
         }
 
+        @Override
+        public int decodeFloat(ByteBuffer input, int inputSize, FloatBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            int result = opus_decode_float(mState, input, inputSize, mDirectOutput.wrap(output, outputOffset), frameSize, 0);
+            if(result < 0) throw new NativeAudioException("Opus decoding failed with error: "+result);
+            return result;
+        }
+
+        @Override
+        public int decodeShort(ByteBuffer input, int inputSize, ShortBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            int result = opus_decode(mState, input, inputSize, mDirectOutput.wrap(output, outputOffset), frameSize, 0);
+            if(result < 0) throw new NativeAudioException("Opus decoding failed with error: "+result);
+            return result;
+        }
+
+        /**
+         * Recovers a lost frame from the forward error correction data in the packet that followed
+         * it. Falls back to packet loss concealment if the packet carries no FEC data.
+         * @param input A direct byte buffer holding the packet after the lost one.
+         * @param inputSize The size of the packet.
+         * @param output A direct float buffer to write the recovered frame to.
+         * @param outputOffset The index in output to write the first sample to.
+         * @param frameSize The duration of the lost audio in samples.
+         * @return The number of decoded samples.
+         * @throws NativeAudioException if decoding failed.
+         */
+        public int decodeFloatFec(ByteBuffer input, int inputSize, FloatBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            int result = opus_decode_float(mState, input, inputSize, mDirectOutput.wrap(output, outputOffset), frameSize, 1);
+            if(result < 0) throw new NativeAudioException("Opus FEC decoding failed with error: "+result);
+            return result;
+        }
+
         @Override
         public void destroy() {
             opus_decoder_destroy(mState);
@@ -17,9 +17,11 @@
 
 package com.morlunk.jumble.audio.javacpp;
 
+import com.googlecode.javacpp.FloatPointer;
 import com.googlecode.javacpp.IntPointer;
 import com.googlecode.javacpp.Loader;
 import com.googlecode.javacpp.Pointer;
+import com.googlecode.javacpp.ShortPointer;
 import com.googlecode.javacpp.annotation.Cast;
 import com.googlecode.javacpp.annotation.MemberGetter;
 import com.googlecode.javacpp.annotation.MemberSetter;
@@ -29,6 +31,8 @@ import com.morlunk.jumble.audio.IDecoder;
 import com.morlunk.jumble.exception.NativeAudioException;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * JavaCPP interface for Speex JNI.
@@ -260,6 +264,8 @@ public class Speex {
     public static native Pointer speex_decoder_init(@Cast("const SpeexMode*") Pointer mode);
     public static native void speex_decoder_ctl(Pointer state, int request, Pointer value);
     public static native int speex_decode(Pointer state, @Cast("SpeexBits*") SpeexBits bits, float[] out);
+    public static native int speex_decode(Pointer state, @Cast("SpeexBits*") SpeexBits bits, FloatPointer out);
+    public static native int speex_decode_int(Pointer state, @Cast("SpeexBits*") SpeexBits bits, @Cast("spx_int16_t*") ShortPointer out);
     public static native void speex_decoder_destroy(Pointer state);
 
     // Encoder
@@ -468,6 +474,7 @@ public class Speex {
 
         private SpeexBits mBits;
         private Pointer mState;
+        private final DirectOutput mDirectOutput = new DirectOutput();
 
         public SpeexDecoder() {
             mBits = new Speex.SpeexBits();
@@ -500,6 +507,25 @@ public class Speex {
             return frameSize;
         }
 
+        @Override
+        public int decodeFloat(ByteBuffer input, int inputSize, FloatBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            speex_bits_read_from(mBits, input, inputSize);
+            int result = speex_decode(mState, mBits, mDirectOutput.wrap(output, outputOffset));
+            if(result < 0) throw new NativeAudioException("Speex decoding failed with error: "+result);
+            for(int i = outputOffset; i < outputOffset + frameSize; i++) {
+                output.put(i, output.get(i) * (1.0f / Short.MAX_VALUE));
+            }
+            return frameSize;
+        }
+
+        @Override
+        public int decodeShort(ByteBuffer input, int inputSize, ShortBuffer output, int outputOffset, int frameSize) throws NativeAudioException {
+            speex_bits_read_from(mBits, input, inputSize);
+            int result = speex_decode_int(mState, mBits, mDirectOutput.wrap(output, outputOffset));
+            if(result < 0) throw new NativeAudioException("Speex decoding failed with error: "+result);
+            return frameSize;
+        }
+
         @Override
         public void destroy() {
             speex_decoder_destroy(mState);
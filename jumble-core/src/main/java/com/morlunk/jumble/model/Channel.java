@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.model;
+
+import com.morlunk.jumble.util.BlobCache;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class Channel implements IChannel, Comparable<Channel> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private int mId;
+    private int mPosition;
+    private int mLevel;
+    private boolean mTemporary;
+    private Channel mParent;
+    private String mName;
+    /** The description is held in the blob cache, and resolved from memory by hash when read. */
+    private BlobCache mBlobCache;
+    private byte[] mDescriptionHash;
+    private SortedChannelList mSubchannels;
+    private List<User> mUsers;
+    private SortedChannelList mLinks;
+    private int mPermissions;
+    /** The number of users in this channel and all of its descendants. */
+    private int mSubchannelUserCount;
+
+    public Channel() {
+        mSubchannels = new SortedChannelList();
+        mUsers = new ArrayList<User>();
+        mLinks = new SortedChannelList();
+    }
+
+    public Channel(int id, boolean temporary) {
+        this();
+        mId = id;
+        mTemporary = temporary;
+    }
+
+    /**
+     * @see User#setChannel(Channel)
+     */
+    protected void addUser(User user) {
+        for (int i = 0; i < mUsers.size(); i++) {
+            User u = mUsers.get(i);
+            if (user.compareTo(u) <= 0) {
+                mUsers.add(i, user);
+                adjustSubchannelUserCount(1);
+                return;
+            }
+        }
+        mUsers.add(user);
+        adjustSubchannelUserCount(1);
+    }
+
+    /**
+     * @see User#setChannel(Channel)
+     */
+    protected void removeUser(User user) {
+        if (mUsers.remove(user))
+            adjustSubchannelUserCount(-1);
+    }
+
+    /**
+     * Applies a change in user count to this channel and all of its ancestors.
+     * @param delta The number of users added to (or removed from) this channel's subtree.
+     */
+    private void adjustSubchannelUserCount(int delta) {
+        if (delta == 0)
+            return;
+        for (Channel channel = this; channel != null; channel = channel.mParent) {
+            channel.mSubchannelUserCount += delta;
+        }
+    }
+
+    @Override
+    public List<User> getUsers() {
+        return Collections.unmodifiableList(mUsers);
+    }
+
+    @Override
+    public int getId() {
+        return mId;
+    }
+
+    public void setId(int mId) {
+        this.mId = mId;
+    }
+
+    @Override
+    public int getPosition() {
+        return mPosition;
+    }
+
+    public void setPosition(int mPosition) {
+        if (this.mPosition == mPosition)
+            return;
+        List<SortedChannelList> containing = detachFromSortedLists();
+        this.mPosition = mPosition;
+        reattachToSortedLists(containing);
+    }
+
+    @Override
+    public boolean isTemporary() {
+        return mTemporary;
+    }
+
+    public void setTemporary(boolean mTemporary) {
+        this.mTemporary = mTemporary;
+    }
+
+    @Override
+    public Channel getParent() {
+        return mParent;
+    }
+
+    /**
+     * Sets the parent reference only. Use {@link #addSubchannel(Channel)} to attach a channel to
+     * the tree so that subchannel user counts are kept up to date.
+     */
+    public void setParent(Channel mParent) {
+        this.mParent = mParent;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    public void setName(String mName) {
+        if (this.mName == null ? mName == null : this.mName.equals(mName))
+            return;
+        List<SortedChannelList> containing = detachFromSortedLists();
+        this.mName = mName;
+        reattachToSortedLists(containing);
+    }
+
+    /**
+     * Removes this channel from its parent's subchannel list and its linked channels' link lists,
+     * so that its sort key can be changed.
+     * @return The lists this channel was removed from.
+     */
+    private List<SortedChannelList> detachFromSortedLists() {
+        if (mParent == null && mLinks.isEmpty())
+            return Collections.emptyList();
+        List<SortedChannelList> containing = new ArrayList<SortedChannelList>(mLinks.size() + 1);
+        if (mParent != null && mParent.mSubchannels.remove(this))
+            containing.add(mParent.mSubchannels);
+        for (Channel linked : mLinks) {
+            if (linked.mLinks.remove(this))
+                containing.add(linked.mLinks);
+        }
+        return containing;
+    }
+
+    /**
+     * Reinserts this channel into the given lists at its new sorted position.
+     * @see #detachFromSortedLists()
+     */
+    private void reattachToSortedLists(List<SortedChannelList> containing) {
+        for (SortedChannelList list : containing) {
+            list.add(this);
+        }
+    }
+
+    public void setBlobCache(BlobCache blobCache) {
+        mBlobCache = blobCache;
+    }
+
+    @Override
+    public String getDescription() {
+        byte[] description = mDescriptionHash != null && mBlobCache != null ?
+                mBlobCache.getFromMemory(mDescriptionHash) : null;
+        return description != null ? new String(description, UTF_8) : null;
+    }
+
+    @Override
+    public byte[] getDescriptionHash() {
+        return mDescriptionHash;
+    }
+
+    public void setDescriptionHash(byte[] mDescriptionHash) {
+        this.mDescriptionHash = mDescriptionHash;
+    }
+
+    @Override
+    public List<Channel> getSubchannels() {
+        return Collections.unmodifiableList(mSubchannels);
+    }
+
+    /**
+     * Adds the given channel as a child of this channel, setting its parent.
+     * The channel's user count is added to the subchannel user count of this channel and its
+     * ancestors.
+     * @param channel The channel to add.
+     */
+    public void addSubchannel(Channel channel) {
+        if (!mSubchannels.add(channel))
+            return;
+        channel.mParent = this;
+        adjustSubchannelUserCount(channel.mSubchannelUserCount);
+    }
+
+    /**
+     * Removes the given channel from this channel's children. If the channel's parent is still
+     * this channel, it is cleared.
+     * @param channel The channel to remove.
+     */
+    public void removeSubchannel(Channel channel) {
+        if (!mSubchannels.remove(channel))
+            return;
+        adjustSubchannelUserCount(-channel.mSubchannelUserCount);
+        if (channel.mParent == this)
+            channel.mParent = null;
+    }
+
+    @Override
+    public List<Channel> getLinks() {
+        return Collections.unmodifiableList(mLinks);
+    }
+
+    public void addLink(Channel channel) {
+        mLinks.add(channel);
+    }
+
+    public void removeLink(Channel channel) {
+        mLinks.remove(channel);
+    }
+
+    public void clearLinks() {
+        mLinks.clear();
+    }
+
+    /**
+     * Returns the number of users in this channel and all of its subchannels.
+     * The count is maintained incrementally as users and subchannels are added and removed.
+     * @return The sum of users in this channel and its subchannels.
+     */
+    public int getSubchannelUserCount() {
+        return mSubchannelUserCount;
+    }
+
+    /**
+     * Recomputes the subchannel user count by walking the subtree, ignoring the cached value.
+     * @return The sum of users in this channel and its subchannels.
+     */
+    public int computeSubchannelUserCount() {
+        int userCount = mUsers.size();
+        for (Channel subc : mSubchannels) {
+            userCount += subc.computeSubchannelUserCount();
+        }
+        return userCount;
+    }
+
+    /**
+     * Checks that the cached subchannel user count of this channel and every descendant matches
+     * the actual number of users in its subtree, and that each child's parent is this channel.
+     * @return true if the cached counts of the whole subtree are consistent.
+     */
+    public boolean isSubchannelUserCountConsistent() {
+        int userCount = mUsers.size();
+        for (Channel subc : mSubchannels) {
+            if (subc.mParent != this || !subc.isSubchannelUserCountConsistent())
+                return false;
+            userCount += subc.mSubchannelUserCount;
+        }
+        return userCount == mSubchannelUserCount;
+    }
+
+    @Override
+    public int getPermissions() {
+        return mPermissions;
+    }
+
+    public void setPermissions(int permissions) {
+        mPermissions = permissions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Channel channel = (Channel) o;
+
+        if (mId != channel.mId) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return mId;
+    }
+
+    @Override
+    public int compareTo(Channel another) {
+        if(mPosition != another.getPosition())
+            return mPosition < another.getPosition() ? -1 : 1;
+        int nameOrder = mName.compareTo(another.getName());
+        if(nameOrder != 0)
+            return nameOrder;
+        // Break ties by ID so that the ordering is consistent with equals().
+        return mId < another.getId() ? -1 : (mId == another.getId() ? 0 : 1);
+    }
+}
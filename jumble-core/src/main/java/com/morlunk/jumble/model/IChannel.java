@@ -32,6 +32,11 @@ public interface IChannel {
 
     String getName();
 
+    /**
+     * @return The channel's description, or null if there is none or it has not been received or
+     *         loaded from the cache yet. A description with a hash but no content can be fetched with
+     *         {@link com.morlunk.jumble.IJumbleSession#requestChannelDescription(int)}.
+     */
     String getDescription();
 
     byte[] getDescriptionHash();
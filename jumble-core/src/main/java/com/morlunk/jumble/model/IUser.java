@@ -29,10 +29,22 @@ public interface IUser {
 
     String getName();
 
+    /**
+     * @return The user's comment, or null if there is none or it has not been received or loaded
+     *         from the cache yet.
+     *         A comment with a hash but no content can be fetched with
+     *         {@link com.morlunk.jumble.IJumbleSession#requestComment(int)}.
+     */
     String getComment();
 
     byte[] getCommentHash();
 
+    /**
+     * @return The user's avatar, or null if there is none or it has not been received or loaded
+     *         from the cache yet.
+     *         An avatar with a hash but no content can be fetched with
+     *         {@link com.morlunk.jumble.IJumbleSession#requestAvatar(int)}.
+     */
     byte[] getTexture();
 
     byte[] getTextureHash();
@@ -61,5 +73,15 @@ public interface IUser {
 
     void setLocalIgnored(boolean ignored);
 
+    /**
+     * @return the linear gain applied to this user's voice on playback, where 1 is unchanged.
+     */
+    float getLocalGain();
+
+    /**
+     * @return the stereo position of this user's voice on playback, from -1 (left) to 1 (right).
+     */
+    float getLocalPan();
+
     TalkState getTalkState();
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.RandomAccess;
+
+/**
+ * A list of distinct channels kept in {@link Channel#compareTo(Channel)} order.
+ * Lookups, insertions and removals locate their index by binary search. Channels whose sort key
+ * changes must be removed before the change and re-added after it; {@link Channel} does this for
+ * its parent's subchannels and its links.
+ */
+final class SortedChannelList extends AbstractList<Channel> implements RandomAccess {
+    private final ArrayList<Channel> mChannels = new ArrayList<Channel>();
+
+    /**
+     * Inserts the channel at its sorted position, unless it is already present.
+     * @return true if the channel was added.
+     */
+    @Override
+    public boolean add(Channel channel) {
+        int index = Collections.binarySearch(mChannels, channel);
+        if (index >= 0)
+            return false;
+        mChannels.add(-index - 1, channel);
+        return true;
+    }
+
+    @Override
+    public Channel get(int index) {
+        return mChannels.get(index);
+    }
+
+    @Override
+    public Channel remove(int index) {
+        return mChannels.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            // Fall back to a linear scan in case the channel's sort key changed while it was in
+            // this list without being repositioned.
+            index = mChannels.indexOf(o);
+            if (index < 0)
+                return false;
+        }
+        mChannels.remove(index);
+        return true;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Channel))
+            return -1;
+        int index = Collections.binarySearch(mChannels, (Channel) o);
+        return index >= 0 ? index : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        mChannels.clear();
+    }
+
+    @Override
+    public int size() {
+        return mChannels.size();
+    }
+}
@@ -17,38 +17,13 @@
 
 package com.morlunk.jumble.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
 /**
  * User talk state.
  * Created by andrew on 19/04/15.
  */
-public enum TalkState implements Parcelable {
+public enum TalkState {
     TALKING,
     SHOUTING,
     PASSIVE,
-    WHISPERING;
-
-    public static Creator<TalkState> CREATOR = new Creator<TalkState>() {
-        @Override
-        public TalkState createFromParcel(Parcel source) {
-            return TalkState.values()[source.readInt()];
-        }
-
-        @Override
-        public TalkState[] newArray(int size) {
-            return new TalkState[size];
-        }
-    };
-
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeInt(ordinal());
-    }
+    WHISPERING
 }
@@ -17,17 +17,23 @@
 
 package com.morlunk.jumble.model;
 
-import com.google.protobuf.ByteString;
+import com.morlunk.jumble.util.BlobCache;
+
+import java.nio.charset.Charset;
 
 public class User implements IUser, Comparable<User> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private int mSession;
     private int mId = -1;
     private String mName;
-    private String mComment;
-    private ByteString mCommentHash;
-    private ByteString mTexture;
-    private ByteString mTextureHash;
+    /**
+     * Comments and avatars are held in the blob cache, and resolved by hash when read. Only blobs
+     * in memory are returned, so the getters are safe to call from the main thread.
+     */
+    private BlobCache mBlobCache;
+    private byte[] mCommentHash;
+    private byte[] mTextureHash;
     private String mHash;
 
     private boolean mMuted;
@@ -47,6 +53,9 @@ public class User implements IUser, Comparable<User> {
     // Local state
     private boolean mLocalMuted;
     private boolean mLocalIgnored;
+    // Read by the user's audio decode thread.
+    private volatile float mLocalGain = 1f;
+    private volatile float mLocalPan = 0f;
 
     /** The number of samples normally available from the user. */
     private float mAverageAvailable;
@@ -102,42 +111,43 @@ public class User implements IUser, Comparable<User> {
         this.mName = mName;
     }
 
-    @Override
-    public String getComment() {
-        return mComment;
+    public void setBlobCache(BlobCache blobCache) {
+        mBlobCache = blobCache;
     }
 
-    public void setComment(String mComment) {
-        this.mComment = mComment;
+    @Override
+    public String getComment() {
+        byte[] comment = getBlob(mCommentHash);
+        return comment != null ? new String(comment, UTF_8) : null;
     }
 
     @Override
     public byte[] getCommentHash() {
-        return mCommentHash != null ? mCommentHash.toByteArray() : null;
+        return mCommentHash;
     }
 
-    public void setCommentHash(ByteString commentHash) {
+    public void setCommentHash(byte[] commentHash) {
         mCommentHash = commentHash;
     }
 
     @Override
     public byte[] getTexture() {
-        return mTexture != null ? mTexture.toByteArray() : null;
-    }
-
-    public void setTexture(ByteString texture) {
-        mTexture = texture;
+        return getBlob(mTextureHash);
     }
 
     @Override
     public byte[] getTextureHash() {
-        return mTextureHash != null ? mTextureHash.toByteArray() : null;
+        return mTextureHash;
     }
 
-    public void setTextureHash(ByteString textureHash) {
+    public void setTextureHash(byte[] textureHash) {
         mTextureHash = textureHash;
     }
 
+    private byte[] getBlob(byte[] hash) {
+        return hash != null && mBlobCache != null ? mBlobCache.getFromMemory(hash) : null;
+    }
+
     @Override
     public String getHash() {
         return mHash;
@@ -228,6 +238,27 @@ public class User implements IUser, Comparable<User> {
         mLocalIgnored = localIgnored;
     }
 
+    @Override
+    public float getLocalGain() {
+        return mLocalGain;
+    }
+
+    public void setLocalGain(float localGain) {
+        mLocalGain = localGain;
+    }
+
+    @Override
+    public float getLocalPan() {
+        return mLocalPan;
+    }
+
+    /**
+     * @param localPan The stereo position, clamped to [-1, 1].
+     */
+    public void setLocalPan(float localPan) {
+        mLocalPan = Math.max(-1f, Math.min(1f, localPan));
+    }
+
     @Override
     public TalkState getTalkState() {
         return mTalkState;
@@ -259,7 +290,7 @@ public class User implements IUser, Comparable<User> {
 
     @Override
     public int hashCode() {
-        return mId;
+        return mSession;
     }
 
     @Override
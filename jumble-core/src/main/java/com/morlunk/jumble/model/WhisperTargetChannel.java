@@ -17,9 +17,6 @@
 
 package com.morlunk.jumble.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
 import com.morlunk.jumble.protobuf.Mumble;
 
 import java.util.List;
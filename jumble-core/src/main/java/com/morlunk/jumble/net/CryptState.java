@@ -60,10 +60,48 @@ public class CryptState {
     long mLastRequestStart;
     boolean mInit = false;
 
+    // Counters as of the last call to sampleLossPercentage().
+    private int mSampledGood;
+    private int mSampledLost;
+    private int mSampledRemoteGood;
+    private int mSampledRemoteLost;
+
+    // Scratch blocks reused across calls to avoid per-packet allocation. Guarded by this.
+    private final byte[] mSaveIV = new byte[AES_BLOCK_SIZE];
+    private final byte[] mTag = new byte[AES_BLOCK_SIZE];
+    private final byte[] mChecksum = new byte[AES_BLOCK_SIZE];
+    private final byte[] mTmp = new byte[AES_BLOCK_SIZE];
+    private final byte[] mDelta = new byte[AES_BLOCK_SIZE];
+    private final byte[] mPad = new byte[AES_BLOCK_SIZE];
+    private final byte[] mBlock = new byte[AES_BLOCK_SIZE];
+
     public boolean isValid() {
         return mInit;
     }
 
+    /**
+     * Returns the percentage of UDP packets lost since the previous call. Takes the worse of the
+     * loss observed on packets we received and the loss the server last reported on ours.
+     * @return The recent packet loss, from 0 to 100.
+     */
+    public int sampleLossPercentage() {
+        int local = lossPercentage(mUiGood - mSampledGood, mUiLost - mSampledLost);
+        int remote = lossPercentage(mUiRemoteGood - mSampledRemoteGood,
+                mUiRemoteLost - mSampledRemoteLost);
+        mSampledGood = mUiGood;
+        mSampledLost = mUiLost;
+        mSampledRemoteGood = mUiRemoteGood;
+        mSampledRemoteLost = mUiRemoteLost;
+        return Math.max(local, remote);
+    }
+
+    private static int lossPercentage(int good, int lost) {
+        // Counters may go backwards if the server resets its state.
+        if (good < 0 || lost <= 0)
+            return 0;
+        return (int) (100L * lost / (good + lost));
+    }
+
     /**
      * @return The time since the last good decrypt in microseconds.
      */
@@ -121,19 +159,48 @@ public class CryptState {
 
     /**
      * Decrypts data using the OCB-AES128 standard.
+     * Allocates a new array for the plaintext; prefer
+     * {@link #decrypt(byte[], int, int, byte[], int)} on hot paths.
      * @param source The encoded audio data.
      * @param length The length of the source array.
+     * @return The decrypted data, or null if decryption failed.
      */
     public synchronized byte[] decrypt(final byte[] source, final int length) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
         if (length < 4) return null;
 
-        final int plainLength = length - 4;
-        byte[] dst = new byte[plainLength];
+        final byte[] dst = new byte[length - 4];
+        if (decrypt(source, 0, length, dst, 0) < 0) return null;
+        return dst;
+    }
 
-        final byte[] saveiv = new byte[AES_BLOCK_SIZE];
-        final short ivbyte = (short) (source[0] & 0xFF);
+    /**
+     * Decrypts data using the OCB-AES128 standard into a caller-supplied buffer.
+     * Does not allocate; all intermediate blocks are kept as per-instance scratch state.
+     * The destination may be the source array itself, as long as dstOffset is no greater than
+     * sourceOffset + 4.
+     * @param source The encrypted datagram, including the 4 byte header.
+     * @param sourceOffset The offset of the datagram in source.
+     * @param length The length of the datagram, including the header.
+     * @param dst The buffer to write the plaintext into. Must fit length - 4 bytes at dstOffset.
+     * @param dstOffset The offset in dst to write the plaintext at.
+     * @return The length of the plaintext written to dst, or -1 if decryption failed.
+     */
+    public synchronized int decrypt(final byte[] source, final int sourceOffset, final int length,
+                                    final byte[] dst, final int dstOffset) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
+        if (length < 4) return -1;
+
+        final int plainLength = length - 4;
+        if (dst.length - dstOffset < plainLength)
+            throw new ShortBufferException("Need " + plainLength + " bytes for plaintext");
+
+        final byte[] saveiv = mSaveIV;
+        final short ivbyte = (short) (source[sourceOffset] & 0xFF);
+        // Keep the header tag around, in case we're decrypting in place.
+        final byte tag0 = source[sourceOffset + 1];
+        final byte tag1 = source[sourceOffset + 2];
+        final byte tag2 = source[sourceOffset + 3];
         boolean restore = false;
-        final byte[] tag = new byte[AES_BLOCK_SIZE];
+        final byte[] tag = mTag;
 
         int lost = 0;
         int late = 0;
@@ -152,7 +219,7 @@ public class CryptState {
                     }
                 }
             } else {
-                return null;
+                return -1;
             }
         } else {
             // This is either out of order or a repeat.
@@ -195,23 +262,20 @@ public class CryptState {
                     }
                 }
             } else {
-                return null;
+                return -1;
             }
 
             if (mDecryptHistory[mDecryptIV[0] & 0xFF] == mEncryptIV[0]) {
                 System.arraycopy(saveiv, 0, mDecryptIV, 0, AES_BLOCK_SIZE);
-                return null;
+                return -1;
             }
         }
 
-        final byte[] tagShiftedDst = new byte[plainLength];
-        System.arraycopy(source, 4, tagShiftedDst, 0, plainLength);
+        ocbDecrypt(source, sourceOffset + 4, dst, dstOffset, plainLength, mDecryptIV, tag);
 
-        ocbDecrypt(tagShiftedDst, dst, mDecryptIV, tag);
-
-        if (tag[0] != source[1] || tag[1] != source[2] || tag[2] != source[3]) {
+        if (tag[0] != tag0 || tag[1] != tag1 || tag[2] != tag2) {
             System.arraycopy(saveiv, 0, mDecryptIV, 0, AES_BLOCK_SIZE);
-            return null;
+            return -1;
         }
         mDecryptHistory[mDecryptIV[0] & 0xff] = mDecryptIV[1];
 
@@ -223,27 +287,39 @@ public class CryptState {
         mUiLost += lost;
 
         mLastGoodStart = System.nanoTime();
-        return dst;
+        return plainLength;
     }
 
-    public void ocbDecrypt(byte[] encrypted, byte[] plain, byte[] nonce, byte[] tag) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
-        final byte[] checksum = new byte[AES_BLOCK_SIZE];
-        final byte[] tmp = new byte[AES_BLOCK_SIZE];
+    public synchronized void ocbDecrypt(byte[] encrypted, byte[] plain, byte[] nonce, byte[] tag) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
+        ocbDecrypt(encrypted, 0, plain, 0, encrypted.length, nonce, tag);
+    }
 
-        final byte[] delta = mEncryptCipher.doFinal(nonce);
+    /**
+     * Decrypts the OCB-AES128 ciphertext at the given offset into plain, computing its tag.
+     * Uses the instance's scratch blocks; callers must hold the instance lock.
+     */
+    private void ocbDecrypt(byte[] encrypted, int encryptedOffset, byte[] plain, int plainOffset,
+                            int length, byte[] nonce, byte[] tag) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
+        final byte[] checksum = mChecksum;
+        final byte[] tmp = mTmp;
+        final byte[] delta = mDelta;
+        final byte[] pad = mPad;
+        final byte[] buffer = mBlock;
+
+        CryptSupport.ZERO(checksum);
+        mEncryptCipher.doFinal(nonce, 0, AES_BLOCK_SIZE, delta);
 
         int offset = 0;
-        int len = encrypted.length;
+        int len = length;
         while (len > AES_BLOCK_SIZE) {
-            final byte[] buffer = new byte[AES_BLOCK_SIZE];
             CryptSupport.S2(delta);
-            System.arraycopy(encrypted, offset, buffer, 0, AES_BLOCK_SIZE);
+            System.arraycopy(encrypted, encryptedOffset + offset, buffer, 0, AES_BLOCK_SIZE);
 
             CryptSupport.XOR(tmp, delta, buffer);
             mDecryptCipher.doFinal(tmp, 0, AES_BLOCK_SIZE, tmp);
 
             CryptSupport.XOR(buffer, delta, tmp);
-            System.arraycopy(buffer, 0, plain, offset, AES_BLOCK_SIZE);
+            System.arraycopy(buffer, 0, plain, plainOffset + offset, AES_BLOCK_SIZE);
 
             CryptSupport.XOR(checksum, checksum, buffer);
             len -= AES_BLOCK_SIZE;
@@ -258,14 +334,14 @@ public class CryptState {
         tmp[AES_BLOCK_SIZE - 1] = (byte) (num & 0xFF);
         CryptSupport.XOR(tmp, tmp, delta);
 
-        final byte[] pad = mEncryptCipher.doFinal(tmp);
+        mEncryptCipher.doFinal(tmp, 0, AES_BLOCK_SIZE, pad);
         CryptSupport.ZERO(tmp);
-        System.arraycopy(encrypted, offset, tmp, 0, len);
+        System.arraycopy(encrypted, encryptedOffset + offset, tmp, 0, len);
 
         CryptSupport.XOR(tmp, tmp, pad);
         CryptSupport.XOR(checksum, checksum, tmp);
 
-        System.arraycopy(tmp, 0, plain, offset, len);
+        System.arraycopy(tmp, 0, plain, plainOffset + offset, len);
 
         CryptSupport.S3(delta);
         CryptSupport.XOR(tmp, delta, checksum);
@@ -273,8 +349,37 @@ public class CryptState {
         mEncryptCipher.doFinal(tmp, 0, AES_BLOCK_SIZE, tag);
     }
 
+    /**
+     * Encrypts data using the OCB-AES128 standard.
+     * Allocates a new array for the datagram; prefer
+     * {@link #encrypt(byte[], int, int, byte[], int)} on hot paths.
+     * @param source The plaintext data.
+     * @param length The length of the plaintext.
+     * @return The encrypted datagram, prefixed with the 4 byte header.
+     */
     public synchronized byte[] encrypt(final byte[] source, final int length) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
-        final byte[] tag = new byte[AES_BLOCK_SIZE];
+        final byte[] dst = new byte[length + 4];
+        encrypt(source, 0, length, dst, 0);
+        return dst;
+    }
+
+    /**
+     * Encrypts data using the OCB-AES128 standard into a caller-supplied buffer, writing the
+     * 4 byte header followed by the ciphertext. Does not allocate.
+     * The source and destination regions must not overlap.
+     * @param source The plaintext data.
+     * @param sourceOffset The offset of the plaintext in source.
+     * @param length The length of the plaintext.
+     * @param dst The buffer to write the datagram into. Must fit length + 4 bytes at dstOffset.
+     * @param dstOffset The offset in dst to write the datagram at.
+     * @return The length of the datagram written to dst.
+     */
+    public synchronized int encrypt(final byte[] source, final int sourceOffset, final int length,
+                                    final byte[] dst, final int dstOffset) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
+        if (dst.length - dstOffset < length + 4)
+            throw new ShortBufferException("Need " + (length + 4) + " bytes for datagram");
+
+        final byte[] tag = mTag;
 
         // First, increase our IV.
         for (int i = 0; i < AES_BLOCK_SIZE; i++) {
@@ -283,37 +388,47 @@ public class CryptState {
             }
         }
 
-        final byte[] dst = new byte[length + 4];
-        ocbEncrypt(source, dst, length, mEncryptIV, tag);
+        ocbEncrypt(source, sourceOffset, dst, dstOffset + 4, length, mEncryptIV, tag);
 
-        System.arraycopy(dst, 0, dst, 4, length);
-        dst[0] = mEncryptIV[0];
-        dst[1] = tag[0];
-        dst[2] = tag[1];
-        dst[3] = tag[2];
+        dst[dstOffset] = mEncryptIV[0];
+        dst[dstOffset + 1] = tag[0];
+        dst[dstOffset + 2] = tag[1];
+        dst[dstOffset + 3] = tag[2];
 
-        return dst;
+        return length + 4;
     }
 
-    public void ocbEncrypt(byte[] plain, byte[] encrypted, int plainLength, byte[] nonce, byte[] tag) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
-        final byte[] checksum = new byte[AES_BLOCK_SIZE];
-        final byte[] tmp = new byte[AES_BLOCK_SIZE];
+    public synchronized void ocbEncrypt(byte[] plain, byte[] encrypted, int plainLength, byte[] nonce, byte[] tag) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
+        ocbEncrypt(plain, 0, encrypted, 0, plainLength, nonce, tag);
+    }
+
+    /**
+     * Encrypts the plaintext at the given offset into encrypted, computing its tag.
+     * Uses the instance's scratch blocks; callers must hold the instance lock.
+     */
+    private void ocbEncrypt(byte[] plain, int plainOffset, byte[] encrypted, int encryptedOffset,
+                            int plainLength, byte[] nonce, byte[] tag) throws BadPaddingException, IllegalBlockSizeException, ShortBufferException {
+        final byte[] checksum = mChecksum;
+        final byte[] tmp = mTmp;
+        final byte[] delta = mDelta;
+        final byte[] pad = mPad;
+        final byte[] buffer = mBlock;
 
-        final byte[] delta = mEncryptCipher.doFinal(nonce);
+        CryptSupport.ZERO(checksum);
+        mEncryptCipher.doFinal(nonce, 0, AES_BLOCK_SIZE, delta);
 
         int offset = 0;
         int len = plainLength;
         while (len > AES_BLOCK_SIZE) {
-            final byte[] buffer = new byte[AES_BLOCK_SIZE];
             CryptSupport.S2(delta);
-            System.arraycopy(plain, offset, buffer, 0, AES_BLOCK_SIZE);
+            System.arraycopy(plain, plainOffset + offset, buffer, 0, AES_BLOCK_SIZE);
             CryptSupport.XOR(checksum, checksum, buffer);
             CryptSupport.XOR(tmp, delta, buffer);
 
             mEncryptCipher.doFinal(tmp, 0, AES_BLOCK_SIZE, tmp);
 
             CryptSupport.XOR(buffer, delta, tmp);
-            System.arraycopy(buffer, 0, encrypted, offset, AES_BLOCK_SIZE);
+            System.arraycopy(buffer, 0, encrypted, encryptedOffset + offset, AES_BLOCK_SIZE);
             len -= AES_BLOCK_SIZE;
             offset += AES_BLOCK_SIZE;
         }
@@ -325,14 +440,14 @@ public class CryptState {
         tmp[AES_BLOCK_SIZE - 1] = (byte) (num & 0xFF);
         CryptSupport.XOR(tmp, tmp, delta);
 
-        final byte[] pad = mEncryptCipher.doFinal(tmp);
+        mEncryptCipher.doFinal(tmp, 0, AES_BLOCK_SIZE, pad);
 
-        System.arraycopy(plain, offset, tmp, 0, len);
+        System.arraycopy(plain, plainOffset + offset, tmp, 0, len);
         System.arraycopy(pad, len, tmp, len, AES_BLOCK_SIZE - len);
         CryptSupport.XOR(checksum, checksum, tmp);
         CryptSupport.XOR(tmp, pad, tmp);
 
-        System.arraycopy(tmp, 0, encrypted, offset, len);
+        System.arraycopy(tmp, 0, encrypted, encryptedOffset + offset, len);
         CryptSupport.S3(delta);
         CryptSupport.XOR(tmp, delta, checksum);
         mEncryptCipher.doFinal(tmp, 0, AES_BLOCK_SIZE, tag);
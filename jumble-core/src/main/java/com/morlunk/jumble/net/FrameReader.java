@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+
+/**
+ * Reads Mumble TCP frames (a 2 byte type, a 4 byte length and the payload) from a stream.
+ *
+ * Reads are made in large chunks into a single reusable buffer, and each frame is exposed as a
+ * slice of that buffer rather than copied out. A slice is only valid until the next call to
+ * {@link #next()}. Frames longer than the maximum frame size are rejected before anything is
+ * allocated for them.
+ */
+public class FrameReader {
+    /** The size of the type and length prefix of each frame. */
+    public static final int HEADER_SIZE = 6;
+    /** The default maximum payload size, comfortably above the largest avatar or comment. */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 8 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 16384;
+
+    private final InputStream mInput;
+    private final int mMaxFrameSize;
+    private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+    /** The start of the unconsumed data in the buffer. */
+    private int mStart;
+    /** The end of the data read into the buffer. */
+    private int mEnd;
+
+    private int mType;
+    private int mOffset;
+    private int mLength;
+
+    public FrameReader(InputStream input) {
+        this(input, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * @param input The stream to read frames from.
+     * @param maxFrameSize The largest payload to accept, in bytes.
+     */
+    public FrameReader(InputStream input, int maxFrameSize) {
+        mInput = input;
+        mMaxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Reads the next frame, blocking until it has been fully received.
+     * @return true if a frame was read, or false if the stream ended cleanly between frames.
+     * @throws EOFException if the stream ended partway through a frame.
+     * @throws ProtocolException if the frame's length is negative or exceeds the maximum.
+     * @throws IOException if reading from the stream fails.
+     */
+    public boolean next() throws IOException {
+        if (!fill(HEADER_SIZE)) {
+            if (mEnd == mStart)
+                return false;
+            throw new EOFException("Stream ended in a frame header");
+        }
+        final byte[] buffer = mBuffer;
+        final int type = (buffer[mStart] & 0xFF) << 8 | (buffer[mStart + 1] & 0xFF);
+        final int length = (buffer[mStart + 2] & 0xFF) << 24 | (buffer[mStart + 3] & 0xFF) << 16 |
+                (buffer[mStart + 4] & 0xFF) << 8 | (buffer[mStart + 5] & 0xFF);
+        if (length < 0 || length > mMaxFrameSize) {
+            throw new ProtocolException("Frame length " + length + " exceeds maximum of " +
+                    mMaxFrameSize);
+        }
+        if (!fill(HEADER_SIZE + length)) {
+            throw new EOFException("Stream ended in a frame of " + length + " bytes");
+        }
+        // fill() may have moved the data, so take offsets afterwards.
+        mType = type;
+        mOffset = mStart + HEADER_SIZE;
+        mLength = length;
+        mStart = mOffset + length;
+        return true;
+    }
+
+    /**
+     * Reads from the stream until at least the given number of unconsumed bytes are buffered,
+     * compacting or growing the buffer as needed.
+     * @return false if the stream ended first.
+     */
+    private boolean fill(int required) throws IOException {
+        if (mEnd - mStart >= required)
+            return true;
+        if (mStart + required > mBuffer.length) {
+            final int buffered = mEnd - mStart;
+            byte[] target = mBuffer;
+            if (required > mBuffer.length) {
+                target = new byte[Math.max(required, Math.min(mBuffer.length * 2,
+                        mMaxFrameSize + HEADER_SIZE))];
+            }
+            System.arraycopy(mBuffer, mStart, target, 0, buffered);
+            mBuffer = target;
+            mStart = 0;
+            mEnd = buffered;
+        }
+        while (mEnd - mStart < required) {
+            final int read = mInput.read(mBuffer, mEnd, mBuffer.length - mEnd);
+            if (read < 0)
+                return false;
+            mEnd += read;
+        }
+        return true;
+    }
+
+    /**
+     * @return The type of the current frame, as the ordinal of its {@link JumbleTCPMessageType}.
+     *         Not validated; servers newer than this client may send unknown types.
+     */
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * @return The buffer holding the current frame's payload. Only valid until the next frame is
+     *         read.
+     */
+    public byte[] getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * @return The offset of the current frame's payload in {@link #getBuffer()}.
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return The length of the current frame's payload.
+     */
+    public int getLength() {
+        return mLength;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Batches Mumble TCP frames into a single write per batch.
+ *
+ * Producers append frames (a 2 byte type, a 4 byte length and the payload) to a pending buffer
+ * from any thread. A single writer thread in {@link #drain()} swaps the pending buffer for a
+ * second, spare buffer and writes everything accumulated in one call, so that a TLS stream
+ * sends as few records as possible. Both buffers are reused for the life of the writer.
+ *
+ * Frames queued while a write is in progress are always batched together. With a non-zero flush
+ * deadline, the writer also holds a batch back for up to that long to gather more frames, unless
+ * it has already filled a TLS record.
+ */
+public class FrameWriter {
+    /** The size of the type and length prefix of each frame. */
+    public static final int HEADER_SIZE = 6;
+    /** The largest TLS record payload. Holding a batch larger than this back gains nothing. */
+    public static final int FLUSH_THRESHOLD = 16384;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final OutputStream mOutput;
+    private final Object mLock = new Object();
+    private byte[] mPending = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] mWriting = new byte[INITIAL_BUFFER_SIZE];
+    private int mPendingLength;
+    private long mBatchStartTime;
+    private long mFlushDeadline;
+    private boolean mClosed;
+
+    private long mFrameCount;
+    private long mBatchCount;
+
+    /**
+     * @param output The stream to write batches to. Only written to from {@link #drain()}.
+     */
+    public FrameWriter(OutputStream output) {
+        mOutput = output;
+    }
+
+    /**
+     * Sets how long to hold a batch back, waiting for more frames.
+     * @param deadline The maximum delay in microseconds added to a frame, or 0 to only batch
+     *                 frames queued while a write is in progress.
+     */
+    public void setFlushDeadline(long deadline) {
+        synchronized (mLock) {
+            mFlushDeadline = Math.max(0, deadline) * 1000;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Queues a protobuf message, serializing it directly into the pending buffer.
+     * @param type The message type, as the ordinal of its {@link JumbleTCPMessageType}.
+     * @param message The message to queue.
+     * @return false if the writer has been closed.
+     */
+    public boolean write(int type, Message message) {
+        final int length = message.getSerializedSize();
+        synchronized (mLock) {
+            if (mClosed)
+                return false;
+            final int offset = reserve(type, length);
+            try {
+                final CodedOutputStream output = CodedOutputStream.newInstance(mPending, offset, length);
+                message.writeTo(output);
+                output.checkNoSpaceLeft();
+            } catch (IOException e) {
+                // Only thrown if the message's size changed between calls; drop it.
+                mPendingLength = offset - HEADER_SIZE;
+                throw new IllegalStateException("Message size changed during serialization", e);
+            }
+            commit(offset + length);
+            return true;
+        }
+    }
+
+    /**
+     * Queues a frame with a raw payload, such as tunnelled voice.
+     * @param type The message type, as the ordinal of its {@link JumbleTCPMessageType}.
+     * @param data The payload.
+     * @param length The length of the payload.
+     * @return false if the writer has been closed.
+     */
+    public boolean write(int type, byte[] data, int length) {
+        synchronized (mLock) {
+            if (mClosed)
+                return false;
+            final int offset = reserve(type, length);
+            System.arraycopy(data, 0, mPending, offset, length);
+            commit(offset + length);
+            return true;
+        }
+    }
+
+    /**
+     * Writes the frame header to the pending buffer, growing it if needed.
+     * @return The offset of the payload.
+     */
+    private int reserve(int type, int length) {
+        final int required = mPendingLength + HEADER_SIZE + length;
+        if (required > mPending.length) {
+            final byte[] grown = new byte[Math.max(required, mPending.length * 2)];
+            System.arraycopy(mPending, 0, grown, 0, mPendingLength);
+            mPending = grown;
+        }
+        int offset = mPendingLength;
+        mPending[offset++] = (byte) (type >> 8);
+        mPending[offset++] = (byte) type;
+        mPending[offset++] = (byte) (length >> 24);
+        mPending[offset++] = (byte) (length >> 16);
+        mPending[offset++] = (byte) (length >> 8);
+        mPending[offset++] = (byte) length;
+        return offset;
+    }
+
+    private void commit(int end) {
+        if (mPendingLength == 0) {
+            mBatchStartTime = System.nanoTime();
+            mLock.notifyAll();
+        } else if (mPendingLength < FLUSH_THRESHOLD && end >= FLUSH_THRESHOLD) {
+            mLock.notifyAll();
+        }
+        mPendingLength = end;
+        mFrameCount++;
+    }
+
+    /**
+     * Writes batches until the writer is closed and all queued frames have been written.
+     * Should be called from a single, dedicated thread.
+     * @throws IOException if writing to the stream fails.
+     * @throws InterruptedException if the thread is interrupted while waiting for frames.
+     */
+    public void drain() throws IOException, InterruptedException {
+        while (true) {
+            final int length;
+            synchronized (mLock) {
+                while (!mClosed && mPendingLength == 0) {
+                    mLock.wait();
+                }
+                if (mPendingLength == 0)
+                    return;
+                while (!mClosed && mFlushDeadline > 0 && mPendingLength < FLUSH_THRESHOLD) {
+                    final long remaining = mBatchStartTime + mFlushDeadline - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+                    mLock.wait(remaining / 1000000, (int) (remaining % 1000000));
+                }
+                final byte[] batch = mPending;
+                mPending = mWriting;
+                mWriting = batch;
+                length = mPendingLength;
+                mPendingLength = 0;
+                mBatchCount++;
+            }
+            mOutput.write(mWriting, 0, length);
+            mOutput.flush();
+        }
+    }
+
+    /**
+     * Stops accepting frames. {@link #drain()} returns once the frames already queued are written.
+     */
+    public void close() {
+        synchronized (mLock) {
+            mClosed = true;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of frames queued so far.
+     */
+    public long getFrameCount() {
+        synchronized (mLock) {
+            return mFrameCount;
+        }
+    }
+
+    /**
+     * @return The number of batches handed to the stream so far.
+     */
+    public long getBatchCount() {
+        synchronized (mLock) {
+            return mBatchCount;
+        }
+    }
+}
@@ -17,11 +17,8 @@
 
 package com.morlunk.jumble.net;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.util.Log;
-
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.morlunk.jumble.Constants;
@@ -31,6 +28,9 @@ import com.morlunk.jumble.protobuf.Mumble;
 import com.morlunk.jumble.protocol.JumbleTCPMessageListener;
 import com.morlunk.jumble.protocol.JumbleUDPMessageListener;
 import com.morlunk.jumble.util.JumbleException;
+import com.morlunk.jumble.util.JumbleLog;
+import com.morlunk.jumble.util.LatencyHistogram;
+import com.morlunk.jumble.util.SerialExecutor;
 
 import org.spongycastle.jce.provider.BouncyCastleProvider;
 
@@ -48,15 +48,18 @@ import java.security.NoSuchProviderException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class JumbleConnection implements JumbleTCP.TCPConnectionListener, JumbleUDP.UDPConnectionListener {
 
@@ -71,6 +74,10 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         UNLOGGED_MESSAGES.add(JumbleTCPMessageType.UDPTunnel);
         UNLOGGED_MESSAGES.add(JumbleTCPMessageType.Ping);
     }
+
+    /** Cached to avoid cloning the values array for every datagram. */
+    private static final JumbleUDPMessageType[] UDP_MESSAGE_TYPES = JumbleUDPMessageType.values();
+
     private JumbleConnectionListener mListener;
 
     // Tor connection details
@@ -86,15 +93,21 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
 
     // Threading
     private ScheduledExecutorService mPingExecutorService;
-    private Handler mMainHandler;
+    /** Runs listener callbacks and message dispatch. Referred to as the main thread below. */
+    private final Executor mCallbackExecutor;
 
     // Networking and protocols
     private JumbleTCP mTCP;
-    private JumbleUDP mUDP;
+    private volatile JumbleUDP mUDP;
     private ScheduledFuture mPingTask;
-    private boolean mUsingUDP = true;
+    private volatile boolean mUsingUDP = true;
+    /** Decides between UDP and TCP tunnelling for voice. Only accessed on the main thread. */
+    private final UDPTransportMonitor mTransportMonitor = new UDPTransportMonitor();
     private boolean mForceTCP;
     private boolean mUseTor;
+    private long mTCPFlushDeadline;
+    private int mMaxTCPFrameSize = FrameReader.DEFAULT_MAX_FRAME_SIZE;
+    private SocketConfigurator mSocketConfigurator;
     private boolean mConnected;
     private boolean mSynchronized;
     private JumbleException mError;
@@ -103,13 +116,13 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
     private final CryptState mCryptState = new CryptState();
 
     // Latency
-    private long mLastUDPPing;
-    private long mLastTCPPing;
+    private final PingStats mUDPPingStats = new PingStats();
+    private final PingStats mTCPPingStats = new PingStats();
 
     // Server
     private String mHost;
     private int mPort;
-    private int mServerVersion;
+    private volatile int mServerVersion;
     private String mServerRelease;
     private String mServerOSName;
     private String mServerOSVersion;
@@ -123,6 +136,31 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
     private ConcurrentLinkedQueue<JumbleTCPMessageListener> mTCPHandlers = new ConcurrentLinkedQueue<JumbleTCPMessageListener>();
     private ConcurrentLinkedQueue<JumbleUDPMessageListener> mUDPHandlers = new ConcurrentLinkedQueue<JumbleUDPMessageListener>();
 
+    /** Messages parsed on the TCP receive thread, awaiting dispatch on the main thread. */
+    private final ConcurrentLinkedQueue<ParsedMessage> mParsedMessages = new ConcurrentLinkedQueue<ParsedMessage>();
+    /** Whether {@link #mDispatchRunnable} is posted or running on the main thread. */
+    private final AtomicBoolean mDispatchScheduled = new AtomicBoolean();
+
+    /**
+     * Dispatches every parsed message to the TCP handlers in order. A single runnable is posted
+     * per burst of messages, rather than one per message.
+     */
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            do {
+                ParsedMessage parsed;
+                while ((parsed = mParsedMessages.poll()) != null) {
+                    for (JumbleTCPMessageListener handler : mTCPHandlers) {
+                        broadcastTCPMessage(handler, parsed.message, parsed.type);
+                    }
+                }
+                mDispatchScheduled.set(false);
+                // Catch messages enqueued after our last poll, but before we cleared the flag.
+            } while (!mParsedMessages.isEmpty() && mDispatchScheduled.compareAndSet(false, true));
+        }
+    };
+
     /**
      * Handles packets received that are critical to the connection state.
      */
@@ -142,7 +180,7 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
             mMaxBandwidth = msg.hasMaxBandwidth() ? msg.getMaxBandwidth() : -1;
             mSynchronized = true;
 
-            mMainHandler.post(new Runnable() {
+            mCallbackExecutor.execute(new Runnable() {
                 @Override
                 public void run() {
                     mListener.onConnectionSynchronized();
@@ -221,23 +259,12 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
 
             // In microseconds
             long elapsed = getElapsed();
-            mLastTCPPing = elapsed-msg.getTimestamp();
-
-            if(((mCryptState.mUiRemoteGood == 0) || (mCryptState.mUiGood == 0)) && mUsingUDP && elapsed > 20000000) {
-                mUsingUDP = false;
-                if(!shouldForceTCP() && mListener != null) {
-                    if((mCryptState.mUiRemoteGood == 0) && (mCryptState.mUiGood == 0))
-                        mListener.onConnectionWarning("UDP packets cannot be sent to or received from the server. Switching to TCP mode.");
-                    else if(mCryptState.mUiRemoteGood == 0)
-                        mListener.onConnectionWarning("UDP packets cannot be sent to the server. Switching to TCP mode.");
-                    else
-                        mListener.onConnectionWarning("UDP packets cannot be received from the server. Switching to TCP mode.");
-                }
-            } else if (!mUsingUDP && (mCryptState.mUiRemoteGood > 3) && (mCryptState.mUiGood > 3)) {
-                mUsingUDP = true;
-                if (!shouldForceTCP() && mListener != null)
-                    mListener.onConnectionWarning("UDP packets can be sent to and received from the server. Switching back to UDP mode.");
-            }
+            mTCPPingStats.record(elapsed - msg.getTimestamp());
+
+            int packetLoss = mCryptState.sampleLossPercentage();
+            if (mListener != null)
+                mListener.onLinkStatisticsUpdated(packetLoss,
+                        isUsingUDP() ? mUDPPingStats.getLast() : mTCPPingStats.getLast());
         }
     };
 
@@ -245,7 +272,7 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
 
         @Override
         public void messageUDPPing(byte[] data) {
-//            Log.v(Constants.TAG, "IN: UDP Ping");
+//            JumbleLog.v(Constants.TAG, "IN: UDP Ping");
             byte[] timedata = new byte[8];
             System.arraycopy(data, 1, timedata, 0, 8);
             ByteBuffer buffer = ByteBuffer.allocate(8);
@@ -254,8 +281,8 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
 
             long timestamp = buffer.getLong();
             long now = getElapsed();
-            mLastUDPPing = now-timestamp;
-            // TODO refresh UDP?
+            mUDPPingStats.record(now - timestamp);
+            mTransportMonitor.onPongReceived();
         }
     };
 
@@ -267,12 +294,8 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
             long t = getElapsed();
 
             if (!shouldForceTCP()) {
-                ByteBuffer buffer = ByteBuffer.allocate(16);
-                buffer.put((byte) ((JumbleUDPMessageType.UDPPing.ordinal() << 5) & 0xFF));
-                buffer.putLong(t);
-
-                sendUDPMessage(buffer.array(), 16, true);
-//                Log.v(Constants.TAG, "OUT: UDP Ping");
+                // Keep the transport monitor on the main thread, where UDP replies arrive.
+                mCallbackExecutor.execute(mUDPPingRunnable);
             }
 
             Mumble.Ping.Builder pb = Mumble.Ping.newBuilder();
@@ -281,11 +304,52 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
             pb.setLate(mCryptState.mUiLate);
             pb.setLost(mCryptState.mUiLost);
             pb.setResync(mCryptState.mUiResync);
-            // TODO accumulate stats and send with ping
+            // The server expects round trip times in milliseconds.
+            pb.setUdpPackets(mUDPPingStats.getPackets());
+            pb.setTcpPackets(mTCPPingStats.getPackets());
+            pb.setUdpPingAvg((float) (mUDPPingStats.getAverage() / 1000));
+            pb.setUdpPingVar((float) (mUDPPingStats.getVariance() / 1000000));
+            pb.setTcpPingAvg((float) (mTCPPingStats.getAverage() / 1000));
+            pb.setTcpPingVar((float) (mTCPPingStats.getVariance() / 1000000));
             sendTCPMessage(pb.build(), JumbleTCPMessageType.Ping);
         }
     };
 
+    /**
+     * Probes UDP with a ping, then lets the transport monitor restart a failed socket or switch
+     * voice between UDP and TCP. Pings are sent even while tunnelling so that UDP can recover.
+     */
+    private Runnable mUDPPingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mConnected || shouldForceTCP()) return;
+            long t = getElapsed();
+
+            if (mTransportMonitor.shouldRestartSocket(t)) {
+                JumbleLog.i(Constants.TAG, "Restarting UDP connection");
+                mUDP = new JumbleUDP(mCryptState, JumbleConnection.this, mCallbackExecutor);
+                mUDP.connect(mHost, mPort);
+                mTransportMonitor.onSocketRestarted();
+            }
+
+            if (mUDP != null && mUDP.isRunning()) {
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                buffer.put((byte) ((JumbleUDPMessageType.UDPPing.ordinal() << 5) & 0xFF));
+                buffer.putLong(t);
+
+                sendUDPMessage(buffer.array(), 16, true);
+                mTransportMonitor.onPingSent();
+//                JumbleLog.v(Constants.TAG, "OUT: UDP Ping");
+            }
+
+            if (mTransportMonitor.evaluate(t)) {
+                onTransportChanged(mTransportMonitor.isUsingUDP() ?
+                        "UDP packets can be sent to and received from the server. Switching back to UDP mode." :
+                        "UDP packets cannot be sent to or received from the server. Switching to TCP mode.");
+            }
+        }
+    };
+
     /**
      * Calculates the bandwidth required to send audio with the given parameters.
      * Includes packet overhead.
@@ -302,10 +366,13 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
 
     /**
      * Creates a new JumbleConnection object to facilitate server connections.
+     * @param callbackExecutor An executor to make listener callbacks and dispatch messages to
+     *                         handlers on. Tasks are serialized if it may run them concurrently.
+     *                         Tunnelled voice is dispatched on the receive threads.
      */
-    public JumbleConnection(JumbleConnectionListener listener) {
+    public JumbleConnection(JumbleConnectionListener listener, Executor callbackExecutor) {
         mListener = listener;
-        mMainHandler = new Handler(Looper.getMainLooper());
+        mCallbackExecutor = SerialExecutor.wrap(callbackExecutor);
         mTCPHandlers.add(mConnectionMessageHandler);
         mUDPHandlers.add(mUDPPingListener);
     }
@@ -318,6 +385,9 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         mError = null;
         mExceptionHandled = false;
         mUsingUDP = !shouldForceTCP();
+        mTransportMonitor.reset(mUsingUDP);
+        mUDPPingStats.reset();
+        mTCPPingStats.reset();
         mStartTimestamp = System.nanoTime();
 
         mPingExecutorService = Executors.newSingleThreadScheduledExecutor();
@@ -325,8 +395,11 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         JumbleSSLSocketFactory socketFactory = createSocketFactory();
 
         try {
-            mTCP = new JumbleTCP(socketFactory);
+            mTCP = new JumbleTCP(socketFactory, mCallbackExecutor);
             mTCP.setTCPConnectionListener(this);
+            mTCP.setFlushDeadline(mTCPFlushDeadline);
+            mTCP.setMaxFrameSize(mMaxTCPFrameSize);
+            mTCP.setSocketConfigurator(mSocketConfigurator);
             mTCP.connect(host, port, mUseTor);
             // UDP thread is formally started after TCP connection.
         } catch (ConnectException e) {
@@ -384,6 +457,35 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         mForceTCP = forceTcp;
     }
 
+    /**
+     * Set how long outgoing TCP messages may be held back to be sent in a single write with
+     * later messages. Takes effect immediately if connected.
+     * @param deadline The maximum delay in microseconds, or 0 to only batch messages queued
+     *                 while a previous write is in progress.
+     */
+    public void setTCPFlushDeadline(long deadline) {
+        mTCPFlushDeadline = deadline;
+        if (mTCP != null) mTCP.setFlushDeadline(deadline);
+    }
+
+    /**
+     * Set the largest TCP message to accept from the server. A larger message is treated as a
+     * protocol error and drops the connection. Takes effect on the next connection.
+     * @param maxFrameSize The maximum message length in bytes.
+     */
+    public void setMaxTCPFrameSize(int maxFrameSize) {
+        mMaxTCPFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Set a hook to apply platform specific settings to the TLS socket before its handshake.
+     * Takes effect on the next connection.
+     * @param configurator The configurator, or null to use the socket as created.
+     */
+    public void setSocketConfigurator(SocketConfigurator configurator) {
+        mSocketConfigurator = configurator;
+    }
+
     /**
      * Sets the PKCS12 certificate data and password to use when authenticating.
      * @param certificate A PKCS12-formatted certificate.
@@ -427,13 +529,60 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
     public long getTCPLatency() throws NotConnectedException {
         if (!isConnected())
             throw new NotConnectedException();
-        return mLastTCPPing;
+        return mTCPPingStats.getLast();
     }
 
     public long getUDPLatency() throws NotConnectedException {
         if (!isConnected())
             throw new NotConnectedException();
-        return mLastUDPPing;
+        return mUDPPingStats.getLast();
+    }
+
+    /**
+     * @return Rolling round trip time statistics for TCP pings.
+     */
+    public PingStats getTCPPingStats() {
+        return mTCPPingStats;
+    }
+
+    /**
+     * @return Rolling round trip time statistics for UDP pings.
+     */
+    public PingStats getUDPPingStats() {
+        return mUDPPingStats;
+    }
+
+    /**
+     * @return Delays from receiving a UDP voice datagram to its delivery on the receive thread,
+     *         or null if no UDP connection has been made.
+     */
+    public LatencyHistogram getUDPVoiceDispatchLatency() {
+        final JumbleUDP udp = mUDP;
+        return udp != null ? udp.getVoiceDispatchLatency() : null;
+    }
+
+    /**
+     * @return Delays from receiving a UDP control datagram to its delivery on the callback
+     *         executor, or null if no UDP connection has been made.
+     */
+    public LatencyHistogram getUDPControlDispatchLatency() {
+        final JumbleUDP udp = mUDP;
+        return udp != null ? udp.getControlDispatchLatency() : null;
+    }
+
+    /**
+     * @return true if voice is currently sent over UDP, false if tunnelled over TCP.
+     */
+    public boolean isUsingUDP() {
+        return mUsingUDP && !shouldForceTCP();
+    }
+
+    /**
+     * Returns the monitor deciding between UDP and TCP for voice, with its switch and ping
+     * counters. Should only be accessed on the main thread.
+     */
+    public UDPTransportMonitor getTransportMonitor() {
+        return mTransportMonitor;
     }
 
     public int getSession() throws NotSynchronizedException {
@@ -572,11 +721,25 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
             throw new IllegalArgumentException("Requested length " + length + " is longer than " +
                     "available data length " + data.length + "!");
         }
-        if (mServerVersion == 0x10202) applyLegacyCodecWorkaround(data);
+        if (mServerVersion == 0x10202) applyLegacyCodecWorkaround(data, 0);
         if (!force && (shouldForceTCP() || !mUsingUDP))
             mTCP.sendMessage(data, length, JumbleTCPMessageType.UDPTunnel);
-        else if (!shouldForceTCP())
-            mUDP.sendMessage(data, length);
+        else if (!shouldForceTCP()) {
+            JumbleUDP udp = mUDP;
+            if (udp != null) udp.sendMessage(data, length);
+        }
+    }
+
+    /**
+     * Applies a transport switch made by the transport monitor, and notifies the listener.
+     * @param warning A user-readable description of the switch.
+     */
+    private void onTransportChanged(String warning) {
+        mUsingUDP = mTransportMonitor.isUsingUDP();
+        if (mListener != null) {
+            mListener.onConnectionWarning(warning);
+            mListener.onTransportChanged(mUsingUDP);
+        }
     }
 
     /**
@@ -600,20 +763,41 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         sendTCPMessage(ab.build(), JumbleTCPMessageType.Authenticate);
     }
 
+    /**
+     * Parses a TCP message on the TCP receive thread, and queues it for dispatch to the handlers
+     * on the main thread. Tunnelled voice bypasses the main thread entirely.
+     */
     @Override
-    public void onTCPMessageReceived(JumbleTCPMessageType type, int length, byte[] data) {
+    public void onTCPMessageReceived(JumbleTCPMessageType type, byte[] data, int offset, final int length) {
         if(!UNLOGGED_MESSAGES.contains(type))
-            Log.v(Constants.TAG, "IN: "+type);
+            JumbleLog.v(Constants.TAG, "IN: "+type);
 
         if(type == JumbleTCPMessageType.UDPTunnel) {
-            onUDPDataReceived(data);
+            if (length < 1) return;
+            int dataType = data[offset] >> 5 & 0x7;
+            if (dataType == JumbleUDPMessageType.UDPPing.ordinal()) {
+                // The receive buffer is reused, so take a copy to hand to the main thread.
+                final byte[] ping = Arrays.copyOfRange(data, offset, offset + length);
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onUDPDataReceived(ping, 0, length);
+                    }
+                });
+            } else {
+                // Voice is decoded straight out of the receive buffer.
+                onUDPDataReceived(data, offset, length);
+            }
             return;
         }
 
         try {
-            Message message = getProtobufMessage(data, type);
-            for(JumbleTCPMessageListener handler : mTCPHandlers) {
-                broadcastTCPMessage(handler, message, type);
+            // Without aliasing enabled, bytes fields are copied out of the receive buffer.
+            CodedInputStream input = CodedInputStream.newInstance(data, offset, length);
+            Message message = getProtobufMessage(input, type);
+            mParsedMessages.add(new ParsedMessage(type, message));
+            if (mDispatchScheduled.compareAndSet(false, true)) {
+                mCallbackExecutor.execute(mDispatchRunnable);
             }
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
@@ -626,7 +810,7 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
 
         // Attempt to start UDP thread once connected.
         if (!shouldForceTCP()) {
-            mUDP = new JumbleUDP(mCryptState, this, mMainHandler);
+            mUDP = new JumbleUDP(mCryptState, this, mCallbackExecutor);
             mUDP.connect(mHost, mPort);
         }
 
@@ -653,24 +837,31 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         disconnect();
     }
 
+    /**
+     * Dispatches a datagram to the registered UDP handlers. Voice datagrams are dispatched
+     * directly on the UDP or TCP receive thread; all other messages arrive on the main thread,
+     * starting at offset 0.
+     */
     @Override
-    public void onUDPDataReceived(byte[] data) {
-        if(mServerVersion == 0x10202) applyLegacyCodecWorkaround(data);
-        int dataType = data[0] >> 5 & 0x7;
-        if(dataType < 0 || dataType > JumbleUDPMessageType.values().length - 1) return; // Discard invalid data types
-        JumbleUDPMessageType udpDataType = JumbleUDPMessageType.values()[dataType];
+    public void onUDPDataReceived(byte[] data, int offset, int length) {
+        if(mServerVersion == 0x10202) applyLegacyCodecWorkaround(data, offset);
+        int dataType = data[offset] >> 5 & 0x7;
+        if(dataType < 0 || dataType > UDP_MESSAGE_TYPES.length - 1) return; // Discard invalid data types
+        JumbleUDPMessageType udpDataType = UDP_MESSAGE_TYPES[dataType];
 
         for(JumbleUDPMessageListener handler : mUDPHandlers) {
-            broadcastUDPMessage(handler, data, udpDataType);
+            broadcastUDPMessage(handler, data, offset, length, udpDataType);
         }
     }
 
     @Override
     public void onUDPConnectionError(Exception e) {
         e.printStackTrace();
-        if(mListener != null) mListener.onConnectionWarning("UDP connection thread failed. Falling back to TCP.");
-        enableForceTCP();
-        // TODO recover UDP thread automagically
+        if (!mConnected) return;
+        if (mTransportMonitor.onSocketError(getElapsed())) {
+            enableForceTCP();
+            onTransportChanged("UDP connection thread failed. Falling back to TCP.");
+        }
     }
 
     @Override
@@ -683,82 +874,82 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
     /**
      * Workaround for 1.2.2 servers that report the old types for CELT alpha and beta.
      * @param data The UDP data to be patched, if we're on a 1.2.2 server.
+     * @param offset The offset of the datagram in data.
      */
-    private void applyLegacyCodecWorkaround(byte[] data) {
-        JumbleUDPMessageType dataType = JumbleUDPMessageType.values()[data[0] >> 5 & 0x7];
+    private void applyLegacyCodecWorkaround(byte[] data, int offset) {
+        JumbleUDPMessageType dataType = UDP_MESSAGE_TYPES[data[offset] >> 5 & 0x7];
         if(dataType == JumbleUDPMessageType.UDPVoiceCELTBeta)
             dataType = JumbleUDPMessageType.UDPVoiceCELTAlpha;
         else if(dataType == JumbleUDPMessageType.UDPVoiceCELTAlpha)
             dataType = JumbleUDPMessageType.UDPVoiceCELTBeta;
-        data[0] = (byte) ((dataType.ordinal() << 5) & 0xFF);
+        data[offset] = (byte) ((dataType.ordinal() << 5) & 0xFF);
     }
 
     /**
      * Gets the protobuf message from the passed TCP data.
      * We isolate this so we can first parse the message and then inform all handlers. Saves processing power.
-     * @param data Raw protobuf TCP data.
+     * @param input Raw protobuf TCP data.
      * @param messageType Type of the message.
      * @return The parsed protobuf message.
      * @throws InvalidProtocolBufferException Called if the messageType does not match the data.
      */
-    public static Message getProtobufMessage(byte[] data, JumbleTCPMessageType messageType) throws InvalidProtocolBufferException {
+    public static Message getProtobufMessage(CodedInputStream input, JumbleTCPMessageType messageType) throws InvalidProtocolBufferException {
         switch (messageType) {
             case Authenticate:
-                return Mumble.Authenticate.parseFrom(data);
+                return Mumble.Authenticate.parser().parseFrom(input);
             case BanList:
-                return Mumble.BanList.parseFrom(data);
+                return Mumble.BanList.parser().parseFrom(input);
             case Reject:
-                return Mumble.Reject.parseFrom(data);
+                return Mumble.Reject.parser().parseFrom(input);
             case ServerSync:
-                return Mumble.ServerSync.parseFrom(data);
+                return Mumble.ServerSync.parser().parseFrom(input);
             case ServerConfig:
-                return Mumble.ServerConfig.parseFrom(data);
+                return Mumble.ServerConfig.parser().parseFrom(input);
             case PermissionDenied:
-                return Mumble.PermissionDenied.parseFrom(data);
+                return Mumble.PermissionDenied.parser().parseFrom(input);
             case UDPTunnel:
-                return Mumble.UDPTunnel.parseFrom(data);
+                return Mumble.UDPTunnel.parser().parseFrom(input);
             case UserState:
-                return Mumble.UserState.parseFrom(data);
+                return Mumble.UserState.parser().parseFrom(input);
             case UserRemove:
-                return Mumble.UserRemove.parseFrom(data);
+                return Mumble.UserRemove.parser().parseFrom(input);
             case ChannelState:
-                return Mumble.ChannelState.parseFrom(data);
+                return Mumble.ChannelState.parser().parseFrom(input);
             case ChannelRemove:
-                return Mumble.ChannelRemove.parseFrom(data);
+                return Mumble.ChannelRemove.parser().parseFrom(input);
             case TextMessage:
-                return Mumble.TextMessage.parseFrom(data);
+                return Mumble.TextMessage.parser().parseFrom(input);
             case ACL:
-                return Mumble.ACL.parseFrom(data);
+                return Mumble.ACL.parser().parseFrom(input);
             case QueryUsers:
-                return Mumble.QueryUsers.parseFrom(data);
+                return Mumble.QueryUsers.parser().parseFrom(input);
             case Ping:
-                return Mumble.Ping.parseFrom(data);
+                return Mumble.Ping.parser().parseFrom(input);
             case CryptSetup:
-                return Mumble.CryptSetup.parseFrom(data);
+                return Mumble.CryptSetup.parser().parseFrom(input);
             case ContextAction:
-                return Mumble.ContextAction.parseFrom(data);
+                return Mumble.ContextAction.parser().parseFrom(input);
             case ContextActionModify:
-                return Mumble.ContextActionModify.parseFrom(data);
+                return Mumble.ContextActionModify.parser().parseFrom(input);
             case Version:
-                return Mumble.Version.parseFrom(data);
+                return Mumble.Version.parser().parseFrom(input);
             case UserList:
-                return Mumble.UserList.parseFrom(data);
+                return Mumble.UserList.parser().parseFrom(input);
             case PermissionQuery:
-                return Mumble.PermissionQuery.parseFrom(data);
+                return Mumble.PermissionQuery.parser().parseFrom(input);
             case CodecVersion:
-                return Mumble.CodecVersion.parseFrom(data);
+                return Mumble.CodecVersion.parser().parseFrom(input);
             case UserStats:
-                return Mumble.UserStats.parseFrom(data);
+                return Mumble.UserStats.parser().parseFrom(input);
             case RequestBlob:
-                return Mumble.RequestBlob.parseFrom(data);
+                return Mumble.RequestBlob.parser().parseFrom(input);
             case SuggestConfig:
-                return Mumble.SuggestConfig.parseFrom(data);
+                return Mumble.SuggestConfig.parser().parseFrom(input);
             default:
                 throw new InvalidProtocolBufferException("Unknown TCP data passed.");
         }
     }
 
-
     /**
      * Reroutes TCP messages into the various responder methods of the handler.
      * @param handler Handler.
@@ -856,9 +1047,11 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
      * Reroutes UDP messages into the various responder methods of the passed handler.
      * @param handler Handler to notify.
      * @param data Raw UDP data of the message.
+     * @param offset The offset of the message in data. Must be 0 for pings.
+     * @param length The length of the message in data.
      * @param messageType The type of the message.
      */
-    public final void broadcastUDPMessage(JumbleUDPMessageListener handler, byte[] data, JumbleUDPMessageType messageType) {
+    public final void broadcastUDPMessage(JumbleUDPMessageListener handler, byte[] data, int offset, int length, JumbleUDPMessageType messageType) {
         switch (messageType) {
             case UDPPing:
                 handler.messageUDPPing(data);
@@ -867,7 +1060,7 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
             case UDPVoiceSpeex:
             case UDPVoiceCELTBeta:
             case UDPVoiceOpus:
-                handler.messageVoiceData(data, messageType);
+                handler.messageVoiceData(data, offset, length, messageType);
                 break;
         }
     }
@@ -880,6 +1073,19 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
         return mError;
     }
 
+    /**
+     * A protobuf message parsed off the main thread, awaiting dispatch.
+     */
+    private static class ParsedMessage {
+        final JumbleTCPMessageType type;
+        final Message message;
+
+        ParsedMessage(JumbleTCPMessageType type, Message message) {
+            this.type = type;
+            this.message = message;
+        }
+    }
+
     public interface JumbleConnectionListener {
         /**
          * Called when the socket to the remote server has opened.
@@ -911,5 +1117,18 @@ public class JumbleConnection implements JumbleTCP.TCPConnectionListener, Jumble
          * @param warning A user-readable warning.
          */
         public void onConnectionWarning(String warning);
+
+        /**
+         * Called after each ping exchange with the latest link statistics.
+         * @param packetLossPercentage The UDP packet loss since the last ping, from 0 to 100.
+         * @param ping The round trip time of the transport carrying voice, in microseconds.
+         */
+        public void onLinkStatisticsUpdated(int packetLossPercentage, long ping);
+
+        /**
+         * Called when voice switches between UDP and tunnelling over TCP.
+         * @param udp true if voice is now sent over UDP, false if tunnelled over TCP.
+         */
+        public void onTransportChanged(boolean udp);
     }
 }
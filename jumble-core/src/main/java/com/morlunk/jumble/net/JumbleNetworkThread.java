@@ -17,9 +17,7 @@
 
 package com.morlunk.jumble.net;
 
-import android.os.Handler;
-import android.os.Looper;
-
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -34,11 +32,14 @@ public abstract class JumbleNetworkThread implements Runnable {
     private ExecutorService mExecutor;
     private ExecutorService mSendExecutor;
     private ExecutorService mReceiveExecutor;
-    private Handler mMainHandler;
+    private final Executor mCallbackExecutor;
     private boolean mInitialized;
 
-    public JumbleNetworkThread() {
-        mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * @param callbackExecutor The executor to run {@link #executeOnMainThread(Runnable)} tasks on.
+     */
+    public JumbleNetworkThread(Executor callbackExecutor) {
+        mCallbackExecutor = callbackExecutor;
     }
 
     protected void startThreads() {
@@ -74,10 +75,6 @@ public abstract class JumbleNetworkThread implements Runnable {
     }
 
     protected void executeOnMainThread(Runnable r) {
-        mMainHandler.post(r);
-    }
-
-    protected Handler getMainHandler() {
-        return mMainHandler;
+        mCallbackExecutor.execute(r);
     }
 }
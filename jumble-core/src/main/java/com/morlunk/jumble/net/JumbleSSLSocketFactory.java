@@ -17,9 +17,8 @@
 
 package com.morlunk.jumble.net;
 
-import android.util.Log;
-
 import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.util.JumbleLog;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -61,10 +60,10 @@ public class JumbleSSLSocketFactory {
             TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
             tmf.init(trustStore);
             mTrustWrapper = new JumbleTrustManagerWrapper((X509TrustManager) tmf.getTrustManagers()[0]);
-            Log.i(Constants.TAG, "Using custom trust store " + trustStorePath + " with system trust store");
+            JumbleLog.i(Constants.TAG, "Using custom trust store " + trustStorePath + " with system trust store");
         } else {
             mTrustWrapper = new JumbleTrustManagerWrapper(null);
-            Log.i(Constants.TAG, "Using system trust store");
+            JumbleLog.i(Constants.TAG, "Using system trust store");
         }
 
         mContext.init(kmf.getKeyManagers(), new TrustManager[] { mTrustWrapper }, null);
@@ -17,43 +17,48 @@
 
 package com.morlunk.jumble.net;
 
-import android.util.Log;
-
 import com.google.protobuf.Message;
 import com.morlunk.jumble.Constants;
 import com.morlunk.jumble.util.JumbleException;
+import com.morlunk.jumble.util.JumbleLog;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.SocketException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.Executor;
 
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLSocket;
 
-import android.net.SSLCertificateSocketFactory;
-import android.os.Build;
-
 /**
  * Class to maintain and interface with the TCP connection to a Mumble server.
  * Parses Mumble protobuf packets according to the Mumble protocol specification.
  */
 public class JumbleTCP extends JumbleNetworkThread {
+    /** Cached to avoid cloning the values array for every frame. */
+    private static final JumbleTCPMessageType[] MESSAGE_TYPES = JumbleTCPMessageType.values();
+
     private final JumbleSSLSocketFactory mSocketFactory;
     private String mHost;
     private int mPort;
     private boolean mUseTor;
     private SSLSocket mTCPSocket;
-    private DataInputStream mDataInput;
-    private DataOutputStream mDataOutput;
+    private volatile FrameWriter mFrameWriter;
+    private long mFlushDeadline;
+    private int mMaxFrameSize = FrameReader.DEFAULT_MAX_FRAME_SIZE;
+    private SocketConfigurator mSocketConfigurator;
     private boolean mRunning;
     private boolean mConnected;
     private TCPConnectionListener mListener;
 
-    public JumbleTCP(JumbleSSLSocketFactory socketFactory) {
+    /**
+     * @param callbackExecutor The executor to make listener callbacks on.
+     */
+    public JumbleTCP(JumbleSSLSocketFactory socketFactory, Executor callbackExecutor) {
+        super(callbackExecutor);
         mSocketFactory = socketFactory;
     }
 
@@ -73,32 +78,75 @@ public class JumbleTCP extends JumbleNetworkThread {
         return mRunning;
     }
 
+    /**
+     * Sets the largest message the server may send. Larger messages drop the connection.
+     * Must be called before connecting.
+     * @param maxFrameSize The maximum message length in bytes.
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        mMaxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Sets a hook to configure the socket before its handshake, such as to enable SNI.
+     * Must be called before connecting.
+     * @param configurator The configurator, or null.
+     */
+    public void setSocketConfigurator(SocketConfigurator configurator) {
+        mSocketConfigurator = configurator;
+    }
+
+    /**
+     * Sets how long outgoing messages may be held back to be batched with later ones.
+     * @param deadline The maximum delay in microseconds, or 0 to only batch messages queued
+     *                 while a previous write is in progress.
+     * @see FrameWriter#setFlushDeadline(long)
+     */
+    public void setFlushDeadline(long deadline) {
+        mFlushDeadline = deadline;
+        FrameWriter writer = mFrameWriter;
+        if (writer != null) writer.setFlushDeadline(deadline);
+    }
+
     public void run() {
         mRunning = true;
         try {
             InetAddress address = InetAddress.getByName(mHost);
 
-            Log.i(Constants.TAG, "JumbleTCP: Connecting");
+            JumbleLog.i(Constants.TAG, "JumbleTCP: Connecting");
 
             if(mUseTor)
                 mTCPSocket = mSocketFactory.createTorSocket(address, mPort, JumbleConnection.TOR_HOST, JumbleConnection.TOR_PORT);
             else
                 mTCPSocket = mSocketFactory.createSocket(address, mPort);
 
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) { // SNI support requires at least API 17
-                SSLCertificateSocketFactory scsf = (SSLCertificateSocketFactory) SSLCertificateSocketFactory.getDefault(0);
-                scsf.setHostname(mTCPSocket, mHost);
-            }
+            if (mSocketConfigurator != null)
+                mSocketConfigurator.configureSocket(mTCPSocket, mHost);
 
             mTCPSocket.setKeepAlive(true);
             mTCPSocket.startHandshake();
 
-            Log.v(Constants.TAG, "JumbleTCP: Started handshake");
+            JumbleLog.v(Constants.TAG, "JumbleTCP: Started handshake");
 
-            mDataInput = new DataInputStream(mTCPSocket.getInputStream());
-            mDataOutput = new DataOutputStream(mTCPSocket.getOutputStream());
+            final FrameReader reader = new FrameReader(mTCPSocket.getInputStream(), mMaxFrameSize);
+            final FrameWriter writer = new FrameWriter(mTCPSocket.getOutputStream());
+            writer.setFlushDeadline(mFlushDeadline);
+            mFrameWriter = writer;
+            executeOnSendThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writer.drain();
+                    } catch (IOException e) {
+                        // The receive loop will see the broken socket and report it.
+                        JumbleLog.w(Constants.TAG, "JumbleTCP: Failed to write", e);
+                    } catch (InterruptedException e) {
+                        JumbleLog.w(Constants.TAG, "JumbleTCP: Writer interrupted", e);
+                    }
+                }
+            });
 
-            Log.v(Constants.TAG, "JumbleTCP: Now listening");
+            JumbleLog.v(Constants.TAG, "JumbleTCP: Now listening");
             mConnected = true;
 
             if(mListener != null) {
@@ -111,19 +159,19 @@ public class JumbleTCP extends JumbleNetworkThread {
             }
 
             while(mConnected) {
-                final short messageType = mDataInput.readShort();
-                final int messageLength = mDataInput.readInt();
-                final byte[] data = new byte[messageLength];
-                mDataInput.readFully(data);
+                if (!reader.next())
+                    throw new EOFException("Connection closed by the server");
+                final int messageType = reader.getType();
+                if (messageType >= MESSAGE_TYPES.length) {
+                    JumbleLog.w(Constants.TAG, "JumbleTCP: Skipping unknown message type " + messageType);
+                    continue;
+                }
 
-                final JumbleTCPMessageType tcpMessageType = JumbleTCPMessageType.values()[messageType];
+                final JumbleTCPMessageType tcpMessageType = MESSAGE_TYPES[messageType];
                 if (mListener != null) {
-                    executeOnMainThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            mListener.onTCPMessageReceived(tcpMessageType, messageLength, data);
-                        }
-                    });
+                    // Delivered on this thread, so that the listener can parse off the main thread.
+                    mListener.onTCPMessageReceived(tcpMessageType, reader.getBuffer(),
+                            reader.getOffset(), reader.getLength());
                 }
             }
         } catch (SocketException e) {
@@ -145,9 +193,8 @@ public class JumbleTCP extends JumbleNetworkThread {
             error("An error occurred when communicating with the host", e);
         } finally {
             mConnected = false;
+            if (mFrameWriter != null) mFrameWriter.close();
             try {
-                if (mDataInput != null) mDataInput.close();
-                if (mDataOutput != null) mDataOutput.close();
                 if (mTCPSocket != null) mTCPSocket.close();
             } catch (IOException e) {
                 e.printStackTrace();
@@ -165,48 +212,36 @@ public class JumbleTCP extends JumbleNetworkThread {
     }
 
     /**
-     * Attempts to send a protobuf message over TCP. Thread-safe, executes on a single threaded executor.
+     * Queues a protobuf message to be sent over TCP. Thread-safe; the message is serialized
+     * immediately and written in a batch on the send thread.
      * @param message The message to send.
      * @param messageType The type of the message to send.
      */
     public void sendMessage(final Message message, final JumbleTCPMessageType messageType) {
-        executeOnSendThread(new Runnable() {
-            @Override
-            public void run() {
-                if (!JumbleConnection.UNLOGGED_MESSAGES.contains(messageType))
-                    Log.v(Constants.TAG, "OUT: " + messageType);
-                try {
-                    mDataOutput.writeShort(messageType.ordinal());
-                    mDataOutput.writeInt(message.getSerializedSize());
-                    message.writeTo(mDataOutput);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    // TODO handle
-                }
-            }
-        });
+        FrameWriter writer = mFrameWriter;
+        if (writer == null || !writer.write(messageType.ordinal(), message)) {
+            JumbleLog.w(Constants.TAG, "JumbleTCP: Dropped " + messageType + ", not connected");
+            return;
+        }
+        if (!JumbleConnection.UNLOGGED_MESSAGES.contains(messageType))
+            JumbleLog.v(Constants.TAG, "OUT: " + messageType);
     }
+
     /**
-     * Attempts to send a protobuf message over TCP. Thread-safe, executes on a single threaded executor.
+     * Queues raw data to be sent over TCP. Thread-safe; the data is copied immediately and
+     * written in a batch on the send thread.
      * @param message The data to send.
      * @param length The length of the byte array.
      * @param messageType The type of the message to send.
      */
     public void sendMessage(final byte[] message, final int length, final JumbleTCPMessageType messageType) {
-        executeOnSendThread(new Runnable() {
-            @Override
-            public void run() {
-                if (!JumbleConnection.UNLOGGED_MESSAGES.contains(messageType))
-                    Log.v(Constants.TAG, "OUT: " + messageType);
-                try {
-                    mDataOutput.writeShort(messageType.ordinal());
-                    mDataOutput.writeInt(length);
-                    mDataOutput.write(message, 0, length);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+        FrameWriter writer = mFrameWriter;
+        if (writer == null || !writer.write(messageType.ordinal(), message, length)) {
+            JumbleLog.w(Constants.TAG, "JumbleTCP: Dropped " + messageType + ", not connected");
+            return;
+        }
+        if (!JumbleConnection.UNLOGGED_MESSAGES.contains(messageType))
+            JumbleLog.v(Constants.TAG, "OUT: " + messageType);
     }
 
     /**
@@ -220,6 +255,8 @@ public class JumbleTCP extends JumbleNetworkThread {
         if (!mRunning) return;
 
         mRunning = false;
+        // Let the writer finish the queued messages; the socket is closed after it returns.
+        if (mFrameWriter != null) mFrameWriter.close();
         executeOnSendThread(new Runnable() {
             @Override
             public void run() {
@@ -256,11 +293,16 @@ public class JumbleTCP extends JumbleNetworkThread {
             });
     }
 
+    /**
+     * Connection state callbacks are made on the main thread.
+     * {@link #onTCPMessageReceived} is called on the TCP receive thread, with a slice of a reused
+     * receive buffer that must not be retained after it returns.
+     */
     public interface TCPConnectionListener {
         public void onTCPConnectionEstablished();
         public void onTLSHandshakeFailed(X509Certificate[] chain);
         public void onTCPConnectionFailed(JumbleException e);
         public void onTCPConnectionDisconnect();
-        public void onTCPMessageReceived(JumbleTCPMessageType type, int length, byte[] data);
+        public void onTCPMessageReceived(JumbleTCPMessageType type, byte[] data, int offset, int length);
     }
 }
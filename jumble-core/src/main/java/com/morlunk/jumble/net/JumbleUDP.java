@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.util.JumbleLog;
+import com.morlunk.jumble.util.LatencyHistogram;
+import com.morlunk.jumble.util.SPSCQueue;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+
+/**
+ * Class to maintain and receive packets from the UDP connection to a Mumble server.
+ * Public interface is not thread safe.
+ */
+public class JumbleUDP implements Runnable {
+    private static final String TAG = "JumbleUDP";
+
+    private static final int BUFFER_SIZE = 2048;
+    /** The number of datagrams available to be queued for sending at once. */
+    private static final int SEND_POOL_SIZE = 32;
+    /** The number of received datagrams that may await dispatch on the callback executor. */
+    private static final int RECEIVE_POOL_SIZE = 64;
+    private static final int MESSAGE_TYPE_COUNT = JumbleUDPMessageType.values().length;
+    private final CryptState mCryptState;
+
+    private DatagramSocket mUDPSocket;
+    private UDPConnectionListener mListener;
+    private String mHost;
+    private int mPort;
+    private InetAddress mResolvedHost;
+    private boolean mConnected;
+
+    /** Main datagram thread hosting this runnable. */
+    private final Thread mDatagramThread;
+
+    /** Thread draining the send queue, or null if not yet started. */
+    private volatile Thread mOutgoingThread;
+
+    /** Executor to invoke listener callbacks on. */
+    private final Executor mCallbackExecutor;
+
+    /** Bounded queue of outgoing packets to be sent. Produced by sendMessage. */
+    private final SPSCQueue<DatagramPacket> mSendQueue;
+
+    /** Datagrams to encrypt outgoing packets into, recycled by the outgoing consumer. */
+    private final PacketPool mSendPool;
+
+    /** Datagrams to receive into. Control messages are recycled once the listener has been invoked. */
+    private final PacketPool mReceivePool;
+
+    /**
+     * Time from receipt of voice datagrams to entry into the listener on the receive thread,
+     * including decryption.
+     */
+    private final LatencyHistogram mVoiceDispatchLatency = new LatencyHistogram();
+
+    /**
+     * Time from receipt of control datagrams to entry into the listener on the callback executor,
+     * including decryption and the executor hop.
+     */
+    private final LatencyHistogram mControlDispatchLatency = new LatencyHistogram();
+
+    private int mDroppedSendCount;
+
+    /**
+     * Sets up a new UDP connection context.
+     * @param cryptState Cryptographic state provider.
+     * @param listener Callback target. Messages will be delivered on the callback executor given.
+     * @param callbackExecutor Executor to run listener invocations on. Must run tasks serially, as
+     *                         control datagrams are recycled into the receive pool from its tasks.
+     */
+    public JumbleUDP(@NotNull CryptState cryptState, @NotNull UDPConnectionListener listener,
+                     @NotNull Executor callbackExecutor) {
+        mCryptState = cryptState;
+        mListener = listener;
+        mCallbackExecutor = callbackExecutor;
+        mDatagramThread = new Thread(this);
+        mSendPool = new PacketPool(SEND_POOL_SIZE, BUFFER_SIZE);
+        mSendQueue = new SPSCQueue<>(mSendPool.getCapacity());
+        mReceivePool = new PacketPool(RECEIVE_POOL_SIZE, BUFFER_SIZE);
+    }
+
+    public void connect(@NotNull String host, @NotNull int port) {
+        mHost = host;
+        mPort = port;
+        mDatagramThread.start();
+    }
+
+    public boolean isRunning() {
+        return mConnected;
+    }
+
+    @Override
+    public void run() {
+        mConnected = true;
+        try {
+            mResolvedHost = InetAddress.getByName(mHost);
+            mUDPSocket = new DatagramSocket();
+
+            mUDPSocket.connect(mResolvedHost, mPort);
+            JumbleLog.d(TAG, "Created socket");
+
+            // Start outgoing consumer once the UDP socket is open, as a child thread.
+            final OutgoingConsumer outgoingConsumer = new OutgoingConsumer(mUDPSocket, mSendQueue, mSendPool);
+            mOutgoingThread = new Thread(outgoingConsumer);
+            mOutgoingThread.start();
+
+            DatagramPacket packet = null;
+            while (mConnected) {
+                if (packet == null) {
+                    packet = mReceivePool.borrow();
+                    if (packet == null) {
+                        // The callback executor is falling behind; don't stall the socket.
+                        packet = new DatagramPacket(new byte[BUFFER_SIZE], BUFFER_SIZE);
+                    }
+                } else {
+                    packet.setLength(BUFFER_SIZE);
+                }
+                mUDPSocket.receive(packet);
+                final long receivedTime = System.nanoTime();
+                final byte[] data = packet.getData();
+                final int length = packet.getLength();
+
+                if (!mCryptState.isValid()) {
+                    JumbleLog.d(TAG, "CryptState invalid, discarding packet");
+                    continue;
+                }
+                if (length < 5) {
+                    JumbleLog.d(TAG, "Packet too short, discarding");
+                    continue;
+                }
+
+                try {
+                    // Decrypt in place, shifting the plaintext to the start of the buffer.
+                    final int plainLength = mCryptState.decrypt(data, 0, length, data, 0);
+
+                    if (mListener != null) {
+                        if (plainLength >= 0 && isVoice(data[0])) {
+                            // Voice takes the fast path, bypassing the callback executor. The
+                            // buffer is reused as soon as the listener returns.
+                            dispatch(mVoiceDispatchLatency, receivedTime, data, plainLength);
+                        } else if (plainLength >= 0) {
+                            final DatagramPacket received = packet;
+                            packet = null; // Owned by the callback until recycled.
+                            mCallbackExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        dispatch(mControlDispatchLatency, receivedTime,
+                                                received.getData(), plainLength);
+                                    } finally {
+                                        mReceivePool.recycle(received);
+                                    }
+                                }
+                            });
+                        } else if (mCryptState.getLastGoodElapsed() > 5000000 &&
+                                mCryptState.getLastRequestElapsed() > 5000000) {
+                            mCryptState.resetLastRequestTime();
+                            mCallbackExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    mListener.resyncCryptState();
+                                }
+                            });
+                            JumbleLog.d(TAG, "Packet failed to decrypt, discarding and requesting crypt state resync");
+                        } else {
+                            JumbleLog.d(TAG, "Packet failed to decrypt, discarding");
+                        }
+                    }
+                } catch (BadPaddingException | IllegalBlockSizeException | ShortBufferException e) {
+                    JumbleLog.d(Constants.TAG, "Discarding packet", e);
+                }
+            }
+        } catch (final IOException e) {
+            // If mConnected is false, then this is a user-triggered disconnection. Report no error.
+            if (mConnected) {
+                JumbleLog.d(TAG, "UDP socket closed unexpectedly");
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onUDPConnectionError(e);
+                    }
+                });
+            } else {
+                JumbleLog.d(TAG, "UDP socket closed in response to user disconnect");
+            }
+        } finally {
+            mConnected = false;
+
+            // We want to interrupt the outgoing queue consumer thread to avoid sends after socket
+            // cleanup. Blocking shouldn't be necessary; the consumer drains its own queue.
+            if (mOutgoingThread != null) {
+                mOutgoingThread.interrupt();
+            }
+
+            if (mUDPSocket != null) mUDPSocket.close();
+
+            JumbleLog.d(TAG, "Voice dispatch latency: " + mVoiceDispatchLatency);
+            JumbleLog.d(TAG, "Control dispatch latency: " + mControlDispatchLatency);
+        }
+    }
+
+    /**
+     * Invokes the listener with a decrypted datagram, recording the time since it was received.
+     * Voice and control datagrams are timed at the same point so their histograms are comparable.
+     */
+    private void dispatch(LatencyHistogram histogram, long receivedTime, byte[] data, int length) {
+        histogram.record(System.nanoTime() - receivedTime);
+        mListener.onUDPDataReceived(data, 0, length);
+    }
+
+    /**
+     * Encrypts and queues a datagram to be sent. May be called from multiple threads; calls are
+     * serialized so that the send queue only ever sees a single producer.
+     * @param data The plaintext datagram.
+     * @param length The length of the datagram.
+     */
+    public synchronized void sendMessage(@NotNull final byte[] data, final int length) {
+        if (!mCryptState.isValid()) {
+            JumbleLog.w(TAG, "Invalid cryptstate prior to sendMessage call.");
+            return;
+        }
+        if (!mConnected) {
+            JumbleLog.w(TAG, "Tried to send UDP message without an active connection.");
+            return;
+        }
+
+        final DatagramPacket packet = mSendPool.borrow();
+        if (packet == null) {
+            // The consumer is a full pool behind; the audio is stale by now anyway.
+            mDroppedSendCount++;
+            return;
+        }
+
+        try {
+            final byte[] buffer = packet.getData();
+            final int encryptedLength = mCryptState.encrypt(data, 0, length, buffer, 0);
+            packet.setData(buffer, 0, encryptedLength);
+            packet.setAddress(mResolvedHost);
+            packet.setPort(mPort);
+        } catch (BadPaddingException | IllegalBlockSizeException | ShortBufferException e) {
+            JumbleLog.w(TAG, "Failed to encrypt outgoing datagram", e);
+            // Only the consumer may recycle into the pool; an empty datagram tells it not to send.
+            packet.setLength(0);
+        }
+
+        // The queue holds as many datagrams as the pool, so this cannot fail.
+        mSendQueue.offer(packet);
+        final Thread consumer = mOutgoingThread;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * @return The pool outgoing datagrams are encrypted into.
+     */
+    public PacketPool getSendPool() {
+        return mSendPool;
+    }
+
+    /**
+     * @return The pool incoming datagrams are received into.
+     */
+    public PacketPool getReceivePool() {
+        return mReceivePool;
+    }
+
+    /**
+     * @return The histogram of delays between receiving a voice datagram and its delivery to the
+     *         listener on the receive thread.
+     */
+    public LatencyHistogram getVoiceDispatchLatency() {
+        return mVoiceDispatchLatency;
+    }
+
+    /**
+     * @return The histogram of delays between receiving a control datagram (such as a ping) and
+     *         its delivery to the listener on the callback executor.
+     */
+    public LatencyHistogram getControlDispatchLatency() {
+        return mControlDispatchLatency;
+    }
+
+    /**
+     * Returns whether the plaintext datagram header describes a voice packet.
+     * @param header The first byte of the datagram.
+     * @return true if the datagram should be delivered on the voice fast path.
+     */
+    private static boolean isVoice(byte header) {
+        final int type = (header >> 5) & 0x7;
+        return type != JumbleUDPMessageType.UDPPing.ordinal() &&
+                type < MESSAGE_TYPE_COUNT;
+    }
+
+    /**
+     * @return The number of outgoing datagrams dropped because the send pool was exhausted.
+     */
+    public synchronized int getDroppedSendCount() {
+        return mDroppedSendCount;
+    }
+
+    /**
+     * Lazy, non-blocking idempotent disconnect.
+     */
+    public void disconnect() {
+        mConnected = false;
+        // Closing a socket will trigger an IOException on the consumer thread.
+        if (mUDPSocket != null) mUDPSocket.close();
+    }
+
+    /**
+     * Note that all connection state related calls are made on the callback executor.
+     * onUDPDataReceived is called on the UDP receive thread for voice datagrams, and on the
+     * callback executor for everything else.
+     */
+    public interface UDPConnectionListener {
+        /**
+         * Called when a datagram has been received and decrypted.
+         * @param data A reused buffer containing the plaintext. Only valid during this call.
+         * @param length The length of the plaintext in data.
+         */
+        void onUDPDataReceived(byte[] data, int offset, int length);
+        void onUDPConnectionError(Exception e);
+        void resyncCryptState();
+    }
+
+    /**
+     * Runnable that drains the shared send queue, dispatching datagrams when available and
+     * returning them to the send pool. Empty datagrams are recycled without being sent. Parks
+     * while the queue is empty.
+     */
+    private static class OutgoingConsumer implements Runnable {
+        private final DatagramSocket mSocket;
+        private final SPSCQueue<DatagramPacket> mQueue;
+        private final PacketPool mPool;
+
+        public OutgoingConsumer(@NotNull DatagramSocket socket,
+                                @NotNull SPSCQueue<DatagramPacket> queue,
+                                @NotNull PacketPool pool) {
+            mSocket = socket;
+            mQueue = queue;
+            mPool = pool;
+        }
+
+        @Override
+        public void run() {
+            JumbleLog.d(TAG, "Datagram outbox consumer active");
+            // Our datagram thread interrupts us when we should stop sending.
+            while (!Thread.currentThread().isInterrupted()) {
+                DatagramPacket packet = mQueue.poll();
+                if (packet == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                if (packet.getLength() > 0) {
+                    try {
+                        mSocket.send(packet);
+                    } catch (IOException e) {
+                        JumbleLog.w(TAG, "Failed to send datagram", e);
+                    }
+                }
+                mPool.recycle(packet);
+            }
+
+            // Clear the outgoing queue; as the only consumer, this must happen on our thread.
+            DatagramPacket packet;
+            while ((packet = mQueue.poll()) != null) {
+                mPool.recycle(packet);
+            }
+            JumbleLog.d(TAG, "Datagram outbox consumer shutdown");
+        }
+    }
+}
@@ -43,6 +43,23 @@ public class PacketBuffer {
         mBuffer.limit(len);
     }
 
+    /**
+     * Wraps a packet starting partway through an array, without copying it.
+     * @param data The array containing the packet.
+     * @param offset The offset of the packet in data.
+     * @param len The length of the packet.
+     */
+    public PacketBuffer(byte[] data, int offset, int len) {
+        mBuffer = ByteBuffer.wrap(data, offset, len).slice();
+    }
+
+    /**
+     * Returns the underlying byte buffer. Its position is shared with this packet buffer.
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
     /**
      * Returns the current size of the packet.
      * @return The number of bytes written to the packet buffer.
@@ -141,11 +158,12 @@ public class PacketBuffer {
             final int tmp = (int) (v & 0xFC);
             switch (tmp) {
                 case 0xF0:
-                    i = next() << 24 | next() << 16 | next() << 8 | next();
+                    i = (long) next() << 24 | next() << 16 | next() << 8 | next();
                     break;
                 case 0xF4:
-                    i = next() << 56 | next() << 48 | next() << 40 | next() << 32 |
-                            next() << 24 | next() << 16 | next() << 8 | next();
+                    i = (long) next() << 56 | (long) next() << 48 | (long) next() << 40 |
+                            (long) next() << 32 | (long) next() << 24 | next() << 16 |
+                            next() << 8 | next();
                     break;
                 case 0xF8:
                     i = readLong();
@@ -166,6 +184,90 @@ public class PacketBuffer {
         return i;
     }
 
+    /**
+     * Reads a variable length integer in place, in the same format as {@link #readLong()}.
+     * Lets hot paths parse packet headers without wrapping the array.
+     * @param data The array containing the integer.
+     * @param offset The offset of the integer's first byte.
+     * @param end The offset just past the last readable byte.
+     * @return The decoded integer.
+     * @throws BufferUnderflowException if the integer is malformed or extends past end.
+     */
+    public static long readLong(byte[] data, int offset, int end) {
+        final int length = getLongLength(data, offset, end);
+        final int v = data[offset] & 0xFF;
+        if ((v & 0xFC) == 0xF8) {
+            // Negated recursive encoding.
+            return ~readLong(data, offset + 1, end);
+        }
+        switch (length) {
+            case 1:
+                if ((v & 0xFC) == 0xFC)
+                    return ~(long) (v & 0x03);
+                return v & 0x7F;
+            case 2:
+                return (v & 0x3F) << 8 | (data[offset + 1] & 0xFF);
+            case 3:
+                return (v & 0x1F) << 16 | readBigEndian(data, offset + 1, 2);
+            case 4:
+                return (v & 0x0F) << 24 | readBigEndian(data, offset + 1, 3);
+            case 5:
+                return readBigEndian(data, offset + 1, 4);
+            default:
+                return readBigEndian(data, offset + 1, 8);
+        }
+    }
+
+    /**
+     * Returns the number of bytes taken by the variable length integer at the given offset.
+     * @param data The array containing the integer.
+     * @param offset The offset of the integer's first byte.
+     * @param end The offset just past the last readable byte.
+     * @return The encoded length of the integer in bytes.
+     * @throws BufferUnderflowException if the integer is malformed or extends past end.
+     */
+    public static int getLongLength(byte[] data, int offset, int end) {
+        if (offset >= end)
+            throw new BufferUnderflowException();
+        final int v = data[offset] & 0xFF;
+        final int length;
+        if ((v & 0x80) == 0x00) {
+            length = 1;
+        } else if ((v & 0xC0) == 0x80) {
+            length = 2;
+        } else if ((v & 0xE0) == 0xC0) {
+            length = 3;
+        } else if ((v & 0xF0) == 0xE0) {
+            length = 4;
+        } else {
+            switch (v & 0xFC) {
+                case 0xF0:
+                    length = 5;
+                    break;
+                case 0xF4:
+                    length = 9;
+                    break;
+                case 0xF8:
+                    length = 1 + getLongLength(data, offset + 1, end);
+                    break;
+                default:
+                    length = 1;
+                    break;
+            }
+        }
+        if (offset + length > end)
+            throw new BufferUnderflowException();
+        return length;
+    }
+
+    private static long readBigEndian(byte[] data, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
     public void rewind() {
         mBuffer.rewind();
     }
@@ -199,7 +301,7 @@ public class PacketBuffer {
     public void writeLong(long value) {
         long i = value;
 
-        if (((i & 0x8000000000000000L) > 0) && (~i < 0x100000000L)) {
+        if (i < 0 && ~i < 0x100000000L) {
             // Signed number.
             i = ~i;
             if (i <= 0x3) {
@@ -211,7 +313,18 @@ public class PacketBuffer {
             }
         }
 
-        if (i < 0x80) {
+        if (i < 0 || i >= 0x100000000L) {
+            // It's a 64-bit value, or a negative one too large to negate compactly.
+            append(0xF4);
+            append((i >> 56) & 0xFF);
+            append((i >> 48) & 0xFF);
+            append((i >> 40) & 0xFF);
+            append((i >> 32) & 0xFF);
+            append((i >> 24) & 0xFF);
+            append((i >> 16) & 0xFF);
+            append((i >> 8) & 0xFF);
+            append(i & 0xFF);
+        } else if (i < 0x80) {
             // Need top bit clear
             append(i);
         } else if (i < 0x4000) {
@@ -229,24 +342,13 @@ public class PacketBuffer {
             append((i >> 16) & 0xFF);
             append((i >> 8) & 0xFF);
             append(i & 0xFF);
-        } else if (i < 0x100000000L) {
+        } else {
             // It's a full 32-bit integer.
             append(0xF0);
             append((i >> 24) & 0xFF);
             append((i >> 16) & 0xFF);
             append((i >> 8) & 0xFF);
             append(i & 0xFF);
-        } else {
-            // It's a 64-bit value.
-            append(0xF4);
-            append((i >> 56) & 0xFF);
-            append((i >> 48) & 0xFF);
-            append((i >> 40) & 0xFF);
-            append((i >> 32) & 0xFF);
-            append((i >> 24) & 0xFF);
-            append((i >> 16) & 0xFF);
-            append((i >> 8) & 0xFF);
-            append(i & 0xFF);
         }
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import com.morlunk.jumble.util.SPSCQueue;
+
+import java.net.DatagramPacket;
+
+/**
+ * A fixed-capacity pool of reusable datagrams, backed by a single-producer/single-consumer ring.
+ * Datagrams must be borrowed from one thread and recycled from one (possibly different) thread.
+ *
+ * When every datagram is on loan, {@link #borrow()} returns null and records the exhaustion;
+ * the caller decides whether to drop the packet or fall back to an unpooled datagram. Recycling
+ * into a full pool discards the datagram, keeping the pool bounded.
+ */
+public class PacketPool {
+    private final SPSCQueue<DatagramPacket> mFree;
+    private final int mBufferSize;
+    private volatile int mExhaustedCount;
+    private volatile int mDiscardedCount;
+
+    /**
+     * Creates a new pool, preallocating all of its datagrams.
+     * @param capacity The number of datagrams in the pool.
+     * @param bufferSize The size of each datagram's buffer, in bytes.
+     */
+    public PacketPool(int capacity, int bufferSize) {
+        mFree = new SPSCQueue<>(capacity);
+        mBufferSize = bufferSize;
+        for (int i = 0; i < mFree.capacity(); i++) {
+            mFree.offer(new DatagramPacket(new byte[bufferSize], bufferSize));
+        }
+    }
+
+    /**
+     * Takes a datagram from the pool, with its length reset to the full buffer size.
+     * @return A datagram, or null if the pool is exhausted.
+     */
+    public DatagramPacket borrow() {
+        final DatagramPacket packet = mFree.poll();
+        if (packet == null) {
+            mExhaustedCount++;
+            return null;
+        }
+        packet.setLength(mBufferSize);
+        return packet;
+    }
+
+    /**
+     * Returns a datagram to the pool. Datagrams not sized for this pool are ignored.
+     * @param packet The datagram to recycle. Must no longer be referenced by the caller.
+     */
+    public void recycle(DatagramPacket packet) {
+        if (packet.getData().length != mBufferSize || !mFree.offer(packet)) {
+            mDiscardedCount++;
+        }
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    public int getCapacity() {
+        return mFree.capacity();
+    }
+
+    /**
+     * @return An estimate of the number of datagrams available to borrow.
+     */
+    public int getAvailable() {
+        return mFree.size();
+    }
+
+    /**
+     * @return The number of times a datagram was requested while the pool was empty.
+     */
+    public int getExhaustedCount() {
+        return mExhaustedCount;
+    }
+
+    /**
+     * @return The number of recycled datagrams dropped because the pool was full.
+     */
+    public int getDiscardedCount() {
+        return mDiscardedCount;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import java.util.Arrays;
+
+/**
+ * Rolling round trip time statistics for a single transport.
+ *
+ * The average, variance and percentiles cover the last {@link #WINDOW_SIZE} samples, so they
+ * follow changes in link quality; the packet count covers the whole connection.
+ * All times are in microseconds. May be used from any thread.
+ */
+public class PingStats {
+    /** The number of most recent samples that statistics are computed over. */
+    public static final int WINDOW_SIZE = 64;
+
+    private final long[] mSamples = new long[WINDOW_SIZE];
+    private final long[] mSorted = new long[WINDOW_SIZE];
+    private int mIndex;
+    private int mCount;
+    private int mPackets;
+    private long mLast;
+
+    /**
+     * Records a single round trip time.
+     * @param rtt The round trip time in microseconds. Negative values are clamped to zero.
+     */
+    public synchronized void record(long rtt) {
+        rtt = Math.max(0, rtt);
+        mSamples[mIndex] = rtt;
+        mIndex = (mIndex + 1) % WINDOW_SIZE;
+        mCount = Math.min(mCount + 1, WINDOW_SIZE);
+        mPackets++;
+        mLast = rtt;
+    }
+
+    /**
+     * @return The number of samples recorded since the last reset.
+     */
+    public synchronized int getPackets() {
+        return mPackets;
+    }
+
+    /**
+     * @return The most recent round trip time, or 0 if none has been recorded.
+     */
+    public synchronized long getLast() {
+        return mLast;
+    }
+
+    /**
+     * @return The mean round trip time over the window, or 0 if empty.
+     */
+    public synchronized double getAverage() {
+        if (mCount == 0)
+            return 0;
+        double sum = 0;
+        for (int i = 0; i < mCount; i++) {
+            sum += mSamples[i];
+        }
+        return sum / mCount;
+    }
+
+    /**
+     * @return The population variance of the round trip time over the window, in square
+     *         microseconds, or 0 if empty.
+     */
+    public synchronized double getVariance() {
+        if (mCount == 0)
+            return 0;
+        double average = getAverage();
+        double sum = 0;
+        for (int i = 0; i < mCount; i++) {
+            double deviation = mSamples[i] - average;
+            sum += deviation * deviation;
+        }
+        return sum / mCount;
+    }
+
+    /**
+     * Returns the given percentile of the round trip time over the window, using the nearest
+     * rank method.
+     * @param percentile A percentile in the range [0, 100].
+     * @return The round trip time in microseconds, or 0 if empty.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (mCount == 0)
+            return 0;
+        System.arraycopy(mSamples, 0, mSorted, 0, mCount);
+        Arrays.sort(mSorted, 0, mCount);
+        int rank = (int) Math.ceil(mCount * Math.min(100, Math.max(0, percentile)) / 100);
+        return mSorted[Math.max(0, rank - 1)];
+    }
+
+    public synchronized void reset() {
+        mIndex = 0;
+        mCount = 0;
+        mPackets = 0;
+        mLast = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "packets=" + mPackets + " avg=" + (long) getAverage() + "us p50=" +
+                getPercentile(50) + "us p90=" + getPercentile(90) + "us p99=" +
+                getPercentile(99) + "us";
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import java.io.IOException;
+
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Applies platform specific settings, such as server name indication, to the control socket
+ * before its TLS handshake.
+ */
+public interface SocketConfigurator {
+    /**
+     * @param socket The connected socket, yet to start its handshake.
+     * @param host The host name the socket was opened to.
+     * @throws IOException if the socket could not be configured.
+     */
+    void configureSocket(SSLSocket socket, String host) throws IOException;
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+/**
+ * Decides whether voice should be sent over UDP or tunnelled over TCP, based on how reliably
+ * UDP pings round-trip.
+ *
+ * UDP pings keep being sent while tunnelling, so that voice can switch back once the link
+ * recovers. To avoid flapping between transports, switching back requires a run of consecutive
+ * answered pings, and that run is doubled each time UDP fails again shortly after a switch back.
+ * A UDP socket that has failed outright is restarted with an exponential backoff.
+ *
+ * All times are in microseconds. This class is not thread safe; all calls are expected to be
+ * made from the same thread.
+ */
+public class UDPTransportMonitor {
+    /** The number of consecutive pings that may go unanswered before falling back to TCP. */
+    public static final int MAX_UNANSWERED_PINGS = 4;
+    /** The initial number of consecutive answered pings required to switch back to UDP. */
+    public static final int RECOVERY_PINGS = 3;
+    /** The cap on the number of answered pings required to switch back to UDP. */
+    public static final int MAX_RECOVERY_PINGS = 48;
+    /** Falling back to TCP within this time of switching to UDP counts as a flap. */
+    public static final long FLAP_WINDOW = 60000000;
+    /** The initial delay before restarting a failed UDP socket. */
+    public static final long RESTART_DELAY = 5000000;
+    /** The cap on the delay before restarting a failed UDP socket. */
+    public static final long MAX_RESTART_DELAY = 160000000;
+
+    private boolean mUsingUDP;
+    private boolean mSocketAlive;
+    private boolean mAwaitingPong;
+    private int mUnansweredPings;
+    private int mAnsweredPings;
+    private int mRequiredPings;
+    private long mLastSwitchTime;
+    private long mRestartTime;
+    private long mRestartDelay;
+
+    private int mSwitchesToTCP;
+    private int mSwitchesToUDP;
+    private int mPingsSent;
+    private int mPongsReceived;
+    private int mSocketRestarts;
+
+    public UDPTransportMonitor() {
+        reset(true);
+    }
+
+    /**
+     * Resets the monitor for a new connection, clearing all counters.
+     * @param usingUDP Whether voice starts out over UDP, with a running socket.
+     */
+    public void reset(boolean usingUDP) {
+        mUsingUDP = usingUDP;
+        mSocketAlive = usingUDP;
+        mAwaitingPong = false;
+        mUnansweredPings = 0;
+        mAnsweredPings = 0;
+        mRequiredPings = RECOVERY_PINGS;
+        mLastSwitchTime = 0;
+        mRestartTime = 0;
+        mRestartDelay = RESTART_DELAY;
+        mSwitchesToTCP = 0;
+        mSwitchesToUDP = 0;
+        mPingsSent = 0;
+        mPongsReceived = 0;
+        mSocketRestarts = 0;
+    }
+
+    /**
+     * Records that a UDP ping was sent. A previous ping still awaiting a reply breaks the run of
+     * answered pings.
+     */
+    public void onPingSent() {
+        if (mAwaitingPong)
+            mAnsweredPings = 0;
+        mAwaitingPong = true;
+        mUnansweredPings++;
+        mPingsSent++;
+    }
+
+    /**
+     * Records that a UDP ping reply was received.
+     */
+    public void onPongReceived() {
+        mPongsReceived++;
+        mUnansweredPings = 0;
+        mRestartDelay = RESTART_DELAY;
+        if (mAwaitingPong) {
+            mAwaitingPong = false;
+            mAnsweredPings++;
+        }
+    }
+
+    /**
+     * Records that the UDP socket has failed, falling back to TCP and scheduling a restart.
+     * @param now The current time.
+     * @return true if voice switched from UDP to TCP.
+     */
+    public boolean onSocketError(long now) {
+        mSocketAlive = false;
+        mRestartTime = now + mRestartDelay;
+        mRestartDelay = Math.min(mRestartDelay * 2, MAX_RESTART_DELAY);
+        return fallBack(now);
+    }
+
+    /**
+     * @param now The current time.
+     * @return true if the UDP socket has failed and is due to be restarted.
+     */
+    public boolean shouldRestartSocket(long now) {
+        return !mSocketAlive && now >= mRestartTime;
+    }
+
+    /**
+     * Records that a new UDP socket was started in place of a failed one.
+     */
+    public void onSocketRestarted() {
+        mSocketAlive = true;
+        mSocketRestarts++;
+        mAwaitingPong = false;
+        mUnansweredPings = 0;
+        mAnsweredPings = 0;
+    }
+
+    /**
+     * Switches transport if the ping history calls for it. Should be called once per ping
+     * interval, after the ping is sent.
+     * @param now The current time.
+     * @return true if the transport changed; see {@link #isUsingUDP()}.
+     */
+    public boolean evaluate(long now) {
+        if (mUsingUDP) {
+            // The ping just sent can't have been answered yet.
+            return mUnansweredPings > MAX_UNANSWERED_PINGS && fallBack(now);
+        } else if (mSocketAlive && mAnsweredPings >= mRequiredPings) {
+            mUsingUDP = true;
+            mSwitchesToUDP++;
+            mLastSwitchTime = now;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean fallBack(long now) {
+        if (!mUsingUDP)
+            return false;
+        mUsingUDP = false;
+        mSwitchesToTCP++;
+        mAnsweredPings = 0;
+        if (mSwitchesToUDP > 0 && now - mLastSwitchTime < FLAP_WINDOW) {
+            mRequiredPings = Math.min(mRequiredPings * 2, MAX_RECOVERY_PINGS);
+        } else {
+            mRequiredPings = RECOVERY_PINGS;
+        }
+        mLastSwitchTime = now;
+        return true;
+    }
+
+    public boolean isUsingUDP() {
+        return mUsingUDP;
+    }
+
+    public boolean isSocketAlive() {
+        return mSocketAlive;
+    }
+
+    /**
+     * @return The number of consecutive answered pings currently required to switch to UDP.
+     */
+    public int getRequiredPings() {
+        return mRequiredPings;
+    }
+
+    public int getSwitchesToTCP() {
+        return mSwitchesToTCP;
+    }
+
+    public int getSwitchesToUDP() {
+        return mSwitchesToUDP;
+    }
+
+    public int getPingsSent() {
+        return mPingsSent;
+    }
+
+    public int getPongsReceived() {
+        return mPongsReceived;
+    }
+
+    public int getSocketRestarts() {
+        return mSocketRestarts;
+    }
+}
@@ -17,14 +17,11 @@
 
 package com.morlunk.jumble.protocol;
 
-import android.content.Context;
-import android.media.AudioManager;
-import android.util.Log;
-
 import com.morlunk.jumble.Constants;
-import com.morlunk.jumble.R;
+import com.morlunk.jumble.audio.AdaptiveBitrateController;
 import com.morlunk.jumble.audio.AudioInput;
 import com.morlunk.jumble.audio.AudioOutput;
+import com.morlunk.jumble.audio.IAudioDeviceFactory;
 import com.morlunk.jumble.audio.encoder.CELT11Encoder;
 import com.morlunk.jumble.audio.encoder.CELT7Encoder;
 import com.morlunk.jumble.audio.encoder.IEncoder;
@@ -40,8 +37,14 @@ import com.morlunk.jumble.net.JumbleConnection;
 import com.morlunk.jumble.net.JumbleUDPMessageType;
 import com.morlunk.jumble.net.PacketBuffer;
 import com.morlunk.jumble.protobuf.Mumble;
+import com.morlunk.jumble.util.IStringProvider;
+import com.morlunk.jumble.util.JumbleLog;
 import com.morlunk.jumble.util.JumbleLogger;
 import com.morlunk.jumble.util.JumbleNetworkListener;
+import com.morlunk.jumble.util.JumbleString;
+import com.morlunk.jumble.util.LatencyHistogram;
+
+import java.util.concurrent.Executor;
 
 /**
  * Bridges the protocol's audio messages to our input and output threads.
@@ -57,9 +60,9 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
     public static final int FRAME_SIZE = SAMPLE_RATE/100;
     public static final int MAX_BUFFER_SIZE = 960;
 
-    private final Context mContext;
+    private final IStringProvider mStrings;
     private final JumbleLogger mLogger;
-    private final AudioManager mAudioManager;
+    private final IAudioDeviceFactory mDevices;
     private final AudioInput mInput;
     private final AudioOutput mOutput;
     private AudioOutput.AudioOutputListener mOutputListener;
@@ -68,10 +71,11 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
     private int mSession;
     private JumbleUDPMessageType mCodec;
     private IEncoder mEncoder;
+    /** The Opus encoder at the bottom of mEncoder's chain, if the codec is Opus. */
+    private OpusEncoder mOpusEncoder;
+    private int mPacketLossPercentage;
     private int mFrameCounter;
 
-    private final int mAudioStream;
-    private final int mAudioSource;
     private int mSampleRate;
     private int mBitrate;
     private int mFramesPerPacket;
@@ -81,43 +85,46 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
     private boolean mInitialized;
     /** True if the user is muted on the server. */
     private boolean mMuted;
-    private boolean mBluetoothOn;
     private boolean mHalfDuplex;
     private boolean mPreprocessorEnabled;
+    private final boolean mAdaptiveBitrateEnabled;
+    /** Retunes the Opus encoder from link statistics, if adaptive bitrate is enabled. */
+    private AdaptiveBitrateController mBitrateController;
     /** The last observed talking state. False if muted, or the input mode is not active. */
     private boolean mTalking;
 
     private final Object mEncoderLock;
     private byte mTargetId;
 
-    public AudioHandler(Context context, JumbleLogger logger, int audioStream, int audioSource,
+    public AudioHandler(IStringProvider strings, JumbleLogger logger, IAudioDeviceFactory devices,
                         int sampleRate, int targetBitrate, int targetFramesPerPacket,
                         IInputMode inputMode, byte targetId, float amplitudeBoost,
-                        boolean bluetoothEnabled, boolean halfDuplexEnabled,
-                        boolean preprocessorEnabled, AudioEncodeListener encodeListener,
-                        AudioOutput.AudioOutputListener outputListener) throws AudioInitializationException, NativeAudioException {
-        mContext = context;
+                        boolean halfDuplexEnabled,
+                        boolean preprocessorEnabled, boolean stereoOutputEnabled,
+                        boolean adaptiveBitrateEnabled,
+                        AudioEncodeListener encodeListener,
+                        AudioOutput.AudioOutputListener outputListener,
+                        Executor callbackExecutor) throws AudioInitializationException, NativeAudioException {
+        mStrings = strings;
         mLogger = logger;
-        mAudioStream = audioStream;
-        mAudioSource = audioSource;
+        mDevices = devices;
         mSampleRate = sampleRate;
         mBitrate = targetBitrate;
         mFramesPerPacket = targetFramesPerPacket;
         mInputMode = inputMode;
         mAmplitudeBoost = amplitudeBoost;
-        mBluetoothOn = bluetoothEnabled;
         mHalfDuplex = halfDuplexEnabled;
         mPreprocessorEnabled = preprocessorEnabled;
+        mAdaptiveBitrateEnabled = adaptiveBitrateEnabled;
         mEncodeListener = encodeListener;
         mOutputListener = outputListener;
         mTalking = false;
         mTargetId = targetId;
 
-        mAudioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         mEncoderLock = new Object();
 
-        mInput = new AudioInput(this, mAudioSource, mSampleRate);
-        mOutput = new AudioOutput(mOutputListener);
+        mInput = new AudioInput(this, mDevices, mSampleRate);
+        mOutput = new AudioOutput(mOutputListener, stereoOutputEnabled, callbackExecutor);
     }
 
     /**
@@ -129,12 +136,13 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
         mSession = self.getSession();
 
         setMaxBandwidth(maxBandwidth);
+        if (mAdaptiveBitrateEnabled) {
+            mBitrateController = new AdaptiveBitrateController(mBitrate, mFramesPerPacket);
+        }
         setCodec(codec);
         setServerMuted(self.isMuted() || self.isLocalMuted() || self.isSuppressed());
         startRecording();
-        // Ensure that if a bluetooth SCO connection is active, we use the VOICE_CALL stream.
-        // This is required by Android for compatibility with SCO.
-        mOutput.startPlaying(mBluetoothOn ? AudioManager.STREAM_VOICE_CALL : mAudioStream);
+        mOutput.startPlaying(mDevices);
 
         mInitialized = true;
     }
@@ -205,6 +213,7 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
             mEncoder.destroy();
             mEncoder = null;
         }
+        mOpusEncoder = null;
 
         IEncoder encoder;
         switch (codec) {
@@ -216,11 +225,13 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
                 encoder = new CELT11Encoder(SAMPLE_RATE, 1, mFramesPerPacket);
                 break;
             case UDPVoiceOpus:
-                encoder = new OpusEncoder(SAMPLE_RATE, 1, FRAME_SIZE, mFramesPerPacket, mBitrate,
-                        MAX_BUFFER_SIZE);
+                mOpusEncoder = new OpusEncoder(SAMPLE_RATE, 1, FRAME_SIZE, mFramesPerPacket,
+                        mBitrate, MAX_BUFFER_SIZE);
+                mOpusEncoder.setPacketLossPercentage(mPacketLossPercentage);
+                encoder = mOpusEncoder;
                 break;
             default:
-                Log.w(Constants.TAG, "Unsupported codec, input disabled.");
+                JumbleLog.w(Constants.TAG, "Unsupported codec, input disabled.");
                 return;
         }
 
@@ -235,14 +246,6 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
         mEncoder = encoder;
     }
 
-    public int getAudioStream() {
-        return mAudioStream;
-    }
-
-    public int getAudioSource() {
-        return mAudioSource;
-    }
-
     public int getSampleRate() {
         return mSampleRate;
     }
@@ -283,11 +286,34 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
             mBitrate = bitrate;
             mFramesPerPacket = framesPerPacket;
 
-            mLogger.logInfo(mContext.getString(R.string.audio_max_bandwidth,
+            mLogger.logInfo(mStrings.getString(JumbleString.AUDIO_MAX_BANDWIDTH,
                     maxBandwidth/1000, maxBandwidth/1000, framesPerPacket * 10));
         }
     }
 
+    /**
+     * Updates the Opus encoder from the latest link statistics. The packet loss tells Opus how
+     * much FEC data to send; if adaptive bitrate is enabled, the bitrate and frames per packet
+     * are also retuned without recreating the encoder.
+     * @param packetLossPercentage The recent UDP packet loss, from 0 to 100.
+     * @param ping The round trip time of the transport carrying voice, in microseconds.
+     */
+    public void updateLinkStatistics(int packetLossPercentage, long ping) {
+        synchronized (mEncoderLock) {
+            mPacketLossPercentage = packetLossPercentage;
+            if (mOpusEncoder == null) {
+                return;
+            }
+            mOpusEncoder.setPacketLossPercentage(packetLossPercentage);
+            if (mBitrateController != null && mBitrateController.update(packetLossPercentage, ping)) {
+                mBitrate = mBitrateController.getBitrate();
+                mFramesPerPacket = mBitrateController.getFramesPerPacket();
+                mOpusEncoder.setBitrate(mBitrate);
+                mOpusEncoder.setFramesPerPacket(mFramesPerPacket);
+            }
+        }
+    }
+
     public int getFramesPerPacket() {
         return mFramesPerPacket;
     }
@@ -305,6 +331,13 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
         return mHalfDuplex;
     }
 
+    /**
+     * Returns the time from each voice packet's arrival until its audio is first mixed.
+     */
+    public LatencyHistogram getReceiveToMixLatency() {
+        return mOutput.getReceiveToMixLatency();
+    }
+
     public int getCurrentBandwidth() {
         return JumbleConnection.calculateAudioBandwidth(mBitrate, mFramesPerPacket);
     }
@@ -324,14 +357,13 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
                 mEncoder.destroy();
                 mEncoder = null;
             }
+            mOpusEncoder = null;
         }
         mInitialized = false;
-        mBluetoothOn = false;
 
         mEncodeListener.onTalkingStateChanged(false);
     }
 
-
     @Override
     public void messageCodecVersion(Mumble.CodecVersion msg) {
         if (!mInitialized)
@@ -383,9 +415,9 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
     }
 
     @Override
-    public void messageVoiceData(byte[] data, JumbleUDPMessageType messageType) {
+    public void messageVoiceData(byte[] data, int offset, int length, JumbleUDPMessageType messageType) {
         synchronized (mOutput) {
-            mOutput.queueVoiceData(data, messageType);
+            mOutput.queueVoiceData(data, offset, length, messageType);
         }
     }
 
@@ -397,7 +429,7 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
         if (mTalking ^ talking) {
             mEncodeListener.onTalkingStateChanged(talking);
             if (mHalfDuplex) {
-                mAudioManager.setStreamMute(getAudioStream(), talking);
+                mOutput.setMuted(talking);
             }
 
             synchronized (mEncoderLock) {
@@ -495,23 +527,24 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
      * A builder to configure and instantiate the audio protocol handler.
      */
     public static class Builder {
-        private Context mContext;
+        private IStringProvider mStrings = JumbleString.DEFAULT_PROVIDER;
         private JumbleLogger mLogger;
-        private int mAudioStream;
-        private int mAudioSource;
+        private IAudioDeviceFactory mDevices;
         private int mTargetBitrate;
         private int mTargetFramesPerPacket;
         private int mInputSampleRate;
         private float mAmplitudeBoost;
-        private boolean mBluetoothEnabled;
         private boolean mHalfDuplexEnabled;
         private boolean mPreprocessorEnabled;
+        private boolean mStereoOutputEnabled;
+        private boolean mAdaptiveBitrateEnabled;
         private IInputMode mInputMode;
         private AudioEncodeListener mEncodeListener;
         private AudioOutput.AudioOutputListener mTalkingListener;
+        private Executor mCallbackExecutor;
 
-        public Builder setContext(Context context) {
-            mContext = context;
+        public Builder setStringProvider(IStringProvider strings) {
+            mStrings = strings;
             return this;
         }
 
@@ -520,13 +553,11 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
             return this;
         }
 
-        public Builder setAudioStream(int audioStream) {
-            mAudioStream = audioStream;
-            return this;
-        }
-
-        public Builder setAudioSource(int audioSource) {
-            mAudioSource = audioSource;
+        /**
+         * Sets the platform devices to play and record with.
+         */
+        public Builder setAudioDevices(IAudioDeviceFactory devices) {
+            mDevices = devices;
             return this;
         }
 
@@ -550,11 +581,6 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
             return this;
         }
 
-        public Builder setBluetoothEnabled(boolean bluetoothEnabled) {
-            mBluetoothEnabled = bluetoothEnabled;
-            return this;
-        }
-
         public Builder setHalfDuplexEnabled(boolean halfDuplexEnabled) {
             mHalfDuplexEnabled = halfDuplexEnabled;
             return this;
@@ -565,6 +591,16 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
             return this;
         }
 
+        public Builder setStereoOutputEnabled(boolean stereoOutputEnabled) {
+            mStereoOutputEnabled = stereoOutputEnabled;
+            return this;
+        }
+
+        public Builder setAdaptiveBitrateEnabled(boolean adaptiveBitrateEnabled) {
+            mAdaptiveBitrateEnabled = adaptiveBitrateEnabled;
+            return this;
+        }
+
         public Builder setEncodeListener(AudioEncodeListener encodeListener) {
             mEncodeListener = encodeListener;
             return this;
@@ -580,15 +616,24 @@ public class AudioHandler extends JumbleNetworkListener implements AudioInput.Au
             return this;
         }
 
+        /**
+         * Sets the executor to notify the talking listener on.
+         */
+        public Builder setCallbackExecutor(Executor callbackExecutor) {
+            mCallbackExecutor = callbackExecutor;
+            return this;
+        }
+
         /**
          * Creates a new AudioHandler for the given session and begins managing input/output.
          * @return An initialized audio handler.
          */
         public AudioHandler initialize(User self, int maxBandwidth, JumbleUDPMessageType codec, byte targetId) throws AudioException {
-            AudioHandler handler = new AudioHandler(mContext, mLogger, mAudioStream, mAudioSource,
+            AudioHandler handler = new AudioHandler(mStrings, mLogger, mDevices,
                     mInputSampleRate, mTargetBitrate, mTargetFramesPerPacket, mInputMode, targetId,
-                    mAmplitudeBoost, mBluetoothEnabled, mHalfDuplexEnabled,
-                    mPreprocessorEnabled, mEncodeListener, mTalkingListener);
+                    mAmplitudeBoost, mHalfDuplexEnabled,
+                    mPreprocessorEnabled, mStereoOutputEnabled, mAdaptiveBitrateEnabled,
+                    mEncodeListener, mTalkingListener, mCallbackExecutor);
             handler.initialize(self, maxBandwidth, codec);
             return handler;
         }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.protocol;
+
+import com.morlunk.jumble.net.JumbleConnection;
+import com.morlunk.jumble.net.JumbleTCPMessageType;
+import com.morlunk.jumble.protobuf.Mumble;
+import com.morlunk.jumble.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schedules requests for avatars, comments and channel descriptions. Requests made within a short
+ * window are sent together in one RequestBlob message, and a request for a blob that is already
+ * pending or in flight is not sent again. Callbacks complete when the matching UserState or
+ * ChannelState arrives, or fail when the target is removed or the server doesn't respond.
+ *
+ * Must be registered after the {@link ModelHandler}, so that the model holds the blob by the time
+ * callbacks are invoked. All methods must be called on the thread of the provided scheduler.
+ */
+public class BlobRequestHandler extends JumbleTCPMessageListener.Stub {
+    /** The interval to collect requests over before sending them in one message. */
+    public static final long BATCH_INTERVAL_MS = 50;
+    /** How long to wait for the server to respond before failing a request. */
+    public static final long REQUEST_TIMEOUT_MS = 15000;
+
+    public interface Callback {
+        /**
+         * Called once the requested blob is available in the model, or the request has failed.
+         * @param id The session or channel ID the blob was requested for.
+         * @param received true if the blob arrived, false if the target was removed, the server
+         *                 didn't respond or the connection closed.
+         */
+        void onBlobRequestComplete(int id, boolean received);
+    }
+
+    private final JumbleConnection mConnection;
+    private final Scheduler mScheduler;
+    private final Requests mTextures = new Requests();
+    private final Requests mComments = new Requests();
+    private final Requests mDescriptions = new Requests();
+    private boolean mFlushScheduled;
+    private boolean mExpiryScheduled;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            flush();
+        }
+    };
+
+    private final Runnable mExpiryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExpiryScheduled = false;
+            final long now = mScheduler.uptimeMillis();
+            mTextures.expire(now);
+            mComments.expire(now);
+            mDescriptions.expire(now);
+            scheduleExpiry();
+        }
+    };
+
+    public BlobRequestHandler(JumbleConnection connection, Scheduler scheduler) {
+        mConnection = connection;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Requests the avatar of the given user.
+     * @param callback A callback to invoke on completion, or null.
+     */
+    public void requestAvatar(int session, Callback callback) {
+        if (mTextures.add(session, callback))
+            scheduleFlush();
+    }
+
+    /**
+     * Requests the full comment of the given user.
+     * @param callback A callback to invoke on completion, or null.
+     */
+    public void requestComment(int session, Callback callback) {
+        if (mComments.add(session, callback))
+            scheduleFlush();
+    }
+
+    /**
+     * Requests the full description of the given channel.
+     * @param callback A callback to invoke on completion, or null.
+     */
+    public void requestChannelDescription(int channel, Callback callback) {
+        if (mDescriptions.add(channel, callback))
+            scheduleFlush();
+    }
+
+    /**
+     * Immediately sends all pending requests in one message.
+     */
+    public void flush() {
+        if (mFlushScheduled) {
+            mScheduler.cancel(mFlushRunnable);
+            mFlushScheduled = false;
+        }
+        final long now = mScheduler.uptimeMillis();
+        final List<Integer> textures = mTextures.send(now);
+        final List<Integer> comments = mComments.send(now);
+        final List<Integer> descriptions = mDescriptions.send(now);
+        if (textures.isEmpty() && comments.isEmpty() && descriptions.isEmpty())
+            return;
+
+        final Mumble.RequestBlob.Builder rbb = Mumble.RequestBlob.newBuilder();
+        rbb.addAllSessionTexture(textures);
+        rbb.addAllSessionComment(comments);
+        rbb.addAllChannelDescription(descriptions);
+        mConnection.sendTCPMessage(rbb.build(), JumbleTCPMessageType.RequestBlob);
+        scheduleExpiry();
+    }
+
+    /**
+     * Drops all requests, failing their callbacks. Used when the connection is closed.
+     */
+    public void cancel() {
+        mScheduler.cancel(mFlushRunnable);
+        mScheduler.cancel(mExpiryRunnable);
+        mFlushScheduled = false;
+        mExpiryScheduled = false;
+        mTextures.cancel();
+        mComments.cancel();
+        mDescriptions.cancel();
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mScheduler.schedule(mFlushRunnable, BATCH_INTERVAL_MS);
+        }
+    }
+
+    private void scheduleExpiry() {
+        if (!mExpiryScheduled && (mTextures.hasSent() || mComments.hasSent()
+                || mDescriptions.hasSent())) {
+            mExpiryScheduled = true;
+            mScheduler.schedule(mExpiryRunnable, REQUEST_TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public void messageUserState(Mumble.UserState msg) {
+        if (msg.hasTexture())
+            mTextures.complete(msg.getSession(), true);
+        if (msg.hasComment())
+            mComments.complete(msg.getSession(), true);
+    }
+
+    @Override
+    public void messageUserRemove(Mumble.UserRemove msg) {
+        mTextures.complete(msg.getSession(), false);
+        mComments.complete(msg.getSession(), false);
+    }
+
+    @Override
+    public void messageChannelState(Mumble.ChannelState msg) {
+        if (msg.hasDescription())
+            mDescriptions.complete(msg.getChannelId(), true);
+    }
+
+    @Override
+    public void messageChannelRemove(Mumble.ChannelRemove msg) {
+        mDescriptions.complete(msg.getChannelId(), false);
+    }
+
+    /**
+     * The outstanding requests for one kind of blob, keyed by session or channel ID.
+     */
+    private static class Requests {
+        private final Map<Integer, Request> mRequests = new LinkedHashMap<Integer, Request>();
+
+        /**
+         * @return true if the ID is newly pending and needs to be sent.
+         */
+        public boolean add(int id, Callback callback) {
+            Request request = mRequests.get(id);
+            final boolean added = request == null;
+            if (added) {
+                request = new Request();
+                mRequests.put(id, request);
+            }
+            if (callback != null)
+                request.callbacks.add(callback);
+            return added;
+        }
+
+        /**
+         * Marks all pending requests as sent.
+         * @return The IDs to request.
+         */
+        public List<Integer> send(long now) {
+            final List<Integer> ids = new ArrayList<Integer>();
+            for (Map.Entry<Integer, Request> entry : mRequests.entrySet()) {
+                if (entry.getValue().sentAt == 0) {
+                    entry.getValue().sentAt = now;
+                    ids.add(entry.getKey());
+                }
+            }
+            return ids;
+        }
+
+        public boolean hasSent() {
+            for (Request request : mRequests.values()) {
+                if (request.sentAt != 0)
+                    return true;
+            }
+            return false;
+        }
+
+        public void complete(int id, boolean received) {
+            final Request request = mRequests.remove(id);
+            if (request != null)
+                request.complete(id, received);
+        }
+
+        /**
+         * Fails the requests sent at least {@link BlobRequestHandler#REQUEST_TIMEOUT_MS} ago.
+         */
+        public void expire(long now) {
+            final List<Map.Entry<Integer, Request>> expired =
+                    new ArrayList<Map.Entry<Integer, Request>>();
+            final Iterator<Map.Entry<Integer, Request>> iterator = mRequests.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Integer, Request> entry = iterator.next();
+                final long sentAt = entry.getValue().sentAt;
+                if (sentAt != 0 && now - sentAt >= REQUEST_TIMEOUT_MS) {
+                    expired.add(entry);
+                    iterator.remove();
+                }
+            }
+            // Invoke callbacks after updating our state, in case they make new requests.
+            for (Map.Entry<Integer, Request> entry : expired) {
+                entry.getValue().complete(entry.getKey(), false);
+            }
+        }
+
+        public void cancel() {
+            final Map<Integer, Request> requests = new LinkedHashMap<Integer, Request>(mRequests);
+            mRequests.clear();
+            for (Map.Entry<Integer, Request> entry : requests.entrySet()) {
+                entry.getValue().complete(entry.getKey(), false);
+            }
+        }
+    }
+
+    private static class Request {
+        /** The uptime the request was sent at, or 0 if it is still pending. */
+        public long sentAt;
+        public final List<Callback> callbacks = new ArrayList<Callback>(1);
+
+        public void complete(int id, boolean received) {
+            for (Callback callback : callbacks) {
+                callback.onBlobRequestComplete(id, received);
+            }
+        }
+    }
+}
@@ -26,11 +26,19 @@ import com.morlunk.jumble.net.JumbleUDPMessageType;
 public interface JumbleUDPMessageListener {
 
     public void messageUDPPing(byte[] data);
-    public void messageVoiceData(byte[] data, JumbleUDPMessageType messageType);
+
+    /**
+     * Called when a voice packet is received.
+     * @param data The packet data. May be a pooled buffer; it must not be retained after returning.
+     * @param offset The offset of the packet in data.
+     * @param length The length of the packet in data.
+     * @param messageType The codec of the packet.
+     */
+    public void messageVoiceData(byte[] data, int offset, int length, JumbleUDPMessageType messageType);
 
     public static class Stub implements JumbleUDPMessageListener {
 
         public void messageUDPPing(byte[] data) {}
-        public void messageVoiceData(byte[] data, JumbleUDPMessageType messageType) {}
+        public void messageVoiceData(byte[] data, int offset, int length, JumbleUDPMessageType messageType) {}
     }
 }
\ No newline at end of file
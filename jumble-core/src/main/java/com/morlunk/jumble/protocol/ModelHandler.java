@@ -17,21 +17,20 @@
 
 package com.morlunk.jumble.protocol;
 
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.RemoteException;
-import android.util.Log;
-
+import com.google.protobuf.ByteString;
 import com.morlunk.jumble.Constants;
-import com.morlunk.jumble.R;
 import com.morlunk.jumble.model.Channel;
 import com.morlunk.jumble.model.Message;
 import com.morlunk.jumble.model.User;
 import com.morlunk.jumble.protobuf.Mumble;
 import com.morlunk.jumble.protocol.JumbleTCPMessageListener;
+import com.morlunk.jumble.util.BlobCache;
+import com.morlunk.jumble.util.ConcurrentIntMap;
 import com.morlunk.jumble.util.IJumbleObserver;
+import com.morlunk.jumble.util.IStringProvider;
+import com.morlunk.jumble.util.JumbleLog;
 import com.morlunk.jumble.util.JumbleLogger;
+import com.morlunk.jumble.util.JumbleString;
 import com.morlunk.jumble.util.MessageFormatter;
 
 import org.jetbrains.annotations.Nullable;
@@ -49,26 +48,40 @@ import java.util.Map;
  * Created by andrew on 18/07/13.
  */
 public class ModelHandler extends JumbleTCPMessageListener.Stub {
-    private final Context mContext;
-    private final Map<Integer, Channel> mChannels;
-    private final Map<Integer, User> mUsers;
+    private final IStringProvider mStrings;
+    private final ConcurrentIntMap<Channel> mChannels;
+    private final ConcurrentIntMap<User> mUsers;
     private final List<Integer> mLocalMuteHistory;
     private final List<Integer> mLocalIgnoreHistory;
     private final IJumbleObserver mObserver;
     private final JumbleLogger mLogger;
+    private final BlobCache mBlobCache;
     private int mPermissions;
     private int mSession;
+    /**
+     * Whether ServerSync has been received. Until then, the server is streaming its initial state
+     * and per-message observer callbacks are suppressed in favour of a single
+     * {@link IJumbleObserver#onModelLoaded()}.
+     */
+    private boolean mSynchronized;
 
-    public ModelHandler(Context context, IJumbleObserver observer, JumbleLogger logger,
+    /**
+     * @param strings The provider of the localized messages reported to the logger.
+     * @param blobCache The cache to store and resolve avatars, comments and descriptions in.
+     */
+    public ModelHandler(IStringProvider strings, IJumbleObserver observer, JumbleLogger logger,
+                        BlobCache blobCache,
                         @Nullable List<Integer> localMuteHistory,
                         @Nullable List<Integer> localIgnoreHistory) {
-        mContext = context;
-        mChannels = new HashMap<Integer, Channel>();
-        mUsers = new HashMap<Integer, User>();
+        mStrings = strings;
+        mChannels = new ConcurrentIntMap<Channel>();
+        // Users are looked up from the UDP receive thread when voice arrives.
+        mUsers = new ConcurrentIntMap<User>();
         mLocalMuteHistory = localMuteHistory;
         mLocalIgnoreHistory = localIgnoreHistory;
         mObserver = observer;
         mLogger = logger;
+        mBlobCache = blobCache;
     }
 
     public Channel getChannel(int id) {
@@ -87,16 +100,46 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
      */
     private Channel createStubChannel(int id) {
         Channel channel = new Channel(id, false);
+        channel.setBlobCache(mBlobCache);
         mChannels.put(id, channel);
         return channel;
     }
 
+    /**
+     * @return The hash, or null if empty. An empty hash means the blob was cleared.
+     */
+    private static byte[] toHash(ByteString hash) {
+        return hash.isEmpty() ? null : hash.toByteArray();
+    }
+
+    /**
+     * Stores a blob received from the server in the blob cache.
+     * @return The blob's hash, or null if it is empty and so was cleared.
+     */
+    private byte[] storeBlob(ByteString blob) {
+        return blob.isEmpty() ? null : mBlobCache.put(blob.toByteArray());
+    }
+
+    /**
+     * @return A snapshot of the channels, keyed by ID.
+     */
     public Map<Integer, Channel> getChannels() {
-        return Collections.unmodifiableMap(mChannels);
+        Map<Integer, Channel> channels = new HashMap<Integer, Channel>(mChannels.size() * 2);
+        for (Channel channel : mChannels.values()) {
+            channels.put(channel.getId(), channel);
+        }
+        return Collections.unmodifiableMap(channels);
     }
 
+    /**
+     * @return A snapshot of the users, keyed by session.
+     */
     public Map<Integer, User> getUsers() {
-        return Collections.unmodifiableMap(mUsers);
+        Map<Integer, User> users = new HashMap<Integer, User>(mUsers.size() * 2);
+        for (User user : mUsers.values()) {
+            users.put(user.getSession(), user);
+        }
+        return Collections.unmodifiableMap(users);
     }
 
     /**
@@ -110,6 +153,7 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
     public void clear() {
         mChannels.clear();
         mUsers.clear();
+        mSynchronized = false;
     }
 
     @Override
@@ -124,6 +168,7 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
 
         if(channel == null) {
             channel = new Channel(msg.getChannelId(), msg.getTemporary());
+            channel.setBlobCache(mBlobCache);
             mChannels.put(msg.getChannelId(), channel);
         }
 
@@ -135,18 +180,19 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
 
         if(msg.hasParent()) {
             Channel oldParent = channel.getParent();
-            channel.setParent(parent);
-            parent.addSubchannel(channel);
-            if(oldParent != null) {
-                oldParent.removeSubchannel(channel);
+            if(oldParent != parent) {
+                if(oldParent != null) {
+                    oldParent.removeSubchannel(channel);
+                }
+                parent.addSubchannel(channel);
             }
         }
 
         if(msg.hasDescriptionHash())
-            channel.setDescriptionHash(msg.getDescriptionHash().toByteArray());
+            channel.setDescriptionHash(toHash(msg.getDescriptionHash()));
 
         if(msg.hasDescription())
-            channel.setDescription(msg.getDescription());
+            channel.setDescriptionHash(storeBlob(msg.getDescriptionBytes()));
 
         if(msg.getLinksCount() > 0) {
             channel.clearLinks();
@@ -175,6 +221,9 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
             }
         }
 
+        if(!mSynchronized)
+            return;
+
         if(newChannel)
             mObserver.onChannelAdded(channel);
         else
@@ -190,7 +239,8 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
             if(parent != null) {
                 parent.removeSubchannel(channel);
             }
-            mObserver.onChannelRemoved(channel);
+            if(mSynchronized)
+                mObserver.onChannelRemoved(channel);
         }
     }
 
@@ -205,7 +255,8 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
             channel.setPermissions(msg.getPermissions());
             if(msg.getChannelId() == 0) // If we're provided permissions for the root channel, we'll apply these as our server permissions.
                 mPermissions = channel.getPermissions();
-            mObserver.onChannelPermissionsUpdated(channel);
+            if(mSynchronized)
+                mObserver.onChannelPermissionsUpdated(channel);
         }
     }
 
@@ -219,6 +270,7 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
         if(user == null) {
             if(msg.hasName()) {
                 user = new User(msg.getSession(), msg.getName());
+                user.setBlobCache(mBlobCache);
                 mUsers.put(msg.getSession(), user);
                 newUser = true;
                 // Add user to root channel by default. This works because for some reason, we don't get a channel ID when the user joins into root.
@@ -257,8 +309,8 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
              */
         }
 
-        if(newUser)
-            mLogger.logInfo(mContext.getString(R.string.chat_notify_connected, MessageFormatter.highlightString(user.getName())));
+        if(newUser && mSynchronized)
+            mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_CONNECTED, MessageFormatter.highlightString(user.getName())));
 
         if(msg.hasSelfDeaf() || msg.hasSelfMute()) {
             if(msg.hasSelfMute())
@@ -268,18 +320,18 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
 
             if(self != null && user.getSession() != self.getSession() && user.getChannel().equals(self.getChannel())) {
                 if(user.isSelfMuted() && user.isSelfDeafened())
-                    mLogger.logInfo(mContext.getString(R.string.chat_notify_now_muted_deafened, MessageFormatter.highlightString(user.getName())));
+                    mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_NOW_MUTED_DEAFENED, MessageFormatter.highlightString(user.getName())));
                 else if(user.isSelfMuted())
-                    mLogger.logInfo(mContext.getString(R.string.chat_notify_now_muted, MessageFormatter.highlightString(user.getName())));
+                    mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_NOW_MUTED, MessageFormatter.highlightString(user.getName())));
                 else
-                    mLogger.logInfo(mContext.getString(R.string.chat_notify_now_unmuted, MessageFormatter.highlightString(user.getName())));
+                    mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_NOW_UNMUTED, MessageFormatter.highlightString(user.getName())));
             } else if(self != null && user.getSession() == self.getSession()) {
                 if(user.isSelfMuted() && user.isSelfDeafened())
-                    mLogger.logInfo(mContext.getString(R.string.chat_notify_muted_deafened, MessageFormatter.highlightString(user.getName())));
+                    mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_MUTED_DEAFENED, MessageFormatter.highlightString(user.getName())));
                 else if(user.isSelfMuted())
-                    mLogger.logInfo(mContext.getString(R.string.chat_notify_muted, MessageFormatter.highlightString(user.getName())));
+                    mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_MUTED, MessageFormatter.highlightString(user.getName())));
                 else
-                    mLogger.logInfo(mContext.getString(R.string.chat_notify_unmuted, MessageFormatter.highlightString(user.getName())));
+                    mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_UNMUTED, MessageFormatter.highlightString(user.getName())));
             }
         }
 
@@ -289,17 +341,17 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
             if(self != null) {
                 if(user.getSession() == self.getSession()) {
                     if(user.isRecording())
-                        mLogger.logInfo(mContext.getString(R.string.chat_notify_self_recording_started));
+                        mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_SELF_RECORDING_STARTED));
                     else
-                        mLogger.logInfo(mContext.getString(R.string.chat_notify_self_recording_stopped));
+                        mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_SELF_RECORDING_STOPPED));
                 } else {
                     Channel selfChannel = self.getChannel();
                     // If in a linked channel OR the same channel as the current user, notify the user about recording
                     if(selfChannel != null && (selfChannel.getLinks().contains(selfChannel) || selfChannel.equals(user.getChannel()))) {
                         if(user.isRecording())
-                            mLogger.logInfo(mContext.getString(R.string.chat_notify_user_recording_started, MessageFormatter.highlightString(user.getName())));
+                            mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_USER_RECORDING_STARTED, MessageFormatter.highlightString(user.getName())));
                         else
-                            mLogger.logInfo(mContext.getString(R.string.chat_notify_user_recording_stopped, MessageFormatter.highlightString(user.getName())));
+                            mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_USER_RECORDING_STOPPED, MessageFormatter.highlightString(user.getName())));
                     }
                 }
             }
@@ -332,14 +384,14 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
         if(msg.hasChannelId()) {
             final Channel channel = mChannels.get(msg.getChannelId());
             if(channel == null) {
-                Log.e(Constants.TAG, "Invalid channel for user!");
+                JumbleLog.e(Constants.TAG, "Invalid channel for user!");
                 return; // TODO handle better
             }
             final Channel old = user.getChannel();
 
             user.setChannel(channel);
 
-            if(!newUser) {
+            if(!newUser && mSynchronized) {
                 mObserver.onUserJoinedChannel(finalUser, channel, old);
             }
 
@@ -348,24 +400,24 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
             // Notify the user of other users' current channel changes
             if (self != null && sessionChannel != null && old != null && !self.equals(user)) {
                 // TODO add logic for other user moving self
-                String actorString = actor != null ? MessageFormatter.highlightString(actor.getName()) : mContext.getString(R.string.the_server);
+                String actorString = actor != null ? MessageFormatter.highlightString(actor.getName()) : mStrings.getString(JumbleString.THE_SERVER);
                 if(!sessionChannel.equals(channel) && sessionChannel.equals(old)) {
                     // User moved out of self's channel
                     if(actor != null && actor.getSession() == user.getSession()) {
                         // By themselves
-                        mLogger.logInfo(mContext.getString(R.string.chat_notify_user_left_channel, MessageFormatter.highlightString(user.getName()), MessageFormatter.highlightString(channel.getName())));
+                        mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_USER_LEFT_CHANNEL, MessageFormatter.highlightString(user.getName()), MessageFormatter.highlightString(channel.getName())));
                     } else {
                         // By external actor
-                        mLogger.logInfo(mContext.getString(R.string.chat_notify_user_left_channel_by, MessageFormatter.highlightString(user.getName()), MessageFormatter.highlightString(channel.getName()), actorString));
+                        mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_USER_LEFT_CHANNEL_BY, MessageFormatter.highlightString(user.getName()), MessageFormatter.highlightString(channel.getName()), actorString));
                     }
                 } else if(sessionChannel.equals(channel)) {
                     // User moved into self's channel
                     if(actor != null && actor.getSession() == user.getSession()) {
                         // By themselves
-                        mLogger.logInfo(mContext.getString(R.string.chat_notify_user_joined_channel, MessageFormatter.highlightString(user.getName())));
+                        mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_USER_JOINED_CHANNEL, MessageFormatter.highlightString(user.getName())));
                     } else {
                         // By external actor
-                        mLogger.logInfo(mContext.getString(R.string.chat_notify_user_joined_channel_by, MessageFormatter.highlightString(user.getName()), MessageFormatter.highlightString(old.getName()), actorString));
+                        mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_USER_JOINED_CHANNEL_BY, MessageFormatter.highlightString(user.getName()), MessageFormatter.highlightString(old.getName()), actorString));
                     }
                 }
             }
@@ -379,21 +431,22 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
         if(msg.hasName())
             user.setName(msg.getName());
 
-        if (msg.hasTextureHash()) {
-            user.setTextureHash(msg.getTextureHash());
-            user.setTexture(null); // clear cached texture when we receive a new hash
-        }
+        // Blobs are resolved from the cache by hash, so an unchanged blob seen on an earlier
+        // connection needn't be fetched again.
+        if (msg.hasTextureHash())
+            user.setTextureHash(toHash(msg.getTextureHash()));
 
-        if (msg.hasTexture()) {
-            // FIXME: is it reasonable to create a bitmap here? How expensive?
-            user.setTexture(msg.getTexture());
-        }
+        if (msg.hasTexture())
+            user.setTextureHash(storeBlob(msg.getTexture()));
 
         if(msg.hasCommentHash())
-            user.setCommentHash(msg.getCommentHash());
+            user.setCommentHash(toHash(msg.getCommentHash()));
 
         if(msg.hasComment())
-            user.setComment(msg.getComment());
+            user.setCommentHash(storeBlob(msg.getCommentBytes()));
+
+        if (!mSynchronized)
+            return;
 
         if (newUser)
             mObserver.onUserConnected(user);
@@ -408,11 +461,11 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
         final String reason = msg.getReason();
 
         if(msg.getSession() == mSession)
-            mLogger.logWarning(mContext.getString(msg.getBan() ? R.string.chat_notify_kick_ban_self : R.string.chat_notify_kick_self, MessageFormatter.highlightString(actor.getName()), reason));
+            mLogger.logWarning(mStrings.getString(msg.getBan() ? JumbleString.CHAT_NOTIFY_KICK_BAN_SELF : JumbleString.CHAT_NOTIFY_KICK_SELF, MessageFormatter.highlightString(actor.getName()), reason));
         else if(actor != null)
-            mLogger.logWarning(mContext.getString(msg.getBan() ? R.string.chat_notify_kick_ban : R.string.chat_notify_kick, MessageFormatter.highlightString(actor.getName()), reason, MessageFormatter.highlightString(user.getName())));
+            mLogger.logWarning(mStrings.getString(msg.getBan() ? JumbleString.CHAT_NOTIFY_KICK_BAN : JumbleString.CHAT_NOTIFY_KICK, MessageFormatter.highlightString(actor.getName()), reason, MessageFormatter.highlightString(user.getName())));
         else
-            mLogger.logInfo(mContext.getString(R.string.chat_notify_disconnected, MessageFormatter.highlightString(user.getName())));
+            mLogger.logInfo(mStrings.getString(JumbleString.CHAT_NOTIFY_DISCONNECTED, MessageFormatter.highlightString(user.getName())));
 
         user.setChannel(null);
         mObserver.onUserRemoved(user, reason);
@@ -423,29 +476,29 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
         final String reason;
         switch (msg.getType()) {
             case ChannelName:
-                reason = mContext.getString(R.string.deny_reason_channel_name);
+                reason = mStrings.getString(JumbleString.DENY_REASON_CHANNEL_NAME);
                 break;
             case TextTooLong:
-                reason = mContext.getString(R.string.deny_reason_text_too_long);
+                reason = mStrings.getString(JumbleString.DENY_REASON_TEXT_TOO_LONG);
                 break;
             case TemporaryChannel:
-                reason = mContext.getString(R.string.deny_reason_no_operation_temp);
+                reason = mStrings.getString(JumbleString.DENY_REASON_NO_OPERATION_TEMP);
                 break;
             case MissingCertificate:
-                reason = mContext.getString(R.string.deny_reason_no_certificate);
+                reason = mStrings.getString(JumbleString.DENY_REASON_NO_CERTIFICATE);
                 break;
             case UserName:
-                reason = mContext.getString(R.string.deny_reason_invalid_username);
+                reason = mStrings.getString(JumbleString.DENY_REASON_INVALID_USERNAME);
                 break;
             case ChannelFull:
-                reason = mContext.getString(R.string.deny_reason_channel_full);
+                reason = mStrings.getString(JumbleString.DENY_REASON_CHANNEL_FULL);
                 break;
             case NestingLimit:
-                reason = mContext.getString(R.string.deny_reason_channel_nesting);
+                reason = mStrings.getString(JumbleString.DENY_REASON_CHANNEL_NESTING);
                 break;
             default:
-                if(msg.hasReason()) reason = mContext.getString(R.string.deny_reason_other, msg.getReason());
-                else reason = mContext.getString(R.string.perm_denied);
+                if(msg.hasReason()) reason = mStrings.getString(JumbleString.DENY_REASON_OTHER, msg.getReason());
+                else reason = mStrings.getString(JumbleString.PERM_DENIED);
 
         }
         mObserver.onPermissionDenied(reason);
@@ -465,7 +518,7 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
         List<User> users = new ArrayList<User>(msg.getSessionCount());
         for(int userId : msg.getSessionList()) users.add(mUsers.get(userId));
 
-        String actorName = sender != null ? sender.getName() : mContext.getString(R.string.server);
+        String actorName = sender != null ? sender.getName() : mStrings.getString(JumbleString.SERVER);
 
         Message message = new Message(msg.getActor(), actorName, channels, trees, users, msg.getMessage());
         mObserver.onMessageLogged(message);
@@ -474,6 +527,8 @@ public class ModelHandler extends JumbleTCPMessageListener.Stub {
     @Override
     public void messageServerSync(Mumble.ServerSync msg) {
         mSession = msg.getSession();
+        mSynchronized = true;
+        mObserver.onModelLoaded();
         mLogger.logInfo(msg.getWelcomeText());
     }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import com.morlunk.jumble.Constants;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A content-addressed cache for avatars, comments and channel descriptions, keyed by the SHA-1
+ * hash Mumble uses to identify them.
+ *
+ * Recently used blobs are kept in memory, bounded by their total size. If a directory is given,
+ * every blob is also written to disk so that it survives reconnects and eviction from memory;
+ * the disk tier is trimmed by least recent use. Disk reads and writes happen on a background
+ * executor; only {@link #get} and {@link #contains} touch the disk on the calling thread.
+ * Thread-safe.
+ */
+public class BlobCache {
+    public static final int DEFAULT_MEMORY_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_DISK_SIZE = 32 * 1024 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public interface LoadCallback {
+        /**
+         * @param hash The hash of the blob that was loaded.
+         * @param data The blob, which must not be modified, or null if it is not cached.
+         */
+        void onBlobLoaded(byte[] hash, byte[] data);
+    }
+
+    private final LinkedHashMap<String, byte[]> mMemory =
+            new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private final int mMaxMemorySize;
+    private int mMemorySize;
+
+    private final File mDirectory;
+    private final long mMaxDiskSize;
+    private final Executor mDiskExecutor;
+
+    /**
+     * Creates a cache held only in memory.
+     * @param maxMemorySize The maximum total size of blobs held in memory, in bytes.
+     */
+    public BlobCache(int maxMemorySize) {
+        this(null, maxMemorySize, 0, null);
+    }
+
+    /**
+     * @param directory The directory to persist blobs to.
+     * @param maxMemorySize The maximum total size of blobs held in memory, in bytes.
+     * @param maxDiskSize The maximum total size of blobs kept on disk, in bytes.
+     */
+    public BlobCache(File directory, int maxMemorySize, long maxDiskSize) {
+        this(directory, maxMemorySize, maxDiskSize, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * @param directory The directory to persist blobs to, or null to keep blobs in memory only.
+     * @param maxMemorySize The maximum total size of blobs held in memory, in bytes.
+     * @param maxDiskSize The maximum total size of blobs kept on disk, in bytes.
+     * @param diskExecutor The executor to write and trim the disk tier on.
+     */
+    public BlobCache(File directory, int maxMemorySize, long maxDiskSize, Executor diskExecutor) {
+        mDirectory = directory;
+        mMaxMemorySize = maxMemorySize;
+        mMaxDiskSize = maxDiskSize;
+        mDiskExecutor = diskExecutor;
+    }
+
+    /**
+     * @return The SHA-1 hash of the given data, as sent by the server for blobs.
+     */
+    public static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // Required on all platforms.
+        }
+    }
+
+    /**
+     * Stores a blob under its own hash.
+     * @param data The blob. Must not be modified afterwards.
+     * @return The blob's hash.
+     */
+    public byte[] put(byte[] data) {
+        final byte[] hash = hash(data);
+        put(hash, data);
+        return hash;
+    }
+
+    /**
+     * Stores a blob under the given hash.
+     * @param hash The blob's hash.
+     * @param data The blob. Must not be modified afterwards.
+     */
+    public void put(byte[] hash, final byte[] data) {
+        final String key = toHex(hash);
+        synchronized (this) {
+            putInMemory(key, data);
+        }
+        if (mDirectory != null && data.length <= mMaxDiskSize) {
+            mDiskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeToDisk(key, data);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the blob with the given hash, reading it from disk if it is no longer in memory.
+     * Blocks on disk I/O, so must not be called from the main thread; use {@link #load} instead.
+     * @param hash The blob's hash.
+     * @return The blob, which must not be modified, or null if it is not cached.
+     */
+    public byte[] get(byte[] hash) {
+        final String key = toHex(hash);
+        synchronized (this) {
+            final byte[] data = mMemory.get(key);
+            if (data != null)
+                return data;
+        }
+        final byte[] data = readFromDisk(key);
+        if (data != null) {
+            synchronized (this) {
+                putInMemory(key, data);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the blob with the given hash if it is held in memory. Never touches the disk.
+     * @param hash The blob's hash.
+     * @return The blob, which must not be modified, or null if it is not in memory.
+     */
+    public synchronized byte[] getFromMemory(byte[] hash) {
+        return mMemory.get(toHex(hash));
+    }
+
+    /**
+     * Reads the blob with the given hash into memory on the disk executor, then reports it.
+     * Subsequent calls to {@link #getFromMemory} will return the blob until it is evicted.
+     * @param hash The blob's hash.
+     * @param callbackExecutor The executor to invoke the callback on.
+     * @param callback The callback to report the blob, or its absence, to.
+     */
+    public void load(final byte[] hash, final Executor callbackExecutor,
+                     final LoadCallback callback) {
+        if (mDirectory == null) {
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onBlobLoaded(hash, getFromMemory(hash));
+                }
+            });
+            return;
+        }
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final byte[] data = get(hash);
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onBlobLoaded(hash, data);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Checks the disk on the calling thread if the blob is not in memory.
+     * @return true if a blob with the given hash is cached in memory or on disk.
+     */
+    public boolean contains(byte[] hash) {
+        final String key = toHex(hash);
+        synchronized (this) {
+            if (mMemory.containsKey(key))
+                return true;
+        }
+        return mDirectory != null && new File(mDirectory, key).exists();
+    }
+
+    /**
+     * @return The total size of the blobs currently held in memory, in bytes.
+     */
+    public synchronized int getMemorySize() {
+        return mMemorySize;
+    }
+
+    private void putInMemory(String key, byte[] data) {
+        if (data.length > mMaxMemorySize)
+            return;
+        final byte[] old = mMemory.put(key, data);
+        if (old != null)
+            mMemorySize -= old.length;
+        mMemorySize += data.length;
+        final Iterator<byte[]> iterator = mMemory.values().iterator();
+        while (mMemorySize > mMaxMemorySize && iterator.hasNext()) {
+            mMemorySize -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    private byte[] readFromDisk(String key) {
+        if (mDirectory == null)
+            return null;
+        final File file = new File(mDirectory, key);
+        if (!file.exists())
+            return null;
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            final byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                final int count = input.read(data, read, data.length - read);
+                if (count < 0)
+                    throw new IOException("Blob " + key + " truncated");
+                read += count;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            JumbleLog.w(Constants.TAG, "Failed to read cached blob " + key, e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private void writeToDisk(String key, byte[] data) {
+        final File file = new File(mDirectory, key);
+        if (file.exists()) {
+            file.setLastModified(System.currentTimeMillis());
+            return;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            JumbleLog.w(Constants.TAG, "Failed to create blob cache directory " + mDirectory);
+            return;
+        }
+        // Write to a temporary file first, so that readers never see a partial blob.
+        final File temp = new File(mDirectory, key + ".tmp");
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            output.write(data);
+            output.close();
+            output = null;
+            if (!temp.renameTo(file))
+                throw new IOException("Failed to rename " + temp);
+        } catch (IOException e) {
+            JumbleLog.w(Constants.TAG, "Failed to write cached blob " + key, e);
+            temp.delete();
+            return;
+        } finally {
+            closeQuietly(output);
+        }
+        trimDisk();
+    }
+
+    /**
+     * Deletes the least recently used blobs until the disk tier fits its maximum size.
+     */
+    private void trimDisk() {
+        final File[] files = mDirectory.listFiles();
+        if (files == null)
+            return;
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxDiskSize)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                final long lhsModified = lhs.lastModified();
+                final long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > mMaxDiskSize; i++) {
+            final long length = files[i].length();
+            if (files[i].delete())
+                size -= length;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing to recover.
+        }
+    }
+
+    private static String toHex(byte[] data) {
+        final char[] hex = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(data[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[data[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An open-addressing hash map from primitive ints to objects, avoiding the boxing and per-entry
+ * nodes of a {@code HashMap<Integer, V>}.
+ *
+ * Writes are serialized on this object. Reads take no lock and may run concurrently with a
+ * writer: a slot's key is written before its value is published, slots are never reused for a
+ * different key (removals leave a tombstone), and tables are rebuilt into a fresh copy that is
+ * published atomically.
+ */
+public class ConcurrentIntMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Marks a removed entry. Never returned to callers. */
+    private static final Object TOMBSTONE = new Object();
+
+    private volatile Table mTable;
+    private int mSize;
+    /** The number of used slots in the current table, including tombstones. */
+    private int mUsed;
+
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<Object>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    public ConcurrentIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The number of entries to size the table for.
+     */
+    public ConcurrentIntMap(int expectedSize) {
+        mTable = new Table(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Returns a power of two table size keeping the load factor at or below one half.
+     */
+    private static int tableSizeFor(int size) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return The value for the given key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table table = mTable;
+        int index = hash(key) & table.mask;
+        while (true) {
+            Object value = table.values.get(index);
+            if (value == null)
+                return null;
+            if (value != TOMBSTONE && table.keys[index] == key)
+                return (V) value;
+            index = (index + 1) & table.mask;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the value with the given key.
+     * @param value A non-null value.
+     * @return The previous value for the key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(int key, V value) {
+        if (value == null)
+            throw new NullPointerException("Null values are not supported");
+        Table table = mTable;
+        int index = hash(key) & table.mask;
+        while (true) {
+            Object existing = table.values.get(index);
+            if (existing == null)
+                break;
+            if (existing != TOMBSTONE && table.keys[index] == key) {
+                table.values.set(index, value);
+                return (V) existing;
+            }
+            index = (index + 1) & table.mask;
+        }
+        table.keys[index] = key;
+        table.values.set(index, value);
+        mSize++;
+        mUsed++;
+        if (mUsed * 2 > table.keys.length)
+            rebuild(tableSizeFor(mSize));
+        return null;
+    }
+
+    /**
+     * Removes the entry for the given key.
+     * @return The removed value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(int key) {
+        Table table = mTable;
+        int index = hash(key) & table.mask;
+        while (true) {
+            Object existing = table.values.get(index);
+            if (existing == null)
+                return null;
+            if (existing != TOMBSTONE && table.keys[index] == key) {
+                table.values.set(index, TOMBSTONE);
+                mSize--;
+                return (V) existing;
+            }
+            index = (index + 1) & table.mask;
+        }
+    }
+
+    public synchronized void clear() {
+        mTable = new Table(DEFAULT_CAPACITY);
+        mSize = 0;
+        mUsed = 0;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return A snapshot of the values in this map, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<V> values() {
+        Table table = mTable;
+        List<V> values = new ArrayList<V>(mSize);
+        for (int i = 0; i < table.keys.length; i++) {
+            Object value = table.values.get(i);
+            if (value != null && value != TOMBSTONE)
+                values.add((V) value);
+        }
+        return values;
+    }
+
+    /**
+     * @return A snapshot of the keys in this map, in no particular order.
+     */
+    public synchronized int[] keys() {
+        Table table = mTable;
+        int[] keys = new int[mSize];
+        int count = 0;
+        for (int i = 0; i < table.keys.length; i++) {
+            Object value = table.values.get(i);
+            if (value != null && value != TOMBSTONE)
+                keys[count++] = table.keys[i];
+        }
+        return keys;
+    }
+
+    /**
+     * Copies the live entries into a new table of the given capacity, dropping tombstones, and
+     * publishes it to readers.
+     */
+    private void rebuild(int capacity) {
+        Table old = mTable;
+        Table table = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            Object value = old.values.get(i);
+            if (value == null || value == TOMBSTONE)
+                continue;
+            int key = old.keys[i];
+            int index = hash(key) & table.mask;
+            while (table.values.get(index) != null) {
+                index = (index + 1) & table.mask;
+            }
+            table.keys[index] = key;
+            table.values.lazySet(index, value);
+        }
+        mUsed = mSize;
+        mTable = table;
+    }
+}
@@ -35,6 +35,19 @@ public interface IJumbleObserver {
 
     void onTLSHandshakeFailed(X509Certificate[] chain);
 
+    /**
+     * Called once the server's initial channel tree and user list have been received.
+     * No per-channel or per-user events are sent for the initial state; observers should read
+     * the full model when this is called.
+     */
+    void onModelLoaded();
+
+    /**
+     * Called when voice switches between UDP and tunnelling over TCP.
+     * @param udp true if voice is now sent over UDP, false if tunnelled over TCP.
+     */
+    void onTransportChanged(boolean udp);
+
     void onChannelAdded(IChannel channel);
 
     void onChannelStateUpdated(IChannel channel);
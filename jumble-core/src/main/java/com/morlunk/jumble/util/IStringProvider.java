@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+/**
+ * Looks up the localized text of the strings the protocol handlers report to the user.
+ */
+public interface IStringProvider {
+    /**
+     * @param string The string to look up.
+     * @param formatArgs The arguments referenced by the string's format specifiers.
+     * @return The formatted, localized string.
+     */
+    String getString(JumbleString string, Object... formatArgs);
+}
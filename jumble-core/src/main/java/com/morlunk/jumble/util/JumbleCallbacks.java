@@ -76,6 +76,20 @@ public class JumbleCallbacks implements IJumbleObserver {
         }
     }
 
+    @Override
+    public void onModelLoaded() {
+        for (IJumbleObserver observer : mCallbacks) {
+            observer.onModelLoaded();
+        }
+    }
+
+    @Override
+    public void onTransportChanged(boolean udp) {
+        for (IJumbleObserver observer : mCallbacks) {
+            observer.onTransportChanged(udp);
+        }
+    }
+
     @Override
     public void onChannelAdded(IChannel channel) {
         for (IJumbleObserver observer : mCallbacks) {
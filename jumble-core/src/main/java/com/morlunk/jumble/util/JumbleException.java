@@ -17,27 +17,12 @@
 
 package com.morlunk.jumble.util;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
 import com.morlunk.jumble.protobuf.Mumble;
 
 /**
  * Created by andrew on 14/07/13.
  */
-public class JumbleException extends Exception implements Parcelable {
-
-    public static final Creator<JumbleException> CREATOR = new Creator<JumbleException>() {
-        @Override
-        public JumbleException createFromParcel(Parcel source) {
-            return new JumbleException(source);
-        }
-
-        @Override
-        public JumbleException[] newArray(int size) {
-            return new JumbleException[size];
-        }
-    };
+public class JumbleException extends Exception {
 
     private JumbleDisconnectReason mReason;
     /** Indicates that this exception was caused by a reject from the server. */
@@ -72,13 +57,6 @@ public class JumbleException extends Exception implements Parcelable {
         mReason = JumbleDisconnectReason.USER_REMOVE;
     }
 
-    private JumbleException(Parcel in) {
-        super(in.readString(), (Throwable) in.readSerializable());
-        mReason = JumbleDisconnectReason.values()[in.readInt()];
-        mReject = (Mumble.Reject) in.readSerializable();
-        mUserRemove = (Mumble.UserRemove) in.readSerializable();
-    }
-
     public JumbleDisconnectReason getReason() {
         return mReason;
     }
@@ -90,19 +68,6 @@ public class JumbleException extends Exception implements Parcelable {
     public Mumble.UserRemove getUserRemove() {
         return mUserRemove;
     }
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(getMessage());
-        dest.writeSerializable(getCause());
-        dest.writeInt(mReason.ordinal());
-        dest.writeSerializable(mReject);
-        dest.writeSerializable(mUserRemove);
-    }
 
     public enum JumbleDisconnectReason {
         REJECT,
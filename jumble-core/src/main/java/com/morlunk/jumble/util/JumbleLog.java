@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.io.PrintStream;
+
+/**
+ * Diagnostic logging for the platform independent parts of Jumble, with the same levels and
+ * signatures as android.util.Log. Messages are written to standard error until a platform sink is
+ * installed with {@link #setSink(Sink)}. Not to be confused with {@link JumbleLogger}, which
+ * reports events to the user.
+ */
+public final class JumbleLog {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /**
+     * Receives log messages. Must be thread-safe; messages are logged from every Jumble thread.
+     */
+    public interface Sink {
+        /**
+         * @param priority The priority of the message, from {@link #VERBOSE} to {@link #ERROR}.
+         * @param tag The source of the message.
+         * @param message The message.
+         * @param tr An exception to log with the message, or null.
+         */
+        void log(int priority, String tag, String message, Throwable tr);
+    }
+
+    /**
+     * Writes messages at or above a minimum priority to a stream.
+     */
+    public static class StreamSink implements Sink {
+        private static final String LEVELS = "??VDIWE";
+        private final PrintStream mStream;
+        private final int mMinPriority;
+
+        public StreamSink(PrintStream stream, int minPriority) {
+            mStream = stream;
+            mMinPriority = minPriority;
+        }
+
+        @Override
+        public void log(int priority, String tag, String message, Throwable tr) {
+            if (priority < mMinPriority)
+                return;
+            synchronized (mStream) {
+                mStream.println(LEVELS.charAt(priority) + "/" + tag + ": " + message);
+                if (tr != null)
+                    tr.printStackTrace(mStream);
+            }
+        }
+    }
+
+    private static volatile Sink sSink = new StreamSink(System.err, INFO);
+
+    private JumbleLog() {
+    }
+
+    /**
+     * Sets where log messages are sent. Installed once by the platform at startup.
+     * @param sink The sink to send messages to.
+     */
+    public static void setSink(Sink sink) {
+        if (sink == null)
+            throw new NullPointerException("sink");
+        sSink = sink;
+    }
+
+    public static void v(String tag, String msg) {
+        sSink.log(VERBOSE, tag, msg, null);
+    }
+
+    public static void v(String tag, String msg, Throwable tr) {
+        sSink.log(VERBOSE, tag, msg, tr);
+    }
+
+    public static void d(String tag, String msg) {
+        sSink.log(DEBUG, tag, msg, null);
+    }
+
+    public static void d(String tag, String msg, Throwable tr) {
+        sSink.log(DEBUG, tag, msg, tr);
+    }
+
+    public static void i(String tag, String msg) {
+        sSink.log(INFO, tag, msg, null);
+    }
+
+    public static void i(String tag, String msg, Throwable tr) {
+        sSink.log(INFO, tag, msg, tr);
+    }
+
+    public static void w(String tag, String msg) {
+        sSink.log(WARN, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg, Throwable tr) {
+        sSink.log(WARN, tag, msg, tr);
+    }
+
+    public static void e(String tag, String msg) {
+        sSink.log(ERROR, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        sSink.log(ERROR, tag, msg, tr);
+    }
+}
@@ -167,7 +167,7 @@ public class JumbleNetworkListener implements JumbleTCPMessageListener, JumbleUD
     }
 
     @Override
-    public void messageVoiceData(byte[] data, JumbleUDPMessageType messageType) {
+    public void messageVoiceData(byte[] data, int offset, int length, JumbleUDPMessageType messageType) {
 
     }
 }
@@ -48,6 +48,16 @@ public class JumbleObserver implements IJumbleObserver {
 
     }
 
+    @Override
+    public void onModelLoaded() {
+
+    }
+
+    @Override
+    public void onTransportChanged(boolean udp) {
+
+    }
+
     @Override
     public void onChannelAdded(IChannel channel) {
 
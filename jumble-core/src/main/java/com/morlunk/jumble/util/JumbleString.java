@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+/**
+ * The user-readable strings reported by the protocol handlers, with their default English text.
+ * Platforms supply translations through an {@link IStringProvider}; the Android library maps
+ * each string to the resource of the same name in lower case.
+ */
+public enum JumbleString {
+    AUDIO_MAX_BANDWIDTH("Server maximum network bandwidth is only %1$d kbit/s. Audio quality auto-adjusted to %2$d kbit/s (%3$d ms)"),
+    CHAT_NOTIFY_MUTED_DEAFENED("Muted and deafened."),
+    CHAT_NOTIFY_MUTED("Muted."),
+    CHAT_NOTIFY_UNMUTED("Unmuted."),
+    CHAT_NOTIFY_NOW_MUTED_DEAFENED("%s is now muted and deafened."),
+    CHAT_NOTIFY_NOW_MUTED("%s is now muted."),
+    CHAT_NOTIFY_NOW_UNMUTED("%s is now unmuted."),
+    CHAT_NOTIFY_CONNECTED("%s connected."),
+    CHAT_NOTIFY_DISCONNECTED("%s disconnected."),
+    CHAT_NOTIFY_KICK_BAN_SELF("You were kicked and banned from the server by %1$s: %2$s."),
+    CHAT_NOTIFY_KICK_SELF("You were kicked from the server by %1$s: %2$s."),
+    CHAT_NOTIFY_KICK_BAN("%3$s was kicked and banned from the server by %1$s: %2$s."),
+    CHAT_NOTIFY_KICK("%3$s was kicked from the server by %1$s: %2$s."),
+    CHAT_NOTIFY_SELF_RECORDING_STARTED("Recording started"),
+    CHAT_NOTIFY_SELF_RECORDING_STOPPED("Recording stopped"),
+    CHAT_NOTIFY_USER_RECORDING_STARTED("%s started recording."),
+    CHAT_NOTIFY_USER_RECORDING_STOPPED("%s stopped recording."),
+    CHAT_NOTIFY_USER_JOINED_CHANNEL("%s entered channel."),
+    CHAT_NOTIFY_USER_LEFT_CHANNEL("%1$s moved to %2$s."),
+    CHAT_NOTIFY_USER_JOINED_CHANNEL_BY("%1$s moved in from %2$s by %3$s."),
+    CHAT_NOTIFY_USER_LEFT_CHANNEL_BY("%1$s moved to %2$s by %3$s."),
+    DENY_REASON_CHANNEL_NAME("Denied: Invalid channel name."),
+    DENY_REASON_TEXT_TOO_LONG("Denied: Text message too long."),
+    DENY_REASON_NO_OPERATION_TEMP("Denied: Operation not permitted in temporary channel."),
+    DENY_REASON_NO_CERTIFICATE("You need a certificate to perform this operation."),
+    DENY_REASON_INVALID_USERNAME("Invalid username."),
+    DENY_REASON_CHANNEL_FULL("Channel is full."),
+    DENY_REASON_CHANNEL_NESTING("Channel nesting limit reached."),
+    DENY_REASON_OTHER("Reason: %s"),
+    PERM_DENIED("Permission denied."),
+    SERVER("Server"),
+    THE_SERVER("the server");
+
+    /** Formats strings from their default English text. */
+    public static final IStringProvider DEFAULT_PROVIDER = new IStringProvider() {
+        @Override
+        public String getString(JumbleString string, Object... formatArgs) {
+            return string.format(formatArgs);
+        }
+    };
+
+    private final String mDefaultText;
+
+    JumbleString(String defaultText) {
+        mDefaultText = defaultText;
+    }
+
+    /**
+     * @return The English text of the string, as a format string.
+     */
+    public String getDefaultText() {
+        return mDefaultText;
+    }
+
+    /**
+     * Formats the English text of the string.
+     * @param formatArgs The arguments referenced by the text's format specifiers.
+     * @return The formatted string.
+     */
+    public String format(Object... formatArgs) {
+        return String.format(mDefaultText, formatArgs);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of latencies with power-of-two microsecond buckets.
+ * Recording never allocates, and may be done from any thread.
+ * Bucket i counts samples in [2^(i-1), 2^i) microseconds; bucket 0 counts samples under 1us.
+ */
+public class LatencyHistogram {
+    /** Enough buckets to cover a little over half an hour. */
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Records a single latency sample.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        final long micros = Math.max(0, nanos / 1000);
+        final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mBuckets.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return The total number of samples recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile.
+     * @param percentile A percentile in the range [0, 100].
+     * @return The upper bound of the bucket containing the percentile in microseconds, or 0 if
+     *         no samples have been recorded.
+     */
+    public long getPercentile(double percentile) {
+        final long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        final long target = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= target && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @param bucket A bucket index in [0, {@link #getBucketCount()}).
+     * @return The number of samples recorded in the bucket.
+     */
+    public long getBucket(int bucket) {
+        return mBuckets.get(bucket);
+    }
+
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " p50<" + getPercentile(50) + "us p90<" +
+                getPercentile(90) + "us p99<" + getPercentile(99) + "us";
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue for exactly one producer thread and one consumer thread.
+ * Offering and polling never allocate, which makes this suitable for per-packet hand-off.
+ * Capacity is rounded up to the next power of two.
+ */
+public class SPSCQueue<T> {
+    private final Object[] mElements;
+    private final int mMask;
+    /** Index of the next element to poll. Only advanced by the consumer. */
+    private final AtomicLong mHead = new AtomicLong();
+    /** Index of the next slot to fill. Only advanced by the producer. */
+    private final AtomicLong mTail = new AtomicLong();
+
+    public SPSCQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mElements = new Object[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Adds an element to the tail of the queue. Must only be called from the producer thread.
+     * @param element The element to add.
+     * @return false if the queue is full.
+     */
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        final long tail = mTail.get();
+        if (tail - mHead.get() >= mElements.length) {
+            return false;
+        }
+        mElements[(int) tail & mMask] = element;
+        mTail.lazySet(tail + 1); // Publishes the element to the consumer.
+        return true;
+    }
+
+    /**
+     * Removes the element at the head of the queue. Must only be called from the consumer thread.
+     * @return The head of the queue, or null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        final long head = mHead.get();
+        if (head >= mTail.get()) {
+            return null;
+        }
+        final int index = (int) head & mMask;
+        final T element = (T) mElements[index];
+        mElements[index] = null;
+        mHead.lazySet(head + 1); // Releases the slot to the producer.
+        return element;
+    }
+
+    /**
+     * @return An estimate of the number of elements in the queue.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mElements.length;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time on a single thread, either immediately or after a delay, in the manner
+ * of an Android Handler. Tasks scheduled for the same time run in submission order.
+ */
+public interface Scheduler extends Executor {
+    /**
+     * Runs the task once the given delay has elapsed.
+     * @param task The task to run.
+     * @param delayMillis The delay in milliseconds.
+     */
+    void schedule(Runnable task, long delayMillis);
+
+    /**
+     * Removes all pending runs of the given task.
+     * @param task A task passed to {@link #execute(Runnable)} or {@link #schedule(Runnable, long)}.
+     */
+    void cancel(Runnable task);
+
+    /**
+     * @return The current time in milliseconds on the clock delays are measured with.
+     */
+    long uptimeMillis();
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time, in submission order, on an underlying executor that may itself run
+ * tasks concurrently. Each task happens-before the next, so state handed between tasks (such as
+ * pooled buffers) needs no further synchronization.
+ */
+public class SerialExecutor implements Executor {
+    private final Executor mExecutor;
+    private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+    private Runnable mActive;
+
+    public SerialExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Wraps the given executor so that it runs tasks serially, unless it already does.
+     * {@link Scheduler}s are single threaded, and are returned as is.
+     * @param executor The executor to wrap.
+     * @return A serial executor.
+     */
+    public static Executor wrap(Executor executor) {
+        if (executor instanceof SerialExecutor || executor instanceof Scheduler)
+            return executor;
+        return new SerialExecutor(executor);
+    }
+
+    @Override
+    public synchronized void execute(final Runnable command) {
+        mTasks.offer(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                } finally {
+                    scheduleNext();
+                }
+            }
+        });
+        if (mActive == null)
+            scheduleNext();
+    }
+
+    private synchronized void scheduleNext() {
+        mActive = mTasks.poll();
+        if (mActive == null)
+            return;
+        try {
+            mExecutor.execute(mActive);
+        } catch (RuntimeException e) {
+            // Don't leave later tasks waiting on one that will never run.
+            mActive = null;
+            throw e;
+        }
+    }
+}
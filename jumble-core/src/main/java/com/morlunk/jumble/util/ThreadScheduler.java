@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Scheduler} running tasks on its own thread, for use outside of Android.
+ */
+public class ThreadScheduler implements Scheduler {
+    private final ScheduledExecutorService mExecutor;
+    /** Pending runs of each task, so that they can be cancelled by task. Guarded by this. */
+    private final Map<Runnable, List<PendingRun>> mPending = new HashMap<Runnable, List<PendingRun>>();
+
+    /**
+     * @param name The name of the scheduler's thread.
+     */
+    public ThreadScheduler(final String name) {
+        mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0);
+    }
+
+    @Override
+    public synchronized void schedule(Runnable task, long delayMillis) {
+        List<PendingRun> runs = mPending.get(task);
+        if (runs == null) {
+            runs = new ArrayList<PendingRun>(1);
+            mPending.put(task, runs);
+        }
+        final PendingRun run = new PendingRun(task);
+        try {
+            run.mFuture = mExecutor.schedule(run, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (runs.isEmpty())
+                mPending.remove(task);
+            throw e;
+        }
+        runs.add(run);
+    }
+
+    @Override
+    public synchronized void cancel(Runnable task) {
+        final List<PendingRun> runs = mPending.remove(task);
+        if (runs == null)
+            return;
+        for (PendingRun run : runs) {
+            run.mFuture.cancel(false);
+        }
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Stops the scheduler's thread. Pending tasks are dropped.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Removes itself from the pending runs before running its task, unless it was cancelled.
+     */
+    private class PendingRun implements Runnable {
+        private final Runnable mTask;
+        private Future<?> mFuture;
+
+        public PendingRun(Runnable task) {
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (ThreadScheduler.this) {
+                final List<PendingRun> runs = mPending.get(mTask);
+                if (runs == null || !runs.remove(this))
+                    return;
+                if (runs.isEmpty())
+                    mPending.remove(mTask);
+            }
+            mTask.run();
+        }
+    }
+}
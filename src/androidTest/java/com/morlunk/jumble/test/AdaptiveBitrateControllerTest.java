@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.audio.AdaptiveBitrateController;
+
+import junit.framework.TestCase;
+
+/**
+ * Drives the adaptive bitrate controller with synthetic link statistics.
+ */
+public class AdaptiveBitrateControllerTest extends TestCase {
+    private static final long RTT = 50000;
+
+    public void testCleanLinkKeepsConfiguration() {
+        AdaptiveBitrateController controller = new AdaptiveBitrateController(40000, 2);
+        for (int i = 0; i < 20; i++) {
+            assertFalse(controller.update(0, RTT + (i % 3) * 5000));
+        }
+        assertEquals(40000, controller.getBitrate());
+        assertEquals(2, controller.getFramesPerPacket());
+    }
+
+    public void testLossReducesBitrateThenPacketization() {
+        AdaptiveBitrateController controller = new AdaptiveBitrateController(40000, 1);
+        assertTrue(controller.update(10, RTT));
+        assertEquals(30000, controller.getBitrate());
+        assertEquals(1, controller.getFramesPerPacket());
+
+        for (int i = 0; i < 10; i++) {
+            controller.update(10, RTT);
+        }
+        assertEquals(AdaptiveBitrateController.MIN_BITRATE, controller.getBitrate());
+        assertEquals(6, controller.getFramesPerPacket());
+    }
+
+    public void testQueueingDelayReducesBitrate() {
+        AdaptiveBitrateController controller = new AdaptiveBitrateController(40000, 1);
+        for (int i = 0; i < 5; i++) {
+            controller.update(0, RTT);
+        }
+        assertTrue(controller.update(0, RTT + AdaptiveBitrateController.QUEUEING_DELAY_THRESHOLD * 2));
+        assertTrue(controller.getBitrate() < 40000);
+    }
+
+    public void testRecovery() {
+        AdaptiveBitrateController controller = new AdaptiveBitrateController(40000, 1);
+        for (int i = 0; i < 10; i++) {
+            controller.update(20, RTT);
+        }
+        int lastBitrate = controller.getBitrate();
+        int lastFramesPerPacket = controller.getFramesPerPacket();
+        for (int i = 0; i < 100; i++) {
+            controller.update(0, RTT);
+            // Recovery is monotonic, and never exceeds the configuration.
+            assertTrue(controller.getBitrate() >= lastBitrate);
+            assertTrue(controller.getFramesPerPacket() <= lastFramesPerPacket);
+            lastBitrate = controller.getBitrate();
+            lastFramesPerPacket = controller.getFramesPerPacket();
+        }
+        assertEquals(40000, controller.getBitrate());
+        assertEquals(1, controller.getFramesPerPacket());
+    }
+}
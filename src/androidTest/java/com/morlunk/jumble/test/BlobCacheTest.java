@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.util.BlobCache;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+public class BlobCacheTest extends TestCase {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File mDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(System.getProperty("java.io.tmpdir"),
+                "blobcache-" + System.nanoTime());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+        super.tearDown();
+    }
+
+    public void testHash() {
+        // SHA-1 of "abc".
+        final byte[] expected = {
+                (byte) 0xa9, (byte) 0x99, 0x3e, 0x36, 0x47, 0x06, (byte) 0x81, 0x6a, (byte) 0xba,
+                0x3e, 0x25, 0x71, 0x78, 0x50, (byte) 0xc2, 0x6c, (byte) 0x9c, (byte) 0xd0,
+                (byte) 0xd8, (byte) 0x9d };
+        assertTrue(Arrays.equals(expected, BlobCache.hash("abc".getBytes())));
+
+        final BlobCache cache = new BlobCache(1024);
+        final byte[] hash = cache.put("abc".getBytes());
+        assertTrue(Arrays.equals(expected, hash));
+        assertTrue(cache.contains(hash));
+        assertFalse(cache.contains(BlobCache.hash("abd".getBytes())));
+    }
+
+    public void testMemoryEviction() {
+        final BlobCache cache = new BlobCache(250);
+        final byte[] first = cache.put(filled(100, 1));
+        final byte[] second = cache.put(filled(100, 2));
+        cache.get(first); // Make the second blob the least recently used.
+        final byte[] third = cache.put(filled(100, 3));
+        assertEquals(200, cache.getMemorySize());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+
+        // Blobs larger than the whole cache are not kept.
+        cache.put(filled(300, 4));
+        assertEquals(200, cache.getMemorySize());
+    }
+
+    public void testDiskTier() {
+        final byte[] data = filled(100, 5);
+        BlobCache cache = new BlobCache(mDirectory, 150, 1024, DIRECT_EXECUTOR);
+        final byte[] hash = cache.put(data);
+        cache.put(filled(100, 6)); // Evicts the first blob from memory.
+        assertTrue(cache.contains(hash));
+        assertTrue(Arrays.equals(data, cache.get(hash)));
+
+        // A new cache over the same directory, as after a restart.
+        cache = new BlobCache(mDirectory, 150, 1024, DIRECT_EXECUTOR);
+        assertEquals(0, cache.getMemorySize());
+        assertTrue(Arrays.equals(data, cache.get(hash)));
+        assertEquals(100, cache.getMemorySize());
+    }
+
+    public void testLoadFromDisk() {
+        final byte[] data = filled(100, 7);
+        final BlobCache writer = new BlobCache(mDirectory, 150, 1024, DIRECT_EXECUTOR);
+        final byte[] hash = writer.put(data);
+
+        // Memory lookups never touch the disk.
+        final BlobCache cache = new BlobCache(mDirectory, 150, 1024, DIRECT_EXECUTOR);
+        assertNull(cache.getFromMemory(hash));
+
+        final byte[][] loaded = new byte[1][];
+        cache.load(hash, DIRECT_EXECUTOR, new BlobCache.LoadCallback() {
+            @Override
+            public void onBlobLoaded(byte[] blobHash, byte[] blob) {
+                loaded[0] = blob;
+            }
+        });
+        assertTrue(Arrays.equals(data, loaded[0]));
+        assertTrue(Arrays.equals(data, cache.getFromMemory(hash)));
+
+        loaded[0] = data;
+        cache.load(BlobCache.hash(filled(100, 8)), DIRECT_EXECUTOR, new BlobCache.LoadCallback() {
+            @Override
+            public void onBlobLoaded(byte[] blobHash, byte[] blob) {
+                loaded[0] = blob;
+            }
+        });
+        assertNull(loaded[0]);
+    }
+
+    public void testDiskTrim() {
+        final BlobCache cache = new BlobCache(mDirectory, 0, 250, DIRECT_EXECUTOR);
+        for (int i = 0; i < 5; i++) {
+            cache.put(filled(100, i));
+        }
+        long size = 0;
+        for (File file : mDirectory.listFiles()) {
+            size += file.length();
+        }
+        assertTrue(size <= 250);
+    }
+
+    private static byte[] filled(int length, int value) {
+        final byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import android.util.Log;
+
+import com.morlunk.jumble.util.ConcurrentIntMap;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the int-keyed map used for model lookups, and compares its lookup throughput against a
+ * boxed {@link HashMap}.
+ */
+public class ConcurrentIntMapTest extends TestCase {
+    private static final String TAG = "ConcurrentIntMapTest";
+    private static final int SESSIONS = 4000;
+    private static final int LOOKUPS = 2000000;
+
+    public void testPutGetRemove() {
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<String>();
+        Map<Integer, String> reference = new HashMap<Integer, String>();
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(500) - 50;
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                String value = "value " + i;
+                assertEquals(reference.put(key, value), map.put(key, value));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (int key = -50; key < 450; key++) {
+            assertEquals(reference.get(key), map.get(key));
+        }
+        assertEquals(reference.size(), map.values().size());
+        assertEquals(reference.size(), map.keys().length);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    /**
+     * Reads a stable set of keys from another thread while the writer churns through other keys
+     * and forces the table to be rebuilt.
+     */
+    public void testConcurrentReads() throws InterruptedException {
+        final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<Integer>();
+        for (int i = 0; i < 64; i++) {
+            map.put(i, i);
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    for (int i = 0; i < 64; i++) {
+                        Integer value = map.get(i);
+                        if (value == null || value != i) {
+                            failure.set("Lookup of " + i + " returned " + value);
+                            return;
+                        }
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200000; i++) {
+            int key = 1000 + (i % 5000);
+            if ((i / 5000) % 2 == 0) {
+                map.put(key, key);
+            } else {
+                map.remove(key);
+            }
+        }
+        running.set(false);
+        reader.join();
+        assertNull(failure.get(), failure.get());
+    }
+
+    public void testLookupBenchmark() {
+        ConcurrentIntMap<Object> intMap = new ConcurrentIntMap<Object>();
+        Map<Integer, Object> hashMap = new HashMap<Integer, Object>();
+        Random random = new Random(0);
+        int[] sessions = new int[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions[i] = 1 + random.nextInt(SESSIONS * 4);
+            Object user = new Object();
+            intMap.put(sessions[i], user);
+            hashMap.put(sessions[i], user);
+        }
+
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (hashMap.get(sessions[i % SESSIONS]) != null) hits++;
+        }
+        long hashMapTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (intMap.get(sessions[i % SESSIONS]) != null) hits++;
+        }
+        long intMapTime = System.nanoTime() - start;
+
+        assertEquals(LOOKUPS * 2, hits);
+        Log.i(TAG, LOOKUPS + " lookups over " + SESSIONS + " sessions: HashMap " +
+                (hashMapTime / 1000000) + "ms, ConcurrentIntMap " + (intMapTime / 1000000) + "ms");
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.morlunk.jumble.test;
+
+import android.os.Debug;
+import android.util.Log;
+
+import com.morlunk.jumble.net.CryptState;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the OCB-AES128 implementation, and measures allocations on the datagram decrypt path.
+ */
+public class CryptStateTest extends TestCase {
+    private static final String TAG = "CryptStateTest";
+    private static final int PACKET_COUNT = 1000;
+    private static final int PACKET_SIZE = 120;
+
+    private CryptState mEncrypt;
+    private CryptState mDecrypt;
+
+    @Override
+    protected void setUp() throws Exception {
+        Random random = new Random(0);
+        byte[] key = new byte[CryptState.AES_BLOCK_SIZE];
+        byte[] clientNonce = new byte[CryptState.AES_BLOCK_SIZE];
+        byte[] serverNonce = new byte[CryptState.AES_BLOCK_SIZE];
+        random.nextBytes(key);
+        random.nextBytes(clientNonce);
+        random.nextBytes(serverNonce);
+        mEncrypt = new CryptState();
+        mEncrypt.setKeys(key, clientNonce, serverNonce);
+        mDecrypt = new CryptState();
+        mDecrypt.setKeys(key, serverNonce, clientNonce);
+    }
+
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(1);
+        for (int size = 1; size < 100; size++) {
+            byte[] plain = new byte[size];
+            random.nextBytes(plain);
+            byte[] encrypted = mEncrypt.encrypt(plain, size);
+            assertEquals(size + 4, encrypted.length);
+            assertTrue("Decryption should succeed",
+                    Arrays.equals(plain, mDecrypt.decrypt(encrypted, encrypted.length)));
+        }
+    }
+
+    public void testInPlaceDecrypt() throws Exception {
+        byte[] plain = new byte[PACKET_SIZE];
+        new Random(2).nextBytes(plain);
+        byte[] encrypted = mEncrypt.encrypt(plain, plain.length);
+        int length = mDecrypt.decrypt(encrypted, 0, encrypted.length, encrypted, 0);
+        assertEquals(PACKET_SIZE, length);
+        assertTrue(Arrays.equals(plain, Arrays.copyOf(encrypted, length)));
+    }
+
+    public void testEncryptIntoBuffer() throws Exception {
+        byte[] plain = new byte[PACKET_SIZE];
+        new Random(3).nextBytes(plain);
+        byte[] datagram = new byte[PACKET_SIZE + 8];
+        int length = mEncrypt.encrypt(plain, 0, plain.length, datagram, 4);
+        assertEquals(PACKET_SIZE + 4, length);
+        byte[] decrypted = mDecrypt.decrypt(Arrays.copyOfRange(datagram, 4, 4 + length), length);
+        assertTrue(Arrays.equals(plain, decrypted));
+    }
+
+    public void testTamperedPacketRejected() throws Exception {
+        byte[] encrypted = mEncrypt.encrypt(new byte[PACKET_SIZE], PACKET_SIZE);
+        encrypted[10] ^= 0x1;
+        byte[] dst = new byte[PACKET_SIZE];
+        assertEquals(-1, mDecrypt.decrypt(encrypted, 0, encrypted.length, dst, 0));
+    }
+
+    /**
+     * Compares the number of objects allocated by the legacy and buffer-reusing decrypt calls.
+     */
+    public void testDecryptAllocations() throws Exception {
+        byte[][] packets = new byte[PACKET_COUNT * 2][];
+        for (int i = 0; i < packets.length; i++) {
+            packets[i] = mEncrypt.encrypt(new byte[PACKET_SIZE], PACKET_SIZE);
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < PACKET_COUNT; i++) {
+            assertNotNull(mDecrypt.decrypt(packets[i], packets[i].length));
+        }
+        int legacyAllocs = Debug.getThreadAllocCount();
+
+        byte[] dst = new byte[PACKET_SIZE];
+        Debug.resetThreadAllocCount();
+        for (int i = PACKET_COUNT; i < packets.length; i++) {
+            assertEquals(PACKET_SIZE, mDecrypt.decrypt(packets[i], 0, packets[i].length, dst, 0));
+        }
+        int reuseAllocs = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        Log.i(TAG, "Allocations per packet: legacy " + ((float) legacyAllocs / PACKET_COUNT) +
+                ", reused buffers " + ((float) reuseAllocs / PACKET_COUNT));
+        assertTrue("Decrypting into a supplied buffer should allocate less",
+                reuseAllocs < legacyAllocs);
+    }
+}
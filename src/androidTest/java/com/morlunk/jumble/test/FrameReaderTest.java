@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.net.FrameReader;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.util.Arrays;
+
+/**
+ * Tests parsing of incoming TCP frames, including frames split across reads.
+ */
+public class FrameReaderTest extends TestCase {
+
+    public void testFramesAcrossSmallReads() throws Exception {
+        byte[] large = new byte[50000];
+        Arrays.fill(large, (byte) 9);
+        byte[] stream = frames(new byte[] { 1, 2, 3 }, new byte[0], large, new byte[] { 4 });
+
+        // Deliver a few bytes at a time, splitting headers and payloads.
+        FrameReader reader = new FrameReader(new TrickleStream(stream, 5));
+        assertFrame(reader, 0, new byte[] { 1, 2, 3 });
+        assertFrame(reader, 1, new byte[0]);
+        assertFrame(reader, 2, large);
+        assertFrame(reader, 3, new byte[] { 4 });
+        assertFalse(reader.next());
+    }
+
+    public void testOversizedFrameRejected() throws Exception {
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(frames(new byte[1025])), 1024);
+        try {
+            reader.next();
+            fail("Expected a protocol exception");
+        } catch (ProtocolException e) {
+            // Expected
+        }
+    }
+
+    public void testTruncatedFrame() throws Exception {
+        byte[] stream = frames(new byte[10]);
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(
+                Arrays.copyOf(stream, stream.length - 1)));
+        try {
+            reader.next();
+            fail("Expected an EOF exception");
+        } catch (EOFException e) {
+            // Expected
+        }
+    }
+
+    private static void assertFrame(FrameReader reader, int type, byte[] payload) throws IOException {
+        assertTrue(reader.next());
+        assertEquals(type, reader.getType());
+        assertEquals(payload.length, reader.getLength());
+        assertTrue(Arrays.equals(payload, Arrays.copyOfRange(reader.getBuffer(),
+                reader.getOffset(), reader.getOffset() + reader.getLength())));
+    }
+
+    /**
+     * Encodes the given payloads as frames, using each payload's index as its type.
+     */
+    private static byte[] frames(byte[]... payloads) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (int i = 0; i < payloads.length; i++) {
+            output.writeShort(i);
+            output.writeInt(payloads[i].length);
+            output.write(payloads[i]);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class TrickleStream extends InputStream {
+        private final byte[] mData;
+        private final int mChunk;
+        private int mPosition;
+
+        TrickleStream(byte[] data, int chunk) {
+            mData = data;
+            mChunk = chunk;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return mPosition < mData.length ? mData[mPosition++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (mPosition >= mData.length)
+                return -1;
+            int read = Math.min(Math.min(length, mChunk), mData.length - mPosition);
+            System.arraycopy(mData, mPosition, buffer, offset, read);
+            mPosition += read;
+            return read;
+        }
+    }
+}
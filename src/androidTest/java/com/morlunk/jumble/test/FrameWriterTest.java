@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.net.FrameWriter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests framing and batching of outgoing TCP messages.
+ */
+public class FrameWriterTest extends TestCase {
+    private RecordingStream mStream;
+    private FrameWriter mWriter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStream = new RecordingStream();
+        mWriter = new FrameWriter(mStream);
+    }
+
+    public void testQueuedFramesShareOneWrite() throws Exception {
+        assertTrue(mWriter.write(1, new byte[] { 1, 2, 3 }, 3));
+        assertTrue(mWriter.write(3, new byte[] { 4, 5, 6, 7 }, 2));
+        assertTrue(mWriter.write(20, new byte[0], 0));
+        mWriter.close();
+        assertFalse(mWriter.write(1, new byte[1], 1));
+        mWriter.drain();
+
+        assertEquals(1, mStream.writes.size());
+        assertEquals(3, mWriter.getFrameCount());
+        assertEquals(1, mWriter.getBatchCount());
+
+        DataInputStream input = mStream.read();
+        assertEquals(1, input.readShort());
+        assertEquals(3, input.readInt());
+        assertEquals(1, input.readByte());
+        assertEquals(2, input.readByte());
+        assertEquals(3, input.readByte());
+        assertEquals(3, input.readShort());
+        assertEquals(2, input.readInt());
+        assertEquals(4, input.readByte());
+        assertEquals(5, input.readByte());
+        assertEquals(20, input.readShort());
+        assertEquals(0, input.readInt());
+        assertEquals(0, input.available());
+    }
+
+    public void testLargeFramesGrowBuffer() throws Exception {
+        byte[] data = new byte[100000];
+        Arrays.fill(data, (byte) 7);
+        mWriter.write(1, data, data.length);
+        mWriter.close();
+        mWriter.drain();
+
+        DataInputStream input = mStream.read();
+        assertEquals(1, input.readShort());
+        assertEquals(data.length, input.readInt());
+        byte[] read = new byte[data.length];
+        input.readFully(read);
+        assertTrue(Arrays.equals(data, read));
+    }
+
+    public void testDeadlineBatchesFrames() throws Exception {
+        mWriter.setFlushDeadline(500000);
+        Thread thread = startDrain();
+        for (int i = 0; i < 10; i++) {
+            mWriter.write(1, new byte[10], 10);
+        }
+        Thread.sleep(1000);
+        assertEquals(1, mStream.writes.size());
+        mWriter.close();
+        thread.join(1000);
+        assertEquals(1, mWriter.getBatchCount());
+    }
+
+    public void testFullRecordFlushesBeforeDeadline() throws Exception {
+        mWriter.setFlushDeadline(60000000);
+        Thread thread = startDrain();
+        byte[] data = new byte[1024];
+        for (int i = 0; i < FrameWriter.FLUSH_THRESHOLD / data.length; i++) {
+            mWriter.write(1, data, data.length);
+        }
+        synchronized (mStream) {
+            if (mStream.writes.isEmpty())
+                mStream.wait(5000);
+        }
+        assertEquals(1, mStream.writes.size());
+        mWriter.close();
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+    }
+
+    private Thread startDrain() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mWriter.drain();
+                } catch (IOException | InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static class RecordingStream extends OutputStream {
+        final List<byte[]> writes = new ArrayList<byte[]>();
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            writes.add(Arrays.copyOfRange(b, off, off + len));
+            notifyAll();
+        }
+
+        synchronized DataInputStream read() {
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            for (byte[] write : writes) {
+                all.write(write, 0, write.length);
+            }
+            return new DataInputStream(new ByteArrayInputStream(all.toByteArray()));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import android.os.Debug;
+import android.util.Log;
+
+import com.google.protobuf.ByteString;
+import com.morlunk.jumble.audio.IAudioMixerSource;
+import com.morlunk.jumble.audio.JitterBuffer;
+import com.morlunk.jumble.audio.SoftLimitingShortMixer;
+import com.morlunk.jumble.net.CryptState;
+import com.morlunk.jumble.net.PacketBuffer;
+import com.morlunk.jumble.protobuf.Mumble;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures time and allocations per operation on the per-packet receive and playback paths.
+ * Results are logged under {@link #TAG} as "name: N ns/op, M allocs/op" for comparison between
+ * builds; nothing is asserted, as timings vary too much between devices.
+ */
+public class HotPathBenchmarkTest extends TestCase {
+    private static final String TAG = "HotPathBenchmark";
+    private static final int ITERATIONS = 10000;
+    private static final int PACKET_SIZE = 120;
+    private static final int FRAME_SIZE = 480;
+    private static final int USER_COUNT = 1000;
+
+    public void testPacketBufferLongs() {
+        final long[] values = new long[256];
+        final Random random = new Random(0);
+        for (int i = 0; i < values.length; i++) {
+            // Cover every encoded length, negative values included.
+            values[i] = random.nextLong() >> random.nextInt(64);
+        }
+        final PacketBuffer buffer = PacketBuffer.allocate(values.length * 10);
+        measure("PacketBuffer.writeLong/readLong x" + values.length, ITERATIONS / 10,
+                new Operation() {
+            @Override
+            public void run(int iteration) {
+                buffer.rewind();
+                for (long value : values) {
+                    buffer.writeLong(value);
+                }
+                buffer.rewind();
+                for (long value : values) {
+                    if (buffer.readLong() != value)
+                        throw new AssertionError("Value " + value + " did not survive a round trip");
+                }
+            }
+        });
+    }
+
+    public void testCryptState() throws Exception {
+        final Random random = new Random(1);
+        final byte[] key = new byte[CryptState.AES_BLOCK_SIZE];
+        final byte[] clientNonce = new byte[CryptState.AES_BLOCK_SIZE];
+        final byte[] serverNonce = new byte[CryptState.AES_BLOCK_SIZE];
+        random.nextBytes(key);
+        random.nextBytes(clientNonce);
+        random.nextBytes(serverNonce);
+        final CryptState encrypt = new CryptState();
+        encrypt.setKeys(key, clientNonce, serverNonce);
+        final CryptState decrypt = new CryptState();
+        decrypt.setKeys(key, serverNonce, clientNonce);
+
+        final byte[] plain = new byte[PACKET_SIZE];
+        random.nextBytes(plain);
+        // One datagram per encrypt call, warm-up included, so they decrypt in sequence below.
+        final byte[][] datagrams = new byte[totalIterations(ITERATIONS)][PACKET_SIZE + 4];
+        measure("CryptState.encrypt", ITERATIONS, new Operation() {
+            @Override
+            public void run(int iteration) throws Exception {
+                encrypt.encrypt(plain, 0, plain.length, datagrams[iteration], 0);
+            }
+        });
+        measure("CryptState.decrypt", ITERATIONS, new Operation() {
+            @Override
+            public void run(int iteration) throws Exception {
+                final byte[] datagram = datagrams[iteration];
+                if (decrypt.decrypt(datagram, 0, datagram.length, datagram, 0) != PACKET_SIZE)
+                    throw new AssertionError("Decryption failed");
+            }
+        });
+    }
+
+    public void testJitterBuffer() {
+        final JitterBuffer jitterBuffer = new JitterBuffer(FRAME_SIZE, 32, PACKET_SIZE);
+        final JitterBuffer.Packet packet = new JitterBuffer.Packet(PACKET_SIZE);
+        final ByteBuffer data = ByteBuffer.allocate(PACKET_SIZE);
+        measure("JitterBuffer.put/get", ITERATIONS, new Operation() {
+            @Override
+            public void run(int iteration) {
+                data.clear();
+                jitterBuffer.put(data, (iteration + 1) * FRAME_SIZE, FRAME_SIZE, 0);
+                jitterBuffer.get(packet);
+                jitterBuffer.updateDelay();
+            }
+        });
+    }
+
+    public void testSoftLimitingShortMixer() {
+        benchmarkSoftLimitingShortMixer(1);
+        benchmarkSoftLimitingShortMixer(2);
+    }
+
+    private static void benchmarkSoftLimitingShortMixer(int channels) {
+        final Random random = new Random(2);
+        final short[] output = new short[FRAME_SIZE * channels];
+        for (int sourceCount = 1; sourceCount <= 64; sourceCount *= 4) {
+            final List<IAudioMixerSource<float[]>> sources = new ArrayList<>();
+            for (int s = 0; s < sourceCount; s++) {
+                final float[] samples = new float[FRAME_SIZE];
+                for (int i = 0; i < FRAME_SIZE; i++) {
+                    samples[i] = (random.nextFloat() * 2 - 1) / sourceCount;
+                }
+                sources.add(new FrameSource(samples));
+            }
+            final SoftLimitingShortMixer mixer = new SoftLimitingShortMixer(channels);
+            measure("SoftLimitingShortMixer.mix, " + channels + " channel(s), " + sourceCount +
+                    " sources", ITERATIONS / 10,
+                    new Operation() {
+                @Override
+                public void run(int iteration) {
+                    mixer.mix(sources, output, 0, FRAME_SIZE);
+                }
+            });
+        }
+    }
+
+    /**
+     * Parses a burst of UserState messages, as received when joining a busy server.
+     */
+    public void testUserStateParsing() throws Exception {
+        final byte[][] messages = new byte[USER_COUNT][];
+        final byte[] hash = new byte[20];
+        final Random random = new Random(3);
+        for (int i = 0; i < USER_COUNT; i++) {
+            random.nextBytes(hash);
+            messages[i] = Mumble.UserState.newBuilder()
+                    .setSession(i + 1)
+                    .setName("User " + i)
+                    .setChannelId(i % 50)
+                    .setUserId(i)
+                    .setTextureHash(ByteString.copyFrom(hash))
+                    .setCommentHash(ByteString.copyFrom(hash))
+                    .setHash("0123456789abcdef0123456789abcdef01234567")
+                    .build()
+                    .toByteArray();
+        }
+        measure("UserState.parseFrom x" + USER_COUNT, 20, new Operation() {
+            @Override
+            public void run(int iteration) throws Exception {
+                for (byte[] message : messages) {
+                    Mumble.UserState.parser().parseFrom(message, 0, message.length);
+                }
+            }
+        });
+    }
+
+    private interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    /**
+     * @return The number of times {@link #measure} runs an operation, including warm-up.
+     */
+    private static int totalIterations(int iterations) {
+        return iterations + iterations / 10;
+    }
+
+    /**
+     * Runs the operation a tenth as many times to warm up, then the given number of times while
+     * counting time and allocations on this thread. Iteration numbers continue from the warm-up,
+     * so every call gets a distinct one.
+     */
+    private static void measure(String name, int iterations, Operation operation) {
+        try {
+            final int warmup = iterations / 10;
+            for (int i = 0; i < warmup; i++) {
+                operation.run(i);
+            }
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            final long start = System.nanoTime();
+            for (int i = warmup; i < warmup + iterations; i++) {
+                operation.run(i);
+            }
+            final long elapsed = System.nanoTime() - start;
+            final int allocs = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+            Log.i(TAG, name + ": " + (elapsed / iterations) + " ns/op, " +
+                    ((float) allocs / iterations) + " allocs/op");
+        } catch (Exception e) {
+            throw new RuntimeException(name + " failed", e);
+        }
+    }
+
+    private static class FrameSource implements IAudioMixerSource<float[]> {
+        private final float[] mSamples;
+
+        public FrameSource(float[] samples) {
+            mSamples = samples;
+        }
+
+        @Override
+        public float[] getSamples() {
+            return mSamples;
+        }
+
+        @Override
+        public int getNumSamples() {
+            return mSamples.length;
+        }
+    }
+}
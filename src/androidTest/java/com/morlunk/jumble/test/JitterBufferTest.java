@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.audio.JitterBuffer;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the jitter buffer against synthetic loss, reordering and jitter traces.
+ */
+public class JitterBufferTest extends TestCase {
+    private static final int FRAME_SIZE = 480;
+    private static final int CAPACITY = 32;
+    private static final int MAX_PACKET_SIZE = 64;
+
+    private JitterBuffer mBuffer;
+    private JitterBuffer.Packet mPacket;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBuffer = new JitterBuffer(FRAME_SIZE, CAPACITY, MAX_PACKET_SIZE);
+        mPacket = new JitterBuffer.Packet(MAX_PACKET_SIZE);
+    }
+
+    public void testInOrder() {
+        assertEquals(JitterBuffer.JITTER_BUFFER_MISSING, mBuffer.get(mPacket));
+        assertEquals(0, mBuffer.getPointerTimestamp());
+
+        for (int seq = 1; seq <= 3; seq++) {
+            assertTrue(put(seq));
+        }
+        assertEquals(3, mBuffer.getAvailableCount());
+        for (int seq = 1; seq <= 3; seq++) {
+            assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+            assertEquals(seq, readSequence(mPacket));
+            assertEquals(seq * FRAME_SIZE, mPacket.getTimestamp());
+            assertEquals(seq & 0xFF, mPacket.getUserData());
+            assertEquals((seq + 1) * FRAME_SIZE, mBuffer.getPointerTimestamp());
+        }
+        assertEquals(0, mBuffer.getAvailableCount());
+        assertEquals(JitterBuffer.JITTER_BUFFER_MISSING, mBuffer.get(mPacket));
+        assertEquals(1, mBuffer.getLostCount());
+    }
+
+    public void testReordering() {
+        put(1);
+        put(3);
+        put(2);
+        put(5);
+        put(4);
+        for (int seq = 1; seq <= 5; seq++) {
+            assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+            assertEquals(seq, readSequence(mPacket));
+        }
+    }
+
+    public void testLossAndLatePackets() {
+        put(1);
+        put(3);
+        assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+        assertEquals(JitterBuffer.JITTER_BUFFER_MISSING, mBuffer.get(mPacket));
+        assertEquals(3 * FRAME_SIZE, mBuffer.getPointerTimestamp());
+
+        // Sequence 2 has already been concealed, so it must not be played out of turn.
+        assertFalse(put(2));
+        assertEquals(1, mBuffer.getLateCount());
+        assertFalse(put(3));
+
+        assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+        assertEquals(3, readSequence(mPacket));
+    }
+
+    public void testMultiFramePackets() {
+        // Packets spanning several frames, as sent by Opus with more than one frame per packet.
+        for (int seq = 0; seq < 12; seq += 4) {
+            assertTrue(mBuffer.put(encode(seq), seq * FRAME_SIZE, 4 * FRAME_SIZE, 0));
+        }
+        for (int seq = 0; seq < 12; seq += 4) {
+            assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+            assertEquals(seq, readSequence(mPacket));
+            assertEquals(4 * FRAME_SIZE, mPacket.getSpan());
+        }
+    }
+
+    public void testGapAfterLostMultiFramePacket() {
+        // The packet at sequence 4 is lost, leaving a gap of four frames before sequence 8.
+        assertTrue(mBuffer.put(encode(0), 0, 4 * FRAME_SIZE, 0));
+        assertTrue(mBuffer.put(encode(8), 8 * FRAME_SIZE, 4 * FRAME_SIZE, 0));
+        assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+        assertEquals(JitterBuffer.JITTER_BUFFER_MISSING, mBuffer.get(mPacket));
+
+        // Too far ahead to recover.
+        assertEquals(0, mBuffer.peekAfterGap(mPacket, 3 * FRAME_SIZE));
+        assertEquals(5 * FRAME_SIZE, mBuffer.getPointerTimestamp());
+
+        assertEquals(4 * FRAME_SIZE, mBuffer.peekAfterGap(mPacket, 12 * FRAME_SIZE));
+        assertEquals(8, readSequence(mPacket));
+        assertEquals(4, mBuffer.getLostCount());
+        assertEquals(8 * FRAME_SIZE, mBuffer.getPointerTimestamp());
+
+        // The packet is played next, once the gap has been recovered from it.
+        assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+        assertEquals(8, readSequence(mPacket));
+    }
+
+    public void testCapacityEvictsOldest() {
+        for (int seq = 1; seq <= CAPACITY + 4; seq++) {
+            assertTrue(put(seq));
+        }
+        assertEquals(CAPACITY, mBuffer.getAvailableCount());
+        assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+        assertEquals(5, readSequence(mPacket));
+    }
+
+    public void testReset() {
+        put(7);
+        mBuffer.get(mPacket);
+        mBuffer.reset();
+        assertEquals(0, mBuffer.getPointerTimestamp());
+        assertEquals(0, mBuffer.getAvailableCount());
+        put(2);
+        assertEquals(JitterBuffer.JITTER_BUFFER_OK, mBuffer.get(mPacket));
+        assertEquals(2, readSequence(mPacket));
+    }
+
+    /**
+     * With no jitter the buffer should play everything, and trim a deep start-up buffer back
+     * towards the margin.
+     */
+    public void testSteadyStreamReducesLatency() {
+        mBuffer.setMargin(2 * FRAME_SIZE);
+        Trace trace = simulate(1000, 0, 0, 15, 0);
+        assertEquals(0, trace.late);
+        assertTrue("Delay of " + trace.finalDelay + " frames", trace.finalDelay <= 4);
+    }
+
+    /**
+     * Starting with a single buffered frame, the buffer should grow its delay to absorb up to
+     * 60ms of jitter so that few packets end up late.
+     */
+    public void testJitterIncreasesDelay() {
+        mBuffer.setMargin(10 * FRAME_SIZE);
+        Trace trace = simulate(3000, 6 * FRAME_SIZE, 0, 1, 1);
+        assertTrue("Delay of " + trace.finalDelay + " frames", trace.finalDelay >= 3);
+        assertTrue(trace.late + " late packets", trace.late < 3000 * 0.05);
+        assertTrue(trace.played + " played", trace.played > 3000 * 0.9);
+    }
+
+    public void testLossIsConcealed() {
+        mBuffer.setMargin(10 * FRAME_SIZE);
+        Trace trace = simulate(2000, 2 * FRAME_SIZE, 0.1f, 3, 2);
+        assertTrue(trace.played > 2000 * 0.85);
+        assertTrue(trace.missing > 2000 * 0.05);
+    }
+
+    private static class Trace {
+        int played;
+        int missing;
+        int late;
+        int finalDelay;
+    }
+
+    /**
+     * Sends frames every FRAME_SIZE samples with random network delay, and plays them back at the
+     * same rate once prebuffer frames are available.
+     * @param frames The number of frames sent.
+     * @param maxJitter The maximum network delay in samples.
+     * @param loss The probability of a packet being lost.
+     * @param prebuffer The number of packets to buffer before playback starts.
+     * @param seed The random seed.
+     */
+    private Trace simulate(int frames, int maxJitter, float loss, int prebuffer, long seed) {
+        Random random = new Random(seed);
+        List<int[]> arrivals = new ArrayList<int[]>();
+        for (int seq = 0; seq < frames; seq++) {
+            if (random.nextFloat() < loss)
+                continue;
+            int delay = maxJitter > 0 ? random.nextInt(maxJitter) : 0;
+            arrivals.add(new int[] { seq * FRAME_SIZE + delay, seq });
+        }
+        Collections.sort(arrivals, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] lhs, int[] rhs) {
+                return lhs[0] - rhs[0];
+            }
+        });
+
+        Trace trace = new Trace();
+        int next = 0;
+        int lastSequence = -1;
+        boolean started = false;
+        for (int time = 0; time < (frames + 64) * FRAME_SIZE; time += FRAME_SIZE) {
+            while (next < arrivals.size() && arrivals.get(next)[0] <= time) {
+                if (!put(arrivals.get(next)[1]))
+                    trace.late++;
+                next++;
+            }
+            if (!started && mBuffer.getAvailableCount() < prebuffer)
+                continue;
+            started = true;
+            int result = mBuffer.get(mPacket);
+            if (result == JitterBuffer.JITTER_BUFFER_OK) {
+                int sequence = readSequence(mPacket);
+                assertTrue(sequence > lastSequence);
+                lastSequence = sequence;
+                trace.played++;
+            } else {
+                trace.missing++;
+            }
+            mBuffer.updateDelay();
+            if (time == (frames - 1) * FRAME_SIZE) {
+                // How far playback lags behind the sender, once the stream has settled.
+                trace.finalDelay = (time - mBuffer.getPointerTimestamp()) / FRAME_SIZE;
+            }
+            if (lastSequence == frames - 1)
+                break;
+        }
+        return trace;
+    }
+
+    private boolean put(int seq) {
+        return mBuffer.put(encode(seq), seq * FRAME_SIZE, FRAME_SIZE, seq & 0xFF);
+    }
+
+    private static ByteBuffer encode(int seq) {
+        ByteBuffer data = ByteBuffer.allocate(4);
+        data.putInt(seq);
+        data.flip();
+        return data;
+    }
+
+    private static int readSequence(JitterBuffer.Packet packet) {
+        assertEquals(4, packet.getLength());
+        return packet.getData().getInt(0);
+    }
+}
@@ -1,23 +1,42 @@
 package com.morlunk.jumble.test;
 
+import android.util.Log;
+
 import com.morlunk.jumble.audio.BasicClippingShortMixer;
 import com.morlunk.jumble.audio.IAudioMixer;
 import com.morlunk.jumble.audio.IAudioMixerSource;
+import com.morlunk.jumble.audio.IPannedAudioMixerSource;
+import com.morlunk.jumble.audio.SoftLimitingShortMixer;
 
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Created by andrew on 16/07/15.
  */
 public class MixerTest extends TestCase {
+    private static final String TAG = "MixerTest";
+    private static final int BENCHMARK_FRAME_SIZE = 1920;
+    private static final int BENCHMARK_ITERATIONS = 500;
+
     /**
      * Tests that mixing order should not affect the output.
      */
     public void testMixerCommutativity(IAudioMixer<float[], short[]> mixer) {
+        testMixerCommutativity(mixer, mixer);
+    }
+
+    /**
+     * Tests that mixing order should not affect the output, mixing each order with its own mixer
+     * so that stateful mixers start from the same state.
+     */
+    public void testMixerCommutativity(IAudioMixer<float[], short[]> mixerABC,
+                                       IAudioMixer<float[], short[]> mixerCBA) {
         BasicSource<float[]> pcmA = new BasicSource<>(new float[] { 0.2f, 0.5f, 0.7f }, 3);
         BasicSource<float[]> pcmB = new BasicSource<>(new float[] { 0.3f, 0.5f, 0.5f }, 3);
         BasicSource<float[]> pcmC = new BasicSource<>(new float[] { 0.0f, 0.0f, -0.5f }, 3);
@@ -33,8 +52,8 @@ public class MixerTest extends TestCase {
         sourcesCBA.add(pcmB);
         sourcesCBA.add(pcmA);
 
-        mixer.mix(sourcesABC, outputABC, 0, 3);
-        mixer.mix(sourcesCBA, outputCBA, 0, 3);
+        mixerABC.mix(sourcesABC, outputABC, 0, 3);
+        mixerCBA.mix(sourcesCBA, outputCBA, 0, 3);
 
         for (int i = 0; i < 3; i++) {
             assertEquals("Mixing should be commutative.", outputABC[i], outputCBA[i]);
@@ -45,6 +64,173 @@ public class MixerTest extends TestCase {
         testMixerCommutativity(new BasicClippingShortMixer());
     }
 
+    public void testSoftLimitingShortMixer() {
+        testMixerCommutativity(new SoftLimitingShortMixer(), new SoftLimitingShortMixer());
+    }
+
+    /**
+     * Tests that quiet input passes through the limiter unchanged apart from the look-ahead delay.
+     */
+    public void testSoftLimiterTransparency() {
+        final int length = 480;
+        final int delay = SoftLimitingShortMixer.LOOKAHEAD - 1;
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = 0.4f * (float) Math.sin(i * 0.05);
+        }
+        List<IAudioMixerSource<float[]>> sources = new ArrayList<>();
+        sources.add(new BasicSource<>(samples, length));
+        short[] output = new short[length];
+        new SoftLimitingShortMixer().mix(sources, output, 0, length);
+
+        for (int i = 0; i < delay; i++) {
+            assertEquals(0, output[i]);
+        }
+        for (int i = delay; i < length; i++) {
+            assertEquals((short) (samples[i - delay] * Short.MAX_VALUE), output[i], 1);
+        }
+    }
+
+    /**
+     * Tests that loud overlapping sources are held under the threshold rather than clipped.
+     */
+    public void testSoftLimiterCeiling() {
+        final int length = 4800;
+        Random random = new Random(0);
+        List<IAudioMixerSource<float[]>> sources = new ArrayList<>();
+        for (int s = 0; s < 8; s++) {
+            float[] samples = new float[length];
+            for (int i = 0; i < length; i++) {
+                samples[i] = random.nextFloat() * 2 - 1;
+            }
+            sources.add(new BasicSource<>(samples, length));
+        }
+        short[] output = new short[length];
+        SoftLimitingShortMixer mixer = new SoftLimitingShortMixer();
+        // Mix twice to check that limiter state carries across buffers.
+        mixer.mix(sources, output, 0, length);
+        mixer.mix(sources, output, 0, length);
+        final int ceiling = (int) (SoftLimitingShortMixer.THRESHOLD * Short.MAX_VALUE) + 1;
+        for (int i = 0; i < length; i++) {
+            assertTrue("Sample " + output[i] + " exceeds limiter threshold",
+                    Math.abs(output[i]) <= ceiling);
+        }
+    }
+
+    /**
+     * Tests the limiter ceiling with a loud sweep whose level decays slowly. Each required gain
+     * is then larger than the last, so the limiter's minimum queue fills its whole window.
+     */
+    public void testSoftLimiterDecayingCeiling() {
+        final int length = 48000;
+        float[] samples = new float[length];
+        double phase = 0;
+        for (int i = 0; i < length; i++) {
+            final double frequency = 20 + 200.0 * i / length;
+            phase += 2 * Math.PI * frequency / 48000;
+            final float envelope = 4f - 3f * i / length;
+            samples[i] = envelope * (float) Math.sin(phase);
+        }
+        List<IAudioMixerSource<float[]>> sources = new ArrayList<>();
+        sources.add(new BasicSource<>(samples, length));
+        short[] output = new short[length];
+        new SoftLimitingShortMixer().mix(sources, output, 0, length);
+        final int ceiling = (int) (SoftLimitingShortMixer.THRESHOLD * Short.MAX_VALUE) + 1;
+        for (int i = 0; i < length; i++) {
+            assertTrue("Sample " + i + " at " + output[i] + " exceeds limiter threshold",
+                    Math.abs(output[i]) <= ceiling);
+        }
+    }
+
+    /**
+     * Tests that panned sources land in the right channels of interleaved stereo output.
+     */
+    public void testStereoPanning() {
+        final int length = 256;
+        final int delay = SoftLimitingShortMixer.LOOKAHEAD - 1;
+        float[] left = new float[length];
+        float[] right = new float[length];
+        Arrays.fill(left, 0.25f);
+        Arrays.fill(right, 0.5f);
+        List<IAudioMixerSource<float[]>> sources = new ArrayList<>();
+        sources.add(new PannedSource(left, length, 1f, -1f));
+        sources.add(new PannedSource(right, length, 0.5f, 1f));
+        short[] output = new short[length * 2];
+        new SoftLimitingShortMixer(2).mix(sources, output, 0, length);
+
+        for (int i = delay; i < length; i++) {
+            assertEquals((short) (0.25f * Short.MAX_VALUE), output[2 * i], 1);
+            assertEquals((short) (0.25f * Short.MAX_VALUE), output[2 * i + 1], 1);
+        }
+
+        // A centred source is unattenuated in both channels.
+        sources.clear();
+        sources.add(new PannedSource(left, length, 1f, 0f));
+        new SoftLimitingShortMixer(2).mix(sources, output, 0, length);
+        for (int i = delay; i < length; i++) {
+            assertEquals(output[2 * i], output[2 * i + 1]);
+            assertEquals((short) (0.25f * Short.MAX_VALUE), output[2 * i], 1);
+        }
+    }
+
+    /**
+     * Compares the mixers with 1 to 64 simultaneous sources.
+     */
+    public void testMixerBenchmark() {
+        Random random = new Random(0);
+        short[] output = new short[BENCHMARK_FRAME_SIZE];
+        for (int sourceCount = 1; sourceCount <= 64; sourceCount *= 2) {
+            List<IAudioMixerSource<float[]>> sources = new ArrayList<>();
+            for (int s = 0; s < sourceCount; s++) {
+                float[] samples = new float[BENCHMARK_FRAME_SIZE];
+                for (int i = 0; i < BENCHMARK_FRAME_SIZE; i++) {
+                    samples[i] = (random.nextFloat() * 2 - 1) / sourceCount;
+                }
+                sources.add(new BasicSource<>(samples, BENCHMARK_FRAME_SIZE));
+            }
+            long basicTime = timeMixer(new BasicClippingShortMixer(), sources, output);
+            long limitingTime = timeMixer(new SoftLimitingShortMixer(), sources, output);
+            Log.i(TAG, sourceCount + " sources: BasicClippingShortMixer " +
+                    (basicTime / BENCHMARK_ITERATIONS) + "ns/frame, SoftLimitingShortMixer " +
+                    (limitingTime / BENCHMARK_ITERATIONS) + "ns/frame");
+        }
+    }
+
+    private static long timeMixer(IAudioMixer<float[], short[]> mixer,
+                                  List<IAudioMixerSource<float[]>> sources, short[] output) {
+        // Warm up before timing.
+        for (int i = 0; i < BENCHMARK_ITERATIONS / 10; i++) {
+            mixer.mix(sources, output, 0, output.length);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            mixer.mix(sources, output, 0, output.length);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static class PannedSource extends BasicSource<float[]>
+            implements IPannedAudioMixerSource<float[]> {
+        private final float mGain;
+        private final float mPan;
+
+        public PannedSource(float[] samples, int length, float gain, float pan) {
+            super(samples, length);
+            mGain = gain;
+            mPan = pan;
+        }
+
+        @Override
+        public float getGain() {
+            return mGain;
+        }
+
+        @Override
+        public float getPan() {
+            return mPan;
+        }
+    }
+
     private static class BasicSource<T> implements IAudioMixerSource<T> {
         private T mSamples;
         private int mLength;
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import android.util.Log;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.audio.encoder.OpusEncoder;
+import com.morlunk.jumble.net.CryptState;
+import com.morlunk.jumble.net.FrameReader;
+import com.morlunk.jumble.net.JumbleTCPMessageType;
+import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.net.PacketBuffer;
+import com.morlunk.jumble.protobuf.Mumble;
+
+import org.spongycastle.asn1.x500.X500Name;
+import org.spongycastle.cert.X509v3CertificateBuilder;
+import org.spongycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.spongycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.spongycastle.operator.ContentSigner;
+import org.spongycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * A minimal in-process stand-in for Murmur, for end to end tests of JumbleConnection.
+ *
+ * Accepts a single client over TLS on the loopback interface. On authentication it sends the
+ * crypt setup, a scripted channel tree and user list, then ServerSync. It answers TCP and UDP
+ * pings, and can generate Opus voice from any number of simulated talkers, sent over UDP once
+ * the client has pinged it or tunnelled over TCP until then. Not a conforming server: it ignores
+ * everything else the client sends.
+ */
+public class MockServer {
+    private static final String TAG = "MockServer";
+    private static final char[] KEY_PASSWORD = "jumble".toCharArray();
+    /** The session ID given to the connecting client. Simulated users follow it. */
+    public static final int CLIENT_SESSION = 1;
+    /** The interval between voice packets from each talker, in milliseconds. */
+    public static final int VOICE_INTERVAL_MS = 20;
+    /** Voice sequence numbers count 10ms frames, so each packet advances the sequence by this. */
+    private static final int FRAMES_PER_PACKET = VOICE_INTERVAL_MS / 10;
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAME_SIZE = SAMPLE_RATE / 100;
+    private static final int OPUS_BITRATE = 40000;
+    /** The number of distinct voice packets encoded, cycled through by every talker. */
+    private static final int VOICE_PACKET_COUNT = 1000 / VOICE_INTERVAL_MS;
+
+    private final KeyPair mKeyPair;
+    private final X509Certificate mCertificate;
+    private final SSLServerSocket mServerSocket;
+    private final DatagramSocket mDatagramSocket;
+    private final CryptState mCryptState = new CryptState();
+    private final byte[] mKey = new byte[CryptState.AES_BLOCK_SIZE];
+    private final byte[] mClientNonce = new byte[CryptState.AES_BLOCK_SIZE];
+    private final byte[] mServerNonce = new byte[CryptState.AES_BLOCK_SIZE];
+    private final ScheduledExecutorService mTalkerExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger mVoicePacketsSent = new AtomicInteger();
+    private final AtomicInteger mPingsAnswered = new AtomicInteger();
+    /** Opus payloads with their size headers, encoded on the first call to startTalkers. */
+    private byte[][] mVoicePackets;
+    /** The talkers' next sequence number, kept across restarts so streams stay in order. */
+    private long mSequence;
+    private ScheduledFuture<?> mTalkers;
+
+    private int mChannelCount = 1;
+    private int mUserCount;
+    private volatile SSLSocket mClient;
+    private volatile DataOutputStream mOutput;
+    private volatile SocketAddress mClientAddress;
+    private volatile boolean mRunning;
+
+    public MockServer() throws Exception {
+        final SecureRandom random = new SecureRandom();
+        random.nextBytes(mKey);
+        random.nextBytes(mClientNonce);
+        random.nextBytes(mServerNonce);
+        mCryptState.setKeys(mKey, mServerNonce, mClientNonce);
+
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        mKeyPair = generator.generateKeyPair();
+        final X500Name name = new X500Name("CN=Jumble Mock Server");
+        final long now = System.currentTimeMillis();
+        final X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name,
+                BigInteger.ONE, new Date(now - 86400000), new Date(now + 86400000), name,
+                mKeyPair.getPublic());
+        final ContentSigner signer = new JcaContentSignerBuilder("SHA256WithRSAEncryption")
+                .build(mKeyPair.getPrivate());
+        mCertificate = new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+
+        final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", mKeyPair.getPrivate(), KEY_PASSWORD,
+                new Certificate[] { mCertificate });
+        final KeyManagerFactory kmf =
+                KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, KEY_PASSWORD);
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), null, null);
+
+        final InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        mServerSocket = (SSLServerSocket) context.getServerSocketFactory()
+                .createServerSocket(0, 1, loopback);
+        // Murmur listens for UDP on the same port number as TCP.
+        mDatagramSocket = new DatagramSocket(new InetSocketAddress(loopback,
+                mServerSocket.getLocalPort()));
+    }
+
+    /**
+     * Sets the number of channels sent on authentication, including the root channel.
+     */
+    public void setChannelCount(int channelCount) {
+        mChannelCount = channelCount;
+    }
+
+    /**
+     * Sets the number of users sent on authentication, besides the client itself.
+     */
+    public void setUserCount(int userCount) {
+        mUserCount = userCount;
+    }
+
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Writes a trust store containing the server's certificate, for
+     * {@link com.morlunk.jumble.net.JumbleConnection#setTrustStore(String, String, String)}.
+     * @param file The file to write to.
+     * @param password The password to protect the trust store with.
+     * @return The trust store format.
+     */
+    public String writeTrustStore(File file, String password) throws Exception {
+        final KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("server", mCertificate);
+        final OutputStream output = new FileOutputStream(file);
+        try {
+            trustStore.store(output, password.toCharArray());
+        } finally {
+            output.close();
+        }
+        return trustStore.getType();
+    }
+
+    public void start() {
+        mRunning = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runControl();
+            }
+        }, TAG + " TCP").start();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runVoice();
+            }
+        }, TAG + " UDP").start();
+    }
+
+    public void stop() {
+        mRunning = false;
+        mTalkerExecutor.shutdownNow();
+        mDatagramSocket.close();
+        try {
+            mServerSocket.close();
+            if (mClient != null)
+                mClient.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close sockets", e);
+        }
+    }
+
+    /**
+     * Starts sending voice from the given number of simulated users, one packet per
+     * {@link #VOICE_INTERVAL_MS} each. Talkers are the first users sent on authentication.
+     * Each talker plays a second of a tone on a loop, encoded with Jumble's Opus encoder.
+     * @throws IllegalStateException if talkers are already running.
+     */
+    public synchronized void startTalkers(final int talkerCount) throws Exception {
+        if (talkerCount > mUserCount)
+            throw new IllegalArgumentException("Only " + mUserCount + " users to talk");
+        if (mTalkers != null)
+            throw new IllegalStateException("Talkers already started");
+        if (mVoicePackets == null)
+            mVoicePackets = encodeVoicePackets();
+        final byte[][] voicePackets = mVoicePackets;
+        final PacketBuffer packet = PacketBuffer.allocate(1024);
+        mTalkers = mTalkerExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final long sequence;
+                    synchronized (MockServer.this) {
+                        sequence = mSequence;
+                        mSequence += FRAMES_PER_PACKET;
+                    }
+                    final int index = (int) (sequence / FRAMES_PER_PACKET);
+                    for (int i = 0; i < talkerCount; i++) {
+                        // Offset each talker into the loop so they don't all say the same thing.
+                        final byte[] voice = voicePackets[(index + i) % voicePackets.length];
+                        packet.rewind();
+                        packet.append(JumbleUDPMessageType.UDPVoiceOpus.ordinal() << 5);
+                        packet.writeLong(CLIENT_SESSION + 1 + i);
+                        packet.writeLong(sequence);
+                        packet.append(voice, voice.length);
+                        sendVoice(packet.getBuffer().array(), packet.size());
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to send voice", e);
+                }
+            }
+        }, 0, VOICE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the talkers. They may be started again afterwards.
+     */
+    public synchronized void stopTalkers() {
+        if (mTalkers != null) {
+            mTalkers.cancel(false);
+            mTalkers = null;
+        }
+    }
+
+    /**
+     * Encodes {@link #VOICE_PACKET_COUNT} packets of a 440Hz tone.
+     * @return The Opus data of each packet, prefixed with its size as in a voice packet.
+     */
+    private static byte[][] encodeVoicePackets() throws Exception {
+        final OpusEncoder encoder = new OpusEncoder(SAMPLE_RATE, 1, FRAME_SIZE, FRAMES_PER_PACKET,
+                OPUS_BITRATE, 1024);
+        try {
+            final byte[][] packets = new byte[VOICE_PACKET_COUNT][];
+            final short[] frame = new short[FRAME_SIZE];
+            final PacketBuffer buffer = PacketBuffer.allocate(1024);
+            int sample = 0;
+            for (int p = 0; p < VOICE_PACKET_COUNT; p++) {
+                for (int f = 0; f < FRAMES_PER_PACKET; f++) {
+                    for (int i = 0; i < FRAME_SIZE; i++, sample++) {
+                        frame[i] = (short) (Math.sin(2 * Math.PI * 440 * sample / SAMPLE_RATE)
+                                * Short.MAX_VALUE / 4);
+                    }
+                    encoder.encode(frame, FRAME_SIZE);
+                }
+                buffer.rewind();
+                encoder.getEncodedData(buffer);
+                packets[p] = new byte[buffer.size()];
+                System.arraycopy(buffer.getBuffer().array(), 0, packets[p], 0, buffer.size());
+            }
+            return packets;
+        } finally {
+            encoder.destroy();
+        }
+    }
+
+    /**
+     * @return The number of voice packets sent by the talkers.
+     */
+    public int getVoicePacketsSent() {
+        return mVoicePacketsSent.get();
+    }
+
+    /**
+     * @return The number of TCP and UDP pings answered.
+     */
+    public int getPingsAnswered() {
+        return mPingsAnswered.get();
+    }
+
+    /**
+     * @return true if the client has pinged over UDP, so voice is sent over UDP.
+     */
+    public boolean isUsingUDP() {
+        return mClientAddress != null;
+    }
+
+    private void runControl() {
+        try {
+            mClient = (SSLSocket) mServerSocket.accept();
+            mOutput = new DataOutputStream(mClient.getOutputStream());
+            final FrameReader reader = new FrameReader(mClient.getInputStream());
+            while (mRunning && reader.next()) {
+                if (reader.getType() >= JumbleTCPMessageType.values().length)
+                    continue;
+                final JumbleTCPMessageType type = JumbleTCPMessageType.values()[reader.getType()];
+                final byte[] data = reader.getBuffer();
+                final int offset = reader.getOffset();
+                final int length = reader.getLength();
+                switch (type) {
+                    case Version:
+                        sendMessage(Mumble.Version.newBuilder()
+                                .setVersion(Constants.PROTOCOL_VERSION)
+                                .setRelease("MockServer")
+                                .setOs("Android")
+                                .build(), type);
+                        break;
+                    case Authenticate:
+                        sendInitialState();
+                        break;
+                    case Ping:
+                        final Mumble.Ping ping =
+                                Mumble.Ping.parser().parseFrom(data, offset, length);
+                        sendMessage(Mumble.Ping.newBuilder()
+                                .setTimestamp(ping.getTimestamp())
+                                .build(), type);
+                        mPingsAnswered.incrementAndGet();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            if (mRunning)
+                Log.w(TAG, "Control connection failed", e);
+        }
+    }
+
+    private void sendInitialState() throws IOException {
+        sendMessage(Mumble.CryptSetup.newBuilder()
+                .setKey(ByteString.copyFrom(mKey))
+                .setClientNonce(ByteString.copyFrom(mClientNonce))
+                .setServerNonce(ByteString.copyFrom(mServerNonce))
+                .build(), JumbleTCPMessageType.CryptSetup);
+        sendMessage(Mumble.CodecVersion.newBuilder()
+                .setAlpha(0)
+                .setBeta(0)
+                .setPreferAlpha(false)
+                .setOpus(true)
+                .build(), JumbleTCPMessageType.CodecVersion);
+        for (int i = 0; i < mChannelCount; i++) {
+            final Mumble.ChannelState.Builder channel = Mumble.ChannelState.newBuilder()
+                    .setChannelId(i)
+                    .setName(i == 0 ? "Root" : "Channel " + i);
+            if (i > 0)
+                channel.setParent(0);
+            sendMessage(channel.build(), JumbleTCPMessageType.ChannelState);
+        }
+        for (int i = 0; i <= mUserCount; i++) {
+            sendMessage(Mumble.UserState.newBuilder()
+                    .setSession(CLIENT_SESSION + i)
+                    .setName(i == 0 ? "Client" : "User " + i)
+                    .setChannelId(i % mChannelCount)
+                    .build(), JumbleTCPMessageType.UserState);
+        }
+        sendMessage(Mumble.ServerSync.newBuilder()
+                .setSession(CLIENT_SESSION)
+                .setMaxBandwidth(144000)
+                .setWelcomeText("MockServer")
+                .build(), JumbleTCPMessageType.ServerSync);
+    }
+
+    private void runVoice() {
+        final byte[] buffer = new byte[1024];
+        final byte[] plain = new byte[buffer.length];
+        final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+            while (mRunning) {
+                packet.setLength(buffer.length);
+                mDatagramSocket.receive(packet);
+                final int length = mCryptState.decrypt(buffer, 0, packet.getLength(), plain, 0);
+                if (length <= 0)
+                    continue;
+                final int type = (plain[0] >> 5) & 0x7;
+                if (type == JumbleUDPMessageType.UDPPing.ordinal()) {
+                    mClientAddress = packet.getSocketAddress();
+                    sendDatagram(plain, length);
+                    mPingsAnswered.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            if (mRunning)
+                Log.w(TAG, "Voice socket failed", e);
+        }
+    }
+
+    private void sendVoice(byte[] data, int length) throws Exception {
+        if (mClientAddress != null) {
+            sendDatagram(data, length);
+        } else if (mOutput != null) {
+            sendFrame(JumbleTCPMessageType.UDPTunnel.ordinal(), data, length);
+        } else {
+            return;
+        }
+        mVoicePacketsSent.incrementAndGet();
+    }
+
+    private void sendDatagram(byte[] data, int length) throws Exception {
+        final byte[] encrypted = new byte[length + 4];
+        mCryptState.encrypt(data, 0, length, encrypted, 0);
+        mDatagramSocket.send(new DatagramPacket(encrypted, encrypted.length, mClientAddress));
+    }
+
+    private void sendMessage(Message message, JumbleTCPMessageType type) throws IOException {
+        final byte[] data = message.toByteArray();
+        sendFrame(type.ordinal(), data, data.length);
+    }
+
+    private synchronized void sendFrame(int type, byte[] data, int length) throws IOException {
+        mOutput.writeShort(type);
+        mOutput.writeInt(length);
+        mOutput.write(data, 0, length);
+        mOutput.flush();
+    }
+}
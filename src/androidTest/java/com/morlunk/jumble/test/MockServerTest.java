@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import android.util.Log;
+
+import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.audio.AudioOutput;
+import com.morlunk.jumble.audio.IAudioDeviceFactory;
+import com.morlunk.jumble.audio.IAudioSink;
+import com.morlunk.jumble.audio.IAudioSource;
+import com.morlunk.jumble.audio.inputmode.ToggleInputMode;
+import com.morlunk.jumble.model.User;
+import com.morlunk.jumble.net.JumbleConnection;
+import com.morlunk.jumble.net.JumbleTCPMessageType;
+import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.protobuf.Mumble;
+import com.morlunk.jumble.protocol.AudioHandler;
+import com.morlunk.jumble.protocol.JumbleTCPMessageListener;
+import com.morlunk.jumble.protocol.JumbleUDPMessageListener;
+import com.morlunk.jumble.util.JumbleException;
+import com.morlunk.jumble.util.JumbleLogger;
+import com.morlunk.jumble.util.LatencyHistogram;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connects JumbleConnection to a {@link MockServer} and measures synchronization time, and voice
+ * throughput and latency through the audio pipeline up to the mixer.
+ */
+public class MockServerTest extends TestCase {
+    private static final String TAG = "MockServerTest";
+    private static final String TRUST_STORE_PASSWORD = "jumble";
+    private static final int TIMEOUT_SECONDS = 30;
+
+    private MockServer mServer;
+    private JumbleConnection mConnection;
+    private ExecutorService mCallbackExecutor;
+    private File mTrustStore;
+    private final CountDownLatch mSynchronized = new CountDownLatch(1);
+    private final AtomicInteger mUserStates = new AtomicInteger();
+    private final AtomicInteger mVoicePackets = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, User> mUsers = new ConcurrentHashMap<>();
+    /** Plays received voice once created; voice received before then is only counted. */
+    private volatile AudioHandler mAudioHandler;
+    private volatile JumbleException mError;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new MockServer();
+        mTrustStore = File.createTempFile("mockserver", ".keystore");
+        final String format = mServer.writeTrustStore(mTrustStore, TRUST_STORE_PASSWORD);
+        mCallbackExecutor = Executors.newSingleThreadExecutor();
+        mConnection = new JumbleConnection(mListener, mCallbackExecutor);
+        mConnection.setTrustStore(mTrustStore.getAbsolutePath(), TRUST_STORE_PASSWORD, format);
+        mConnection.addTCPMessageHandlers(new JumbleTCPMessageListener.Stub() {
+            @Override
+            public void messageUserState(Mumble.UserState msg) {
+                mUserStates.incrementAndGet();
+                mUsers.put(msg.getSession(), new User(msg.getSession(), msg.getName()));
+            }
+        });
+        mConnection.addUDPMessageHandlers(new JumbleUDPMessageListener.Stub() {
+            @Override
+            public void messageVoiceData(byte[] data, int offset, int length,
+                                         JumbleUDPMessageType messageType) {
+                mVoicePackets.incrementAndGet();
+                final AudioHandler audioHandler = mAudioHandler;
+                if (audioHandler != null)
+                    audioHandler.messageVoiceData(data, offset, length, messageType);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mAudioHandler != null)
+            mAudioHandler.shutdown();
+        mConnection.disconnect();
+        mServer.stop();
+        mCallbackExecutor.shutdown();
+        mTrustStore.delete();
+        super.tearDown();
+    }
+
+    public void testSynchronization() throws Exception {
+        final int userCount = 2000;
+        mServer.setChannelCount(50);
+        mServer.setUserCount(userCount);
+        final long start = System.nanoTime();
+        connect();
+        final long elapsed = System.nanoTime() - start;
+        assertEquals(userCount + 1, mUserStates.get());
+        assertEquals(MockServer.CLIENT_SESSION, mConnection.getSession());
+        Log.i(TAG, "Synchronized with " + userCount + " users in " + (elapsed / 1000000) + "ms");
+    }
+
+    /**
+     * Plays voice from many talkers through AudioHandler and AudioOutput into a paced sink,
+     * reporting throughput and the latency from each packet's arrival until it is mixed.
+     */
+    public void testVoiceThroughput() throws Exception {
+        final int talkerCount = 20;
+        final int durationMs = 2000;
+        mServer.setUserCount(200);
+        connect();
+        startAudio();
+        mServer.startTalkers(talkerCount);
+        Thread.sleep(durationMs);
+        mServer.stopTalkers();
+        // Let packets in flight arrive, and buffered audio be mixed.
+        Thread.sleep(500);
+
+        final int sent = mServer.getVoicePacketsSent();
+        final int received = mVoicePackets.get();
+        final LatencyHistogram latency = mAudioHandler.getReceiveToMixLatency();
+        Log.i(TAG, talkerCount + " talkers over " + (mServer.isUsingUDP() ? "UDP" : "TCP") +
+                ": sent " + sent + ", received " + received + " (" +
+                (received * 1000L / durationMs) + " packets/s), mixed " + latency.getCount());
+        Log.i(TAG, "Receive to mix latency: " + latency);
+        assertTrue("No voice was received", received > 0);
+        // Tunnelled voice can't be lost, and UDP over loopback should barely lose any.
+        assertTrue("Received " + received + " of " + sent, received >= sent * 9 / 10);
+        assertTrue("No voice was mixed", latency.getCount() > 0);
+        assertTrue("Mixed " + latency.getCount() + " of " + received,
+                latency.getCount() <= received);
+    }
+
+    /**
+     * Stops and restarts the talkers, as a test covering several talk spurts would.
+     */
+    public void testTalkersRestart() throws Exception {
+        mServer.setUserCount(2);
+        connect();
+        mServer.startTalkers(2);
+        Thread.sleep(200);
+        mServer.stopTalkers();
+        final int firstSpurt = mServer.getVoicePacketsSent();
+        mServer.startTalkers(2);
+        Thread.sleep(200);
+        mServer.stopTalkers();
+        assertTrue("No voice was sent", firstSpurt > 0);
+        assertTrue("No voice was sent after restarting",
+                mServer.getVoicePacketsSent() > firstSpurt);
+    }
+
+    /**
+     * Creates the audio handler for the client's session, playing to a {@link PacedAudioDevices}.
+     * The input stays idle, as push to talk is never pressed.
+     */
+    private void startAudio() throws Exception {
+        final User self = mUsers.get(MockServer.CLIENT_SESSION);
+        assertNotNull("The client's own user state was not received", self);
+        mAudioHandler = new AudioHandler.Builder()
+                .setLogger(mLogger)
+                .setAudioDevices(new PacedAudioDevices())
+                .setCallbackExecutor(mCallbackExecutor)
+                .setInputSampleRate(AudioHandler.SAMPLE_RATE)
+                .setTargetBitrate(40000)
+                .setTargetFramesPerPacket(2)
+                .setAmplitudeBoost(1)
+                .setInputMode(new ToggleInputMode())
+                .setEncodeListener(new AudioHandler.AudioEncodeListener() {
+                    @Override
+                    public void onAudioEncoded(byte[] data, int length) {
+                    }
+
+                    @Override
+                    public void onTalkingStateChanged(boolean talking) {
+                    }
+                })
+                .setTalkingListener(new AudioOutput.AudioOutputListener() {
+                    @Override
+                    public void onUserTalkStateUpdated(User user) {
+                    }
+
+                    @Override
+                    public User getUser(int session) {
+                        return mUsers.get(session);
+                    }
+                })
+                .initialize(self, -1, JumbleUDPMessageType.UDPVoiceOpus, (byte) 0);
+    }
+
+    private void connect() throws Exception {
+        mServer.start();
+        mConnection.connect("127.0.0.1", mServer.getPort());
+        assertTrue("Timed out synchronizing",
+                mSynchronized.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        if (mError != null)
+            throw mError;
+    }
+
+    private final JumbleLogger mLogger = new JumbleLogger() {
+        @Override
+        public void logInfo(String message) {
+            Log.i(TAG, message);
+        }
+
+        @Override
+        public void logWarning(String message) {
+            Log.w(TAG, message);
+        }
+
+        @Override
+        public void logError(String message) {
+            Log.e(TAG, message);
+        }
+    };
+
+    private final JumbleConnection.JumbleConnectionListener mListener =
+            new JumbleConnection.JumbleConnectionListener() {
+        @Override
+        public void onConnectionEstablished() {
+            mConnection.sendTCPMessage(Mumble.Version.newBuilder()
+                    .setVersion(Constants.PROTOCOL_VERSION)
+                    .setRelease(TAG)
+                    .build(), JumbleTCPMessageType.Version);
+            mConnection.sendTCPMessage(Mumble.Authenticate.newBuilder()
+                    .setUsername("Client")
+                    .setOpus(true)
+                    .build(), JumbleTCPMessageType.Authenticate);
+        }
+
+        @Override
+        public void onConnectionSynchronized() {
+            mSynchronized.countDown();
+        }
+
+        @Override
+        public void onConnectionHandshakeFailed(X509Certificate[] chain) {
+            Log.e(TAG, "Handshake failed; the mock server certificate was not trusted");
+        }
+
+        @Override
+        public void onConnectionDisconnected(JumbleException e) {
+            mError = e;
+            mSynchronized.countDown();
+        }
+
+        @Override
+        public void onConnectionWarning(String warning) {
+            Log.w(TAG, warning);
+        }
+
+        @Override
+        public void onLinkStatisticsUpdated(int packetLossPercentage, long ping) {
+        }
+
+        @Override
+        public void onTransportChanged(boolean udp) {
+        }
+    };
+
+    /**
+     * Audio devices that stand in for real hardware: the sink discards audio but blocks on each
+     * write for as long as the audio would take to play, so the mixer runs in real time, and the
+     * source records silence at the same pace.
+     */
+    private static class PacedAudioDevices implements IAudioDeviceFactory {
+        @Override
+        public IAudioSink createSink(int sampleRate, int channels, int maxBufferSize) {
+            // 20ms, a typical minimum AudioTrack buffer.
+            return new PacedSink(sampleRate, channels, Math.min(maxBufferSize, sampleRate / 50));
+        }
+
+        @Override
+        public IAudioSource createSource(int sampleRate) {
+            return new SilentSource(sampleRate);
+        }
+
+        @Override
+        public void setAudioThreadPriority() {
+        }
+    }
+
+    private static class PacedSink implements IAudioSink {
+        private final int mSampleRate;
+        private final int mChannels;
+        private final int mBufferSize;
+        /** When the audio written so far will have finished playing, in nanoseconds. */
+        private long mPlayedUntil;
+
+        public PacedSink(int sampleRate, int channels, int bufferSize) {
+            mSampleRate = sampleRate;
+            mChannels = channels;
+            mBufferSize = bufferSize;
+        }
+
+        @Override
+        public int getBufferSize() {
+            return mBufferSize;
+        }
+
+        @Override
+        public void play() {
+            mPlayedUntil = System.nanoTime();
+        }
+
+        @Override
+        public void write(short[] data, int offset, int length) {
+            // Block until the previous write has played, leaving this one buffered.
+            sleepUntil(mPlayedUntil);
+            mPlayedUntil = Math.max(mPlayedUntil, System.nanoTime()) +
+                    length / mChannels * 1000000000L / mSampleRate;
+        }
+
+        @Override
+        public void pause() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    private static class SilentSource implements IAudioSource {
+        private final int mSampleRate;
+        private long mRecordedUntil;
+
+        public SilentSource(int sampleRate) {
+            mSampleRate = sampleRate;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return mSampleRate;
+        }
+
+        @Override
+        public boolean start() {
+            mRecordedUntil = System.nanoTime();
+            return true;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            mRecordedUntil += length * 1000000000L / mSampleRate;
+            sleepUntil(mRecordedUntil);
+            Arrays.fill(buffer, offset, offset + length, (short) 0);
+            return length;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        final long delay = nanoTime - System.nanoTime();
+        if (delay <= 0)
+            return;
+        try {
+            Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
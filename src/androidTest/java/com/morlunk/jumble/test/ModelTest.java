@@ -17,16 +17,26 @@
 
 package com.morlunk.jumble.test;
 
+import android.util.Log;
+
 import com.morlunk.jumble.model.Channel;
 import com.morlunk.jumble.model.User;
 
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 /**
  * Tests the Channel-User tree model.
  * Created by andrew on 24/10/15.
  */
 public class ModelTest extends TestCase {
+    private static final String TAG = "ModelTest";
+    private static final int BENCHMARK_CHANNELS = 10000;
+    private static final int BENCHMARK_USERS = 2000;
+    private static final int BENCHMARK_MOVES = 20000;
 
     public void testUserAddRemove() {
         Channel root = new Channel(0, false);
@@ -47,4 +57,125 @@ public class ModelTest extends TestCase {
         assertEquals("Moving a user to a subchannel does not change the recursive user count of the root", 2, root.getSubchannelUserCount());
         assertEquals("Subchannel user count is sane", 2, sub.getUsers().size());
     }
+
+    public void testSubchannelUserCountReparent() {
+        Channel root = createChannel(0, "Root");
+        Channel a = createChannel(1, "A");
+        Channel b = createChannel(2, "B");
+        Channel c = createChannel(3, "C");
+        root.addSubchannel(a);
+        root.addSubchannel(b);
+        a.addSubchannel(c);
+
+        new User(1, "One").setChannel(c);
+        new User(2, "Two").setChannel(c);
+        new User(3, "Three").setChannel(b);
+        assertEquals(2, a.getSubchannelUserCount());
+        assertEquals(3, root.getSubchannelUserCount());
+
+        a.removeSubchannel(c);
+        b.addSubchannel(c);
+        assertSame("Adding a subchannel sets its parent", b, c.getParent());
+        assertEquals("Reparenting removes the subtree's users from the old parent", 0, a.getSubchannelUserCount());
+        assertEquals("Reparenting adds the subtree's users to the new parent", 3, b.getSubchannelUserCount());
+        assertEquals("Reparenting within the tree does not change the root count", 3, root.getSubchannelUserCount());
+
+        root.removeSubchannel(b);
+        assertEquals(0, root.getSubchannelUserCount());
+        assertTrue(root.isSubchannelUserCountConsistent());
+        assertTrue(b.isSubchannelUserCountConsistent());
+    }
+
+    public void testSubchannelOrdering() {
+        Channel root = createChannel(0, "Root");
+        Channel b = createChannel(1, "B");
+        Channel a = createChannel(2, "A");
+        Channel c = createChannel(3, "C");
+        root.addSubchannel(b);
+        root.addSubchannel(c);
+        root.addSubchannel(a);
+        root.addSubchannel(a);
+        assertEquals("Adding a subchannel twice has no effect", 3, root.getSubchannels().size());
+        assertSame(a, root.getSubchannels().get(0));
+        assertSame(b, root.getSubchannels().get(1));
+        assertSame(c, root.getSubchannels().get(2));
+
+        a.setName("D");
+        assertSame("Renaming a channel repositions it in its parent", a, root.getSubchannels().get(2));
+        c.setPosition(-1);
+        assertSame("Changing a channel's position repositions it in its parent", c, root.getSubchannels().get(0));
+
+        a.addLink(b);
+        b.addLink(a);
+        a.addLink(c);
+        c.addLink(a);
+        assertSame(c, a.getLinks().get(0));
+        b.setPosition(-2);
+        assertSame("Changing a channel's position repositions it in its links", b, a.getLinks().get(0));
+        assertTrue(a.getLinks().contains(c));
+
+        root.removeSubchannel(b);
+        assertEquals(2, root.getSubchannels().size());
+        assertFalse(root.getSubchannels().contains(b));
+    }
+
+    /**
+     * Builds a synthetic tree of {@link #BENCHMARK_CHANNELS} channels, moves users around it, and
+     * compares reading the cached subtree counts of every channel against recomputing them.
+     */
+    public void testSubchannelUserCountBenchmark() {
+        Random random = new Random(0);
+        List<Channel> channels = new ArrayList<Channel>(BENCHMARK_CHANNELS);
+        Channel root = createChannel(0, "Root");
+        channels.add(root);
+        for (int i = 1; i < BENCHMARK_CHANNELS; i++) {
+            Channel channel = createChannel(i, "Channel " + i);
+            // Bias towards recent channels to produce a deep, uneven tree.
+            int parent = Math.max(0, i - 1 - random.nextInt(Math.min(i, 32)));
+            channels.get(parent).addSubchannel(channel);
+            channels.add(channel);
+        }
+
+        List<User> users = new ArrayList<User>(BENCHMARK_USERS);
+        for (int i = 0; i < BENCHMARK_USERS; i++) {
+            User user = new User(i, "User " + i);
+            user.setChannel(channels.get(random.nextInt(BENCHMARK_CHANNELS)));
+            users.add(user);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_MOVES; i++) {
+            users.get(random.nextInt(BENCHMARK_USERS))
+                    .setChannel(channels.get(random.nextInt(BENCHMARK_CHANNELS)));
+        }
+        long moveTime = System.nanoTime() - start;
+
+        assertEquals(BENCHMARK_USERS, root.getSubchannelUserCount());
+        assertTrue(root.isSubchannelUserCountConsistent());
+
+        long cachedSum = 0;
+        start = System.nanoTime();
+        for (Channel channel : channels) {
+            cachedSum += channel.getSubchannelUserCount();
+        }
+        long cachedTime = System.nanoTime() - start;
+
+        long computedSum = 0;
+        start = System.nanoTime();
+        for (Channel channel : channels) {
+            computedSum += channel.computeSubchannelUserCount();
+        }
+        long computedTime = System.nanoTime() - start;
+
+        assertEquals(computedSum, cachedSum);
+        Log.i(TAG, "Subchannel user count over " + BENCHMARK_CHANNELS + " channels: cached " +
+                (cachedTime / 1000) + "us, recomputed " + (computedTime / 1000) + "us; " +
+                BENCHMARK_MOVES + " moves took " + (moveTime / 1000) + "us");
+    }
+
+    private static Channel createChannel(int id, String name) {
+        Channel channel = new Channel(id, false);
+        channel.setName(name);
+        return channel;
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.net.PacketBuffer;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests the Mumble variable length integer encoding in {@link PacketBuffer}.
+ */
+public class PacketBufferTest extends TestCase {
+    private static final long[] BOUNDARIES = {
+            0, 0x7F, 0x80, 0x3FFF, 0x4000, 0x1FFFFF, 0x200000, 0xFFFFFFF, 0x10000000,
+            Integer.MAX_VALUE, 0xFFFFFFFFL, 0x100000000L, Long.MAX_VALUE,
+            -1, -4, -5, -0x80, Integer.MIN_VALUE, -0x100000000L, -0x100000001L, Long.MIN_VALUE
+    };
+
+    public void testRoundTripBoundaries() {
+        for (long value : BOUNDARIES) {
+            assertRoundTrip(value);
+        }
+    }
+
+    public void testRoundTripRandom() {
+        final Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            // Shift by a random amount to cover every encoded length, including negatives.
+            assertRoundTrip(random.nextLong() >> random.nextInt(64));
+        }
+    }
+
+    public void testNegativeEncoding() {
+        // Small negatives use a single byte; larger ones negate a positive encoding.
+        assertEncoding(-1, 0xFC);
+        assertEncoding(-4, 0xFF);
+        assertEncoding(-5, 0xF8, 0x04);
+        // Negatives whose complement doesn't fit in 32 bits are written in full.
+        assertEncoding(-0x100000001L, 0xF4, 0xFF, 0xFF, 0xFF, 0xFE, 0xFF, 0xFF, 0xFF, 0xFF);
+    }
+
+    private static void assertRoundTrip(long value) {
+        final PacketBuffer buffer = PacketBuffer.allocate(16);
+        buffer.writeLong(value);
+        final int length = buffer.size();
+        final byte[] data = new byte[length];
+        System.arraycopy(buffer.getBuffer().array(), 0, data, 0, length);
+
+        assertEquals("Encoded length of " + value, length, PacketBuffer.getLongLength(data, 0, length));
+        assertEquals("In place read of " + value, value, PacketBuffer.readLong(data, 0, length));
+        buffer.rewind();
+        assertEquals("Buffered read of " + value, value, buffer.readLong());
+        assertEquals("Bytes consumed reading " + value, length, buffer.size());
+    }
+
+    private static void assertEncoding(long value, int... expected) {
+        final PacketBuffer buffer = PacketBuffer.allocate(16);
+        buffer.writeLong(value);
+        assertEquals(expected.length, buffer.size());
+        final byte[] data = buffer.getBuffer().array();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Byte " + i + " of " + value, (byte) expected[i], data[i]);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.net.PacketPool;
+import com.morlunk.jumble.util.SPSCQueue;
+
+import junit.framework.TestCase;
+
+import java.net.DatagramPacket;
+
+/**
+ * Tests the single-producer/single-consumer ring and the datagram pool built on it.
+ */
+public class PacketPoolTest extends TestCase {
+
+    public void testQueueOrderAndCapacity() {
+        SPSCQueue<Integer> queue = new SPSCQueue<>(3);
+        assertEquals("Capacity is rounded up to a power of two", 4, queue.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse("A full queue should reject offers", queue.offer(4));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testQueueAcrossThreads() throws InterruptedException {
+        final int count = 100000;
+        final SPSCQueue<Integer> queue = new SPSCQueue<>(64);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    while (!queue.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            Integer value;
+            while ((value = queue.poll()) == null) {
+                Thread.yield();
+            }
+            assertEquals("Elements should be received in order", i, value.intValue());
+        }
+        producer.join();
+    }
+
+    public void testPoolExhaustion() {
+        PacketPool pool = new PacketPool(2, 64);
+        DatagramPacket a = pool.borrow();
+        DatagramPacket b = pool.borrow();
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNull("An exhausted pool should not allocate", pool.borrow());
+        assertEquals(1, pool.getExhaustedCount());
+
+        a.setLength(10);
+        pool.recycle(a);
+        DatagramPacket c = pool.borrow();
+        assertSame("Recycled datagrams should be reused", a, c);
+        assertEquals("Borrowed datagrams span the whole buffer", 64, c.getLength());
+
+        pool.recycle(b);
+        pool.recycle(c);
+        pool.recycle(new DatagramPacket(new byte[64], 64));
+        assertEquals("Recycling into a full pool discards the datagram", 1, pool.getDiscardedCount());
+    }
+}
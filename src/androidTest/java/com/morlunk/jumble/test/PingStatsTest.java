@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.net.PingStats;
+
+import junit.framework.TestCase;
+
+public class PingStatsTest extends TestCase {
+    private PingStats mStats;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStats = new PingStats();
+    }
+
+    public void testEmpty() {
+        assertEquals(0, mStats.getPackets());
+        assertEquals(0, mStats.getLast());
+        assertEquals(0.0, mStats.getAverage());
+        assertEquals(0.0, mStats.getVariance());
+        assertEquals(0, mStats.getPercentile(50));
+    }
+
+    public void testStatistics() {
+        for (long rtt : new long[] { 40000, 20000, 30000, 10000, 50000 }) {
+            mStats.record(rtt);
+        }
+        assertEquals(5, mStats.getPackets());
+        assertEquals(50000, mStats.getLast());
+        assertEquals(30000.0, mStats.getAverage(), 0.001);
+        assertEquals(2e8, mStats.getVariance(), 0.001);
+        assertEquals(10000, mStats.getPercentile(0));
+        assertEquals(30000, mStats.getPercentile(50));
+        assertEquals(50000, mStats.getPercentile(90));
+        assertEquals(50000, mStats.getPercentile(100));
+    }
+
+    public void testWindowRollsOver() {
+        for (int i = 0; i < PingStats.WINDOW_SIZE; i++) {
+            mStats.record(1000000);
+        }
+        for (int i = 0; i < PingStats.WINDOW_SIZE; i++) {
+            mStats.record(20000);
+        }
+        // The spike has left the window, but is still counted.
+        assertEquals(2 * PingStats.WINDOW_SIZE, mStats.getPackets());
+        assertEquals(20000.0, mStats.getAverage(), 0.001);
+        assertEquals(0.0, mStats.getVariance(), 0.001);
+        assertEquals(20000, mStats.getPercentile(99));
+
+        mStats.reset();
+        assertEquals(0, mStats.getPackets());
+        assertEquals(0, mStats.getPercentile(99));
+    }
+}
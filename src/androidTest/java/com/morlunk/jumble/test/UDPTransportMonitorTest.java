@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Andrew Comminos <andrew@comminos.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.test;
+
+import com.morlunk.jumble.net.UDPTransportMonitor;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests transport switching of the UDP transport monitor against scripted ping histories.
+ */
+public class UDPTransportMonitorTest extends TestCase {
+    private static final long PING_INTERVAL = 5000000;
+
+    private UDPTransportMonitor mMonitor;
+    private long mTime;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mMonitor = new UDPTransportMonitor();
+        mTime = 0;
+    }
+
+    public void testStaysOnHealthyUDP() {
+        for (int i = 0; i < 100; i++) {
+            assertFalse(ping(true));
+        }
+        assertTrue(mMonitor.isUsingUDP());
+        assertEquals(100, mMonitor.getPingsSent());
+        assertEquals(100, mMonitor.getPongsReceived());
+    }
+
+    public void testFallsBackAfterUnansweredPings() {
+        for (int i = 0; i < UDPTransportMonitor.MAX_UNANSWERED_PINGS; i++) {
+            assertFalse(ping(false));
+        }
+        assertTrue(ping(false));
+        assertFalse(mMonitor.isUsingUDP());
+        assertEquals(1, mMonitor.getSwitchesToTCP());
+    }
+
+    public void testRecoversAfterConsecutivePongs() {
+        failOver();
+        for (int i = 0; i < UDPTransportMonitor.RECOVERY_PINGS - 1; i++) {
+            assertFalse(ping(true));
+        }
+        // A single lost ping restarts the run.
+        assertFalse(ping(false));
+        for (int i = 0; i < UDPTransportMonitor.RECOVERY_PINGS - 1; i++) {
+            assertFalse(ping(true));
+        }
+        assertTrue(ping(true));
+        assertTrue(mMonitor.isUsingUDP());
+        assertEquals(1, mMonitor.getSwitchesToUDP());
+    }
+
+    public void testFlappingIncreasesHysteresis() {
+        failOver();
+        int required = mMonitor.getRequiredPings();
+        recover();
+        // Failing again soon after recovering should make the next recovery harder.
+        failOver();
+        assertEquals(required * 2, mMonitor.getRequiredPings());
+        recover();
+        failOver();
+        assertEquals(required * 4, mMonitor.getRequiredPings());
+
+        // After a long stable period on UDP, the next failure starts from scratch.
+        recover();
+        for (int i = 0; i < UDPTransportMonitor.FLAP_WINDOW / PING_INTERVAL; i++) {
+            ping(true);
+        }
+        failOver();
+        assertEquals(required, mMonitor.getRequiredPings());
+    }
+
+    public void testSocketRestartBackoff() {
+        assertTrue(mMonitor.onSocketError(mTime));
+        assertFalse(mMonitor.isUsingUDP());
+        assertFalse(mMonitor.shouldRestartSocket(mTime));
+        assertTrue(mMonitor.shouldRestartSocket(mTime + UDPTransportMonitor.RESTART_DELAY));
+
+        // No pings can be answered without a socket, so no switch back.
+        for (int i = 0; i < 10; i++) {
+            assertFalse(mMonitor.evaluate(mTime += PING_INTERVAL));
+        }
+
+        mMonitor.onSocketRestarted();
+        assertFalse(mMonitor.onSocketError(mTime));
+        assertFalse(mMonitor.shouldRestartSocket(mTime + UDPTransportMonitor.RESTART_DELAY));
+        assertTrue(mMonitor.shouldRestartSocket(mTime + 2 * UDPTransportMonitor.RESTART_DELAY));
+
+        mMonitor.onSocketRestarted();
+        assertEquals(2, mMonitor.getSocketRestarts());
+        boolean switched = false;
+        for (int i = 0; i < UDPTransportMonitor.RECOVERY_PINGS; i++) {
+            switched = ping(true);
+        }
+        assertTrue(switched);
+    }
+
+    /**
+     * Sends a ping, optionally answers it, and evaluates the monitor.
+     * @return true if the transport changed.
+     */
+    private boolean ping(boolean answered) {
+        mTime += PING_INTERVAL;
+        mMonitor.onPingSent();
+        if (answered)
+            mMonitor.onPongReceived();
+        return mMonitor.evaluate(mTime);
+    }
+
+    private void failOver() {
+        while (mMonitor.isUsingUDP()) {
+            ping(false);
+        }
+    }
+
+    private void recover() {
+        while (!mMonitor.isUsingUDP()) {
+            ping(true);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.morlunk.jumble.model.Message;
 import com.morlunk.jumble.model.Server;
 import com.morlunk.jumble.model.WhisperTarget;
 import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.protocol.BlobRequestHandler;
 import com.morlunk.jumble.util.IJumbleObserver;
 import com.morlunk.jumble.util.VoiceTargetMode;
 
@@ -27,6 +28,41 @@ public interface IJumbleSession {
      */
     long getUDPLatency();
 
+    /**
+     * Returns a percentile of the recent round trip times for the TCP connection.
+     * @param percentile A percentile in the range [0, 100].
+     * @return the round trip time in microseconds, or 0 if no pings have been answered.
+     */
+    long getTCPLatencyPercentile(double percentile);
+
+    /**
+     * Returns a percentile of the recent round trip times for the UDP connection.
+     * @param percentile A percentile in the range [0, 100].
+     * @return the round trip time in microseconds, or 0 if no pings have been answered.
+     */
+    long getUDPLatencyPercentile(double percentile);
+
+    /**
+     * Returns a percentile of the delays between receiving a UDP voice datagram and handing it to
+     * the audio pipeline.
+     * @param percentile A percentile in the range [0, 100].
+     * @return the delay in microseconds, or 0 if no voice has been received over UDP.
+     */
+    long getUDPVoiceDispatchLatencyPercentile(double percentile);
+
+    /**
+     * Returns a percentile of the delays between receiving a UDP control datagram, such as a ping,
+     * and handling it on the callback thread.
+     * @param percentile A percentile in the range [0, 100].
+     * @return the delay in microseconds, or 0 if no control datagrams have been received.
+     */
+    long getUDPControlDispatchLatencyPercentile(double percentile);
+
+    /**
+     * @return true if voice is sent over UDP, false if it is tunnelled over TCP.
+     */
+    boolean isUsingUDP();
+
     /**
      * @return the maximum bandwidth in bps for audio allowed by the server, or -1 if not set.
      */
@@ -131,10 +167,34 @@ public interface IJumbleSession {
 
     void requestComment(int session);
 
+    /**
+     * Requests the full comment of the given user, unless it is already cached. Requests made in
+     * quick succession are batched into one message to the server. A comment cached on disk is
+     * loaded in the background, and observers are told the user's state was updated.
+     * @param callback A callback to invoke once the comment is available, or null.
+     */
+    void requestComment(int session, BlobRequestHandler.Callback callback);
+
     void requestAvatar(int session);
 
+    /**
+     * Requests the avatar of the given user, unless it is already cached. Requests made in quick
+     * succession are batched into one message to the server. An avatar cached on disk is loaded
+     * in the background, and observers are told the user's state was updated.
+     * @param callback A callback to invoke once the avatar is available, or null.
+     */
+    void requestAvatar(int session, BlobRequestHandler.Callback callback);
+
     void requestChannelDescription(int channel);
 
+    /**
+     * Requests the full description of the given channel, unless it is already cached. Requests
+     * made in quick succession are batched into one message to the server. A description cached
+     * on disk is loaded in the background, and observers are told the channel's state was updated.
+     * @param callback A callback to invoke once the description is available, or null.
+     */
+    void requestChannelDescription(int channel, BlobRequestHandler.Callback callback);
+
     void registerUser(int session);
 
     void kickBanUser(int session, String reason, boolean ban);
@@ -150,6 +210,19 @@ public interface IJumbleSession {
     void removeChannel(int channel);
 
     void setMuteDeafState(int session, boolean mute, boolean deaf);
+    /**
+     * Sets the playback gain of the given user's voice. Applied locally only.
+     * @param session The user's session.
+     * @param gain A linear gain, where 1 leaves the volume unchanged.
+     */
+    void setUserOutputGain(int session, float gain);
+    /**
+     * Sets the stereo position of the given user's voice. Applied locally only, and only has an
+     * effect if stereo output was enabled with {@link JumbleService#EXTRAS_STEREO_OUTPUT}.
+     * @param session The user's session.
+     * @param pan The position, from -1 (left) to 1 (right).
+     */
+    void setUserOutputPan(int session, float pan);
 
     void setSelfMuteDeafState(boolean mute, boolean deaf);
 
@@ -33,6 +33,7 @@ import android.os.IBinder;
 import android.os.PowerManager;
 import android.util.Log;
 
+import com.morlunk.jumble.audio.AndroidAudioDeviceFactory;
 import com.morlunk.jumble.audio.AudioOutput;
 import com.morlunk.jumble.audio.BluetoothScoReceiver;
 import com.morlunk.jumble.audio.inputmode.ActivityInputMode;
@@ -52,19 +53,29 @@ import com.morlunk.jumble.model.TalkState;
 import com.morlunk.jumble.model.User;
 import com.morlunk.jumble.model.WhisperTarget;
 import com.morlunk.jumble.model.WhisperTargetList;
+import com.morlunk.jumble.net.AndroidSocketConfigurator;
 import com.morlunk.jumble.net.JumbleConnection;
 import com.morlunk.jumble.net.JumbleUDPMessageType;
+import com.morlunk.jumble.util.AndroidLogSink;
+import com.morlunk.jumble.util.AndroidStringProvider;
+import com.morlunk.jumble.util.BlobCache;
+import com.morlunk.jumble.util.CoalescingObserver;
+import com.morlunk.jumble.util.HandlerExecutor;
 import com.morlunk.jumble.util.IJumbleObserver;
 import com.morlunk.jumble.util.JumbleDisconnectedException;
 import com.morlunk.jumble.util.JumbleException;
 import com.morlunk.jumble.net.JumbleTCPMessageType;
 import com.morlunk.jumble.protobuf.Mumble;
 import com.morlunk.jumble.protocol.AudioHandler;
+import com.morlunk.jumble.protocol.BlobRequestHandler;
 import com.morlunk.jumble.protocol.ModelHandler;
 import com.morlunk.jumble.util.JumbleCallbacks;
+import com.morlunk.jumble.util.JumbleLog;
 import com.morlunk.jumble.util.JumbleLogger;
+import com.morlunk.jumble.util.LatencyHistogram;
 import com.morlunk.jumble.util.VoiceTargetMode;
 
+import java.io.File;
 import java.security.Security;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -75,6 +86,8 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
     static {
         // Use Spongy Castle for crypto implementation so we can create and manage PKCS #12 (.p12) certificates.
         Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        // Route the protocol core's logging to logcat.
+        JumbleLog.setSink(new AndroidLogSink());
     }
 
     /**
@@ -114,6 +127,15 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
     /** A list of users that should be local ignored upon connection. */
     public static final String EXTRAS_LOCAL_IGNORE_HISTORY = "local_ignore_history";
     public static final String EXTRAS_ENABLE_PREPROCESSOR = "enable_preprocessor";
+    /** A boolean indicating whether to play audio in stereo, allowing users to be panned. */
+    public static final String EXTRAS_STEREO_OUTPUT = "stereo_output";
+    /** A boolean indicating whether to adapt the Opus bitrate and packetization to link quality. */
+    public static final String EXTRAS_ADAPTIVE_BITRATE = "adaptive_bitrate";
+    /**
+     * An integer number of milliseconds that outgoing TCP messages may be held back to be
+     * batched into a single write. Defaults to 0, batching only messages queued during a write.
+     */
+    public static final String EXTRAS_TCP_FLUSH_DEADLINE = "tcp_flush_deadline";
 
     // Service settings
     private Server mServer;
@@ -124,6 +146,7 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
     private boolean mUseOpus;
     private boolean mForceTcp;
     private boolean mUseTor;
+    private int mTcpFlushDeadline;
     private String mClientName;
     private List<String> mAccessTokens;
     private String mTrustStore;
@@ -132,19 +155,27 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
     private List<Integer> mLocalMuteHistory;
     private List<Integer> mLocalIgnoreHistory;
     private AudioHandler.Builder mAudioBuilder;
+    private AndroidAudioDeviceFactory mAudioDevices;
+    private AndroidStringProvider mStrings;
     private int mTransmitMode;
+    /** Avatars, comments and descriptions by hash, kept across connections. */
+    private BlobCache mBlobCache;
 
     private byte mVoiceTargetId;
     private WhisperTargetList mWhisperTargetList;
 
     private PowerManager.WakeLock mWakeLock;
     private Handler mHandler;
+    /** Runs tasks on the main thread, through {@link #mHandler}. */
+    private HandlerExecutor mMainExecutor;
     private JumbleCallbacks mCallbacks;
+    private CoalescingObserver mModelObserver;
 
     private JumbleConnection mConnection;
     private ConnectionState mConnectionState;
-    private ModelHandler mModelHandler;
+    private volatile ModelHandler mModelHandler;
     private AudioHandler mAudioHandler;
+    private BlobRequestHandler mBlobRequestHandler;
     private BluetoothScoReceiver mBluetoothReceiver;
 
     private ActivityInputMode mActivityInputMode;
@@ -213,8 +244,10 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
 
         @Override
         public User getUser(int session) {
-            if (mModelHandler != null) {
-                return mModelHandler.getUser(session);
+            // Called from the UDP receive thread; the handler may be cleared concurrently.
+            final ModelHandler modelHandler = mModelHandler;
+            if (modelHandler != null) {
+                return modelHandler.getUser(session);
             }
             return null;
         }
@@ -250,9 +283,15 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
         mWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "Jumble");
         mHandler = new Handler(getMainLooper());
+        mMainExecutor = new HandlerExecutor(mHandler);
         mCallbacks = new JumbleCallbacks();
+        mModelObserver = new CoalescingObserver(mCallbacks, mHandler);
+        mAudioDevices = new AndroidAudioDeviceFactory(this);
+        mStrings = new AndroidStringProvider(this);
         mAudioBuilder = new AudioHandler.Builder()
-                .setContext(this)
+                .setStringProvider(mStrings)
+                .setAudioDevices(mAudioDevices)
+                .setCallbackExecutor(mMainExecutor)
                 .setLogger(this)
                 .setEncodeListener(mAudioInputListener)
                 .setTalkingListener(mAudioOutputListener);
@@ -263,6 +302,8 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         mActivityInputMode = new ActivityInputMode(0); // FIXME: reasonable default
         mContinuousInputMode = new ContinuousInputMode();
         mWhisperTargetList = new WhisperTargetList();
+        mBlobCache = new BlobCache(new File(getCacheDir(), "blobs"),
+                BlobCache.DEFAULT_MEMORY_SIZE, BlobCache.DEFAULT_DISK_SIZE);
     }
 
     @Override
@@ -282,15 +323,20 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
             mVoiceTargetId = 0;
             mWhisperTargetList.clear();
 
-            mConnection = new JumbleConnection(this);
+            mConnection = new JumbleConnection(this, mMainExecutor);
+            mConnection.setSocketConfigurator(new AndroidSocketConfigurator());
             mConnection.setForceTCP(mForceTcp);
             mConnection.setUseTor(mUseTor);
+            mConnection.setTCPFlushDeadline(mTcpFlushDeadline * 1000L);
             mConnection.setKeys(mCertificate, mCertificatePassword);
             mConnection.setTrustStore(mTrustStore, mTrustStorePassword, mTrustStoreFormat);
 
-            mModelHandler = new ModelHandler(this, mCallbacks, this,
+            mModelObserver.cancel();
+            mModelHandler = new ModelHandler(mStrings, mModelObserver, this, mBlobCache,
                     mLocalMuteHistory, mLocalIgnoreHistory);
-            mConnection.addTCPMessageHandlers(mModelHandler);
+            // Registered after the model handler, so that blobs are in the model on completion.
+            mBlobRequestHandler = new BlobRequestHandler(mConnection, mMainExecutor);
+            mConnection.addTCPMessageHandlers(mModelHandler, mBlobRequestHandler);
 
             mConnectionState = ConnectionState.CONNECTING;
 
@@ -394,6 +440,10 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
             mAudioHandler.shutdown();
         }
 
+        mModelObserver.cancel();
+        if (mBlobRequestHandler != null) {
+            mBlobRequestHandler.cancel();
+        }
         mModelHandler = null;
         mAudioHandler = null;
         mVoiceTargetId = 0;
@@ -410,6 +460,18 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         logWarning(warning);
     }
 
+    @Override
+    public void onLinkStatisticsUpdated(int packetLossPercentage, long ping) {
+        if (mAudioHandler != null) {
+            mAudioHandler.updateLinkStatistics(packetLossPercentage, ping);
+        }
+    }
+
+    @Override
+    public void onTransportChanged(boolean udp) {
+        mCallbacks.onTransportChanged(udp);
+    }
+
     @Override
     public void logInfo(String message) {
         if (mConnection == null || !mConnection.isSynchronized())
@@ -562,6 +624,12 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
             mForceTcp |= extras.getBoolean(EXTRAS_FORCE_TCP);
             reconnectNeeded = true;
         }
+        if (extras.containsKey(EXTRAS_TCP_FLUSH_DEADLINE)) {
+            mTcpFlushDeadline = extras.getInt(EXTRAS_TCP_FLUSH_DEADLINE);
+            if (mConnection != null) {
+                mConnection.setTCPFlushDeadline(mTcpFlushDeadline * 1000L);
+            }
+        }
         if (extras.containsKey(EXTRAS_CLIENT_NAME)) {
             mClientName = extras.getString(EXTRAS_CLIENT_NAME);
             reconnectNeeded = true;
@@ -573,10 +641,10 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
             }
         }
         if (extras.containsKey(EXTRAS_AUDIO_SOURCE)) {
-            mAudioBuilder.setAudioSource(extras.getInt(EXTRAS_AUDIO_SOURCE));
+            mAudioDevices.setAudioSource(extras.getInt(EXTRAS_AUDIO_SOURCE));
         }
         if (extras.containsKey(EXTRAS_AUDIO_STREAM)) {
-            mAudioBuilder.setAudioStream(extras.getInt(EXTRAS_AUDIO_STREAM));
+            mAudioDevices.setAudioStream(extras.getInt(EXTRAS_AUDIO_STREAM));
         }
         if (extras.containsKey(EXTRAS_FRAMES_PER_PACKET)) {
             mAudioBuilder.setTargetFramesPerPacket(extras.getInt(EXTRAS_FRAMES_PER_PACKET));
@@ -609,6 +677,12 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         if (extras.containsKey(EXTRAS_ENABLE_PREPROCESSOR)) {
             mAudioBuilder.setPreprocessorEnabled(extras.getBoolean(EXTRAS_ENABLE_PREPROCESSOR));
         }
+        if (extras.containsKey(EXTRAS_STEREO_OUTPUT)) {
+            mAudioBuilder.setStereoOutputEnabled(extras.getBoolean(EXTRAS_STEREO_OUTPUT));
+        }
+        if (extras.containsKey(EXTRAS_ADAPTIVE_BITRATE)) {
+            mAudioBuilder.setAdaptiveBitrateEnabled(extras.getBoolean(EXTRAS_ADAPTIVE_BITRATE));
+        }
 
         // Reload audio subsystem if initialized
         if (mAudioHandler != null && mAudioHandler.isInitialized()) {
@@ -621,7 +695,7 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
     @Override
     public void onBluetoothScoConnected() {
         // After an SCO connection is established, audio is rerouted to be compatible with SCO.
-        mAudioBuilder.setBluetoothEnabled(true);
+        mAudioDevices.setBluetoothEnabled(true);
         if (mAudioHandler != null) {
             try {
                 createAudioHandler();
@@ -634,7 +708,7 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
     @Override
     public void onBluetoothScoDisconnected() {
         // Restore audio settings after disconnection.
-        mAudioBuilder.setBluetoothEnabled(false);
+        mAudioDevices.setBluetoothEnabled(false);
         if (mAudioHandler != null) {
             try {
                 createAudioHandler();
@@ -741,6 +815,33 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         }
     }
 
+    @Override
+    public long getTCPLatencyPercentile(double percentile) {
+        return getConnection().getTCPPingStats().getPercentile(percentile);
+    }
+
+    @Override
+    public long getUDPLatencyPercentile(double percentile) {
+        return getConnection().getUDPPingStats().getPercentile(percentile);
+    }
+
+    @Override
+    public long getUDPVoiceDispatchLatencyPercentile(double percentile) {
+        LatencyHistogram histogram = getConnection().getUDPVoiceDispatchLatency();
+        return histogram != null ? histogram.getPercentile(percentile) : 0;
+    }
+
+    @Override
+    public long getUDPControlDispatchLatencyPercentile(double percentile) {
+        LatencyHistogram histogram = getConnection().getUDPControlDispatchLatency();
+        return histogram != null ? histogram.getPercentile(percentile) : 0;
+    }
+
+    @Override
+    public boolean isUsingUDP() {
+        return getConnection().isUsingUDP();
+    }
+
     @Override
     public int getMaxBandwidth() {
         try {
@@ -952,23 +1053,106 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
 
     @Override
     public void requestComment(int session) {
-        Mumble.RequestBlob.Builder rbb = Mumble.RequestBlob.newBuilder();
-        rbb.addSessionComment(session);
-        getConnection().sendTCPMessage(rbb.build(), JumbleTCPMessageType.RequestBlob);
+        requestComment(session, null);
+    }
+
+    @Override
+    public void requestComment(final int session, final BlobRequestHandler.Callback callback) {
+        final IUser user = getUser(session);
+        requestBlob(user != null ? user.getCommentHash() : null, session, callback, new BlobRequest() {
+            @Override
+            public void onLoaded() {
+                mModelObserver.onUserStateUpdated(user);
+            }
+
+            @Override
+            public void onMissing() {
+                mBlobRequestHandler.requestComment(session, callback);
+            }
+        });
     }
 
     @Override
     public void requestAvatar(int session) {
-        Mumble.RequestBlob.Builder rbb = Mumble.RequestBlob.newBuilder();
-        rbb.addSessionTexture(session);
-        getConnection().sendTCPMessage(rbb.build(), JumbleTCPMessageType.RequestBlob);
+        requestAvatar(session, null);
+    }
+
+    @Override
+    public void requestAvatar(final int session, final BlobRequestHandler.Callback callback) {
+        final IUser user = getUser(session);
+        requestBlob(user != null ? user.getTextureHash() : null, session, callback, new BlobRequest() {
+            @Override
+            public void onLoaded() {
+                mModelObserver.onUserStateUpdated(user);
+            }
+
+            @Override
+            public void onMissing() {
+                mBlobRequestHandler.requestAvatar(session, callback);
+            }
+        });
     }
 
     @Override
     public void requestChannelDescription(int channel) {
-        Mumble.RequestBlob.Builder rbb = Mumble.RequestBlob.newBuilder();
-        rbb.addChannelDescription(channel);
-        getConnection().sendTCPMessage(rbb.build(), JumbleTCPMessageType.RequestBlob);
+        requestChannelDescription(channel, null);
+    }
+
+    @Override
+    public void requestChannelDescription(final int channel,
+                                          final BlobRequestHandler.Callback callback) {
+        final IChannel target = getChannel(channel);
+        requestBlob(target != null ? target.getDescriptionHash() : null, channel, callback,
+                new BlobRequest() {
+            @Override
+            public void onLoaded() {
+                mModelObserver.onChannelStateUpdated(target);
+            }
+
+            @Override
+            public void onMissing() {
+                mBlobRequestHandler.requestChannelDescription(channel, callback);
+            }
+        });
+    }
+
+    /**
+     * Resolves a blob from the cache, falling back to the server. A blob already in memory
+     * completes immediately. Otherwise the disk tier is checked in the background, so that the
+     * main thread never waits on I/O; a blob found there is reported to observers, as the model's
+     * getters will now return it.
+     * @param hash The hash of the blob, or null if unknown.
+     * @param id The session or channel ID the blob belongs to.
+     * @param callback A callback to invoke on completion, or null.
+     * @param request Notifies observers of a disk hit, or requests the blob from the server.
+     */
+    private void requestBlob(byte[] hash, final int id, final BlobRequestHandler.Callback callback,
+                             final BlobRequest request) {
+        if (hash == null) {
+            request.onMissing();
+            return;
+        }
+        if (mBlobCache.getFromMemory(hash) != null) {
+            if (callback != null)
+                callback.onBlobRequestComplete(id, true);
+            return;
+        }
+        final BlobRequestHandler handler = mBlobRequestHandler;
+        mBlobCache.load(hash, mMainExecutor, new BlobCache.LoadCallback() {
+            @Override
+            public void onBlobLoaded(byte[] blobHash, byte[] data) {
+                if (data != null) {
+                    request.onLoaded();
+                    if (callback != null)
+                        callback.onBlobRequestComplete(id, true);
+                } else if (handler == mBlobRequestHandler && isConnectionEstablished()) {
+                    request.onMissing();
+                } else if (callback != null) {
+                    // The connection closed while we were reading the disk.
+                    callback.onBlobRequestComplete(id, false);
+                }
+            }
+        });
     }
 
     @Override
@@ -1064,6 +1248,26 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         getConnection().sendTCPMessage(usb.build(), JumbleTCPMessageType.UserState);
     }
 
+    @Override
+    public void setUserOutputGain(int session, float gain) {
+        try {
+            User user = getModelHandler().getUser(session);
+            if (user != null) user.setLocalGain(gain);
+        } catch (NotSynchronizedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void setUserOutputPan(int session, float pan) {
+        try {
+            User user = getModelHandler().getUser(session);
+            if (user != null) user.setLocalPan(pan);
+        } catch (NotSynchronizedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public void setSelfMuteDeafState(boolean mute, boolean deaf) {
         Mumble.UserState.Builder usb = Mumble.UserState.newBuilder();
@@ -1185,6 +1389,17 @@ public class JumbleService extends Service implements IJumbleService, IJumbleSes
         CONNECTION_LOST
     }
 
+    /**
+     * The outcomes of a blob request that depend on the kind of blob requested.
+     * @see #requestBlob(byte[], int, BlobRequestHandler.Callback, BlobRequest)
+     */
+    private interface BlobRequest {
+        /** Called when the blob has been loaded into memory from the disk cache. */
+        void onLoaded();
+        /** Called when the blob isn't cached, and must be requested from the server. */
+        void onMissing();
+    }
+
     public static class JumbleBinder extends Binder {
         private final IJumbleService mService;
 
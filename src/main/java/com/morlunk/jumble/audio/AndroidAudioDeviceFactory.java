@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.os.Process;
+
+import com.morlunk.jumble.exception.AudioInitializationException;
+
+/**
+ * Opens AudioTrack sinks and AudioRecord sources with the service's configured streams.
+ * Settings apply to devices opened after they are changed.
+ */
+public class AndroidAudioDeviceFactory implements IAudioDeviceFactory {
+    private final AudioManager mAudioManager;
+    private volatile int mAudioStream = AudioManager.STREAM_MUSIC;
+    private volatile int mAudioSource;
+    private volatile boolean mBluetoothEnabled;
+
+    public AndroidAudioDeviceFactory(Context context) {
+        mAudioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    /**
+     * @param audioStream The AudioManager stream to play to, such as STREAM_MUSIC.
+     */
+    public void setAudioStream(int audioStream) {
+        mAudioStream = audioStream;
+    }
+
+    /**
+     * @param audioSource The MediaRecorder.AudioSource to record from.
+     */
+    public void setAudioSource(int audioSource) {
+        mAudioSource = audioSource;
+    }
+
+    /**
+     * @param bluetoothEnabled Whether a bluetooth SCO connection is active.
+     */
+    public void setBluetoothEnabled(boolean bluetoothEnabled) {
+        mBluetoothEnabled = bluetoothEnabled;
+    }
+
+    @Override
+    public IAudioSink createSink(int sampleRate, int channels, int maxBufferSize)
+            throws AudioInitializationException {
+        // Ensure that if a bluetooth SCO connection is active, we use the VOICE_CALL stream.
+        // This is required by Android for compatibility with SCO.
+        int stream = mBluetoothEnabled ? AudioManager.STREAM_VOICE_CALL : mAudioStream;
+        return new AudioTrackSink(mAudioManager, stream, sampleRate, channels, maxBufferSize);
+    }
+
+    @Override
+    public IAudioSource createSource(int sampleRate) throws AudioInitializationException {
+        return new AudioRecordSource(mAudioSource, sampleRate);
+    }
+
+    @Override
+    public void setAudioThreadPriority() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.os.Process;
+
+import com.morlunk.jumble.exception.AudioInitializationException;
+
+/**
+ * Records mono 16-bit PCM from an AudioRecord.
+ */
+class AudioRecordSource implements IAudioSource {
+    private final AudioRecord mAudioRecord;
+
+    public AudioRecordSource(int audioSource, int sampleRate) throws AudioInitializationException {
+        int minBufferSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                                                                AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0)
+            throw new AudioInitializationException("Invalid buffer size returned (unsupported sample rate).");
+
+        try {
+            mAudioRecord = new AudioRecord(audioSource, sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                                                 AudioFormat.ENCODING_PCM_16BIT, minBufferSize);
+        } catch (IllegalArgumentException e) {
+            throw new AudioInitializationException(e);
+        }
+
+        if(mAudioRecord.getState() == AudioRecord.STATE_UNINITIALIZED) {
+            mAudioRecord.release();
+            throw new AudioInitializationException("AudioRecord failed to initialize!");
+        }
+    }
+
+    @Override
+    public int getSampleRate() {
+        return mAudioRecord.getSampleRate();
+    }
+
+    @Override
+    public boolean start() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        mAudioRecord.startRecording();
+        return mAudioRecord.getState() == AudioRecord.STATE_INITIALIZED;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        return mAudioRecord.read(buffer, offset, length);
+    }
+
+    @Override
+    public void stop() {
+        mAudioRecord.stop();
+    }
+
+    @Override
+    public void release() {
+        mAudioRecord.release();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+
+import com.morlunk.jumble.Constants;
+import com.morlunk.jumble.exception.AudioInitializationException;
+import com.morlunk.jumble.util.JumbleLog;
+
+/**
+ * Plays 16-bit PCM to an AudioTrack stream.
+ */
+class AudioTrackSink implements IAudioSink {
+    private final AudioManager mAudioManager;
+    private final int mAudioStream;
+    private final AudioTrack mAudioTrack;
+    private final int mBufferSize;
+
+    public AudioTrackSink(AudioManager audioManager, int audioStream, int sampleRate,
+                          int channels, int maxBufferSize) throws AudioInitializationException {
+        mAudioManager = audioManager;
+        mAudioStream = audioStream;
+
+        int channelConfig = channels == 2 ? AudioFormat.CHANNEL_OUT_STEREO : AudioFormat.CHANNEL_OUT_MONO;
+        int minBufferSize = AudioTrack.getMinBufferSize(sampleRate,
+                channelConfig, AudioFormat.ENCODING_PCM_16BIT) / channels;
+        mBufferSize = Math.min(minBufferSize, maxBufferSize);
+        JumbleLog.v(Constants.TAG, "Using buffer size " + mBufferSize + ", system's min buffer size: " + minBufferSize);
+
+        try {
+            mAudioTrack = new AudioTrack(audioStream,
+                    sampleRate,
+                    channelConfig,
+                    AudioFormat.ENCODING_PCM_16BIT,
+                    mBufferSize * channels,
+                    AudioTrack.MODE_STREAM);
+        } catch (IllegalArgumentException e) {
+            throw new AudioInitializationException(e);
+        }
+    }
+
+    @Override
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    @Override
+    public void play() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        mAudioTrack.play();
+    }
+
+    @Override
+    public void write(short[] data, int offset, int length) {
+        mAudioTrack.write(data, offset, length);
+    }
+
+    @Override
+    public void pause() {
+        mAudioTrack.flush();
+        mAudioTrack.pause();
+    }
+
+    @Override
+    public void stop() {
+        mAudioTrack.flush();
+        mAudioTrack.stop();
+    }
+
+    @Override
+    public void setMuted(boolean muted) {
+        mAudioManager.setStreamMute(mAudioStream, muted);
+    }
+
+    @Override
+    public void release() {
+        mAudioTrack.release();
+    }
+}
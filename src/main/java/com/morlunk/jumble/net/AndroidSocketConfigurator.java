@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.net;
+
+import android.net.SSLCertificateSocketFactory;
+import android.os.Build;
+
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Enables server name indication on Android's TLS sockets, which requires at least API 17.
+ */
+public class AndroidSocketConfigurator implements SocketConfigurator {
+    @Override
+    public void configureSocket(SSLSocket socket, String host) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            SSLCertificateSocketFactory scsf = (SSLCertificateSocketFactory) SSLCertificateSocketFactory.getDefault(0);
+            scsf.setHostname(socket, host);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import android.util.Log;
+
+/**
+ * Sends the protocol core's log messages to logcat.
+ */
+public class AndroidLogSink implements JumbleLog.Sink {
+    @Override
+    public void log(int priority, String tag, String message, Throwable tr) {
+        if (tr != null)
+            message = message + '\n' + Log.getStackTraceString(tr);
+        Log.println(priority, tag, message);
+    }
+}
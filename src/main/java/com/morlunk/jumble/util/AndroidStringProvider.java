@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import android.content.Context;
+
+import com.morlunk.jumble.R;
+
+/**
+ * Looks up {@link JumbleString}s in the library's string resources, so that they are translated.
+ */
+public class AndroidStringProvider implements IStringProvider {
+    private final Context mContext;
+
+    public AndroidStringProvider(Context context) {
+        mContext = context;
+    }
+
+    @Override
+    public String getString(JumbleString string, Object... formatArgs) {
+        return mContext.getString(getResource(string), formatArgs);
+    }
+
+    private static int getResource(JumbleString string) {
+        switch (string) {
+            case AUDIO_MAX_BANDWIDTH:
+                return R.string.audio_max_bandwidth;
+            case CHAT_NOTIFY_MUTED_DEAFENED:
+                return R.string.chat_notify_muted_deafened;
+            case CHAT_NOTIFY_MUTED:
+                return R.string.chat_notify_muted;
+            case CHAT_NOTIFY_UNMUTED:
+                return R.string.chat_notify_unmuted;
+            case CHAT_NOTIFY_NOW_MUTED_DEAFENED:
+                return R.string.chat_notify_now_muted_deafened;
+            case CHAT_NOTIFY_NOW_MUTED:
+                return R.string.chat_notify_now_muted;
+            case CHAT_NOTIFY_NOW_UNMUTED:
+                return R.string.chat_notify_now_unmuted;
+            case CHAT_NOTIFY_CONNECTED:
+                return R.string.chat_notify_connected;
+            case CHAT_NOTIFY_DISCONNECTED:
+                return R.string.chat_notify_disconnected;
+            case CHAT_NOTIFY_KICK_BAN_SELF:
+                return R.string.chat_notify_kick_ban_self;
+            case CHAT_NOTIFY_KICK_SELF:
+                return R.string.chat_notify_kick_self;
+            case CHAT_NOTIFY_KICK_BAN:
+                return R.string.chat_notify_kick_ban;
+            case CHAT_NOTIFY_KICK:
+                return R.string.chat_notify_kick;
+            case CHAT_NOTIFY_SELF_RECORDING_STARTED:
+                return R.string.chat_notify_self_recording_started;
+            case CHAT_NOTIFY_SELF_RECORDING_STOPPED:
+                return R.string.chat_notify_self_recording_stopped;
+            case CHAT_NOTIFY_USER_RECORDING_STARTED:
+                return R.string.chat_notify_user_recording_started;
+            case CHAT_NOTIFY_USER_RECORDING_STOPPED:
+                return R.string.chat_notify_user_recording_stopped;
+            case CHAT_NOTIFY_USER_JOINED_CHANNEL:
+                return R.string.chat_notify_user_joined_channel;
+            case CHAT_NOTIFY_USER_LEFT_CHANNEL:
+                return R.string.chat_notify_user_left_channel;
+            case CHAT_NOTIFY_USER_JOINED_CHANNEL_BY:
+                return R.string.chat_notify_user_joined_channel_by;
+            case CHAT_NOTIFY_USER_LEFT_CHANNEL_BY:
+                return R.string.chat_notify_user_left_channel_by;
+            case DENY_REASON_CHANNEL_NAME:
+                return R.string.deny_reason_channel_name;
+            case DENY_REASON_TEXT_TOO_LONG:
+                return R.string.deny_reason_text_too_long;
+            case DENY_REASON_NO_OPERATION_TEMP:
+                return R.string.deny_reason_no_operation_temp;
+            case DENY_REASON_NO_CERTIFICATE:
+                return R.string.deny_reason_no_certificate;
+            case DENY_REASON_INVALID_USERNAME:
+                return R.string.deny_reason_invalid_username;
+            case DENY_REASON_CHANNEL_FULL:
+                return R.string.deny_reason_channel_full;
+            case DENY_REASON_CHANNEL_NESTING:
+                return R.string.deny_reason_channel_nesting;
+            case DENY_REASON_OTHER:
+                return R.string.deny_reason_other;
+            case PERM_DENIED:
+                return R.string.perm_denied;
+            case SERVER:
+                return R.string.server;
+            case THE_SERVER:
+                return R.string.the_server;
+            default:
+                throw new IllegalArgumentException("No resource for " + string);
+        }
+    }
+}
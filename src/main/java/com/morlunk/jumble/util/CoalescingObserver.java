@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import android.os.Handler;
+
+import com.morlunk.jumble.model.IChannel;
+import com.morlunk.jumble.model.IMessage;
+import com.morlunk.jumble.model.IUser;
+
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Wraps an observer and collapses repeated state update events into at most one callback per
+ * channel or user per frame. Structural events (added, removed, joined, etc.) are delivered
+ * immediately, after flushing any pending updates so that observers see events in order.
+ * All methods must be called on the thread of the provided handler.
+ */
+public class CoalescingObserver implements IJumbleObserver {
+    /** The interval to collect state updates over, roughly one frame at 60Hz. */
+    public static final long FLUSH_INTERVAL_MS = 16;
+
+    private final IJumbleObserver mObserver;
+    private final Handler mHandler;
+    private final Set<IChannel> mUpdatedChannels = new LinkedHashSet<IChannel>();
+    private final Set<IChannel> mUpdatedPermissions = new LinkedHashSet<IChannel>();
+    private final Set<IUser> mUpdatedUsers = new LinkedHashSet<IUser>();
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            flush();
+        }
+    };
+
+    public CoalescingObserver(IJumbleObserver observer, Handler handler) {
+        mObserver = observer;
+        mHandler = handler;
+    }
+
+    /**
+     * Immediately delivers all pending state updates.
+     */
+    public void flush() {
+        if (mFlushScheduled) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mFlushScheduled = false;
+        }
+        if (!mUpdatedChannels.isEmpty()) {
+            for (IChannel channel : mUpdatedChannels) {
+                mObserver.onChannelStateUpdated(channel);
+            }
+            mUpdatedChannels.clear();
+        }
+        if (!mUpdatedPermissions.isEmpty()) {
+            for (IChannel channel : mUpdatedPermissions) {
+                mObserver.onChannelPermissionsUpdated(channel);
+            }
+            mUpdatedPermissions.clear();
+        }
+        if (!mUpdatedUsers.isEmpty()) {
+            for (IUser user : mUpdatedUsers) {
+                mObserver.onUserStateUpdated(user);
+            }
+            mUpdatedUsers.clear();
+        }
+    }
+
+    /**
+     * Drops all pending state updates without delivering them. Used when the model they refer to
+     * is being discarded, such as on disconnect.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        mFlushScheduled = false;
+        mUpdatedChannels.clear();
+        mUpdatedPermissions.clear();
+        mUpdatedUsers.clear();
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlushRunnable, FLUSH_INTERVAL_MS);
+        }
+    }
+
+    @Override
+    public void onConnected() {
+        flush();
+        mObserver.onConnected();
+    }
+
+    @Override
+    public void onConnecting() {
+        flush();
+        mObserver.onConnecting();
+    }
+
+    @Override
+    public void onDisconnected(JumbleException e) {
+        cancel();
+        mObserver.onDisconnected(e);
+    }
+
+    @Override
+    public void onTLSHandshakeFailed(X509Certificate[] chain) {
+        flush();
+        mObserver.onTLSHandshakeFailed(chain);
+    }
+
+    @Override
+    public void onModelLoaded() {
+        flush();
+        mObserver.onModelLoaded();
+    }
+
+    @Override
+    public void onTransportChanged(boolean udp) {
+        flush();
+        mObserver.onTransportChanged(udp);
+    }
+
+    @Override
+    public void onChannelAdded(IChannel channel) {
+        flush();
+        mObserver.onChannelAdded(channel);
+    }
+
+    @Override
+    public void onChannelStateUpdated(IChannel channel) {
+        mUpdatedChannels.add(channel);
+        scheduleFlush();
+    }
+
+    @Override
+    public void onChannelRemoved(IChannel channel) {
+        flush();
+        mObserver.onChannelRemoved(channel);
+    }
+
+    @Override
+    public void onChannelPermissionsUpdated(IChannel channel) {
+        mUpdatedPermissions.add(channel);
+        scheduleFlush();
+    }
+
+    @Override
+    public void onUserConnected(IUser user) {
+        flush();
+        mObserver.onUserConnected(user);
+    }
+
+    @Override
+    public void onUserStateUpdated(IUser user) {
+        mUpdatedUsers.add(user);
+        scheduleFlush();
+    }
+
+    @Override
+    public void onUserTalkStateUpdated(IUser user) {
+        // Talk state is latency sensitive and independent of the model's structure.
+        mObserver.onUserTalkStateUpdated(user);
+    }
+
+    @Override
+    public void onUserJoinedChannel(IUser user, IChannel newChannel, IChannel oldChannel) {
+        flush();
+        mObserver.onUserJoinedChannel(user, newChannel, oldChannel);
+    }
+
+    @Override
+    public void onUserRemoved(IUser user, String reason) {
+        flush();
+        mObserver.onUserRemoved(user, reason);
+    }
+
+    @Override
+    public void onPermissionDenied(String reason) {
+        flush();
+        mObserver.onPermissionDenied(reason);
+    }
+
+    @Override
+    public void onMessageLogged(IMessage message) {
+        flush();
+        mObserver.onMessageLogged(message);
+    }
+
+    @Override
+    public void onVoiceTargetChanged(VoiceTargetMode mode) {
+        flush();
+        mObserver.onVoiceTargetChanged(mode);
+    }
+
+    @Override
+    public void onLogInfo(String message) {
+        flush();
+        mObserver.onLogInfo(message);
+    }
+
+    @Override
+    public void onLogWarning(String message) {
+        flush();
+        mObserver.onLogWarning(message);
+    }
+
+    @Override
+    public void onLogError(String message) {
+        flush();
+        mObserver.onLogError(message);
+    }
+}
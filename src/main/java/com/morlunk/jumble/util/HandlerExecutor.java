@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014 Andrew Comminos
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.morlunk.jumble.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks by posting them to an Android {@link Handler}. Adapts the Android threading model to
+ * the plain {@link Executor}s and {@link Scheduler}s the protocol core takes for its callbacks.
+ */
+public class HandlerExecutor implements Scheduler {
+    private final Handler mHandler;
+
+    public HandlerExecutor(Handler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     * @return An executor running tasks on the application's main thread.
+     */
+    public static HandlerExecutor forMainLooper() {
+        return new HandlerExecutor(new Handler(Looper.getMainLooper()));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!mHandler.post(command))
+            throw new RejectedExecutionException(mHandler + " is shutting down");
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        if (!mHandler.postDelayed(task, delayMillis))
+            throw new RejectedExecutionException(mHandler + " is shutting down");
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -2,10 +2,10 @@
 # Call this from the project root.
 if [ "$1" == "--build" ]; then
     # Build classes if we provide --build
-    ./gradlew assembleDebug
+    ./gradlew :jumble-core:compileJava
 fi
 
-java -jar tools/javacpp-0.7.jar -cp build/intermediates/classes/debug/ -d src/main/jni/ -nocompile com.morlunk.jumble.audio.javacpp.*
+java -jar tools/javacpp-0.7.jar -cp jumble-core/build/classes/main/ -d src/main/jni/ -nocompile com.morlunk.jumble.audio.javacpp.*
 
 if [ "$1" == "--build" ]; then
     # Build native libs